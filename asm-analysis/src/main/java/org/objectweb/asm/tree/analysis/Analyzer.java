@@ -90,7 +90,8 @@ public class Analyzer<V extends Value> implements Opcodes {
   }
 
   /**
-   * Analyzes the given method.
+   * Analyzes the given method. Its code is loaded first, if needed (see {@link
+   * MethodNode#loadCode}).
    *
    * @param owner the internal name of the class to which 'method' belongs (see {@link
    *     Type#getInternalName()}).
@@ -108,6 +109,7 @@ public class Analyzer<V extends Value> implements Opcodes {
       frames = (Frame<V>[]) new Frame<?>[0];
       return frames;
     }
+    method.loadCode();
     insnList = method.instructions;
     insnListSize = insnList.size();
     handlers = (List<TryCatchBlockNode>[]) new List<?>[insnListSize];
@@ -298,6 +300,7 @@ public class Analyzer<V extends Value> implements Opcodes {
    */
   public Frame<V>[] analyzeAndComputeMaxs(final String owner, final MethodNode method)
       throws AnalyzerException {
+    method.loadCode();
     method.maxLocals = computeMaxLocals(method);
     method.maxStack = -1;
     analyze(owner, method);
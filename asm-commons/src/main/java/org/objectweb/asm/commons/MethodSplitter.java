@@ -0,0 +1,1294 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypeHierarchy;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LocalVariableAnnotationNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * A {@link ClassVisitor} that splits the methods whose code is too large, instead of letting a
+ * {@link org.objectweb.asm.ClassWriter} throw a {@link org.objectweb.asm.MethodTooLargeException}.
+ * Some parts of the code of such a method, which are entered only from their first instruction
+ * and exited only after their last instruction, with an empty operand stack, are moved into new
+ * private static synthetic methods, and replaced with a call to these methods. The local variables
+ * used by a moved part of the code are passed as arguments to the new method, and the exception
+ * handlers are moved along with the code they protect (an exception handler protecting a moved
+ * part of the code remains in the split method, where it protects the call instruction). The
+ * methods which are not too large are left unchanged.
+ *
+ * <p>The stack map frames of a split method are removed, as well as its local variable debug
+ * information whose scope is partially moved to a new method. The class visitor to which this
+ * adapter delegates must therefore be a {@link org.objectweb.asm.ClassWriter} created with the
+ * {@link org.objectweb.asm.ClassWriter#COMPUTE_FRAMES} option (or, for class files older than Java
+ * 6, with the {@link org.objectweb.asm.ClassWriter#COMPUTE_MAXS} option). In order to find the
+ * types of the local variables passed as arguments, this adapter computes the common super class
+ * of two types in the same way as {@link org.objectweb.asm.ClassWriter} (see {@link
+ * #getCommonSuperClass} and {@link #setTypeHierarchy}).
+ *
+ * <p>Some methods can't be split, or can't be split enough. This is the case, for instance, of
+ * methods containing JSR instructions (see {@link JSRInlinerAdapter}), of methods mostly made of a
+ * single large expression or of a single large switch statement (whose cases jump to a common end
+ * label), and of interface methods in class files older than Java 8. Such methods are left
+ * unchanged. Likewise, the instructions storing a field of the visited class in its class
+ * initializer or in its constructors are never moved, since this field could be final.
+ */
+public class MethodSplitter extends ClassVisitor {
+
+  /** The maximum size of the code of a method, in bytes. */
+  private static final int MAX_CODE_SIZE = 65535;
+
+  /** The maximum number of local variable slots used by the arguments of a static method. */
+  private static final int MAX_ARGUMENT_SLOTS = 255;
+
+  /** The size, in bytes, of an INVOKESTATIC instruction. */
+  private static final int INVOKESTATIC_SIZE = 3;
+
+  /**
+   * The divisor of {@link #maxCodeSize} giving the minimum size reduction of a split method, in
+   * bytes, for each moved part of its code. This avoids creating many very small methods.
+   */
+  private static final int MIN_CODE_SIZE_REDUCTION_DIVISOR = 16;
+
+  /** The infix used to build the names of the methods created by this adapter. */
+  private static final String HELPER_METHOD_INFIX = "$split$";
+
+  /** The maximum size of the code of the methods, in bytes. Larger methods are split. */
+  private final int maxCodeSize;
+
+  /**
+   * The type hierarchy used by {@link #getCommonSuperClass}, or {@literal null} to load the classes
+   * with {@link #getClassLoader}.
+   */
+  private TypeHierarchy typeHierarchy;
+
+  /** The internal name of the visited class. */
+  private String className;
+
+  /** The version of the visited class. */
+  private int classVersion;
+
+  /** Whether the visited class is an interface. */
+  private boolean isInterface;
+
+  /** The names of the methods of the visited class. */
+  private final Set<String> methodNames = new HashSet<>();
+
+  /** The split methods of the visited class, which are sent to the next visitor in visitEnd. */
+  private final List<SplittableMethodNode> splitMethods = new ArrayList<>();
+
+  /** The number of methods created by this adapter in the visited class. */
+  private int numHelperMethods;
+
+  /**
+   * Constructs a new {@link MethodSplitter}, splitting the methods whose code is larger than the
+   * maximum allowed by the class file format. <i>Subclasses must not use this constructor</i>.
+   * Instead, they must use the {@link #MethodSplitter(int, ClassVisitor, int)} version.
+   *
+   * @param classVisitor the class visitor to which this visitor must delegate method calls. May be
+   *     null.
+   * @throws IllegalStateException If a subclass calls this constructor.
+   */
+  public MethodSplitter(final ClassVisitor classVisitor) {
+    this(classVisitor, MAX_CODE_SIZE);
+  }
+
+  /**
+   * Constructs a new {@link MethodSplitter}. <i>Subclasses must not use this constructor</i>.
+   * Instead, they must use the {@link #MethodSplitter(int, ClassVisitor, int)} version.
+   *
+   * @param classVisitor the class visitor to which this visitor must delegate method calls. May be
+   *     null.
+   * @param maxCodeSize the maximum size of the code of the methods, in bytes. Larger methods are
+   *     split. This can be smaller than the maximum allowed by the class file format, for instance
+   *     to keep the methods small enough to be compiled by a just in time compiler.
+   * @throws IllegalStateException If a subclass calls this constructor.
+   */
+  public MethodSplitter(final ClassVisitor classVisitor, final int maxCodeSize) {
+    this(/* latest api = */ Opcodes.ASM9, classVisitor, maxCodeSize);
+    if (getClass() != MethodSplitter.class) {
+      throw new IllegalStateException();
+    }
+  }
+
+  /**
+   * Constructs a new {@link MethodSplitter}.
+   *
+   * @param api the ASM API version implemented by this visitor. Must be one of the {@code
+   *     ASM}<i>x</i> values in {@link Opcodes}.
+   * @param classVisitor the class visitor to which this visitor must delegate method calls. May be
+   *     null.
+   * @param maxCodeSize the maximum size of the code of the methods, in bytes. Larger methods are
+   *     split. Must be between 1 and 65535.
+   */
+  protected MethodSplitter(final int api, final ClassVisitor classVisitor, final int maxCodeSize) {
+    super(api, classVisitor);
+    if (maxCodeSize < 1 || maxCodeSize > MAX_CODE_SIZE) {
+      throw new IllegalArgumentException("Invalid maxCodeSize: " + maxCodeSize);
+    }
+    this.maxCodeSize = maxCodeSize;
+  }
+
+  /**
+   * Sets the type hierarchy used by the default implementation of {@link #getCommonSuperClass}.
+   * This should be the same as the one of the {@link org.objectweb.asm.ClassWriter} to which this
+   * adapter delegates, if any.
+   *
+   * @param typeHierarchy a type hierarchy provider, or {@literal null} to load the classes with
+   *     {@link #getClassLoader}.
+   */
+  public void setTypeHierarchy(final TypeHierarchy typeHierarchy) {
+    this.typeHierarchy = typeHierarchy;
+  }
+
+  /**
+   * Returns the type hierarchy used by the default implementation of {@link #getCommonSuperClass}.
+   *
+   * @return the type hierarchy used by the default implementation of {@link #getCommonSuperClass},
+   *     or {@literal null} if it loads the classes with {@link #getClassLoader}.
+   */
+  public TypeHierarchy getTypeHierarchy() {
+    return typeHierarchy;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Implementation of the ClassVisitor abstract class
+  // -----------------------------------------------------------------------------------------------
+
+  @Override
+  public void visit(
+      final int version,
+      final int access,
+      final String name,
+      final String signature,
+      final String superName,
+      final String[] interfaces) {
+    className = name;
+    classVersion = version;
+    isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
+    methodNames.clear();
+    splitMethods.clear();
+    numHelperMethods = 0;
+    super.visit(version, access, name, signature, superName, interfaces);
+  }
+
+  @Override
+  public MethodVisitor visitMethod(
+      final int access,
+      final String name,
+      final String descriptor,
+      final String signature,
+      final String[] exceptions) {
+    methodNames.add(name);
+    MethodVisitor methodVisitor =
+        super.visitMethod(access, name, descriptor, signature, exceptions);
+    if (methodVisitor == null || (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+      return methodVisitor;
+    }
+    return new SplittableMethodNode(
+        api, methodVisitor, access, name, descriptor, signature, exceptions);
+  }
+
+  @Override
+  public void visitEnd() {
+    // The names of the new methods are chosen here, when the names of all the existing methods
+    // are known, to make sure that they are unique.
+    for (SplittableMethodNode splitMethod : splitMethods) {
+      String prefix = splitMethod.name;
+      if (prefix.charAt(0) == '<') {
+        prefix = prefix.substring(1, prefix.length() - 1);
+      }
+      for (int i = 0; i < splitMethod.helperMethods.size(); ++i) {
+        String helperMethodName;
+        do {
+          helperMethodName = prefix + HELPER_METHOD_INFIX + numHelperMethods++;
+        } while (methodNames.contains(helperMethodName));
+        methodNames.add(helperMethodName);
+        splitMethod.helperMethods.get(i).name = helperMethodName;
+        splitMethod.helperMethodCalls.get(i).name = helperMethodName;
+      }
+      splitMethod.accept(splitMethod.methodVisitor);
+      for (MethodNode helperMethod : splitMethod.helperMethods) {
+        MethodVisitor methodVisitor =
+            super.visitMethod(
+                helperMethod.access, helperMethod.name, helperMethod.desc, null, null);
+        if (methodVisitor != null) {
+          helperMethod.accept(methodVisitor);
+        }
+      }
+    }
+    splitMethods.clear();
+    super.visitEnd();
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Default method to compute common super classes
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the common super type of the two given types. The default implementation of this method
+   * uses the {@link TypeHierarchy} set with {@link #setTypeHierarchy}, if any. Otherwise, it
+   * <i>loads</i> the two given classes and uses the java.lang.Class methods to find the common
+   * super class. It can be overridden to compute this common super type in other ways, like in
+   * {@link org.objectweb.asm.ClassWriter}.
+   *
+   * @param type1 the internal name of a class (see {@link Type#getInternalName()}).
+   * @param type2 the internal name of another class (see {@link Type#getInternalName()}).
+   * @return the internal name of the common super class of the two given classes (see {@link
+   *     Type#getInternalName()}).
+   */
+  protected String getCommonSuperClass(final String type1, final String type2) {
+    if (typeHierarchy != null) {
+      return typeHierarchy.getCommonSuperClass(type1, type2);
+    }
+    ClassLoader classLoader = getClassLoader();
+    Class<?> class1;
+    try {
+      class1 = Class.forName(type1.replace('/', '.'), false, classLoader);
+    } catch (ClassNotFoundException e) {
+      throw new TypeNotPresentException(type1, e);
+    }
+    Class<?> class2;
+    try {
+      class2 = Class.forName(type2.replace('/', '.'), false, classLoader);
+    } catch (ClassNotFoundException e) {
+      throw new TypeNotPresentException(type2, e);
+    }
+    if (class1.isAssignableFrom(class2)) {
+      return type1;
+    }
+    if (class2.isAssignableFrom(class1)) {
+      return type2;
+    }
+    if (class1.isInterface() || class2.isInterface()) {
+      return "java/lang/Object";
+    } else {
+      do {
+        class1 = class1.getSuperclass();
+      } while (!class1.isAssignableFrom(class2));
+      return class1.getName().replace('.', '/');
+    }
+  }
+
+  /**
+   * Returns the {@link ClassLoader} to be used by the default implementation of {@link
+   * #getCommonSuperClass(String, String)}, that of this {@link MethodSplitter}'s runtime type by
+   * default.
+   *
+   * @return ClassLoader
+   */
+  protected ClassLoader getClassLoader() {
+    return getClass().getClassLoader();
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Utility methods
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the merge of the given abstract types, in the format used by {@link AnalyzerAdapter}.
+   *
+   * @param type1 an abstract type.
+   * @param type2 another abstract type.
+   * @return the most specific abstract type which is a super type of type1 and type2.
+   */
+  private Object mergeType(final Object type1, final Object type2) {
+    if (type1.equals(type2)) {
+      return type1;
+    }
+    if (type1 instanceof String) {
+      if (type2 instanceof String) {
+        return mergeReferenceType((String) type1, (String) type2);
+      } else if (type2 == Opcodes.NULL) {
+        return type1;
+      }
+    } else if (type1 == Opcodes.NULL && type2 instanceof String) {
+      return type2;
+    }
+    return Opcodes.TOP;
+  }
+
+  /**
+   * Returns the merge of the given reference types.
+   *
+   * @param type1 the internal name of a class, or the descriptor of an array type.
+   * @param type2 the internal name of another class, or the descriptor of another array type.
+   * @return the internal name or the descriptor of the most specific super type of type1 and type2.
+   */
+  private String mergeReferenceType(final String type1, final String type2) {
+    boolean isArray1 = type1.charAt(0) == '[';
+    boolean isArray2 = type2.charAt(0) == '[';
+    if (isArray1 && isArray2) {
+      char elementSort1 = type1.charAt(1);
+      char elementSort2 = type2.charAt(1);
+      if ((elementSort1 == 'L' || elementSort1 == '[')
+          && (elementSort2 == 'L' || elementSort2 == '[')) {
+        String elementType1 = Type.getType(type1.substring(1)).getInternalName();
+        String elementType2 = Type.getType(type2.substring(1)).getInternalName();
+        String mergedElementType = mergeReferenceType(elementType1, elementType2);
+        return '[' + Type.getObjectType(mergedElementType).getDescriptor();
+      }
+      return "java/lang/Object";
+    }
+    if (isArray1 || isArray2) {
+      return "java/lang/Object";
+    }
+    return getCommonSuperClass(type1, type2);
+  }
+
+  /**
+   * Returns the given abstract types merged with the given ones, in the format used by {@link
+   * AnalyzerAdapter}.
+   *
+   * @param types some abstract types.
+   * @param otherTypes some other abstract types.
+   * @return the types array, if the merge does not change it, or a new array containing the merged
+   *     types otherwise.
+   */
+  private Object[] mergeTypes(final Object[] types, final Object[] otherTypes) {
+    Object[] mergedTypes = types;
+    for (int i = 0; i < types.length; ++i) {
+      Object otherType = i < otherTypes.length ? otherTypes[i] : Opcodes.TOP;
+      Object mergedType = mergeType(types[i], otherType);
+      if (!mergedType.equals(types[i])) {
+        if (mergedTypes == types) {
+          mergedTypes = types.clone();
+        }
+        mergedTypes[i] = mergedType;
+      }
+    }
+    return mergedTypes;
+  }
+
+  /**
+   * Returns the size of the instructions which call a new method.
+   *
+   * @param arguments the local variables passed as arguments to the new method.
+   * @return the maximum size of the load and INVOKESTATIC instructions which call the new method.
+   */
+  private static int getCallSize(final int[] arguments) {
+    int callSize = INVOKESTATIC_SIZE;
+    for (int argument : arguments) {
+      if (argument < 4) {
+        callSize += 1;
+      } else if (argument < 256) {
+        callSize += 2;
+      } else {
+        callSize += 4;
+      }
+    }
+    return callSize;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Inner classes
+  // -----------------------------------------------------------------------------------------------
+
+  /** A part of the code of a method which can be moved to a new method. */
+  private static final class Region {
+
+    /** The index of the first instruction of this region. */
+    final int start;
+
+    /** The index of the instruction following the last instruction of this region. */
+    final int end;
+
+    /** The local variables used in this region, passed as arguments to the new method. */
+    final int[] arguments;
+
+    /** The types of the {@link #arguments}, in the format used by {@link AnalyzerAdapter}. */
+    final Object[] argumentTypes;
+
+    /** The number of local variable slots used by the {@link #arguments}. */
+    final int argumentSlots;
+
+    /** The maximum size reduction of the split method, in bytes, when this region is moved. */
+    final int codeSizeReduction;
+
+    Region(
+        final int start,
+        final int end,
+        final int[] arguments,
+        final Object[] argumentTypes,
+        final int argumentSlots,
+        final int codeSizeReduction) {
+      this.start = start;
+      this.end = end;
+      this.arguments = arguments;
+      this.argumentTypes = argumentTypes;
+      this.argumentSlots = argumentSlots;
+      this.codeSizeReduction = codeSizeReduction;
+    }
+
+    /**
+     * Returns the index of the given local variable in the new method.
+     *
+     * @param varIndex the index of a local variable in the split method.
+     * @return the index of this local variable in the new method. The arguments are stored first,
+     *     and the other local variables after them, in the same order as in the split method.
+     */
+    int getNewVarIndex(final int varIndex) {
+      int newVarIndex = 0;
+      for (int i = 0; i < arguments.length; ++i) {
+        if (arguments[i] == varIndex) {
+          return newVarIndex;
+        }
+        Object argumentType = argumentTypes[i];
+        newVarIndex += argumentType == Opcodes.LONG || argumentType == Opcodes.DOUBLE ? 2 : 1;
+      }
+      return varIndex + argumentSlots;
+    }
+
+    /**
+     * Returns the descriptor of the new method.
+     *
+     * @return the descriptor of the new method.
+     */
+    String getDescriptor() {
+      StringBuilder stringBuilder = new StringBuilder().append('(');
+      for (Object argumentType : argumentTypes) {
+        if (argumentType == Opcodes.INTEGER) {
+          stringBuilder.append('I');
+        } else if (argumentType == Opcodes.FLOAT) {
+          stringBuilder.append('F');
+        } else if (argumentType == Opcodes.LONG) {
+          stringBuilder.append('J');
+        } else if (argumentType == Opcodes.DOUBLE) {
+          stringBuilder.append('D');
+        } else {
+          stringBuilder.append(Type.getObjectType((String) argumentType).getDescriptor());
+        }
+      }
+      return stringBuilder.append(")V").toString();
+    }
+
+    /**
+     * Returns the instructions which call the new method.
+     *
+     * @param owner the internal name of the class of the new method.
+     * @param isInterface whether this class is an interface.
+     * @return the instructions which load the arguments and call the new method. The last one is
+     *     the INVOKESTATIC instruction, whose method name is not set.
+     */
+    InsnList getCallInsns(final String owner, final boolean isInterface) {
+      InsnList callInsns = new InsnList();
+      for (int i = 0; i < arguments.length; ++i) {
+        Object argumentType = argumentTypes[i];
+        int opcode;
+        if (argumentType == Opcodes.INTEGER) {
+          opcode = Opcodes.ILOAD;
+        } else if (argumentType == Opcodes.FLOAT) {
+          opcode = Opcodes.FLOAD;
+        } else if (argumentType == Opcodes.LONG) {
+          opcode = Opcodes.LLOAD;
+        } else if (argumentType == Opcodes.DOUBLE) {
+          opcode = Opcodes.DLOAD;
+        } else {
+          opcode = Opcodes.ALOAD;
+        }
+        callInsns.add(new VarInsnNode(opcode, arguments[i]));
+      }
+      callInsns.add(
+          new MethodInsnNode(Opcodes.INVOKESTATIC, owner, null, getDescriptor(), isInterface));
+      return callInsns;
+    }
+  }
+
+  /**
+   * A {@link MethodNode} which is split, if necessary, when it has been fully visited, and is then
+   * sent to the next method visitor (immediately if it is not split, or in {@link
+   * MethodSplitter#visitEnd} otherwise).
+   */
+  private final class SplittableMethodNode extends MethodNode {
+
+    /** The method visitor to which the code of this method must be sent. */
+    final MethodVisitor methodVisitor;
+
+    /** The methods created to split this method. Their name is set in visitEnd. */
+    final List<MethodNode> helperMethods = new ArrayList<>();
+
+    /** The instructions calling the {@link #helperMethods}. Their name is set in visitEnd. */
+    final List<MethodInsnNode> helperMethodCalls = new ArrayList<>();
+
+    /** The instructions of this method, before it is split. */
+    private AbstractInsnNode[] insns;
+
+    /** The maximum bytecode offset of each instruction in {@link #insns}, and of the code end. */
+    private int[] insnOffsets;
+
+    /**
+     * The smallest index of the instructions linked to each instruction in {@link #insns}. Two
+     * instructions are linked if they must be in the same method (e.g. a jump and its target).
+     */
+    private int[] minLinkedInsns;
+
+    /** The largest index of the instructions linked to each instruction in {@link #insns}. */
+    private int[] maxLinkedInsns;
+
+    /** The exception handlers of each instruction in {@link #insns}. May contain null elements. */
+    private List<TryCatchBlockNode>[] handlers;
+
+    /**
+     * The local variable types before each instruction in {@link #insns}, in the format used by
+     * {@link AnalyzerAdapter}. This is {@literal null} for unreachable instructions.
+     */
+    private Object[][] frameLocals;
+
+    /**
+     * The operand stack types before each instruction in {@link #insns}, in the format used by
+     * {@link AnalyzerAdapter}. This is {@literal null} for unreachable instructions.
+     */
+    private Object[][] frameStacks;
+
+    /** The local variables which are live before each instruction in {@link #insns}. */
+    private BitSet[] liveLocals;
+
+    /** The maximum number of local variables slots used by this method. */
+    private int numLocals;
+
+    SplittableMethodNode(
+        final int api,
+        final MethodVisitor methodVisitor,
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final String[] exceptions) {
+      super(api, access, name, descriptor, signature, exceptions);
+      this.methodVisitor = methodVisitor;
+    }
+
+    @Override
+    public void visitEnd() {
+      if (split()) {
+        splitMethods.add(this);
+      } else {
+        accept(methodVisitor);
+      }
+    }
+
+    /**
+     * Splits this method, if it is too large.
+     *
+     * @return whether this method has been split.
+     */
+    private boolean split() {
+      insns = instructions.toArray();
+      try {
+        if (!computeInsnOffsets()) {
+          return false;
+        }
+        computeLinkedInsns();
+        computeFrames();
+        computeLiveLocals();
+        List<Region> regions = findRegions();
+        if (regions == null) {
+          return false;
+        }
+        moveRegions(regions);
+        return true;
+      } finally {
+        insns = null;
+        insnOffsets = null;
+        minLinkedInsns = null;
+        maxLinkedInsns = null;
+        handlers = null;
+        frameLocals = null;
+        frameStacks = null;
+        liveLocals = null;
+      }
+    }
+
+    /**
+     * Computes the maximum bytecode offset of each instruction.
+     *
+     * @return whether this method is too large and can be split.
+     */
+    private boolean computeInsnOffsets() {
+      insnOffsets = new int[insns.length + 1];
+      CodeSizeEvaluator codeSizeEvaluator = new CodeSizeEvaluator(null);
+      boolean hasJsrInsns = false;
+      for (int i = 0; i < insns.length; ++i) {
+        AbstractInsnNode insn = insns[i];
+        insnOffsets[i] = codeSizeEvaluator.getMaxSize();
+        insn.accept(codeSizeEvaluator);
+        int opcode = insn.getOpcode();
+        if (opcode == Opcodes.JSR || opcode == Opcodes.RET) {
+          hasJsrInsns = true;
+        }
+      }
+      insnOffsets[insns.length] = codeSizeEvaluator.getMaxSize();
+      return insnOffsets[insns.length] > maxCodeSize
+          && !hasJsrInsns
+          && (!isInterface || (classVersion & 0xFFFF) >= Opcodes.V1_8);
+    }
+
+    /** Computes the instructions which must be in the same method as each instruction. */
+    @SuppressWarnings("unchecked")
+    private void computeLinkedInsns() {
+      minLinkedInsns = new int[insns.length];
+      maxLinkedInsns = new int[insns.length];
+      for (int i = 0; i < insns.length; ++i) {
+        minLinkedInsns[i] = i;
+        maxLinkedInsns[i] = i;
+      }
+      for (int i = 0; i < insns.length; ++i) {
+        AbstractInsnNode insn = insns[i];
+        if (insn instanceof JumpInsnNode) {
+          link(i, ((JumpInsnNode) insn).label);
+        } else if (insn instanceof TableSwitchInsnNode) {
+          TableSwitchInsnNode tableSwitchInsn = (TableSwitchInsnNode) insn;
+          link(i, tableSwitchInsn.dflt);
+          for (LabelNode label : tableSwitchInsn.labels) {
+            link(i, label);
+          }
+        } else if (insn instanceof LookupSwitchInsnNode) {
+          LookupSwitchInsnNode lookupSwitchInsn = (LookupSwitchInsnNode) insn;
+          link(i, lookupSwitchInsn.dflt);
+          for (LabelNode label : lookupSwitchInsn.labels) {
+            link(i, label);
+          }
+        } else if (insn instanceof LineNumberNode) {
+          link(i, ((LineNumberNode) insn).start);
+        }
+      }
+      // An exception handler must be in the same method as the instructions it protects (or these
+      // instructions and their handler must be outside the moved code).
+      handlers = (List<TryCatchBlockNode>[]) new List<?>[insns.length];
+      for (TryCatchBlockNode tryCatchBlock : tryCatchBlocks) {
+        int startIndex = instructions.indexOf(tryCatchBlock.start);
+        int endIndex = instructions.indexOf(tryCatchBlock.end);
+        link(startIndex, tryCatchBlock.end);
+        link(startIndex, tryCatchBlock.handler);
+        for (int i = startIndex; i < endIndex; ++i) {
+          if (handlers[i] == null) {
+            handlers[i] = new ArrayList<>();
+          }
+          handlers[i].add(tryCatchBlock);
+        }
+      }
+    }
+
+    /**
+     * Records that the given instruction and label must be in the same method.
+     *
+     * @param insnIndex the index of an instruction.
+     * @param label a label of this method.
+     */
+    private void link(final int insnIndex, final LabelNode label) {
+      int labelIndex = instructions.indexOf(label);
+      minLinkedInsns[insnIndex] = Math.min(minLinkedInsns[insnIndex], labelIndex);
+      maxLinkedInsns[insnIndex] = Math.max(maxLinkedInsns[insnIndex], labelIndex);
+      minLinkedInsns[labelIndex] = Math.min(minLinkedInsns[labelIndex], insnIndex);
+      maxLinkedInsns[labelIndex] = Math.max(maxLinkedInsns[labelIndex], insnIndex);
+    }
+
+    /**
+     * Computes the local variable and operand stack types before each instruction, with a data flow
+     * analysis using an {@link AnalyzerAdapter} to simulate the execution of each instruction.
+     */
+    private void computeFrames() {
+      frameLocals = new Object[insns.length][];
+      frameStacks = new Object[insns.length][];
+      AnalyzerAdapter analyzerAdapter = new AnalyzerAdapter(className, access, name, desc, null);
+      numLocals = analyzerAdapter.locals.size();
+      Label[] newInsnLabels = new Label[insns.length];
+      int[] pendingInsns = new int[insns.length];
+      boolean[] isPendingInsn = new boolean[insns.length];
+      int numPendingInsns = 0;
+      frameLocals[0] = analyzerAdapter.locals.toArray();
+      frameStacks[0] = new Object[0];
+      pendingInsns[numPendingInsns++] = 0;
+      isPendingInsn[0] = true;
+      while (numPendingInsns > 0) {
+        int insnIndex = pendingInsns[--numPendingInsns];
+        isPendingInsn[insnIndex] = false;
+        Object[] locals = frameLocals[insnIndex];
+        Object[] stack = frameStacks[insnIndex];
+        AbstractInsnNode insn = insns[insnIndex];
+        int opcode = insn.getOpcode();
+        if (handlers[insnIndex] != null) {
+          for (TryCatchBlockNode tryCatchBlock : handlers[insnIndex]) {
+            String exceptionType =
+                tryCatchBlock.type == null ? "java/lang/Throwable" : tryCatchBlock.type;
+            int handlerIndex = instructions.indexOf(tryCatchBlock.handler);
+            if (mergeFrame(handlerIndex, locals, new Object[] {exceptionType})) {
+              if (!isPendingInsn[handlerIndex]) {
+                isPendingInsn[handlerIndex] = true;
+                pendingInsns[numPendingInsns++] = handlerIndex;
+              }
+            }
+          }
+        }
+        int[] successors;
+        Object[] successorLocals = locals;
+        Object[] successorStack = stack;
+        if (opcode == -1) {
+          successors = new int[] {insnIndex + 1};
+        } else {
+          if (insn instanceof VarInsnNode) {
+            numLocals = Math.max(numLocals, ((VarInsnNode) insn).var + 2);
+          } else if (insn instanceof IincInsnNode) {
+            numLocals = Math.max(numLocals, ((IincInsnNode) insn).var + 1);
+          }
+          analyzerAdapter.locals = new ArrayList<>(Arrays.asList(locals));
+          analyzerAdapter.stack = new ArrayList<>(Arrays.asList(stack));
+          if (opcode == Opcodes.NEW) {
+            // Use the same uninitialized type each time this instruction is simulated.
+            if (newInsnLabels[insnIndex] == null) {
+              newInsnLabels[insnIndex] = new Label();
+            }
+            analyzerAdapter.visitLabel(newInsnLabels[insnIndex]);
+          }
+          insn.accept(analyzerAdapter);
+          successors = getSuccessors(insnIndex);
+          if (opcode == Opcodes.TABLESWITCH || opcode == Opcodes.LOOKUPSWITCH) {
+            successorStack = new Object[stack.length - 1];
+            System.arraycopy(stack, 0, successorStack, 0, successorStack.length);
+          } else if (opcode != Opcodes.GOTO && analyzerAdapter.locals != null) {
+            successorLocals = analyzerAdapter.locals.toArray();
+            successorStack = analyzerAdapter.stack.toArray();
+          }
+        }
+        for (int successor : successors) {
+          if (successor < insns.length
+              && mergeFrame(successor, successorLocals, successorStack)
+              && !isPendingInsn[successor]) {
+            isPendingInsn[successor] = true;
+            pendingInsns[numPendingInsns++] = successor;
+          }
+        }
+      }
+    }
+
+    /**
+     * Merges the given frame into the frame of the given instruction.
+     *
+     * @param insnIndex the index of an instruction.
+     * @param locals the local variable types to merge into the frame of this instruction.
+     * @param stack the operand stack types to merge into the frame of this instruction.
+     * @return whether the frame of this instruction has changed.
+     */
+    private boolean mergeFrame(final int insnIndex, final Object[] locals, final Object[] stack) {
+      Object[] oldLocals = frameLocals[insnIndex];
+      Object[] oldStack = frameStacks[insnIndex];
+      if (oldLocals == null) {
+        frameLocals[insnIndex] = locals;
+        frameStacks[insnIndex] = stack;
+        return true;
+      }
+      frameLocals[insnIndex] = mergeTypes(oldLocals, locals);
+      frameStacks[insnIndex] = mergeTypes(oldStack, stack);
+      return frameLocals[insnIndex] != oldLocals || frameStacks[insnIndex] != oldStack;
+    }
+
+    /**
+     * Returns the successors of the given instruction, excluding its exception handlers.
+     *
+     * @param insnIndex the index of an instruction.
+     * @return the indices of the instructions which can be executed just after this instruction.
+     *     The returned array can contain the number of instructions, meaning the code end.
+     */
+    private int[] getSuccessors(final int insnIndex) {
+      AbstractInsnNode insn = insns[insnIndex];
+      int opcode = insn.getOpcode();
+      if (insn instanceof JumpInsnNode) {
+        int target = instructions.indexOf(((JumpInsnNode) insn).label);
+        return opcode == Opcodes.GOTO ? new int[] {target} : new int[] {target, insnIndex + 1};
+      } else if (insn instanceof TableSwitchInsnNode) {
+        TableSwitchInsnNode tableSwitchInsn = (TableSwitchInsnNode) insn;
+        return getSuccessors(tableSwitchInsn.dflt, tableSwitchInsn.labels);
+      } else if (insn instanceof LookupSwitchInsnNode) {
+        LookupSwitchInsnNode lookupSwitchInsn = (LookupSwitchInsnNode) insn;
+        return getSuccessors(lookupSwitchInsn.dflt, lookupSwitchInsn.labels);
+      } else if ((opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN)
+          || opcode == Opcodes.ATHROW) {
+        return new int[0];
+      }
+      return new int[] {insnIndex + 1};
+    }
+
+    /**
+     * Returns the successors of a switch instruction.
+     *
+     * @param dflt the default target of the switch instruction.
+     * @param labels the other targets of the switch instruction.
+     * @return the indices of the targets of the switch instruction.
+     */
+    private int[] getSuccessors(final LabelNode dflt, final List<LabelNode> labels) {
+      int[] successors = new int[labels.size() + 1];
+      successors[0] = instructions.indexOf(dflt);
+      for (int i = 0; i < labels.size(); ++i) {
+        successors[i + 1] = instructions.indexOf(labels.get(i));
+      }
+      return successors;
+    }
+
+    /** Computes the local variables which are live before each instruction. */
+    private void computeLiveLocals() {
+      liveLocals = new BitSet[insns.length + 1];
+      for (int i = 0; i <= insns.length; ++i) {
+        liveLocals[i] = new BitSet();
+      }
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        for (int i = insns.length - 1; i >= 0; --i) {
+          BitSet live = new BitSet();
+          for (int successor : getSuccessors(i)) {
+            live.or(liveLocals[successor]);
+          }
+          AbstractInsnNode insn = insns[i];
+          if (insn instanceof VarInsnNode) {
+            int opcode = insn.getOpcode();
+            int varIndex = ((VarInsnNode) insn).var;
+            if (opcode >= Opcodes.ISTORE) {
+              live.clear(varIndex);
+              if (opcode == Opcodes.LSTORE || opcode == Opcodes.DSTORE) {
+                live.clear(varIndex + 1);
+              }
+            } else {
+              live.set(varIndex);
+            }
+          } else if (insn instanceof IincInsnNode) {
+            live.set(((IincInsnNode) insn).var);
+          }
+          if (handlers[i] != null) {
+            for (TryCatchBlockNode tryCatchBlock : handlers[i]) {
+              live.or(liveLocals[instructions.indexOf(tryCatchBlock.handler)]);
+            }
+          }
+          if (!live.equals(liveLocals[i])) {
+            liveLocals[i] = live;
+            changed = true;
+          }
+        }
+      }
+    }
+
+    /**
+     * Returns whether the given instruction is reachable with an empty operand stack.
+     *
+     * @param insnIndex the index of an instruction, or the number of instructions.
+     * @return whether the given instruction is reachable with an empty operand stack.
+     */
+    private boolean hasEmptyStack(final int insnIndex) {
+      return insnIndex < insns.length
+          && frameStacks[insnIndex] != null
+          && frameStacks[insnIndex].length == 0;
+    }
+
+    /**
+     * Finds the regions of code to move to new methods.
+     *
+     * @return the regions to move to new methods, in increasing code order, or {@literal null} if
+     *     this method can't be split enough.
+     */
+    private List<Region> findRegions() {
+      List<Region> regions = new ArrayList<>();
+      BitSet readLocals = new BitSet();
+      BitSet writtenLocals = new BitSet();
+      int codeSize = insnOffsets[insns.length];
+      int start = 0;
+      while (start < insns.length && codeSize > maxCodeSize) {
+        Region region = null;
+        if (hasEmptyStack(start)) {
+          region = findRegion(start, readLocals, writtenLocals);
+        }
+        int minCodeSizeReduction =
+            Math.min(codeSize - maxCodeSize, maxCodeSize / MIN_CODE_SIZE_REDUCTION_DIVISOR);
+        if (region != null && region.codeSizeReduction >= Math.max(minCodeSizeReduction, 1)) {
+          regions.add(region);
+          codeSize -= region.codeSizeReduction;
+          start = region.end;
+        } else {
+          start++;
+        }
+      }
+      return codeSize <= maxCodeSize ? regions : null;
+    }
+
+    /**
+     * Finds the largest region of code which starts at the given instruction and can be moved to a
+     * new method.
+     *
+     * @param start the index of an instruction reachable with an empty operand stack.
+     * @param readLocals a bit set to use to store the local variables read in the region.
+     * @param writtenLocals a bit set to use to store the local variables written in the region.
+     * @return the largest region of code which starts at the given instruction and which can be
+     *     moved to a new method, or {@literal null} if there is no such region.
+     */
+    private Region findRegion(
+        final int start, final BitSet readLocals, final BitSet writtenLocals) {
+      readLocals.clear();
+      writtenLocals.clear();
+      int maxLinkedInsn = start;
+      Region region = null;
+      for (int i = start; i < insns.length; ++i) {
+        AbstractInsnNode insn = insns[i];
+        int opcode = insn.getOpcode();
+        // The new method must not contain return instructions, nor unbalanced monitor instructions
+        // (which could be rejected by the JVM), nor field initialization instructions (see
+        // isFieldInitialization), and its size must not exceed maxCodeSize (including the RETURN
+        // instruction at its end).
+        if ((opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN)
+            || opcode == Opcodes.MONITORENTER
+            || opcode == Opcodes.MONITOREXIT
+            || isFieldInitialization(insn)
+            || insnOffsets[i + 1] - insnOffsets[start] + 1 > maxCodeSize
+            || minLinkedInsns[i] < start) {
+          break;
+        }
+        maxLinkedInsn = Math.max(maxLinkedInsn, maxLinkedInsns[i]);
+        if (insn instanceof VarInsnNode) {
+          int varIndex = ((VarInsnNode) insn).var;
+          if (opcode >= Opcodes.ISTORE) {
+            writtenLocals.set(varIndex);
+            if (opcode == Opcodes.LSTORE || opcode == Opcodes.DSTORE) {
+              writtenLocals.set(varIndex + 1);
+            }
+          } else {
+            readLocals.set(varIndex);
+          }
+        } else if (insn instanceof IincInsnNode) {
+          readLocals.set(((IincInsnNode) insn).var);
+          writtenLocals.set(((IincInsnNode) insn).var);
+        }
+        // The region can end after this instruction if the next one is reachable with an empty
+        // stack, if all the instructions linked to the region are in the region, and if the local
+        // variables written in the region are not used after it.
+        int end = i + 1;
+        if (maxLinkedInsn < end
+            && hasEmptyStack(end)
+            && !writtenLocals.intersects(liveLocals[end])) {
+          Region candidateRegion = newRegion(start, end, readLocals);
+          if (candidateRegion != null) {
+            region = candidateRegion;
+          }
+        }
+      }
+      return region;
+    }
+
+    /**
+     * Returns whether the given instruction is a PUTSTATIC in a class initializer, or a PUTFIELD in
+     * a constructor, which stores a field of the class being visited. Such an instruction must not
+     * be moved to a new method because, if the field is final, the JVM rejects it outside the
+     * initialization method of its class (for class files of version 53 or more).
+     *
+     * @param insn an instruction of this method.
+     * @return whether the given instruction stores a field of the class being visited from its
+     *     initialization method.
+     */
+    private boolean isFieldInitialization(final AbstractInsnNode insn) {
+      int opcode = insn.getOpcode();
+      if (opcode == Opcodes.PUTSTATIC) {
+        return name.equals("<clinit>") && ((FieldInsnNode) insn).owner.equals(className);
+      }
+      if (opcode == Opcodes.PUTFIELD) {
+        return name.equals("<init>") && ((FieldInsnNode) insn).owner.equals(className);
+      }
+      return false;
+    }
+
+    /**
+     * Creates a new region, if its arguments can be passed to a new method.
+     *
+     * @param start the index of the first instruction of the region.
+     * @param end the index of the instruction following the last instruction of the region.
+     * @param readLocals the local variables read in the region.
+     * @return the new region, or {@literal null} if the local variables it uses can't be passed
+     *     to a new method (e.g. if one of them is uninitialized).
+     */
+    private Region newRegion(final int start, final int end, final BitSet readLocals) {
+      Object[] locals = frameLocals[start];
+      BitSet liveLocalsAtStart = liveLocals[start];
+      int[] arguments = new int[readLocals.cardinality()];
+      Object[] argumentTypes = new Object[arguments.length];
+      int numArguments = 0;
+      int argumentSlots = 0;
+      for (int i = readLocals.nextSetBit(0); i >= 0; i = readLocals.nextSetBit(i + 1)) {
+        if (!liveLocalsAtStart.get(i)) {
+          continue;
+        }
+        Object type = i < locals.length ? locals[i] : Opcodes.TOP;
+        if (type == Opcodes.LONG || type == Opcodes.DOUBLE) {
+          argumentSlots += 2;
+        } else if (type == Opcodes.INTEGER || type == Opcodes.FLOAT || type instanceof String) {
+          argumentSlots += 1;
+        } else {
+          return null;
+        }
+        arguments[numArguments] = i;
+        argumentTypes[numArguments++] = type;
+      }
+      if (argumentSlots > MAX_ARGUMENT_SLOTS || numLocals + argumentSlots > MAX_CODE_SIZE) {
+        return null;
+      }
+      int[] regionArguments = new int[numArguments];
+      System.arraycopy(arguments, 0, regionArguments, 0, numArguments);
+      Object[] regionArgumentTypes = new Object[numArguments];
+      System.arraycopy(argumentTypes, 0, regionArgumentTypes, 0, numArguments);
+      int codeSizeReduction =
+          insnOffsets[end] - insnOffsets[start] - getCallSize(regionArguments);
+      return new Region(
+          start, end, regionArguments, regionArgumentTypes, argumentSlots, codeSizeReduction);
+    }
+
+    /**
+     * Moves the given regions of code to new methods.
+     *
+     * @param regions some regions of code, in increasing code order.
+     */
+    private void moveRegions(final List<Region> regions) {
+      // Compute the region of each instruction, and of each try catch block and local variable,
+      // before modifying the instruction list. -1 means 'not moved', and -2 means 'removed'.
+      int[] insnRegions = new int[insns.length];
+      Arrays.fill(insnRegions, -1);
+      for (int i = 0; i < regions.size(); ++i) {
+        Region region = regions.get(i);
+        Arrays.fill(insnRegions, region.start, region.end, i);
+      }
+      int[] tryCatchBlockRegions = new int[tryCatchBlocks.size()];
+      for (int i = 0; i < tryCatchBlockRegions.length; ++i) {
+        tryCatchBlockRegions[i] = insnRegions[instructions.indexOf(tryCatchBlocks.get(i).start)];
+      }
+      int[] localVariableRegions = new int[localVariables == null ? 0 : localVariables.size()];
+      for (int i = 0; i < localVariableRegions.length; ++i) {
+        LocalVariableNode localVariable = localVariables.get(i);
+        localVariableRegions[i] =
+            getRegion(insnRegions, Arrays.asList(localVariable.start, localVariable.end));
+      }
+      int[] visibleAnnotationRegions = getRegions(insnRegions, visibleLocalVariableAnnotations);
+      int[] invisibleAnnotationRegions =
+          getRegions(insnRegions, invisibleLocalVariableAnnotations);
+
+      // Create the new methods, and move the instructions to them.
+      for (Region region : regions) {
+        MethodNode helperMethod =
+            new MethodNode(
+                api,
+                Opcodes.ACC_PRIVATE
+                    | Opcodes.ACC_STATIC
+                    | Opcodes.ACC_SYNTHETIC
+                    | (access & Opcodes.ACC_STRICT),
+                null,
+                region.getDescriptor(),
+                null,
+                null);
+        helperMethod.maxStack = maxStack;
+        helperMethod.maxLocals = Math.max(maxLocals, numLocals) + region.argumentSlots;
+        helperMethod.tryCatchBlocks = new ArrayList<>();
+        for (int i = region.start; i < region.end; ++i) {
+          AbstractInsnNode insn = insns[i];
+          instructions.remove(insn);
+          if (insn instanceof FrameNode) {
+            continue;
+          }
+          if (insn instanceof VarInsnNode) {
+            VarInsnNode varInsn = (VarInsnNode) insn;
+            varInsn.var = region.getNewVarIndex(varInsn.var);
+          } else if (insn instanceof IincInsnNode) {
+            IincInsnNode iincInsn = (IincInsnNode) insn;
+            iincInsn.var = region.getNewVarIndex(iincInsn.var);
+          }
+          helperMethod.instructions.add(insn);
+        }
+        helperMethod.instructions.add(new InsnNode(Opcodes.RETURN));
+        InsnList callInsns = region.getCallInsns(className, isInterface);
+        helperMethodCalls.add((MethodInsnNode) callInsns.getLast());
+        instructions.insertBefore(insns[region.end], callInsns);
+        maxStack = Math.max(maxStack, region.argumentSlots);
+        helperMethods.add(helperMethod);
+      }
+
+      // Remove the frames which have not been moved (the moved ones have already been removed).
+      for (int i = 0; i < insns.length; ++i) {
+        if (insnRegions[i] == -1 && insns[i] instanceof FrameNode) {
+          instructions.remove(insns[i]);
+        }
+      }
+
+      // Move or remove the try catch blocks, local variables and local variable annotations.
+      List<TryCatchBlockNode> remainingTryCatchBlocks = new ArrayList<>();
+      for (int i = 0; i < tryCatchBlockRegions.length; ++i) {
+        TryCatchBlockNode tryCatchBlock = tryCatchBlocks.get(i);
+        if (tryCatchBlockRegions[i] == -1) {
+          remainingTryCatchBlocks.add(tryCatchBlock);
+        } else {
+          helperMethods.get(tryCatchBlockRegions[i]).tryCatchBlocks.add(tryCatchBlock);
+        }
+      }
+      tryCatchBlocks = remainingTryCatchBlocks;
+      if (localVariables != null) {
+        List<LocalVariableNode> remainingLocalVariables = new ArrayList<>();
+        for (int i = 0; i < localVariableRegions.length; ++i) {
+          LocalVariableNode localVariable = localVariables.get(i);
+          int regionIndex = localVariableRegions[i];
+          if (regionIndex == -1) {
+            remainingLocalVariables.add(localVariable);
+          } else if (regionIndex >= 0) {
+            localVariable.index = regions.get(regionIndex).getNewVarIndex(localVariable.index);
+            MethodNode helperMethod = helperMethods.get(regionIndex);
+            if (helperMethod.localVariables == null) {
+              helperMethod.localVariables = new ArrayList<>();
+            }
+            helperMethod.localVariables.add(localVariable);
+          }
+        }
+        localVariables = remainingLocalVariables;
+      }
+      visibleLocalVariableAnnotations =
+          moveAnnotations(
+              regions,
+              visibleLocalVariableAnnotations,
+              visibleAnnotationRegions,
+              /* visible= */ true);
+      invisibleLocalVariableAnnotations =
+          moveAnnotations(
+              regions,
+              invisibleLocalVariableAnnotations,
+              invisibleAnnotationRegions,
+              /* visible= */ false);
+    }
+
+    /**
+     * Returns the region containing the given labels.
+     *
+     * @param insnRegions the region of each instruction in {@link #insns}, or -1 for the
+     *     instructions which are not moved.
+     * @param labels some labels of this method.
+     * @return the region containing all the given labels, -1 if none of them is moved, or -2 if
+     *     they are not all moved to the same method.
+     */
+    private int getRegion(final int[] insnRegions, final List<LabelNode> labels) {
+      int region = insnRegions[instructions.indexOf(labels.get(0))];
+      for (LabelNode label : labels) {
+        if (insnRegions[instructions.indexOf(label)] != region) {
+          return -2;
+        }
+      }
+      return region;
+    }
+
+    /**
+     * Returns the region containing the labels of each of the given local variable annotations.
+     *
+     * @param insnRegions the region of each instruction in {@link #insns}, or -1 for the
+     *     instructions which are not moved.
+     * @param annotations some local variable annotations of this method. May be {@literal null}.
+     * @return the region containing the labels of each annotation (see {@link #getRegion}), or
+     *     {@literal null} if annotations is {@literal null}.
+     */
+    private int[] getRegions(
+        final int[] insnRegions, final List<LocalVariableAnnotationNode> annotations) {
+      if (annotations == null) {
+        return null;
+      }
+      int[] regions = new int[annotations.size()];
+      for (int i = 0; i < regions.length; ++i) {
+        LocalVariableAnnotationNode annotation = annotations.get(i);
+        List<LabelNode> labels = new ArrayList<>(annotation.start);
+        labels.addAll(annotation.end);
+        regions[i] = getRegion(insnRegions, labels);
+      }
+      return regions;
+    }
+
+    /**
+     * Moves or removes the given local variable annotations.
+     *
+     * @param regions the regions of code moved to the {@link #helperMethods}.
+     * @param annotations some local variable annotations of this method. May be {@literal null}.
+     * @param annotationRegions the region of each annotation (see {@link #getRegions}).
+     * @param visible whether the annotations are visible at runtime.
+     * @return the annotations which remain in this method.
+     */
+    private List<LocalVariableAnnotationNode> moveAnnotations(
+        final List<Region> regions,
+        final List<LocalVariableAnnotationNode> annotations,
+        final int[] annotationRegions,
+        final boolean visible) {
+      if (annotations == null) {
+        return null;
+      }
+      List<LocalVariableAnnotationNode> remainingAnnotations = new ArrayList<>();
+      for (int i = 0; i < annotationRegions.length; ++i) {
+        LocalVariableAnnotationNode annotation = annotations.get(i);
+        int regionIndex = annotationRegions[i];
+        if (regionIndex == -1) {
+          remainingAnnotations.add(annotation);
+        } else if (regionIndex >= 0) {
+          Region region = regions.get(regionIndex);
+          for (int j = 0; j < annotation.index.size(); ++j) {
+            annotation.index.set(j, region.getNewVarIndex(annotation.index.get(j)));
+          }
+          MethodNode helperMethod = helperMethods.get(regionIndex);
+          if (visible) {
+            if (helperMethod.visibleLocalVariableAnnotations == null) {
+              helperMethod.visibleLocalVariableAnnotations = new ArrayList<>();
+            }
+            helperMethod.visibleLocalVariableAnnotations.add(annotation);
+          } else {
+            if (helperMethod.invisibleLocalVariableAnnotations == null) {
+              helperMethod.invisibleLocalVariableAnnotations = new ArrayList<>();
+            }
+            helperMethod.invisibleLocalVariableAnnotations.add(annotation);
+          }
+        }
+      }
+      return remainingAnnotations;
+    }
+  }
+}
@@ -0,0 +1,306 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.commons;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.test.ClassFile;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** Unit tests for {@link MethodSplitter}. */
+class MethodSplitterTest extends AsmTest {
+
+  @Test
+  void testConstructor_invalidMaxCodeSize() {
+    assertThrows(IllegalArgumentException.class, () -> new MethodSplitter(null, 0));
+    assertThrows(IllegalArgumentException.class, () -> new MethodSplitter(null, 65536));
+  }
+
+  @Test
+  void testVisitMethod_smallMethods() throws IOException {
+    ClassReader classReader = new ClassReader(Subject.class.getName());
+    ClassWriter classWriter = new ClassWriter(0);
+    ClassWriter splitClassWriter = new ClassWriter(0);
+
+    classReader.accept(classWriter, 0);
+    classReader.accept(new MethodSplitter(splitClassWriter), 0);
+
+    assertArrayEquals(classWriter.toByteArray(), splitClassWriter.toByteArray());
+  }
+
+  @Test
+  void testVisitMethod_largeStaticInitializer() throws ReflectiveOperationException {
+    ClassNode classNode = newClassWithLargeStaticInitializer(Opcodes.V1_8, 10000, 0);
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    ClassWriter splitClassWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+    classNode.accept(classWriter);
+    classNode.accept(new MethodSplitter(splitClassWriter));
+
+    assertThrows(MethodTooLargeException.class, () -> classWriter.toByteArray());
+    Object instance = new ClassFile(splitClassWriter.toByteArray()).newInstance();
+    int[] table = (int[]) instance.getClass().getField("table").get(null);
+    assertEquals(10000, table.length);
+    for (int i = 0; i < table.length; ++i) {
+      assertEquals(i * 31 + 7, table[i]);
+    }
+  }
+
+  @Test
+  void testVisitMethod_largeStaticInitializerWithFinalFields() throws ReflectiveOperationException {
+    ClassNode classNode = newClassWithLargeStaticInitializer(Opcodes.V11, 10000, 1000);
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    ClassWriter splitClassWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+    classNode.accept(classWriter);
+    classNode.accept(new MethodSplitter(splitClassWriter));
+
+    assertThrows(MethodTooLargeException.class, () -> classWriter.toByteArray());
+    Object instance = new ClassFile(splitClassWriter.toByteArray()).newInstance();
+    int[] table = (int[]) instance.getClass().getField("table").get(null);
+    assertEquals(10000, table.length);
+    for (int i = 0; i < table.length; ++i) {
+      assertEquals(i * 31 + 7, table[i]);
+    }
+    for (int i = 0; i < 10; ++i) {
+      assertEquals(i * 1000, instance.getClass().getField("f" + i).get(null));
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {100, 200})
+  void testVisitMethod_smallMaxCodeSize(final int maxCodeSize)
+      throws ReflectiveOperationException, IOException {
+    ClassReader classReader = new ClassReader(Subject.class.getName());
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+
+    classReader.accept(new MethodSplitter(classWriter, maxCodeSize), 0);
+
+    byte[] classFile = classWriter.toByteArray();
+    ClassNode classNode = new ClassNode();
+    new ClassReader(classFile).accept(classNode, 0);
+    List<String> helperMethodNames = new ArrayList<>();
+    for (MethodNode methodNode : classNode.methods) {
+      CodeSizeEvaluator codeSizeEvaluator = new CodeSizeEvaluator(null);
+      methodNode.accept(codeSizeEvaluator);
+      if (methodNode.name.contains("$split$")) {
+        helperMethodNames.add(methodNode.name);
+        assertTrue(codeSizeEvaluator.getMaxSize() <= maxCodeSize);
+        assertEquals(
+            Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC, methodNode.access);
+      }
+    }
+    if (maxCodeSize == 100) {
+      assertEquals(Arrays.asList("init$split$0", "merge$split$1"), helperMethodNames);
+    } else {
+      assertEquals(Arrays.asList("compute$split$0"), helperMethodNames);
+    }
+    Object instance = new ClassFile(classFile).newInstance();
+    Subject subject = new Subject();
+    assertEquals(subject.toString(), instance.toString());
+    Method compute =
+        instance
+            .getClass()
+            .getMethod("compute", int.class, long.class, double.class, String.class);
+    compute.setAccessible(true);
+    assertEquals(
+        subject.compute(50, 123456789L, 0.5, "prefix"),
+        compute.invoke(instance, 50, 123456789L, 0.5, "prefix"));
+    assertEquals(subject.toString(), instance.toString());
+    Method merge = instance.getClass().getMethod("merge", boolean.class, int.class);
+    merge.setAccessible(true);
+    assertEquals(Subject.merge(true, 10), merge.invoke(null, true, 10));
+    assertEquals(Subject.merge(false, 10), merge.invoke(null, false, 10));
+  }
+
+  /** Tests that classes transformed with MethodSplitter can be loaded and instantiated. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testAllMethods_precompiledClass(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    // Stack map frames are not needed, and can't be computed with JSR instructions, before Java 6.
+    boolean hasFrames = (classReader.readUnsignedShort(6) & 0xFFFF) >= Opcodes.V1_6;
+    ClassWriter classWriter =
+        new ClassWriter(hasFrames ? ClassWriter.COMPUTE_FRAMES : ClassWriter.COMPUTE_MAXS);
+
+    classReader.accept(new MethodSplitter(classWriter, 32), 0);
+
+    Executable newInstance = () -> new ClassFile(classWriter.toByteArray()).newInstance();
+    if (classParameter.isNotCompatibleWithCurrentJdk()) {
+      assertThrows(UnsupportedClassVersionError.class, newInstance);
+    } else {
+      assertDoesNotThrow(newInstance);
+    }
+  }
+
+  /**
+   * Returns a class with a large static initializer, which stores 'tableSize' values in a static
+   * 'table' field. If 'finalFieldInterval' is not 0, this field is final, and the static
+   * initializer also stores a static final field after every 'finalFieldInterval' table elements.
+   * These fields must be stored from the static initializer itself, and not from a method created
+   * by MethodSplitter.
+   */
+  private static ClassNode newClassWithLargeStaticInitializer(
+      final int version, final int tableSize, final int finalFieldInterval) {
+    ClassNode classNode = new ClassNode();
+    classNode.visit(version, Opcodes.ACC_PUBLIC, "A", null, "java/lang/Object", null);
+    int fieldAccess = Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC;
+    if (finalFieldInterval != 0) {
+      fieldAccess |= Opcodes.ACC_FINAL;
+      for (int i = 0; i < tableSize / finalFieldInterval; ++i) {
+        classNode.visitField(fieldAccess, "f" + i, "I", null, null);
+      }
+    }
+    classNode.visitField(fieldAccess, "table", "[I", null, null);
+    MethodVisitor methodVisitor =
+        classNode.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+    methodVisitor.visitMethodInsn(
+        Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(1, 1);
+    methodVisitor.visitEnd();
+    methodVisitor = classNode.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitLdcInsn(tableSize);
+    methodVisitor.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_INT);
+    methodVisitor.visitVarInsn(Opcodes.ASTORE, 0);
+    for (int i = 0; i < tableSize; ++i) {
+      if (finalFieldInterval != 0 && i % finalFieldInterval == 0) {
+        methodVisitor.visitLdcInsn(i);
+        methodVisitor.visitFieldInsn(Opcodes.PUTSTATIC, "A", "f" + (i / finalFieldInterval), "I");
+      }
+      methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+      methodVisitor.visitLdcInsn(i);
+      methodVisitor.visitLdcInsn(i * 31 + 7);
+      methodVisitor.visitInsn(Opcodes.IASTORE);
+    }
+    methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+    methodVisitor.visitFieldInsn(Opcodes.PUTSTATIC, "A", "table", "[I");
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(3, 1);
+    methodVisitor.visitEnd();
+    classNode.visitEnd();
+    return classNode;
+  }
+
+  /** A class whose methods are split in tests. */
+  static class Subject {
+
+    private final StringBuilder log = new StringBuilder();
+    private int counter;
+
+    Subject() {
+      log.append("init");
+      for (int i = 0; i < 3; ++i) {
+        counter += i;
+        log.append(counter);
+      }
+      log.append(counter > 2 ? "big" : "small");
+    }
+
+    public String compute(final int n, final long seed, final double scale, final String prefix) {
+      long value = seed;
+      double total = 0;
+      int[] values = new int[n];
+      for (int i = 0; i < n; ++i) {
+        value = value * 6364136223846793005L + 1442695040888963407L;
+        values[i] = (int) ((value >>> 33) % 100);
+        total += values[i] * scale;
+      }
+      StringBuilder result = new StringBuilder(prefix);
+      for (int i = 0; i < n; ++i) {
+        switch (values[i] % 4) {
+          case 0:
+            result.append('a');
+            break;
+          case 1:
+            result.append(values[i]);
+            break;
+          default:
+            counter++;
+            break;
+        }
+        try {
+          if (values[i] % 7 == 0) {
+            throw new IllegalStateException("x" + i);
+          }
+          result.append(100 / (values[i] % 5));
+        } catch (ArithmeticException e) {
+          result.append('!');
+        } catch (IllegalStateException e) {
+          result.append(e.getMessage());
+        }
+      }
+      synchronized (log) {
+        log.append(result.length());
+      }
+      return result.append(total).append(counter).append(log).toString();
+    }
+
+    public static Object merge(final boolean flag, final int size) {
+      Number number = flag ? (Number) Integer.valueOf(size) : (Number) Long.valueOf(size);
+      List<Integer> list = flag ? new ArrayList<Integer>() : new LinkedList<Integer>();
+      StringBuilder result = new StringBuilder();
+      for (int i = 0; i < number.intValue(); ++i) {
+        list.add(i * i);
+        result.append(list.size()).append(',');
+      }
+      return result.append(list).toString();
+    }
+
+    @Override
+    public String toString() {
+      return log.toString() + counter;
+    }
+  }
+}
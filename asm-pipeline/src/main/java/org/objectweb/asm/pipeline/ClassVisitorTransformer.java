@@ -0,0 +1,94 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.pipeline;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * A {@link ClassTransformer} which reads each class with a {@link ClassReader}, transforms it with
+ * a chain of {@link ClassVisitor}, and writes it back with a {@link ClassWriter}. A new chain is
+ * created for each class, with {@link #createClassVisitor}, so that the class visitors themselves
+ * do not need to be thread safe.
+ */
+public abstract class ClassVisitorTransformer implements ClassTransformer {
+
+  /** The options used to parse the classes (see {@link ClassReader#accept}). */
+  private final int parsingOptions;
+
+  /** The options used to write the classes (see {@link ClassWriter#ClassWriter(int)}). */
+  private final int writerFlags;
+
+  /**
+   * Constructs a new {@link ClassVisitorTransformer}.
+   *
+   * @param parsingOptions the options to use to parse the classes. Zero or more of {@link
+   *     ClassReader#SKIP_CODE}, {@link ClassReader#SKIP_DEBUG}, {@link ClassReader#SKIP_FRAMES} or
+   *     {@link ClassReader#EXPAND_FRAMES}.
+   * @param writerFlags option flags that can be used to modify the default behavior of the class
+   *     writers. Zero or more of {@link ClassWriter#COMPUTE_MAXS} and {@link
+   *     ClassWriter#COMPUTE_FRAMES}.
+   */
+  protected ClassVisitorTransformer(final int parsingOptions, final int writerFlags) {
+    this.parsingOptions = parsingOptions;
+    this.writerFlags = writerFlags;
+  }
+
+  @Override
+  public byte[] transform(final String entryName, final byte[] classFile) {
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = createClassWriter(classReader, writerFlags);
+    classReader.accept(createClassVisitor(entryName, classWriter), parsingOptions);
+    return classWriter.toByteArray();
+  }
+
+  /**
+   * Creates the {@link ClassWriter} used to write a transformed class. The default implementation
+   * returns a writer which copies the constant pool of the given reader (see {@link
+   * ClassWriter#ClassWriter(ClassReader, int)}). This method can be overridden, for instance to
+   * implement {@link ClassWriter#getCommonSuperClass} without loading classes, when the {@link
+   * ClassWriter#COMPUTE_FRAMES} option is used.
+   *
+   * @param classReader the reader of the class to be transformed.
+   * @param writerFlags the options passed to the constructor of this transformer.
+   * @return the writer to use for the transformed class.
+   */
+  protected ClassWriter createClassWriter(final ClassReader classReader, final int writerFlags) {
+    return new ClassWriter(classReader, writerFlags);
+  }
+
+  /**
+   * Creates the chain of class visitors used to transform a class.
+   *
+   * @param entryName the name of the jar entry containing the class file.
+   * @param classWriter the writer of the transformed class, which must be at the end of the chain.
+   * @return the first class visitor of the chain.
+   */
+  protected abstract ClassVisitor createClassVisitor(String entryName, ClassVisitor classWriter);
+}
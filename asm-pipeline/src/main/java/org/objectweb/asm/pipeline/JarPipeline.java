@@ -0,0 +1,286 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.pipeline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A pipeline transforming the classes of a jar file in parallel, and writing them in a new jar
+ * file. The input entries are read one after the other, in a streaming way. The class entries
+ * (whose name ends with ".class") are transformed concurrently by a {@link ClassTransformer}, on an
+ * {@link ExecutorService} (e.g. a ForkJoinPool, or a virtual thread per task executor), while the
+ * other entries are copied unchanged. The output entries are written in the order of the input
+ * entries, so that the output jar only depends on the input jar and on the transformation, and at
+ * most a given number of entries are kept in memory at any time.
+ *
+ * <p>The entry names, modification times, extra fields (from the local file headers) and
+ * compression methods are preserved, as well as the content of all the non class entries
+ * (including the manifest). The entry comments are not preserved, since they are only stored in the
+ * central directory, which is not available when the input jar is read as a stream. Note that the
+ * signature files of a signed jar are copied too, and are thus no longer valid if some classes are
+ * transformed.
+ */
+public final class JarPipeline {
+
+  /** The suffix of the names of the class entries. */
+  private static final String CLASS_FILE_SUFFIX = ".class";
+
+  /** The size of the temporary byte array used to read the entries chunk by chunk. */
+  private static final int INPUT_STREAM_DATA_CHUNK_SIZE = 8192;
+
+  /** The transformation applied to the class entries. */
+  private final ClassTransformer classTransformer;
+
+  /**
+   * The executor used to transform the classes, or {@literal null} to use a new fixed thread pool,
+   * with one thread per available processor, for each transformed jar.
+   */
+  private final ExecutorService executor;
+
+  /**
+   * The maximum number of entries which can be read but not yet written, i.e. the maximum number of
+   * entries kept in memory at any time.
+   */
+  private final int maxPendingEntries;
+
+  /**
+   * Constructs a new {@link JarPipeline} using a new fixed thread pool for each jar, with one
+   * thread per available processor, and keeping at most four entries per thread in memory.
+   *
+   * @param classTransformer the transformation to apply to the class entries.
+   */
+  public JarPipeline(final ClassTransformer classTransformer) {
+    this(classTransformer, null, 4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a new {@link JarPipeline}.
+   *
+   * @param classTransformer the transformation to apply to the class entries.
+   * @param executor the executor to use to transform the classes, or {@literal null} to use a new
+   *     fixed thread pool for each jar, with one thread per available processor. This executor is
+   *     not shut down by this pipeline.
+   * @param maxPendingEntries the maximum number of entries which can be read but not yet written,
+   *     i.e. the maximum number of entries kept in memory at any time. This is also the maximum
+   *     number of classes which can be transformed concurrently.
+   */
+  public JarPipeline(
+      final ClassTransformer classTransformer,
+      final ExecutorService executor,
+      final int maxPendingEntries) {
+    if (maxPendingEntries < 1) {
+      throw new IllegalArgumentException("Invalid maxPendingEntries: " + maxPendingEntries);
+    }
+    this.classTransformer = classTransformer;
+    this.executor = executor;
+    this.maxPendingEntries = maxPendingEntries;
+  }
+
+  /**
+   * Transforms the given jar file and writes the result in the given file.
+   *
+   * @param inputJar the jar file to transform.
+   * @param outputJar the file where the transformed jar must be written. It must be different from
+   *     inputJar.
+   * @throws IOException if a problem occurs while reading or writing the jar files.
+   */
+  public void transform(final File inputJar, final File outputJar) throws IOException {
+    InputStream inputStream = new BufferedInputStream(new FileInputStream(inputJar));
+    try {
+      OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(outputJar));
+      try {
+        transform(inputStream, outputStream);
+      } finally {
+        outputStream.close();
+      }
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  /**
+   * Transforms the jar read from the given stream and writes the result to the given stream. The
+   * streams are not closed by this method.
+   *
+   * @param inputStream the stream from which the jar to transform must be read.
+   * @param outputStream the stream where the transformed jar must be written.
+   * @throws IOException if a problem occurs while reading or writing the jars.
+   */
+  public void transform(final InputStream inputStream, final OutputStream outputStream)
+      throws IOException {
+    ZipInputStream zipInputStream = new ZipInputStream(inputStream);
+    ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+    ExecutorService currentExecutor =
+        executor == null
+            ? Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())
+            : executor;
+    LinkedList<PendingEntry> pendingEntries = new LinkedList<PendingEntry>();
+    try {
+      ZipEntry zipEntry;
+      while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+        PendingEntry pendingEntry = new PendingEntry(zipEntry, readEntry(zipInputStream));
+        if (!zipEntry.isDirectory() && zipEntry.getName().endsWith(CLASS_FILE_SUFFIX)) {
+          pendingEntry.transformedContent = currentExecutor.submit(pendingEntry);
+        }
+        pendingEntries.add(pendingEntry);
+        // Write the oldest entries, in order, to keep at most maxPendingEntries in memory.
+        while (pendingEntries.size() > maxPendingEntries) {
+          writeEntry(pendingEntries.removeFirst(), zipOutputStream);
+        }
+      }
+      while (!pendingEntries.isEmpty()) {
+        writeEntry(pendingEntries.removeFirst(), zipOutputStream);
+      }
+      zipOutputStream.finish();
+    } finally {
+      // Cancel the pending transformations, if the loop above was aborted by an exception.
+      for (PendingEntry pendingEntry : pendingEntries) {
+        if (pendingEntry.transformedContent != null) {
+          pendingEntry.transformedContent.cancel(true);
+        }
+      }
+      if (executor == null) {
+        currentExecutor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Reads the content of the current entry of the given stream.
+   *
+   * @param zipInputStream a stream positioned at the beginning of an entry.
+   * @return the content of this entry.
+   * @throws IOException if a problem occurs while reading the entry.
+   */
+  private static byte[] readEntry(final ZipInputStream zipInputStream) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] data = new byte[INPUT_STREAM_DATA_CHUNK_SIZE];
+    int bytesRead;
+    while ((bytesRead = zipInputStream.read(data, 0, data.length)) != -1) {
+      outputStream.write(data, 0, bytesRead);
+    }
+    return outputStream.toByteArray();
+  }
+
+  /**
+   * Writes an entry, after waiting for the end of its transformation if it is a class entry.
+   *
+   * @param pendingEntry the entry to write.
+   * @param zipOutputStream the stream where the entry must be written.
+   * @throws IOException if a problem occurs while writing the entry, or if the transformation
+   *     failed with a checked exception or was interrupted.
+   */
+  private void writeEntry(final PendingEntry pendingEntry, final ZipOutputStream zipOutputStream)
+      throws IOException {
+    byte[] content = pendingEntry.content;
+    if (pendingEntry.transformedContent != null) {
+      try {
+        content = pendingEntry.transformedContent.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while transforming " + pendingEntry.name());
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        // Don't use the IOException(String, Throwable) constructor, which requires Java 6.
+        IOException ioException = new IOException("Failed to transform " + pendingEntry.name());
+        ioException.initCause(cause);
+        throw ioException;
+      }
+      if (content == null) {
+        return;
+      }
+    }
+    ZipEntry inputEntry = pendingEntry.zipEntry;
+    ZipEntry outputEntry = new ZipEntry(inputEntry.getName());
+    outputEntry.setTime(inputEntry.getTime());
+    outputEntry.setExtra(inputEntry.getExtra());
+    if (inputEntry.getMethod() == ZipEntry.STORED) {
+      CRC32 crc = new CRC32();
+      crc.update(content, 0, content.length);
+      outputEntry.setMethod(ZipEntry.STORED);
+      outputEntry.setSize(content.length);
+      outputEntry.setCompressedSize(content.length);
+      outputEntry.setCrc(crc.getValue());
+    }
+    zipOutputStream.putNextEntry(outputEntry);
+    zipOutputStream.write(content, 0, content.length);
+    zipOutputStream.closeEntry();
+  }
+
+  /** An entry which has been read but not yet written, and its transformation if it is a class. */
+  private final class PendingEntry implements Callable<byte[]> {
+
+    /** The input entry. */
+    final ZipEntry zipEntry;
+
+    /** The content of the input entry. */
+    final byte[] content;
+
+    /** The result of the transformation of {@link #content}, or {@literal null} if not a class. */
+    Future<byte[]> transformedContent;
+
+    PendingEntry(final ZipEntry zipEntry, final byte[] content) {
+      this.zipEntry = zipEntry;
+      this.content = content;
+    }
+
+    String name() {
+      return zipEntry.getName();
+    }
+
+    @Override
+    public byte[] call() {
+      return classTransformer.transform(zipEntry.getName(), content);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.test.ClassFile;
+
+/** Unit tests for {@link ClassVisitorTransformer}. */
+class ClassVisitorTransformerTest extends AsmTest {
+
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testTransform_identity(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassVisitorTransformer classVisitorTransformer =
+        new ClassVisitorTransformer(0, 0) {
+          @Override
+          protected ClassVisitor createClassVisitor(
+              final String entryName, final ClassVisitor classWriter) {
+            return new ClassVisitor(apiParameter.value(), classWriter) {};
+          }
+        };
+
+    byte[] transformedClassFile =
+        classVisitorTransformer.transform(classParameter.getInternalName(), classFile);
+
+    assertEquals(new ClassFile(classFile), new ClassFile(transformedClassFile));
+  }
+
+  @Test
+  void testTransform_customClassWriter() {
+    byte[] classFile = PrecompiledClass.JDK8_ALL_FRAMES.getBytes();
+    int[] actualWriterFlags = new int[1];
+    String[] entryNames = new String[1];
+    ClassVisitorTransformer classVisitorTransformer =
+        new ClassVisitorTransformer(ClassReader.SKIP_FRAMES, ClassWriter.COMPUTE_MAXS) {
+          @Override
+          protected ClassWriter createClassWriter(
+              final ClassReader classReader, final int writerFlags) {
+            actualWriterFlags[0] = writerFlags;
+            return new ClassWriter(writerFlags);
+          }
+
+          @Override
+          protected ClassVisitor createClassVisitor(
+              final String entryName, final ClassVisitor classWriter) {
+            entryNames[0] = entryName;
+            return classWriter;
+          }
+        };
+
+    classVisitorTransformer.transform("entry.class", classFile);
+
+    assertEquals(ClassWriter.COMPUTE_MAXS, actualWriterFlags[0]);
+    assertEquals("entry.class", entryNames[0]);
+  }
+}
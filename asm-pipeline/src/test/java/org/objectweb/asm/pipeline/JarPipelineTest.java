@@ -0,0 +1,304 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.pipeline;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.test.AsmTest;
+
+/** Unit tests for {@link JarPipeline}. */
+class JarPipelineTest extends AsmTest {
+
+  private static final String ADDED_FIELD_NAME = "addedField";
+
+  @Test
+  void testConstructor_invalidMaxPendingEntries() {
+    Executable constructor = () -> new JarPipeline(new AddFieldTransformer(), null, 0);
+
+    Exception exception = assertThrows(IllegalArgumentException.class, constructor);
+    assertEquals("Invalid maxPendingEntries: 0", exception.getMessage());
+  }
+
+  @Test
+  void testTransform_defaultExecutor() throws IOException {
+    Map<String, byte[]> inputEntries = newInputEntries();
+    byte[] inputJar = newJar(inputEntries);
+
+    byte[] outputJar = transform(new JarPipeline(new AddFieldTransformer()), inputJar);
+
+    checkOutputEntries(inputEntries, readJar(outputJar));
+  }
+
+  @Test
+  void testTransform_customExecutor() throws IOException {
+    Map<String, byte[]> inputEntries = newInputEntries();
+    byte[] inputJar = newJar(inputEntries);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    byte[] outputJar1 =
+        transform(new JarPipeline(new AddFieldTransformer(), executor, 1), inputJar);
+    byte[] outputJar2 =
+        transform(new JarPipeline(new AddFieldTransformer(), executor, 100), inputJar);
+    executor.shutdown();
+
+    checkOutputEntries(inputEntries, readJar(outputJar1));
+    assertArrayEquals(outputJar1, outputJar2);
+  }
+
+  @Test
+  void testTransform_preservesEntryMetadata() throws IOException {
+    Map<String, byte[]> inputEntries = newInputEntries();
+    byte[] inputJar = newJar(inputEntries);
+
+    byte[] outputJar = transform(new JarPipeline(new AddFieldTransformer()), inputJar);
+
+    ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(outputJar));
+    ZipEntry zipEntry;
+    while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+      assertEquals(
+          zipEntry.getName().endsWith(".txt") ? ZipEntry.STORED : ZipEntry.DEFLATED,
+          zipEntry.getMethod());
+      assertEquals(getTime(zipEntry.getName()), zipEntry.getTime());
+    }
+  }
+
+  @Test
+  void testTransform_removedEntries() throws IOException {
+    Map<String, byte[]> inputEntries = newInputEntries();
+    byte[] inputJar = newJar(inputEntries);
+    ClassTransformer classTransformer =
+        (entryName, classFile) -> entryName.startsWith("jdk3/") ? null : classFile;
+
+    Map<String, byte[]> outputEntries =
+        readJar(transform(new JarPipeline(classTransformer), inputJar));
+
+    List<String> expectedNames = new ArrayList<>();
+    for (Map.Entry<String, byte[]> inputEntry : inputEntries.entrySet()) {
+      if (!inputEntry.getKey().startsWith("jdk3/")) {
+        expectedNames.add(inputEntry.getKey());
+        assertArrayEquals(inputEntry.getValue(), outputEntries.get(inputEntry.getKey()));
+      }
+    }
+    assertEquals(expectedNames, new ArrayList<>(outputEntries.keySet()));
+  }
+
+  @Test
+  void testTransform_failedTransformation() throws IOException {
+    byte[] inputJar = newJar(newInputEntries());
+    AtomicInteger transformedClasses = new AtomicInteger();
+    ClassTransformer classTransformer =
+        (entryName, classFile) -> {
+          if (transformedClasses.incrementAndGet() == 3) {
+            throw new IllegalStateException("Failed " + entryName);
+          }
+          return classFile;
+        };
+    JarPipeline jarPipeline = new JarPipeline(classTransformer);
+
+    Executable transform = () -> transform(jarPipeline, inputJar);
+
+    Exception exception = assertThrows(IllegalStateException.class, transform);
+    assertTrue(exception.getMessage().startsWith("Failed "));
+  }
+
+  @Test
+  void testTransform_files() throws IOException {
+    Map<String, byte[]> inputEntries = newInputEntries();
+    File directory = Files.createTempDirectory("asm-pipeline").toFile();
+    File inputFile = new File(directory, "input.jar");
+    File outputFile = new File(directory, "output.jar");
+    Files.write(inputFile.toPath(), newJar(inputEntries));
+
+    new JarPipeline(new AddFieldTransformer()).transform(inputFile, outputFile);
+    byte[] outputJar = Files.readAllBytes(outputFile.toPath());
+    Files.delete(inputFile.toPath());
+    Files.delete(outputFile.toPath());
+    Files.delete(directory.toPath());
+
+    checkOutputEntries(inputEntries, readJar(outputJar));
+  }
+
+  private static byte[] transform(final JarPipeline jarPipeline, final byte[] inputJar)
+      throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    jarPipeline.transform(new ByteArrayInputStream(inputJar), outputStream);
+    return outputStream.toByteArray();
+  }
+
+  /**
+   * Checks that the output entries are in the same order as the input entries, that the class
+   * entries have been transformed, and that the other entries have not been changed.
+   */
+  private static void checkOutputEntries(
+      final Map<String, byte[]> inputEntries, final Map<String, byte[]> outputEntries) {
+    assertEquals(new ArrayList<>(inputEntries.keySet()), new ArrayList<>(outputEntries.keySet()));
+    for (Map.Entry<String, byte[]> inputEntry : inputEntries.entrySet()) {
+      byte[] outputContent = outputEntries.get(inputEntry.getKey());
+      if (inputEntry.getKey().endsWith(".class")) {
+        assertNull(getAddedField(inputEntry.getValue()));
+        assertNotNull(getAddedField(outputContent));
+      } else {
+        assertArrayEquals(inputEntry.getValue(), outputContent);
+      }
+    }
+  }
+
+  private static String getAddedField(final byte[] classFile) {
+    String[] addedField = new String[1];
+    new ClassReader(classFile)
+        .accept(
+            new ClassVisitor(Opcodes.ASM9) {
+              @Override
+              public FieldVisitor visitField(
+                  final int access,
+                  final String name,
+                  final String descriptor,
+                  final String signature,
+                  final Object value) {
+                if (name.equals(ADDED_FIELD_NAME)) {
+                  addedField[0] = name;
+                }
+                return null;
+              }
+            },
+            0);
+    return addedField[0];
+  }
+
+  /** Returns some class and resource entries, in a specific order. */
+  private static Map<String, byte[]> newInputEntries() {
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    entries.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\r\n\r\n".getBytes());
+    entries.put("META-INF/", new byte[0]);
+    int index = 0;
+    for (PrecompiledClass precompiledClass : PrecompiledClass.values()) {
+      if (precompiledClass.isMoreRecentThan(Api.ASM9)) {
+        continue;
+      }
+      entries.put(precompiledClass.getInternalName() + ".class", precompiledClass.getBytes());
+      if (++index % 4 == 0) {
+        entries.put("resources/resource" + index + ".txt", ("resource " + index).getBytes());
+      }
+    }
+    entries.put("z/last.txt", new byte[] {0, 1, 2, (byte) 0xFF});
+    return entries;
+  }
+
+  private static long getTime(final String entryName) {
+    // A deterministic time per entry, with a 2 seconds precision (as in the DOS date format).
+    return 946684800000L + 2000L * entryName.length();
+  }
+
+  private static byte[] newJar(final Map<String, byte[]> entries) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+      for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+        ZipEntry zipEntry = new ZipEntry(entry.getKey());
+        zipEntry.setTime(getTime(entry.getKey()));
+        byte[] content = entry.getValue();
+        if (entry.getKey().endsWith(".txt")) {
+          CRC32 crc = new CRC32();
+          crc.update(content);
+          zipEntry.setMethod(ZipEntry.STORED);
+          zipEntry.setSize(content.length);
+          zipEntry.setCrc(crc.getValue());
+        }
+        zipOutputStream.putNextEntry(zipEntry);
+        zipOutputStream.write(content);
+        zipOutputStream.closeEntry();
+      }
+    }
+    return outputStream.toByteArray();
+  }
+
+  private static Map<String, byte[]> readJar(final byte[] jar) throws IOException {
+    Map<String, byte[]> entries = new LinkedHashMap<>();
+    try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(jar))) {
+      ZipEntry zipEntry;
+      while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        while ((length = zipInputStream.read(buffer)) != -1) {
+          outputStream.write(buffer, 0, length);
+        }
+        entries.put(zipEntry.getName(), outputStream.toByteArray());
+      }
+    }
+    return entries;
+  }
+
+  /** A transformer which adds a field to each class. */
+  private static class AddFieldTransformer extends ClassVisitorTransformer {
+
+    AddFieldTransformer() {
+      super(0, 0);
+    }
+
+    @Override
+    protected ClassVisitor createClassVisitor(
+        final String entryName, final ClassVisitor classWriter) {
+      return new ClassVisitor(Opcodes.ASM9, classWriter) {
+        @Override
+        public void visitEnd() {
+          super.visitField(Opcodes.ACC_PRIVATE, ADDED_FIELD_NAME, "I", null, null).visitEnd();
+          super.visitEnd();
+        }
+      };
+    }
+  }
+}
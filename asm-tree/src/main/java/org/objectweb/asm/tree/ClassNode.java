@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.List;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -309,6 +310,136 @@ public class ClassNode extends ClassVisitor {
     // Nothing to do.
   }
 
+  // -----------------------------------------------------------------------------------------------
+  // Lazy reading
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Reads the given class in this node, without parsing the code of its methods. See {@link
+   * #readLazily(ClassReader, Attribute[], int)}.
+   *
+   * @param classReader the reader of the class to read in this node.
+   * @param parsingOptions the options to use to parse the class. One or more of {@link
+   *     ClassReader#SKIP_CODE}, {@link ClassReader#SKIP_DEBUG}, {@link ClassReader#SKIP_FRAMES} or
+   *     {@link ClassReader#EXPAND_FRAMES}.
+   */
+  public void readLazily(final ClassReader classReader, final int parsingOptions) {
+    readLazily(classReader, new Attribute[0], parsingOptions);
+  }
+
+  /**
+   * Reads the given class in this node, without parsing the code of its methods. The code of each
+   * {@link MethodNode} is parsed only when {@link MethodNode#loadCode} is called. Until then, its
+   * code fields are empty, and {@link MethodNode#accept(MethodVisitor)} visits its code directly
+   * from the given reader, without building the corresponding nodes. Transformations which only
+   * modify a few methods of a class should therefore call {@link MethodNode#loadCode} on these
+   * methods only.
+   *
+   * <p>The given reader is kept by this node, to parse the code of its methods on demand. It must
+   * therefore not be modified while this node is in use. In particular, it must not be released to
+   * a {@link org.objectweb.asm.ClassReaderPool}, nor passed as the previous reader of a new
+   * ClassReader (see {@link ClassReader#ClassReader(byte[], ClassReader)}), since the constant pool
+   * arrays of the given reader would then be reused to read another class. For this reason,
+   * readers constructed with the recycling constructors of ClassReader are rejected.
+   *
+   * @param classReader the reader of the class to read in this node. It must not be a reusable
+   *     reader (see {@link ClassReader#isReusable}).
+   * @param attributePrototypes prototypes of the attributes that must be parsed during the visit of
+   *     the class. Any attribute whose type is not equal to the type of one the prototypes will not
+   *     be parsed: its byte array value will be passed unchanged to the ClassWriter.
+   * @param parsingOptions the options to use to parse the class. One or more of {@link
+   *     ClassReader#SKIP_CODE}, {@link ClassReader#SKIP_DEBUG}, {@link ClassReader#SKIP_FRAMES} or
+   *     {@link ClassReader#EXPAND_FRAMES}.
+   * @throws IllegalArgumentException if the given reader is reusable, and the method code is not
+   *     skipped.
+   */
+  public void readLazily(
+      final ClassReader classReader,
+      final Attribute[] attributePrototypes,
+      final int parsingOptions) {
+    if ((parsingOptions & ClassReader.SKIP_CODE) != 0) {
+      classReader.accept(this, attributePrototypes, parsingOptions);
+      return;
+    }
+    if (classReader.isReusable()) {
+      throw new IllegalArgumentException("A reusable ClassReader can't be read lazily");
+    }
+    classReader.accept(
+        new ClassVisitor(/* latest api = */ Opcodes.ASM9, this) {
+
+          /** The index of the next visited method in the ClassFile's 'methods' array. */
+          private int nextMethodIndex;
+
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final String[] exceptions) {
+            int methodIndex = nextMethodIndex++;
+            MethodVisitor methodVisitor =
+                super.visitMethod(access, name, descriptor, signature, exceptions);
+            if (methodVisitor == null
+                || (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+              return methodVisitor;
+            }
+            final DeferredCode deferredCode =
+                new DeferredCode(classReader, attributePrototypes, parsingOptions, methodIndex);
+            if (methodVisitor instanceof MethodNode) {
+              ((MethodNode) methodVisitor).setDeferredCode(deferredCode);
+              return methodVisitor;
+            }
+            // A subclass returned another kind of visitor: visit the code eagerly, at the place
+            // where it would have been visited without the SKIP_CODE option.
+            return new MethodVisitor(/* latest api = */ Opcodes.ASM9, methodVisitor) {
+              @Override
+              public void visitEnd() {
+                deferredCode.accept(mv);
+                super.visitEnd();
+              }
+            };
+          }
+        },
+        attributePrototypes,
+        parsingOptions | ClassReader.SKIP_CODE);
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Memory footprint
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Reduces the memory used by this class node, once it is fully built. The empty lists are
+   * replaced with a shared immutable empty list, the other array lists are trimmed to their size,
+   * and the descriptors and signatures are interned (see {@link String#intern}). The fields and
+   * methods of this class are compacted too (see {@link FieldNode#compact} and
+   * {@link MethodNode#compact}). The empty lists of this node must be replaced with new lists
+   * before adding elements to them. This method is useful to keep many class nodes in memory, e.g.
+   * after reading them with a {@link ClassReader}.
+   */
+  public void compact() {
+    signature = Util.intern(signature);
+    interfaces = Util.compact(interfaces);
+    visibleAnnotations = Util.compact(visibleAnnotations);
+    invisibleAnnotations = Util.compact(invisibleAnnotations);
+    visibleTypeAnnotations = Util.compact(visibleTypeAnnotations);
+    invisibleTypeAnnotations = Util.compact(invisibleTypeAnnotations);
+    attrs = Util.compact(attrs);
+    innerClasses = Util.compact(innerClasses);
+    nestMembers = Util.compact(nestMembers);
+    permittedSubclasses = Util.compact(permittedSubclasses);
+    recordComponents = Util.compact(recordComponents);
+    fields = Util.compact(fields);
+    for (int i = 0, n = fields.size(); i < n; ++i) {
+      fields.get(i).compact();
+    }
+    methods = Util.compact(methods);
+    for (int i = 0, n = methods.size(); i < n; ++i) {
+      methods.get(i).compact();
+    }
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Accept method
   // -----------------------------------------------------------------------------------------------
@@ -0,0 +1,117 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.tree;
+
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * The code of a {@link MethodNode} which has not been parsed yet, and which can be parsed on demand
+ * from the {@link ClassReader} which contains it (see {@link ClassNode#readLazily}).
+ */
+final class DeferredCode {
+
+  /** The reader containing the method's code. */
+  private final ClassReader classReader;
+
+  /** The prototypes of the attributes that must be parsed in the method's code. */
+  private final Attribute[] attributePrototypes;
+
+  /** The options used to parse the method's code. */
+  private final int parsingOptions;
+
+  /**
+   * The index of the method in the ClassFile's 'methods' array, used to find its method_info
+   * structure in {@link #classReader} without comparing names and descriptors.
+   */
+  private final int methodIndex;
+
+  DeferredCode(
+      final ClassReader classReader,
+      final Attribute[] attributePrototypes,
+      final int parsingOptions,
+      final int methodIndex) {
+    this.classReader = classReader;
+    this.attributePrototypes = attributePrototypes;
+    this.parsingOptions = parsingOptions;
+    this.methodIndex = methodIndex;
+  }
+
+  /**
+   * Makes the given visitor visit the method's code, i.e. the events from {@link
+   * MethodVisitor#visitCode} to {@link MethodVisitor#visitMaxs} included. The other events of the
+   * method (parameters, annotations, non standard method attributes, and {@link
+   * MethodVisitor#visitEnd}) are not visited.
+   *
+   * @param methodVisitor the visitor that must visit the method's code.
+   */
+  void accept(final MethodVisitor methodVisitor) {
+    classReader.acceptMethod(
+        new ClassVisitor(/* latest api = */ Opcodes.ASM9) {
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final String[] exceptions) {
+            return new CodeFilter(methodVisitor);
+          }
+        },
+        methodIndex,
+        attributePrototypes,
+        parsingOptions);
+  }
+
+  /** A {@link MethodVisitor} which only forwards the events of the method's code. */
+  private static final class CodeFilter extends MethodVisitor {
+
+    /** The visitor to which the events of the method's code must be forwarded. */
+    private final MethodVisitor codeVisitor;
+
+    CodeFilter(final MethodVisitor codeVisitor) {
+      super(/* latest api = */ Opcodes.ASM9);
+      this.codeVisitor = codeVisitor;
+    }
+
+    @Override
+    public void visitCode() {
+      mv = codeVisitor;
+      super.visitCode();
+    }
+
+    @Override
+    public void visitMaxs(final int maxStack, final int maxLocals) {
+      super.visitMaxs(maxStack, maxLocals);
+      mv = null;
+    }
+  }
+}
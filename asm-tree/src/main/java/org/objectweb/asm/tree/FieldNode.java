@@ -171,6 +171,26 @@ public class FieldNode extends FieldVisitor {
     // Nothing to do.
   }
 
+  // -----------------------------------------------------------------------------------------------
+  // Memory footprint
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Reduces the memory used by this field node, once it is fully built. The empty lists are
+   * replaced with a shared immutable empty list, the other array lists are trimmed to their size,
+   * and the descriptors and signatures are interned (see {@link String#intern}). The empty lists of
+   * this node must be replaced with new lists before adding elements to them.
+   */
+  public void compact() {
+    desc = Util.intern(desc);
+    signature = Util.intern(signature);
+    visibleAnnotations = Util.compact(visibleAnnotations);
+    invisibleAnnotations = Util.compact(invisibleAnnotations);
+    visibleTypeAnnotations = Util.compact(visibleTypeAnnotations);
+    invisibleTypeAnnotations = Util.compact(invisibleTypeAnnotations);
+    attrs = Util.compact(attrs);
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Accept methods
   // -----------------------------------------------------------------------------------------------
@@ -48,10 +48,20 @@ public class InsnList implements Iterable<AbstractInsnNode> {
 
   /**
    * A cache of the instructions of this list. This cache is used to improve the performance of the
-   * {@link #get} method.
+   * {@link #get} and {@link #indexOf} methods. Only its first {@link #cacheSize} elements are
+   * valid. May be {@literal null}.
    */
   AbstractInsnNode[] cache;
 
+  /**
+   * The number of valid elements at the beginning of {@link #cache}. For each i less than this
+   * number, the i-th instruction of this list is cache[i], and its {@link AbstractInsnNode#index}
+   * is equal to i. The methods which modify the list only reduce this number to the index of the
+   * first modified instruction, so that the cached indexes of the previous instructions remain
+   * valid, and the cache is lazily extended from there when needed.
+   */
+  private int cacheSize;
+
   /**
    * Returns the number of instructions in this list.
    *
@@ -82,8 +92,9 @@ public class InsnList implements Iterable<AbstractInsnNode> {
   /**
    * Returns the instruction whose index is given. This method builds a cache of the instructions in
    * this list to avoid scanning the whole list each time it is called. Once the cache is built,
-   * this method runs in constant time. This cache is invalidated by all the methods that modify the
-   * list.
+   * this method runs in constant time. The methods that modify the list only invalidate the part of
+   * this cache which starts at the first modified instruction, and only this part is rebuilt, up to
+   * the requested index, on the next call.
    *
    * @param index the index of the instruction that must be returned.
    * @return the instruction whose index is given.
@@ -93,8 +104,8 @@ public class InsnList implements Iterable<AbstractInsnNode> {
     if (index < 0 || index >= size) {
       throw new IndexOutOfBoundsException();
     }
-    if (cache == null) {
-      cache = toArray();
+    if (index >= cacheSize) {
+      extendCache(index, null);
     }
     return cache[index];
   }
@@ -118,8 +129,10 @@ public class InsnList implements Iterable<AbstractInsnNode> {
   /**
    * Returns the index of the given instruction in this list. This method builds a cache of the
    * instruction indexes to avoid scanning the whole list each time it is called. Once the cache is
-   * built, this method run in constant time. The cache is invalidated by all the methods that
-   * modify the list.
+   * built, this method runs in constant time. The methods that modify the list only invalidate the
+   * part of this cache which starts at the first modified instruction, and only this part is
+   * rebuilt, up to the given instruction, on the next call. In particular, the indexes of the
+   * instructions before a modified one remain available in constant time.
    *
    * @param insnNode an instruction <i>of this list</i>.
    * @return the index of the given instruction in this list. <i>The result of this method is
@@ -127,12 +140,62 @@ public class InsnList implements Iterable<AbstractInsnNode> {
    *     to test if an instruction belongs to an instruction list or not.
    */
   public int indexOf(final AbstractInsnNode insnNode) {
-    if (cache == null) {
-      cache = toArray();
+    return getIndex(insnNode);
+  }
+
+  /**
+   * Returns the index of the given instruction in this list, using and extending {@link #cache}.
+   *
+   * @param insnNode an instruction <i>of this list</i>.
+   * @return the index of the given instruction in this list.
+   */
+  private int getIndex(final AbstractInsnNode insnNode) {
+    if (!isCached(insnNode)) {
+      extendCache(size - 1, insnNode);
     }
     return insnNode.index;
   }
 
+  /**
+   * Returns whether the given instruction is in the valid part of {@link #cache}.
+   *
+   * @param insnNode an instruction.
+   * @return whether the {@link AbstractInsnNode#index} of insnNode is its index in this list.
+   */
+  private boolean isCached(final AbstractInsnNode insnNode) {
+    int index = insnNode.index;
+    return index >= 0 && index < cacheSize && cache[index] == insnNode;
+  }
+
+  /**
+   * Extends the valid part of {@link #cache} until it contains the instruction at the given index,
+   * or the given instruction.
+   *
+   * @param index the index of the last instruction which must be added to the cache, if insnNode
+   *     is not found before.
+   * @param insnNode the instruction after which the cache does not need to be extended, or
+   *     {@literal null}.
+   */
+  private void extendCache(final int index, final AbstractInsnNode insnNode) {
+    if (cache == null || cache.length < size) {
+      AbstractInsnNode[] newCache =
+          new AbstractInsnNode[cache == null ? size : Math.max(size, 2 * cache.length)];
+      if (cacheSize > 0) {
+        System.arraycopy(cache, 0, newCache, 0, cacheSize);
+      }
+      cache = newCache;
+    }
+    AbstractInsnNode currentInsn = cacheSize == 0 ? firstInsn : cache[cacheSize - 1].nextInsn;
+    while (currentInsn != null && cacheSize <= index) {
+      cache[cacheSize] = currentInsn;
+      currentInsn.index = cacheSize++;
+      if (currentInsn == insnNode) {
+        return;
+      }
+      currentInsn = currentInsn.nextInsn;
+    }
+  }
+
   /**
    * Makes the given visitor visit all the instructions in this list.
    *
@@ -173,13 +236,12 @@ public class InsnList implements Iterable<AbstractInsnNode> {
    * @return an array containing all the instructions in this list.
    */
   public AbstractInsnNode[] toArray() {
-    int currentInsnIndex = 0;
-    AbstractInsnNode currentInsn = firstInsn;
     AbstractInsnNode[] insnNodeArray = new AbstractInsnNode[size];
-    while (currentInsn != null) {
-      insnNodeArray[currentInsnIndex] = currentInsn;
-      currentInsn.index = currentInsnIndex++;
-      currentInsn = currentInsn.nextInsn;
+    if (size > 0) {
+      if (cacheSize < size) {
+        extendCache(size - 1, null);
+      }
+      System.arraycopy(cache, 0, insnNodeArray, 0, size);
     }
     return insnNodeArray;
   }
@@ -205,7 +267,7 @@ public class InsnList implements Iterable<AbstractInsnNode> {
     } else {
       firstInsn = newInsnNode;
     }
-    if (cache != null) {
+    if (isCached(oldInsnNode)) {
       int index = oldInsnNode.index;
       cache[index] = newInsnNode;
       newInsnNode.index = index;
@@ -232,7 +294,6 @@ public class InsnList implements Iterable<AbstractInsnNode> {
       insnNode.previousInsn = lastInsn;
     }
     lastInsn = insnNode;
-    cache = null;
     insnNode.index = 0; // insnNode now belongs to an InsnList.
   }
 
@@ -256,7 +317,6 @@ public class InsnList implements Iterable<AbstractInsnNode> {
       firstInsnListElement.previousInsn = lastInsn;
       lastInsn = insnList.lastInsn;
     }
-    cache = null;
     insnList.removeAll(false);
   }
 
@@ -275,7 +335,7 @@ public class InsnList implements Iterable<AbstractInsnNode> {
       insnNode.nextInsn = firstInsn;
     }
     firstInsn = insnNode;
-    cache = null;
+    cacheSize = 0;
     insnNode.index = 0; // insnNode now belongs to an InsnList.
   }
 
@@ -299,7 +359,7 @@ public class InsnList implements Iterable<AbstractInsnNode> {
       lastInsnListElement.nextInsn = firstInsn;
       firstInsn = insnList.firstInsn;
     }
-    cache = null;
+    cacheSize = 0;
     insnList.removeAll(false);
   }
 
@@ -311,6 +371,9 @@ public class InsnList implements Iterable<AbstractInsnNode> {
    *     InsnList}</i>.
    */
   public void insert(final AbstractInsnNode previousInsn, final AbstractInsnNode insnNode) {
+    if (isCached(previousInsn)) {
+      cacheSize = previousInsn.index + 1;
+    }
     ++size;
     AbstractInsnNode nextInsn = previousInsn.nextInsn;
     if (nextInsn == null) {
@@ -321,7 +384,6 @@ public class InsnList implements Iterable<AbstractInsnNode> {
     previousInsn.nextInsn = insnNode;
     insnNode.nextInsn = nextInsn;
     insnNode.previousInsn = previousInsn;
-    cache = null;
     insnNode.index = 0; // insnNode now belongs to an InsnList.
   }
 
@@ -337,6 +399,9 @@ public class InsnList implements Iterable<AbstractInsnNode> {
     if (insnList.size == 0) {
       return;
     }
+    if (isCached(previousInsn)) {
+      cacheSize = previousInsn.index + 1;
+    }
     size += insnList.size;
     AbstractInsnNode firstInsnListElement = insnList.firstInsn;
     AbstractInsnNode lastInsnListElement = insnList.lastInsn;
@@ -349,7 +414,6 @@ public class InsnList implements Iterable<AbstractInsnNode> {
     previousInsn.nextInsn = firstInsnListElement;
     lastInsnListElement.nextInsn = nextInsn;
     firstInsnListElement.previousInsn = previousInsn;
-    cache = null;
     insnList.removeAll(false);
   }
 
@@ -361,6 +425,9 @@ public class InsnList implements Iterable<AbstractInsnNode> {
    *     InsnList}</i>.
    */
   public void insertBefore(final AbstractInsnNode nextInsn, final AbstractInsnNode insnNode) {
+    if (isCached(nextInsn)) {
+      cacheSize = nextInsn.index;
+    }
     ++size;
     AbstractInsnNode previousInsn = nextInsn.previousInsn;
     if (previousInsn == null) {
@@ -371,7 +438,6 @@ public class InsnList implements Iterable<AbstractInsnNode> {
     nextInsn.previousInsn = insnNode;
     insnNode.nextInsn = nextInsn;
     insnNode.previousInsn = previousInsn;
-    cache = null;
     insnNode.index = 0; // insnNode now belongs to an InsnList.
   }
 
@@ -387,6 +453,9 @@ public class InsnList implements Iterable<AbstractInsnNode> {
     if (insnList.size == 0) {
       return;
     }
+    if (isCached(nextInsn)) {
+      cacheSize = nextInsn.index;
+    }
     size += insnList.size;
     AbstractInsnNode firstInsnListElement = insnList.firstInsn;
     AbstractInsnNode lastInsnListElement = insnList.lastInsn;
@@ -399,7 +468,6 @@ public class InsnList implements Iterable<AbstractInsnNode> {
     nextInsn.previousInsn = lastInsnListElement;
     lastInsnListElement.nextInsn = nextInsn;
     firstInsnListElement.previousInsn = previousInsn;
-    cache = null;
     insnList.removeAll(false);
   }
 
@@ -409,6 +477,9 @@ public class InsnList implements Iterable<AbstractInsnNode> {
    * @param insnNode the instruction <i>of this list</i> that must be removed.
    */
   public void remove(final AbstractInsnNode insnNode) {
+    if (isCached(insnNode)) {
+      cacheSize = insnNode.index;
+    }
     --size;
     AbstractInsnNode nextInsn = insnNode.nextInsn;
     AbstractInsnNode previousInsn = insnNode.previousInsn;
@@ -429,7 +500,6 @@ public class InsnList implements Iterable<AbstractInsnNode> {
         nextInsn.previousInsn = previousInsn;
       }
     }
-    cache = null;
     insnNode.index = -1; // insnNode no longer belongs to an InsnList.
     insnNode.previousInsn = null;
     insnNode.nextInsn = null;
@@ -455,6 +525,13 @@ public class InsnList implements Iterable<AbstractInsnNode> {
     firstInsn = null;
     lastInsn = null;
     cache = null;
+    cacheSize = 0;
+  }
+
+  /** Releases the cache of the instructions of this list. It is rebuilt when needed. */
+  void releaseCache() {
+    cache = null;
+    cacheSize = 0;
   }
 
   /** Removes all the instructions of this list. */
@@ -557,10 +634,7 @@ public class InsnList implements Iterable<AbstractInsnNode> {
       if (nextInsn == null) {
         return size();
       }
-      if (cache == null) {
-        cache = toArray();
-      }
-      return nextInsn.index;
+      return getIndex(nextInsn);
     }
 
     @Override
@@ -568,10 +642,7 @@ public class InsnList implements Iterable<AbstractInsnNode> {
       if (previousInsn == null) {
         return -1;
       }
-      if (cache == null) {
-        cache = toArray();
-      }
-      return previousInsn.index;
+      return getIndex(previousInsn);
     }
 
     @Override
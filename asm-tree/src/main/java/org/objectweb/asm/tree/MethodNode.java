@@ -148,6 +148,12 @@ public class MethodNode extends MethodVisitor {
   /** Whether the accept method has been called on this object. */
   private boolean visited;
 
+  /**
+   * The code of this method which has not been parsed yet, or {@literal null} if the code of this
+   * method is fully represented by the above fields. See {@link ClassNode#readLazily}.
+   */
+  private DeferredCode deferredCode;
+
   /**
    * Constructs an uninitialized {@link MethodNode}. <i>Subclasses must not use this
    * constructor</i>. Instead, they must use the {@link #MethodNode(int)} version.
@@ -556,6 +562,108 @@ public class MethodNode extends MethodVisitor {
     return labelNodes;
   }
 
+  // -----------------------------------------------------------------------------------------------
+  // Lazy code loading
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Sets the code of this method which has not been parsed yet.
+   *
+   * @param deferredCode the code of this method which has not been parsed yet.
+   */
+  void setDeferredCode(final DeferredCode deferredCode) {
+    this.deferredCode = deferredCode;
+  }
+
+  /**
+   * Returns whether the code of this method is represented by the {@link #instructions}, {@link
+   * #tryCatchBlocks}, {@link #localVariables}, {@link #maxStack}, {@link #maxLocals} and local
+   * variable annotations fields. This is always the case, unless this method has been read with
+   * {@link ClassNode#readLazily} and {@link #loadCode} has not been called yet.
+   *
+   * @return whether the code of this method has been loaded in this node.
+   */
+  public boolean isCodeLoaded() {
+    return deferredCode == null;
+  }
+
+  /**
+   * Loads the code of this method in this node, if this was not already done. This method must be
+   * called before reading or modifying the code fields of a method read with {@link
+   * ClassNode#readLazily}. Until then, these fields are empty, and {@link #accept(MethodVisitor)}
+   * visits the code directly from the original class.
+   */
+  public void loadCode() {
+    if (deferredCode != null) {
+      DeferredCode code = deferredCode;
+      deferredCode = null;
+      code.accept(this);
+    }
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Memory footprint
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Reduces the memory used by this method node, once it is fully built. The empty lists are
+   * replaced with a shared immutable empty list, the other array lists are trimmed to their size,
+   * and the descriptors and signatures are interned (see {@link String#intern}). The cache of the
+   * instruction list is released too. The empty lists of this node must be replaced with new lists
+   * before adding elements to them. The code fields of a method whose code is not loaded (see
+   * {@link #isCodeLoaded}) are left unchanged, so that its code can still be loaded later on.
+   */
+  public void compact() {
+    desc = Util.intern(desc);
+    signature = Util.intern(signature);
+    exceptions = Util.compact(exceptions);
+    parameters = Util.compact(parameters);
+    visibleAnnotations = Util.compact(visibleAnnotations);
+    invisibleAnnotations = Util.compact(invisibleAnnotations);
+    visibleTypeAnnotations = Util.compact(visibleTypeAnnotations);
+    invisibleTypeAnnotations = Util.compact(invisibleTypeAnnotations);
+    compact(visibleParameterAnnotations);
+    compact(invisibleParameterAnnotations);
+    attrs = Util.compact(attrs);
+    if (deferredCode != null) {
+      return;
+    }
+    tryCatchBlocks = Util.compact(tryCatchBlocks);
+    localVariables = Util.compact(localVariables);
+    if (localVariables != null) {
+      for (int i = 0, n = localVariables.size(); i < n; ++i) {
+        LocalVariableNode localVariable = localVariables.get(i);
+        localVariable.desc = Util.intern(localVariable.desc);
+        localVariable.signature = Util.intern(localVariable.signature);
+      }
+    }
+    visibleLocalVariableAnnotations = Util.compact(visibleLocalVariableAnnotations);
+    invisibleLocalVariableAnnotations = Util.compact(invisibleLocalVariableAnnotations);
+    for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+      if (insn instanceof MethodInsnNode) {
+        ((MethodInsnNode) insn).desc = Util.intern(((MethodInsnNode) insn).desc);
+      } else if (insn instanceof FieldInsnNode) {
+        ((FieldInsnNode) insn).desc = Util.intern(((FieldInsnNode) insn).desc);
+      } else if (insn instanceof InvokeDynamicInsnNode) {
+        ((InvokeDynamicInsnNode) insn).desc = Util.intern(((InvokeDynamicInsnNode) insn).desc);
+      }
+    }
+    instructions.releaseCache();
+  }
+
+  /**
+   * Compacts the lists of the given array of parameter annotations.
+   *
+   * @param parameterAnnotations an array of parameter annotations lists. May be {@literal null}.
+   */
+  private static void compact(final List<AnnotationNode>[] parameterAnnotations) {
+    if (parameterAnnotations != null) {
+      for (int i = 0; i < parameterAnnotations.length; ++i) {
+        parameterAnnotations[i] = Util.compact(parameterAnnotations[i]);
+      }
+    }
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Accept method
   // -----------------------------------------------------------------------------------------------
@@ -569,6 +677,9 @@ public class MethodNode extends MethodVisitor {
    *     Opcodes}.
    */
   public void check(final int api) {
+    if (api < Opcodes.ASM7) {
+      loadCode();
+    }
     if (api == Opcodes.ASM4) {
       if (parameters != null && !parameters.isEmpty()) {
         throw new UnsupportedClassVersionException();
@@ -736,7 +847,9 @@ public class MethodNode extends MethodVisitor {
       }
     }
     // Visit the code.
-    if (instructions.size() > 0) {
+    if (deferredCode != null) {
+      deferredCode.accept(methodVisitor);
+    } else if (instructions.size() > 0) {
       methodVisitor.visitCode();
       // Visits the try catch blocks.
       if (tryCatchBlocks != null) {
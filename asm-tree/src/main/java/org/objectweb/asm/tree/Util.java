@@ -28,11 +28,12 @@
 package org.objectweb.asm.tree;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Utility methods to convert an array of primitive or object values to a mutable ArrayList, not
- * baked by the array (unlike {@link java.util.Arrays#asList}).
+ * baked by the array (unlike {@link java.util.Arrays#asList}), and to compact lists.
  *
  * @author Eric Bruneton
  */
@@ -46,6 +47,23 @@ final class Util {
     return newList;
   }
 
+  static <T> List<T> compact(final List<T> list) {
+    if (list == null) {
+      return null;
+    }
+    if (list.isEmpty()) {
+      return Collections.emptyList();
+    }
+    if (list instanceof ArrayList) {
+      ((ArrayList<T>) list).trimToSize();
+    }
+    return list;
+  }
+
+  static String intern(final String string) {
+    return string == null ? null : string.intern();
+  }
+
   static <T> List<T> asArrayList(final int length) {
     List<T> list = new ArrayList<>(length);
     for (int i = 0; i < length; ++i) {
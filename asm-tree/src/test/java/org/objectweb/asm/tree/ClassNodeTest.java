@@ -42,6 +42,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.Attribute;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassReaderPool;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.FieldVisitor;
@@ -152,6 +153,150 @@ class ClassNodeTest extends AsmTest {
         new ClassFile(expectedClassWriter.toByteArray()), new ClassFile(classWriter.toByteArray()));
   }
 
+  /**
+   * Tests that classes are unchanged with a ClassReader->ClassNode->ClassWriter transform, when the
+   * code of the methods is read lazily and never loaded.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_ALL_APIS)
+  void testReadLazily(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassNode classNode = new ClassNode(apiParameter.value()) {};
+    ClassWriter classWriter = new ClassWriter(0);
+
+    classNode.readLazily(classReader, attributes(), 0);
+    classNode.accept(classWriter);
+
+    for (MethodNode methodNode : classNode.methods) {
+      boolean hasCode = (methodNode.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0;
+      assertEquals(!hasCode, methodNode.isCodeLoaded());
+      assertEquals(0, methodNode.instructions.size());
+    }
+    assertEquals(new ClassFile(classFile), new ClassFile(classWriter.toByteArray()));
+  }
+
+  @Test
+  void testReadLazily_reusableClassReader() {
+    ClassReaderPool classReaderPool = new ClassReaderPool();
+    ClassReader classReader =
+        classReaderPool.acquire(PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes());
+    ClassNode classNode = new ClassNode();
+
+    Executable readLazily = () -> classNode.readLazily(classReader, 0);
+    Executable readLazilySkipCode = () -> classNode.readLazily(classReader, ClassReader.SKIP_CODE);
+
+    assertThrows(IllegalArgumentException.class, readLazily);
+    assertDoesNotThrow(readLazilySkipCode);
+  }
+
+  /**
+   * Tests that classes are unchanged with a ClassReader->ClassNode->ClassWriter transform, when the
+   * code of the methods is read lazily and then loaded.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_ALL_APIS)
+  void testReadLazily_loadCode(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassNode classNode = new ClassNode(apiParameter.value()) {};
+    ClassWriter classWriter = new ClassWriter(0);
+
+    classNode.readLazily(classReader, attributes(), 0);
+    for (MethodNode methodNode : classNode.methods) {
+      methodNode.loadCode();
+      methodNode.loadCode();
+      assertTrue(methodNode.isCodeLoaded());
+    }
+    classNode.accept(classWriter);
+
+    assertEquals(new ClassFile(classFile), new ClassFile(classWriter.toByteArray()));
+  }
+
+  /**
+   * Tests that classes are unchanged with a ClassReader->ClassNode->ClassWriter transform, when the
+   * code of the methods is read lazily by a ClassNode subclass which does not return MethodNode
+   * visitors.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_ALL_APIS)
+  void testReadLazily_methodVisitorSubclass(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassNode classNode =
+        new ClassNode(apiParameter.value()) {
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final String[] exceptions) {
+            return new MethodVisitor(
+                /* latest api = */ Opcodes.ASM9,
+                super.visitMethod(access, name, descriptor, signature, exceptions)) {};
+          }
+        };
+    ClassWriter classWriter = new ClassWriter(0);
+
+    classNode.readLazily(classReader, attributes(), 0);
+    classNode.accept(classWriter);
+
+    for (MethodNode methodNode : classNode.methods) {
+      assertTrue(methodNode.isCodeLoaded());
+    }
+    assertEquals(new ClassFile(classFile), new ClassFile(classWriter.toByteArray()));
+  }
+
+  /**
+   * Tests that classes are unchanged with a ClassReader->ClassNode->ClassWriter transform, when the
+   * class node is compacted.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_ALL_APIS)
+  void testCompact(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassNode classNode = new ClassNode(apiParameter.value()) {};
+    ClassWriter classWriter = new ClassWriter(0);
+
+    classReader.accept(classNode, attributes(), 0);
+    classNode.compact();
+    classNode.compact();
+    classNode.accept(classWriter);
+
+    for (MethodNode methodNode : classNode.methods) {
+      if (methodNode.tryCatchBlocks.isEmpty()) {
+        assertThrows(
+            UnsupportedOperationException.class, () -> methodNode.tryCatchBlocks.add(null));
+      }
+    }
+    assertEquals(new ClassFile(classFile), new ClassFile(classWriter.toByteArray()));
+  }
+
+  /**
+   * Tests that classes are unchanged with a ClassReader->ClassNode->ClassWriter transform, when the
+   * class node is read lazily and compacted before its code is loaded.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_ALL_APIS)
+  void testCompact_readLazily(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassNode classNode = new ClassNode(apiParameter.value()) {};
+    ClassWriter classWriter = new ClassWriter(0);
+
+    classNode.readLazily(classReader, attributes(), 0);
+    classNode.compact();
+    for (MethodNode methodNode : classNode.methods) {
+      methodNode.loadCode();
+    }
+    classNode.accept(classWriter);
+
+    assertEquals(new ClassFile(classFile), new ClassFile(classWriter.toByteArray()));
+  }
+
   private static Attribute[] attributes() {
     return new Attribute[] {new Comment(), new CodeComment()};
   }
@@ -36,8 +36,11 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ListIterator;
 import java.util.NoSuchElementException;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 import org.objectweb.asm.Label;
@@ -102,6 +105,84 @@ class InsnListTest {
     assertEquals(1, index2);
   }
 
+  @Test
+  void testIndexOf_afterModifications() {
+    InsnNode insn0 = new InsnNode(0);
+    InsnNode insn3 = new InsnNode(0);
+    InsnList insnList = newInsnList();
+    insnList.add(insn0);
+    insnList.add(insn1);
+    insnList.add(insn2);
+    insnList.add(insn3);
+    assertEquals(3, insnList.indexOf(insn3));
+
+    InsnNode insn = new InsnNode(0);
+    insnList.insertBefore(insn2, insn);
+
+    assertEquals(0, insnList.indexOf(insn0));
+    assertEquals(1, insnList.indexOf(insn1));
+    assertEquals(2, insnList.indexOf(insn));
+    assertEquals(3, insnList.indexOf(insn2));
+    assertEquals(4, insnList.indexOf(insn3));
+
+    insnList.remove(insn1);
+    insnList.add(insn1);
+
+    assertEquals(insn0, insnList.get(0));
+    assertEquals(insn, insnList.get(1));
+    assertEquals(4, insnList.indexOf(insn1));
+    assertEquals(1, insnList.indexOf(insn));
+    assertEquals(insn3, insnList.get(3));
+  }
+
+  @Test
+  void testIndexOf_randomModifications() {
+    Random random = new Random(0);
+    InsnList insnList = newInsnList();
+    List<AbstractInsnNode> expectedInsns = new ArrayList<>();
+    for (int i = 0; i < 2000; ++i) {
+      int size = expectedInsns.size();
+      int index = size == 0 ? 0 : random.nextInt(size);
+      InsnNode insn = new InsnNode(0);
+      switch (size == 0 ? 0 : random.nextInt(6)) {
+        case 0:
+          insnList.add(insn);
+          expectedInsns.add(insn);
+          break;
+        case 1:
+          insnList.insert(expectedInsns.get(index), insn);
+          expectedInsns.add(index + 1, insn);
+          break;
+        case 2:
+          insnList.insertBefore(expectedInsns.get(index), insn);
+          expectedInsns.add(index, insn);
+          break;
+        case 3:
+          insnList.remove(expectedInsns.remove(index));
+          break;
+        case 4:
+          insnList.set(expectedInsns.get(index), insn);
+          expectedInsns.set(index, insn);
+          break;
+        default:
+          InsnList otherInsnList = new InsnList();
+          otherInsnList.add(insn);
+          insnList.insert(expectedInsns.get(index), otherInsnList);
+          expectedInsns.add(index + 1, insn);
+          break;
+      }
+      if (!expectedInsns.isEmpty()) {
+        int queryIndex = random.nextInt(expectedInsns.size());
+        assertEquals(queryIndex, insnList.indexOf(expectedInsns.get(queryIndex)));
+        assertEquals(expectedInsns.get(queryIndex), insnList.get(queryIndex));
+      }
+    }
+    assertArrayEquals(expectedInsns.toArray(), insnList.toArray());
+    for (int i = 0; i < expectedInsns.size(); ++i) {
+      assertEquals(i, insnList.indexOf(expectedInsns.get(i)));
+    }
+  }
+
   @Test
   void testAccept_cloneListVisitor() {
     InsnList insnList = newInsnList();
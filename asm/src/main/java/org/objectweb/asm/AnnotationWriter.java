@@ -319,6 +319,41 @@ final class AnnotationWriter extends AnnotationVisitor {
   // Utility methods
   // -----------------------------------------------------------------------------------------------
 
+  /**
+   * Returns whether the element values of this annotation can be copied from an 'annotation' or
+   * 'array_value' JVMS structure of the given class (assuming there is no annotation visitor
+   * between the given ClassReader and this AnnotationWriter). This method should only be called
+   * just after this AnnotationWriter has been created, and before any value is visited.
+   *
+   * @param source the source ClassReader from which the element values might be copied.
+   * @param named whether the values to copy are named or not (i.e. whether they come from an
+   *     'annotation' or from an 'array_value' structure).
+   * @return whether the element values of this annotation can be copied from 'source.b'.
+   */
+  boolean canCopyElementValues(final ClassReader source, final boolean named) {
+    return source == symbolTable.getSource()
+        && named == useNamedValues
+        && numElementValuePairsOffset != -1
+        && annotation.length == numElementValuePairsOffset + 2;
+  }
+
+  /**
+   * Copies the element values of an 'annotation' or 'array_value' JVMS structure of {@link
+   * SymbolTable#getSource} into this annotation. {@link #visitEnd} must still be called after this
+   * method.
+   *
+   * @param elementValuesOffset the offset in 'symbolTable.getSource()' of the
+   *     num_element_value_pairs (or num_values) field of the structure to copy.
+   * @param elementValuesLength the length in bytes of the structure to copy, starting at
+   *     elementValuesOffset.
+   */
+  void copyElementValues(final int elementValuesOffset, final int elementValuesLength) {
+    ClassReader source = symbolTable.getSource();
+    numElementValuePairs = source.readUnsignedShort(elementValuesOffset);
+    source.copyBytes(elementValuesOffset + 2, elementValuesLength - 2, annotation);
+    symbolTable.addCopiedBytes(elementValuesLength - 2);
+  }
+
   /**
    * Returns the size of a Runtime[In]Visible[Type]Annotations attribute containing this annotation
    * and all its <i>predecessors</i> (see {@link #previousAnnotation}. Also adds the attribute name
@@ -127,7 +127,7 @@ public class Attribute {
       final Label[] labels) {
     Attribute attribute = new Attribute(type);
     attribute.content = new byte[length];
-    System.arraycopy(classReader.classFileBuffer, offset, attribute.content, 0, length);
+    classReader.readBytes(offset, attribute.content, 0, length);
     return attribute;
   }
 
@@ -0,0 +1,213 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link TypeHierarchy} which caches the common super classes computed by another one. The cache
+ * is bounded, evicts the least recently used entries first, and is thread safe, so that an instance
+ * can be shared between many {@link ClassWriter}s used concurrently. To reduce contention, the
+ * cache is split in independently locked segments, and the (potentially slow) computations of the
+ * underlying type hierarchy are done without holding any lock.
+ *
+ * <p>The common super class of two types does not depend on their order, so a single cache entry
+ * is used for the two orders. The underlying type hierarchy is typically a {@link
+ * ClassReaderTypeHierarchy}, which caches the super class and interfaces of each class.
+ */
+public final class CachingTypeHierarchy implements TypeHierarchy {
+
+  /** The maximum number of cache segments. Must be a power of two. */
+  private static final int MAX_SEGMENT_COUNT = 16;
+
+  /** The type hierarchy used to compute the common super classes which are not in the cache. */
+  private final TypeHierarchy typeHierarchy;
+
+  /** The cache segments. The size of this array is a power of two. */
+  private final Segment[] segments;
+
+  /**
+   * Constructs a new {@link CachingTypeHierarchy}.
+   *
+   * @param typeHierarchy the type hierarchy used to compute the common super classes which are not
+   *     in the cache.
+   * @param maximumSize the approximate maximum number of cached common super classes (the exact
+   *     maximum is this value rounded up to a multiple of the number of cache segments).
+   */
+  public CachingTypeHierarchy(final TypeHierarchy typeHierarchy, final int maximumSize) {
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("Invalid maximumSize: " + maximumSize);
+    }
+    this.typeHierarchy = typeHierarchy;
+    int segmentCount = 1;
+    while (segmentCount < MAX_SEGMENT_COUNT && segmentCount * 2 <= maximumSize) {
+      segmentCount *= 2;
+    }
+    int segmentMaximumSize = (maximumSize + segmentCount - 1) / segmentCount;
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; ++i) {
+      segments[i] = new Segment(segmentMaximumSize);
+    }
+  }
+
+  @Override
+  public String getCommonSuperClass(final String type1, final String type2) {
+    Key key = type1.compareTo(type2) <= 0 ? new Key(type1, type2) : new Key(type2, type1);
+    Segment segment = segments[key.hash & (segments.length - 1)];
+    synchronized (segment) {
+      String commonSuperClass = segment.get(key);
+      if (commonSuperClass != null) {
+        segment.hitCount++;
+        return commonSuperClass;
+      }
+      segment.missCount++;
+    }
+    String commonSuperClass = typeHierarchy.getCommonSuperClass(type1, type2);
+    synchronized (segment) {
+      segment.put(key, commonSuperClass);
+    }
+    return commonSuperClass;
+  }
+
+  /**
+   * Returns the number of calls to {@link #getCommonSuperClass} which found their result in the
+   * cache.
+   *
+   * @return the number of cache hits.
+   */
+  public long getHitCount() {
+    long hitCount = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        hitCount += segment.hitCount;
+      }
+    }
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of calls to {@link #getCommonSuperClass} which did not find their result in
+   * the cache, and thus computed it with the underlying type hierarchy.
+   *
+   * @return the number of cache misses.
+   */
+  public long getMissCount() {
+    long missCount = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        missCount += segment.missCount;
+      }
+    }
+    return missCount;
+  }
+
+  /**
+   * Returns the number of cached common super classes.
+   *
+   * @return the number of cached common super classes.
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /** Removes all the cached common super classes. The hit and miss counts are not reset. */
+  public void clear() {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  /** A pair of types, used as a cache key. */
+  private static final class Key {
+
+    /** The first type, which is less than or equal to {@link #type2}. */
+    final String type1;
+
+    /** The second type. */
+    final String type2;
+
+    /** The hash code of this key. */
+    final int hash;
+
+    Key(final String type1, final String type2) {
+      this.type1 = type1;
+      this.type2 = type2;
+      int hash = type1.hashCode() * 31 + type2.hashCode();
+      // Spread the high bits to the low bits, which are used to select the cache segment.
+      this.hash = hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+      if (!(object instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) object;
+      return type1.equals(key.type1) && type2.equals(key.type2);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /** A cache segment, i.e. a bounded map in access order, with its own hit and miss counts. */
+  private static final class Segment extends LinkedHashMap<Key, String> {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The maximum number of entries of this segment. */
+    private final int maximumSize;
+
+    /** The number of cache hits in this segment. */
+    long hitCount;
+
+    /** The number of cache misses in this segment. */
+    long missCount;
+
+    Segment(final int maximumSize) {
+      super(16, 0.75f, /* accessOrder = */ true);
+      this.maximumSize = maximumSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<Key, String> eldest) {
+      return size() > maximumSize;
+    }
+  }
+}
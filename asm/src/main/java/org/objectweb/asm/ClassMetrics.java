@@ -0,0 +1,234 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * Some metrics about the work done by a {@link ClassReader} to read a class, or by a {@link
+ * ClassWriter} to write a class, reported to a {@link MetricsListener}. The counters which do not
+ * apply to the reader or to the writer are equal to 0.
+ */
+public final class ClassMetrics {
+
+  /** The internal name of the class. */
+  private final String className;
+
+  /** The size in bytes of the class file which has been read or written. */
+  int byteCount;
+
+  /** The number of entries in the constant pool of the class. */
+  int constantPoolCount;
+
+  /** The elapsed time in nanoseconds. */
+  long durationNanos;
+
+  /** The number of labels created by the reader. */
+  int labelCount;
+
+  /** The number of methods copied as is by the reader into a {@link ClassWriter}. */
+  int copiedMethodCount;
+
+  /** The number of bytes copied as is by the writer from its {@link ClassReader}. */
+  int copiedByteCount;
+
+  /** The number of stack map frames written by the writer. */
+  int stackMapFrameCount;
+
+  /** The number of basic blocks processed by the writer to compute the stack map frames. */
+  long frameBlockVisitCount;
+
+  /** The number of stack map frame merges done by the writer to compute the stack map frames. */
+  long frameMergeCount;
+
+  /** The number of passes done by the writer to compute the stack map frames. */
+  long frameIterationCount;
+
+  /** The number of {@link ClassWriter#getCommonSuperClass} calls done by the writer. */
+  int commonSuperClassCount;
+
+  /**
+   * Constructs a new {@link ClassMetrics} with all its counters equal to 0.
+   *
+   * @param className the internal name of the class (see {@link Type#getInternalName()}).
+   */
+  ClassMetrics(final String className) {
+    this.className = className;
+  }
+
+  /**
+   * Returns the internal name of the class.
+   *
+   * @return the internal name of the class (see {@link Type#getInternalName()}).
+   */
+  public String getClassName() {
+    return className;
+  }
+
+  /**
+   * Returns the size of the class file which has been read or written.
+   *
+   * @return the size in bytes of the JVMS ClassFile structure which has been read or written.
+   */
+  public int getByteCount() {
+    return byteCount;
+  }
+
+  /**
+   * Returns the number of entries in the constant pool of the class. For a writer, this includes
+   * the entries copied from its {@link ClassReader}, if any, and the unused entries removed by
+   * {@link ClassWriter#COMPACT_CONSTANT_POOL}.
+   *
+   * @return the constant_pool_count of the class which has been read, or the number of constant
+   *     pool entries added to the writer (plus one, as in constant_pool_count).
+   */
+  public int getConstantPoolCount() {
+    return constantPoolCount;
+  }
+
+  /**
+   * Returns the time taken to read or write the class. For a reader, this is the duration of the
+   * accept method, including the time spent in its visitor. For a writer, this is the time from
+   * the {@link ClassWriter#visit} call to the end of the class file serialization, including the
+   * time spent by the producer of the visit events.
+   *
+   * @return the elapsed time in nanoseconds, as measured with {@link System#nanoTime}, or -1 for a
+   *     writer whose metrics listener was set after its {@link ClassWriter#visit} method was
+   *     called.
+   */
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /**
+   * Returns the number of labels created by the reader for the bytecode offsets of the methods.
+   *
+   * @return the number of labels created by the reader, or 0 for a writer.
+   */
+  public int getLabelCount() {
+    return labelCount;
+  }
+
+  /**
+   * Returns the number of methods which have been copied as is by the reader into a {@link
+   * ClassWriter}, without visiting their content (see {@link ClassWriter#ClassWriter(ClassReader,
+   * int)}).
+   *
+   * @return the number of methods copied as is, or 0 for a writer.
+   */
+  public int getCopiedMethodCount() {
+    return copiedMethodCount;
+  }
+
+  /**
+   * Returns the number of bytes copied as is by the writer from its {@link ClassReader} (see {@link
+   * ClassWriter#getCopiedByteCount}).
+   *
+   * @return the number of bytes copied as is from the original class, or 0 for a reader.
+   */
+  public int getCopiedByteCount() {
+    return copiedByteCount;
+  }
+
+  /**
+   * Returns the number of stack map frames written by the writer, in the StackMapTable attributes
+   * of the methods which are not copied as is from its {@link ClassReader}.
+   *
+   * @return the number of stack map frames written by the writer, or 0 for a reader.
+   */
+  public int getStackMapFrameCount() {
+    return stackMapFrameCount;
+  }
+
+  /**
+   * Returns the number of basic blocks processed by the writer to compute the stack map frames
+   * (see {@link ClassWriter#getFrameBlockVisitCount}).
+   *
+   * @return the number of basic blocks processed to compute the stack map frames, or 0 for a
+   *     reader.
+   */
+  public long getFrameBlockVisitCount() {
+    return frameBlockVisitCount;
+  }
+
+  /**
+   * Returns the number of stack map frame merges done by the writer to compute the stack map frames
+   * (see {@link ClassWriter#getFrameMergeCount}).
+   *
+   * @return the number of frame merges done to compute the stack map frames, or 0 for a reader.
+   */
+  public long getFrameMergeCount() {
+    return frameMergeCount;
+  }
+
+  /**
+   * Returns the number of passes over the basic blocks done by the writer to compute the stack map
+   * frames (see {@link ClassWriter#getFrameIterationCount}).
+   *
+   * @return the number of passes done to compute the stack map frames, or 0 for a reader.
+   */
+  public long getFrameIterationCount() {
+    return frameIterationCount;
+  }
+
+  /**
+   * Returns the number of calls to {@link ClassWriter#getCommonSuperClass} done by the writer to
+   * compute the stack map frames. The results of these calls are cached, so each pair of types is
+   * counted at most once.
+   *
+   * @return the number of common super class queries, or 0 for a reader.
+   */
+  public int getCommonSuperClassCount() {
+    return commonSuperClassCount;
+  }
+
+  @Override
+  public String toString() {
+    return className
+        + " bytes="
+        + byteCount
+        + " constants="
+        + constantPoolCount
+        + " nanos="
+        + durationNanos
+        + " labels="
+        + labelCount
+        + " copiedMethods="
+        + copiedMethodCount
+        + " copiedBytes="
+        + copiedByteCount
+        + " frames="
+        + stackMapFrameCount
+        + " frameBlockVisits="
+        + frameBlockVisitCount
+        + " frameMerges="
+        + frameMergeCount
+        + " frameIterations="
+        + frameIterationCount
+        + " commonSuperClasses="
+        + commonSuperClassCount;
+  }
+}
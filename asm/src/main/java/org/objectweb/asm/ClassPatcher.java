@@ -0,0 +1,424 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import java.util.HashMap;
+
+/**
+ * A patcher for the constant pool items and the header fields of a JVMS ClassFile structure.
+ * Contrary to a {@link ClassReader} -&gt; {@link ClassWriter} round trip, a ClassPatcher does not
+ * parse nor visit the class content: it only rewrites the patched constant pool items and header
+ * fields, and copies all the other bytes as is (the attribute contents do not contain absolute
+ * offsets, and thus remain valid when the constant pool size changes). New constant pool items,
+ * if needed, are appended at the end of the constant pool.
+ *
+ * <p>Note that patching a CONSTANT_Utf8 item changes all the references to this item (e.g. a class
+ * name, a descriptor, a string constant, an attribute name, etc). Patching a CONSTANT_Class or a
+ * CONSTANT_String item instead makes it reference a new or existing CONSTANT_Utf8 item, and thus
+ * only changes the references to this CONSTANT_Class or CONSTANT_String item.
+ *
+ * @see <a href="https://docs.oracle.com/javase/specs/jvms/se9/html/jvms-4.html#jvms-4.4">JVMS
+ *     4.4</a>
+ */
+public final class ClassPatcher {
+
+  /** The ClassReader containing the ClassFile structure to be patched. */
+  private final ClassReader classReader;
+
+  /** The offset of the first byte of the ClassFile structure in {@link #classReader}. */
+  private final int classFileOffset;
+
+  /** The minor_version and major_version fields, in the format used by {@link #setVersion}. */
+  private int version;
+
+  /** The access_flags field of the ClassFile structure. */
+  private int accessFlags;
+
+  /** The this_class field of the ClassFile structure. */
+  private int thisClass;
+
+  /** The super_class field of the ClassFile structure. */
+  private int superClass;
+
+  /**
+   * The new content of the patched constant pool items of {@link #classReader}, indexed by
+   * constant pool index, including their tag. Unpatched items have a {@literal null} value. This
+   * array is {@literal null} if no item has been patched.
+   */
+  private ByteVector[] patchedItems;
+
+  /** The difference between the sizes of the patched items and the sizes of the original ones. */
+  private int patchedItemsSizeDelta;
+
+  /** The cp_info structures of the constant pool items appended at the end of the constant pool. */
+  private final ByteVector appendedItems;
+
+  /** The number of constant pool items appended at the end of the constant pool. */
+  private int appendedItemCount;
+
+  /**
+   * The constant pool indices of the appended CONSTANT_Utf8 items, indexed by their value. May be
+   * {@literal null}.
+   */
+  private HashMap<String, Integer> appendedUtf8Items;
+
+  /**
+   * The constant pool indices of the appended CONSTANT_Class items, indexed by their internal name.
+   * May be {@literal null}.
+   */
+  private HashMap<String, Integer> appendedClassItems;
+
+  /**
+   * Constructs a new {@link ClassPatcher}.
+   *
+   * @param classFile the JVMS ClassFile structure to be patched. This array is not modified.
+   */
+  public ClassPatcher(final byte[] classFile) {
+    this(new ClassReader(classFile));
+  }
+
+  /**
+   * Constructs a new {@link ClassPatcher}.
+   *
+   * @param classReader the ClassReader containing the JVMS ClassFile structure to be patched. This
+   *     ClassReader must not be passed as a previous reader to a new ClassReader while this
+   *     ClassPatcher is used.
+   */
+  public ClassPatcher(final ClassReader classReader) {
+    this.classReader = classReader;
+    // The first constant pool entry is after the magic, minor_version, major_version and
+    // constant_pool_count fields, which use 4, 2, 2 and 2 bytes respectively.
+    this.classFileOffset = classReader.getItem(1) - 1 - 10;
+    this.version =
+        classReader.readUnsignedShort(classFileOffset + 4) << 16
+            | classReader.readUnsignedShort(classFileOffset + 6);
+    this.accessFlags = classReader.readUnsignedShort(classReader.header);
+    this.thisClass = classReader.readUnsignedShort(classReader.header + 2);
+    this.superClass = classReader.readUnsignedShort(classReader.header + 4);
+    this.appendedItems = new ByteVector();
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Header fields
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Sets the class version.
+   *
+   * @param version the class version. The minor version is stored in the 16 most significant bits,
+   *     and the major version in the 16 least significant bits (see {@link ClassVisitor#visit}).
+   */
+  public void setVersion(final int version) {
+    this.version = version;
+  }
+
+  /**
+   * Sets the access_flags field of the class.
+   *
+   * @param access the class's access flags (see {@link Opcodes}). Only the flags which can be
+   *     stored in the access_flags field of the ClassFile structure are kept.
+   */
+  public void setAccess(final int access) {
+    this.accessFlags = access & 0xFFFF;
+  }
+
+  /**
+   * Renames the class. This patches the CONSTANT_Class item referenced by the this_class field, so
+   * that all the references to this item (e.g. in the field and method references to the members
+   * of this class) use the new name. The descriptors and signatures which contain the old name are
+   * <i>not</i> changed.
+   *
+   * @param internalName the new internal name of the class (see {@link Type#getInternalName()}).
+   */
+  public void setName(final String internalName) {
+    setClass(thisClass, internalName);
+  }
+
+  /**
+   * Changes the super class. This patches the CONSTANT_Class item referenced by the super_class
+   * field, so that all the references to this item (e.g. in the super constructor calls) use the
+   * new name.
+   *
+   * @param internalName the internal name of the new super class (see {@link
+   *     Type#getInternalName()}).
+   * @throws IllegalArgumentException if the class has no super class (i.e. if it is
+   *     java/lang/Object or a module-info class).
+   */
+  public void setSuperName(final String internalName) {
+    if (superClass == 0) {
+      throw new IllegalArgumentException("The class has no super class");
+    }
+    setClass(superClass, internalName);
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Constant pool items
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the number of entries in the patched constant pool table, including the appended ones.
+   *
+   * @return the number of entries in the patched constant pool table, plus one.
+   */
+  public int getItemCount() {
+    return classReader.getItemCount() + appendedItemCount;
+  }
+
+  /**
+   * Sets the value of a CONSTANT_Utf8 item of the original constant pool.
+   *
+   * @param constantPoolEntryIndex the index of a CONSTANT_Utf8 item in the original constant pool.
+   * @param value the new value of this item.
+   * @throws IllegalArgumentException if the given item is not a CONSTANT_Utf8 item of the original
+   *     constant pool, or if the given value is too long.
+   */
+  public void setUtf8(final int constantPoolEntryIndex, final String value) {
+    int itemOffset = getItemOffset(constantPoolEntryIndex, Symbol.CONSTANT_UTF8_TAG);
+    ByteVector item = new ByteVector(3 + value.length());
+    item.putByte(Symbol.CONSTANT_UTF8_TAG).putUTF8(value);
+    setPatchedItem(constantPoolEntryIndex, item, 3 + classReader.readUnsignedShort(itemOffset));
+  }
+
+  /**
+   * Sets the internal name of a CONSTANT_Class item of the original constant pool.
+   *
+   * @param constantPoolEntryIndex the index of a CONSTANT_Class item in the original constant pool.
+   * @param internalName the new internal name of this item (see {@link Type#getInternalName()}).
+   * @throws IllegalArgumentException if the given item is not a CONSTANT_Class item of the original
+   *     constant pool.
+   */
+  public void setClass(final int constantPoolEntryIndex, final String internalName) {
+    getItemOffset(constantPoolEntryIndex, Symbol.CONSTANT_CLASS_TAG);
+    setReferenceItem(constantPoolEntryIndex, Symbol.CONSTANT_CLASS_TAG, newUtf8(internalName));
+  }
+
+  /**
+   * Sets the value of a CONSTANT_String item of the original constant pool.
+   *
+   * @param constantPoolEntryIndex the index of a CONSTANT_String item in the original constant
+   *     pool.
+   * @param value the new value of this item.
+   * @throws IllegalArgumentException if the given item is not a CONSTANT_String item of the
+   *     original constant pool.
+   */
+  public void setString(final int constantPoolEntryIndex, final String value) {
+    getItemOffset(constantPoolEntryIndex, Symbol.CONSTANT_STRING_TAG);
+    setReferenceItem(constantPoolEntryIndex, Symbol.CONSTANT_STRING_TAG, newUtf8(value));
+  }
+
+  /**
+   * Appends a CONSTANT_Utf8 item to the constant pool, unless an item with the same value has
+   * already been appended. <i>The original constant pool items are not searched.</i>
+   *
+   * @param value the value of the item.
+   * @return the index of the new (or already appended) CONSTANT_Utf8 item.
+   */
+  public int newUtf8(final String value) {
+    if (appendedUtf8Items == null) {
+      appendedUtf8Items = new HashMap<String, Integer>();
+    }
+    Integer index = appendedUtf8Items.get(value);
+    if (index != null) {
+      return index.intValue();
+    }
+    appendedItems.putByte(Symbol.CONSTANT_UTF8_TAG).putUTF8(value);
+    int newIndex = appendItem();
+    appendedUtf8Items.put(value, Integer.valueOf(newIndex));
+    return newIndex;
+  }
+
+  /**
+   * Appends a CONSTANT_Class item to the constant pool, unless an item with the same value has
+   * already been appended. <i>The original constant pool items are not searched.</i>
+   *
+   * @param internalName the internal name of a class (see {@link Type#getInternalName()}).
+   * @return the index of the new (or already appended) CONSTANT_Class item.
+   */
+  public int newClass(final String internalName) {
+    if (appendedClassItems == null) {
+      appendedClassItems = new HashMap<String, Integer>();
+    }
+    Integer index = appendedClassItems.get(internalName);
+    if (index != null) {
+      return index.intValue();
+    }
+    int nameIndex = newUtf8(internalName);
+    appendedItems.put12(Symbol.CONSTANT_CLASS_TAG, nameIndex);
+    int newIndex = appendItem();
+    appendedClassItems.put(internalName, Integer.valueOf(newIndex));
+    return newIndex;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Result
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the patched JVMS ClassFile structure.
+   *
+   * @return the patched JVMS ClassFile structure.
+   * @throws ClassTooLargeException if the patched constant pool has too many items.
+   */
+  public byte[] toByteArray() {
+    int constantPoolCount = getItemCount();
+    if (constantPoolCount > 0xFFFF) {
+      throw new ClassTooLargeException(
+          classReader.readClass(classReader.header + 2, new char[classReader.getMaxStringLength()]),
+          constantPoolCount);
+    }
+    ClassReader source = classReader;
+    int header = source.header;
+    int classFileEnd = getClassFileEnd();
+    ByteVector result =
+        new ByteVector(
+            classFileEnd - classFileOffset + patchedItemsSizeDelta + appendedItems.length);
+    // Copy the magic field, and put the minor_version, major_version and constant_pool_count
+    // fields.
+    source.copyBytes(classFileOffset, 4, result);
+    result.putShort(version >>> 16).putShort(version & 0xFFFF).putShort(constantPoolCount);
+    // Copy the original constant pool items, replacing the patched ones with their new content.
+    int currentOffset = classFileOffset + 10;
+    if (patchedItems != null) {
+      int itemCount = source.getItemCount();
+      for (int i = 1; i < itemCount; ++i) {
+        ByteVector patchedItem = patchedItems[i];
+        if (patchedItem != null) {
+          int itemStartOffset = source.getItem(i) - 1;
+          source.copyBytes(currentOffset, itemStartOffset - currentOffset, result);
+          result.putByteArray(patchedItem.data, 0, patchedItem.length);
+          currentOffset = getItemEndOffset(i);
+        }
+      }
+    }
+    source.copyBytes(currentOffset, header - currentOffset, result);
+    // Put the appended constant pool items, and the access_flags, this_class and super_class
+    // fields.
+    result.putByteArray(appendedItems.data, 0, appendedItems.length);
+    result.putShort(accessFlags).putShort(thisClass).putShort(superClass);
+    // Copy the rest of the ClassFile structure as is.
+    source.copyBytes(header + 6, classFileEnd - header - 6, result);
+    return result.data;
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Utility methods
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the offset of the content of a constant pool item of the original class, after
+   * checking its tag.
+   *
+   * @param constantPoolEntryIndex the index of a constant pool item in the original class.
+   * @param tag the expected tag of this item.
+   * @return the offset of the content of this item (excluding its tag) in {@link #classReader}.
+   * @throws IllegalArgumentException if the given item does not exist in the original class or
+   *     does not have the expected tag.
+   */
+  private int getItemOffset(final int constantPoolEntryIndex, final int tag) {
+    if (constantPoolEntryIndex < 1 || constantPoolEntryIndex >= classReader.getItemCount()) {
+      throw new IllegalArgumentException("Invalid constant pool index: " + constantPoolEntryIndex);
+    }
+    int itemOffset = classReader.getItem(constantPoolEntryIndex);
+    if (itemOffset == 0 || classReader.readByte(itemOffset - 1) != tag) {
+      throw new IllegalArgumentException(
+          "Invalid constant pool item tag at index " + constantPoolEntryIndex);
+    }
+    return itemOffset;
+  }
+
+  /**
+   * Returns the end offset of a constant pool item of the original class which can be patched.
+   *
+   * @param constantPoolEntryIndex the index of a CONSTANT_Utf8, CONSTANT_Class or CONSTANT_String
+   *     item in the original class.
+   * @return the offset of the first byte following this item in {@link #classReader}.
+   */
+  private int getItemEndOffset(final int constantPoolEntryIndex) {
+    int itemOffset = classReader.getItem(constantPoolEntryIndex);
+    if (classReader.readByte(itemOffset - 1) == Symbol.CONSTANT_UTF8_TAG) {
+      return itemOffset + 2 + classReader.readUnsignedShort(itemOffset);
+    }
+    return itemOffset + 2;
+  }
+
+  /**
+   * Sets the content of a CONSTANT_Class or CONSTANT_String item of the original class.
+   *
+   * @param constantPoolEntryIndex the index of a CONSTANT_Class or CONSTANT_String item in the
+   *     original class.
+   * @param tag the tag of this item.
+   * @param utf8Index the index of the CONSTANT_Utf8 item that this item must reference.
+   */
+  private void setReferenceItem(
+      final int constantPoolEntryIndex, final int tag, final int utf8Index) {
+    ByteVector item = new ByteVector(3);
+    item.put12(tag, utf8Index);
+    setPatchedItem(constantPoolEntryIndex, item, 3);
+  }
+
+  /**
+   * Sets the new content of a constant pool item of the original class.
+   *
+   * @param constantPoolEntryIndex the index of a constant pool item in the original class.
+   * @param item the new cp_info structure of this item.
+   * @param originalItemSize the size in bytes of the original cp_info structure of this item.
+   */
+  private void setPatchedItem(
+      final int constantPoolEntryIndex, final ByteVector item, final int originalItemSize) {
+    if (patchedItems == null) {
+      patchedItems = new ByteVector[classReader.getItemCount()];
+    }
+    ByteVector previousItem = patchedItems[constantPoolEntryIndex];
+    patchedItemsSizeDelta -= previousItem == null ? originalItemSize : previousItem.length;
+    patchedItemsSizeDelta += item.length;
+    patchedItems[constantPoolEntryIndex] = item;
+  }
+
+  /**
+   * Records that a new constant pool item has been put in {@link #appendedItems}.
+   *
+   * @return the constant pool index of this item.
+   */
+  private int appendItem() {
+    return classReader.getItemCount() + appendedItemCount++;
+  }
+
+  /**
+   * Returns the end offset of the ClassFile structure in {@link #classReader}.
+   *
+   * @return the offset of the first byte following the ClassFile structure in {@link
+   *     #classReader}.
+   */
+  private int getClassFileEnd() {
+    int currentAttributeOffset = classReader.getFirstAttributeOffset();
+    for (int i = classReader.readUnsignedShort(currentAttributeOffset - 2); i > 0; --i) {
+      currentAttributeOffset += 6 + classReader.readInt(currentAttributeOffset + 2);
+    }
+    return currentAttributeOffset;
+  }
+}
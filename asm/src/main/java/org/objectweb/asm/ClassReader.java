@@ -30,7 +30,11 @@ package org.objectweb.asm;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * A parser to make a {@link ClassVisitor} visit a ClassFile structure, as defined in the Java
@@ -102,8 +106,34 @@ public class ClassReader {
   /** The size of the temporary byte array used to read class input streams chunk by chunk. */
   private static final int INPUT_STREAM_DATA_CHUNK_SIZE = 4096;
 
+  /** An empty array of strings, shared by all the empty results of {@link #readSummary}. */
+  private static final String[] EMPTY_STRINGS = new String[0];
+
+  /**
+   * The minimum code length of the methods whose labels are stored in a {@link SparseLabelTable},
+   * instead of a {@code Label[codeLength + 1]} array, when possible (see {@link
+   * #initializeLabels}).
+   */
+  private static final int SPARSE_LABEL_TABLE_MIN_CODE_LENGTH = 4096;
+
+  /**
+   * The minimum average number of bytecode bytes per label of the methods whose labels are stored
+   * in a {@link SparseLabelTable} (see {@link #initializeLabels}). An entry of this table takes
+   * about 4 times the memory of an element of a {@code Label[codeLength + 1]} array (an int offset
+   * and a reference, in a table at most half full), and is slower to access.
+   */
+  private static final int SPARSE_LABEL_TABLE_MIN_BYTES_PER_LABEL = 16;
+
+  /** The index of the field_info offsets in {@link #memberInfoOffsets}. */
+  private static final int FIELD_INFO_OFFSETS = 0;
+
+  /** The index of the method_info offsets in {@link #memberInfoOffsets}. */
+  private static final int METHOD_INFO_OFFSETS = 1;
+
   /**
-   * A byte array containing the JVMS ClassFile structure to be parsed.
+   * A byte array containing the JVMS ClassFile structure to be parsed. This field is {@literal
+   * null} if this reader was constructed from a {@link ByteBuffer} which is not read through its
+   * backing array (see {@link #ClassReader(ByteBuffer)}).
    *
    * @deprecated Use {@link #readByte(int)} and the other read methods instead. This field will
    *     eventually be deleted.
@@ -123,28 +153,47 @@ public class ClassReader {
    * <p>NOTE: the ClassFile structure can start at any offset within this array, i.e. it does not
    * necessarily start at offset 0. Use {@link #getItem} and {@link #header} to get correct
    * ClassFile element offsets within this byte array.
+   *
+   * <p>This field is {@literal null} if this reader was constructed from a {@link ByteBuffer} which
+   * is not read through its backing array. In this case the ClassFile structure is read from {@link
+   * #classFileByteBuffer} instead.
    */
   final byte[] classFileBuffer;
 
+  /**
+   * A buffer containing the JVMS ClassFile structure to be parsed, used instead of {@link
+   * #classFileBuffer} when the ClassFile structure is not backed by an accessible byte array (e.g.
+   * for direct or memory-mapped buffers), or {@literal null}. This buffer is read with absolute
+   * indices, in big-endian order, and is never modified.
+   */
+  private final ByteBuffer classFileByteBuffer;
+
   /**
    * The offset in bytes, in {@link #classFileBuffer}, of each cp_info entry of the ClassFile's
    * constant_pool array, <i>plus one</i>. In other words, the offset of constant pool entry i is
    * given by cpInfoOffsets[i] - 1, i.e. its cp_info's tag field is given by b[cpInfoOffsets[i] -
-   * 1].
+   * 1]. The length of this array can be larger than {@link #constantPoolCount} if it has been
+   * reused from a previous reader (see {@link #ClassReader(byte[], ClassReader)}).
    */
-  private final int[] cpInfoOffsets;
+  private int[] cpInfoOffsets;
+
+  /** The offset of the first byte of the ClassFile structure, in {@link #classFileBuffer}. */
+  private final int classFileOffset;
+
+  /** The ClassFile's constant_pool_count field. */
+  private int constantPoolCount;
 
   /**
    * The String objects corresponding to the CONSTANT_Utf8 constant pool items. This cache avoids
    * multiple parsing of a given CONSTANT_Utf8 constant pool item.
    */
-  private final String[] constantUtf8Values;
+  private String[] constantUtf8Values;
 
   /**
    * The ConstantDynamic objects corresponding to the CONSTANT_Dynamic constant pool items. This
    * cache avoids multiple parsing of a given CONSTANT_Dynamic constant pool item.
    */
-  private final ConstantDynamic[] constantDynamicValues;
+  private ConstantDynamic[] constantDynamicValues;
 
   /**
    * The start offsets in {@link #classFileBuffer} of each element of the bootstrap_methods array
@@ -153,13 +202,52 @@ public class ClassReader {
    * @see <a href="https://docs.oracle.com/javase/specs/jvms/se9/html/jvms-4.html#jvms-4.7.23">JVMS
    *     4.7.23</a>
    */
-  private final int[] bootstrapMethodOffsets;
+  private int[] bootstrapMethodOffsets;
 
   /**
    * A conservative estimate of the maximum length of the strings contained in the constant pool of
    * the class.
    */
-  private final int maxStringLength;
+  private int maxStringLength;
+
+  /**
+   * The start offsets in {@link #classFileBuffer} of each field_info structure of the ClassFile's
+   * 'fields' array (at index {@link #FIELD_INFO_OFFSETS}), and of each method_info structure of its
+   * 'methods' array (at index {@link #METHOD_INFO_OFFSETS}), or {@literal null} if they have not
+   * been computed yet. This index is built lazily by {@link #getMemberInfoOffsets}. It is volatile
+   * so that its arrays are safely published to the other threads using this reader.
+   */
+  private volatile int[][] memberInfoOffsets;
+
+  /**
+   * The pool used to share the String objects corresponding to the CONSTANT_Utf8 constant pool
+   * items with other ClassReader instances, or {@literal null}.
+   */
+  private StringPool stringPool;
+
+  /**
+   * Whether this reader has been constructed with {@link #ClassReader(byte[], ClassReader)} or
+   * {@link #ClassReader(ByteBuffer, ClassReader)}, and thus reuses its {@link #reusableContext}
+   * between accept calls, and passes its arrays and context to the next reader.
+   */
+  private boolean reusable;
+
+  /**
+   * Whether a {@link ClassWriter} has been constructed from this reader (see {@link
+   * ClassWriter#ClassWriter(ClassReader, int)}). Its {@link SymbolTable} reads the constant pool of
+   * this reader lazily, possibly after this reader is no longer used, so the constant pool arrays
+   * of this reader must not be reused by another reader.
+   */
+  boolean hasClassWriter;
+
+  /**
+   * The {@link Context} to be reused by the next accept method call, or {@literal null}. This is
+   * only used for {@link #reusable} readers, which are confined to a single thread.
+   */
+  private Context reusableContext;
+
+  /** The listener notified at the end of each accept call, or {@literal null}. */
+  private MetricsListener metricsListener;
 
   // -----------------------------------------------------------------------------------------------
   // Constructors
@@ -196,11 +284,131 @@ public class ClassReader {
    * @param classFileOffset the offset in byteBuffer of the first byte of the ClassFile to be read.
    * @param checkClassVersion whether to check the class version or not.
    */
-  @SuppressWarnings("PMD.ConstructorCallsOverridableMethod")
   ClassReader(
       final byte[] classFileBuffer, final int classFileOffset, final boolean checkClassVersion) {
+    this(classFileBuffer, null, classFileOffset, checkClassVersion, /* previousReader = */ null);
+  }
+
+  /**
+   * Constructs a new {@link ClassReader} object reading the ClassFile structure directly from the
+   * given buffer, without copying it. The ClassFile structure must start at the buffer's current
+   * position and end before its limit. Heap buffers whose limit is the end of their backing array
+   * are read through this array, while the other buffers (direct and memory-mapped buffers, or
+   * slices of a larger array) are read in place, so that reading past the limit of a malformed
+   * class always throws an IndexOutOfBoundsException. The position, limit and byte order of the
+   * given buffer are not modified, but its content must not be modified while this reader is used.
+   *
+   * @param classFileBuffer a buffer containing the JVMS ClassFile structure to be read.
+   */
+  public ClassReader(final ByteBuffer classFileBuffer) {
+    this(
+        isReadableThroughArray(classFileBuffer) ? classFileBuffer.array() : null,
+        isReadableThroughArray(classFileBuffer)
+            ? null
+            : classFileBuffer.duplicate().order(ByteOrder.BIG_ENDIAN),
+        isReadableThroughArray(classFileBuffer)
+            ? classFileBuffer.arrayOffset() + classFileBuffer.position()
+            : classFileBuffer.position(),
+        /* checkClassVersion = */ true,
+        /* previousReader = */ null);
+  }
+
+  /**
+   * Constructs a new {@link ClassReader} object which reuses the constant pool arrays of a previous
+   * reader, when they are large enough, and its parsing context (including the temporary char
+   * buffer). The {@link StringPool} of the previous reader, if any, is used by the new reader too.
+   * This avoids most of the per-class allocations of a new reader, when many classes are read one
+   * after the other. <i>The previous reader must not be used after this call, and the new reader
+   * must not be used concurrently by several threads</i>. The previous reader can still be used
+   * indirectly by a {@link ClassWriter} constructed from it (see {@link
+   * ClassWriter#ClassWriter(ClassReader, int)}), whose constant pool arrays are then not reused.
+   * But it must not be used by a node read lazily from it (see {@code
+   * org.objectweb.asm.tree.ClassNode#readLazily}), nor by a {@link ClassPatcher}.
+   *
+   * @param classFile the JVMS ClassFile structure to be read.
+   * @param previousReader a reader which is no longer used, or {@literal null}.
+   * @see ClassReaderPool
+   */
+  public ClassReader(final byte[] classFile, final ClassReader previousReader) {
+    this(classFile, null, 0, /* checkClassVersion = */ true, previousReader);
+    reusable = true;
+  }
+
+  /**
+   * Constructs a new {@link ClassReader} object reading the ClassFile structure directly from the
+   * given buffer (see {@link #ClassReader(ByteBuffer)}), and reusing the arrays and the parsing
+   * context of a previous reader (see {@link #ClassReader(byte[], ClassReader)}). <i>The previous
+   * reader must not be used after this call, and the new reader must not be used concurrently by
+   * several threads</i>. The previous reader can still be used indirectly by a {@link ClassWriter}
+   * constructed from it, but not by a node read lazily from it, nor by a {@link ClassPatcher} (see
+   * {@link #ClassReader(byte[], ClassReader)}).
+   *
+   * @param classFileBuffer a buffer containing the JVMS ClassFile structure to be read.
+   * @param previousReader a reader which is no longer used, or {@literal null}.
+   */
+  public ClassReader(final ByteBuffer classFileBuffer, final ClassReader previousReader) {
+    this(
+        isReadableThroughArray(classFileBuffer) ? classFileBuffer.array() : null,
+        isReadableThroughArray(classFileBuffer)
+            ? null
+            : classFileBuffer.duplicate().order(ByteOrder.BIG_ENDIAN),
+        isReadableThroughArray(classFileBuffer)
+            ? classFileBuffer.arrayOffset() + classFileBuffer.position()
+            : classFileBuffer.position(),
+        /* checkClassVersion = */ true,
+        previousReader);
+    reusable = true;
+  }
+
+  /**
+   * Returns whether the given buffer can be read through its backing array, i.e. whether it has an
+   * accessible backing array which ends at the buffer's limit. Otherwise, reading this array could
+   * read bytes past the limit instead of throwing an exception.
+   *
+   * @param byteBuffer a buffer.
+   * @return whether the given buffer can be read through its backing array.
+   */
+  private static boolean isReadableThroughArray(final ByteBuffer byteBuffer) {
+    return byteBuffer.hasArray()
+        && byteBuffer.arrayOffset() + byteBuffer.limit() == byteBuffer.array().length;
+  }
+
+  /**
+   * Constructs a new {@link ClassReader} object. <i>This internal constructor must not be exposed
+   * as a public API</i>.
+   *
+   * @param classFileBuffer a byte array containing the JVMS ClassFile structure to be read, or
+   *     {@literal null} if classFileByteBuffer is used instead.
+   * @param classFileByteBuffer a big-endian buffer containing the JVMS ClassFile structure to be
+   *     read, or {@literal null} if classFileBuffer is used instead.
+   * @param classFileOffset the offset in classFileBuffer or classFileByteBuffer of the first byte
+   *     of the ClassFile to be read.
+   * @param checkClassVersion whether to check the class version or not.
+   * @param previousReader a reader whose arrays and parsing context can be reused, or {@literal
+   *     null}.
+   */
+  @SuppressWarnings("PMD.ConstructorCallsOverridableMethod")
+  private ClassReader(
+      final byte[] classFileBuffer,
+      final ByteBuffer classFileByteBuffer,
+      final int classFileOffset,
+      final boolean checkClassVersion,
+      final ClassReader previousReader) {
     this.classFileBuffer = classFileBuffer;
+    this.classFileByteBuffer = classFileByteBuffer;
     this.b = classFileBuffer;
+    this.classFileOffset = classFileOffset;
+    if (previousReader != null) {
+      if (!previousReader.hasClassWriter) {
+        cpInfoOffsets = previousReader.cpInfoOffsets;
+        constantUtf8Values = previousReader.constantUtf8Values;
+        constantDynamicValues = previousReader.constantDynamicValues;
+        bootstrapMethodOffsets = previousReader.bootstrapMethodOffsets;
+      }
+      stringPool = previousReader.stringPool;
+      reusableContext = previousReader.reusableContext;
+      previousReader.reusableContext = null;
+    }
     // Check the class' major_version. This field is after the magic and minor_version fields, which
     // use 4 and 2 bytes respectively.
     if (checkClassVersion && readShort(classFileOffset + 6) > Opcodes.V22) {
@@ -211,8 +419,13 @@ public class ClassReader {
     // Create the constant pool arrays. The constant_pool_count field is after the magic,
     // minor_version and major_version fields, which use 4, 2 and 2 bytes respectively.
     int constantPoolCount = readUnsignedShort(classFileOffset + 8);
-    cpInfoOffsets = new int[constantPoolCount];
-    constantUtf8Values = new String[constantPoolCount];
+    this.constantPoolCount = constantPoolCount;
+    if (cpInfoOffsets == null || cpInfoOffsets.length < constantPoolCount) {
+      cpInfoOffsets = new int[constantPoolCount];
+      constantUtf8Values = new String[constantPoolCount];
+    } else {
+      Arrays.fill(constantUtf8Values, 0, constantPoolCount, null);
+    }
     // Compute the offset of each constant pool entry, as well as a conservative estimate of the
     // maximum length of the constant pool strings. The first constant pool entry is after the
     // magic, minor_version, major_version and constant_pool_count fields, which use 4, 2, 2 and 2
@@ -226,7 +439,7 @@ public class ClassReader {
     while (currentCpInfoIndex < constantPoolCount) {
       cpInfoOffsets[currentCpInfoIndex++] = currentCpInfoOffset + 1;
       int cpInfoSize;
-      switch (classFileBuffer[currentCpInfoOffset]) {
+      switch (readByte(currentCpInfoOffset)) {
         case Symbol.CONSTANT_FIELDREF_TAG:
         case Symbol.CONSTANT_METHODREF_TAG:
         case Symbol.CONSTANT_INTERFACE_METHODREF_TAG:
@@ -278,7 +491,13 @@ public class ClassReader {
     header = currentCpInfoOffset;
 
     // Allocate the cache of ConstantDynamic values, if there is at least one.
-    constantDynamicValues = hasConstantDynamic ? new ConstantDynamic[constantPoolCount] : null;
+    if (!hasConstantDynamic) {
+      constantDynamicValues = null;
+    } else if (constantDynamicValues == null || constantDynamicValues.length < constantPoolCount) {
+      constantDynamicValues = new ConstantDynamic[constantPoolCount];
+    } else {
+      Arrays.fill(constantDynamicValues, 0, constantPoolCount, null);
+    }
 
     // Read the BootstrapMethods attribute, if any (only get the offset of each method).
     bootstrapMethodOffsets =
@@ -418,6 +637,225 @@ public class ClassReader {
     return interfaces;
   }
 
+  /**
+   * Sets the pool used to share the strings of the constant pool of this class with other {@link
+   * ClassReader} instances. If a pool is set, the CONSTANT_Utf8 entries of this class which are
+   * already in the pool are not decoded, and the same String instances are returned for all the
+   * readers sharing the pool. This method should be called before any other method of this reader.
+   *
+   * @param stringPool a pool of constant pool strings, or {@literal null} to decode the constant
+   *     pool strings of this class independently of other classes.
+   */
+  public void setStringPool(final StringPool stringPool) {
+    this.stringPool = stringPool;
+  }
+
+  /**
+   * Sets the listener notified at the end of each {@link #accept(ClassVisitor, Attribute[], int)}
+   * call, with some metrics about the class which has been read. By default, there is no listener,
+   * and no metrics are collected.
+   *
+   * @param metricsListener the listener to notify, or {@literal null} to collect no metrics.
+   */
+  public void setMetricsListener(final MetricsListener metricsListener) {
+    this.metricsListener = metricsListener;
+  }
+
+  /**
+   * Returns the listener notified at the end of each {@link #accept(ClassVisitor, Attribute[],
+   * int)} call.
+   *
+   * @return the listener notified at the end of each accept call, or {@literal null}.
+   */
+  public MetricsListener getMetricsListener() {
+    return metricsListener;
+  }
+
+  /**
+   * Returns whether this reader has been constructed with {@link #ClassReader(byte[], ClassReader)}
+   * or {@link #ClassReader(ByteBuffer, ClassReader)}, for instance by a {@link ClassReaderPool}.
+   * The arrays of such a reader are passed to the next reader once it is released, so it must not
+   * be kept by objects which can outlive this release.
+   *
+   * @return whether this reader recycles its resources.
+   */
+  public boolean isReusable() {
+    return reusable;
+  }
+
+  /**
+   * Returns a summary of the class, containing its header, its class level annotation types, its
+   * NestHost, NestMembers, PermittedSubclasses and Module attributes, and the names and descriptors
+   * of its fields and methods. This method does not use any visitor, and only decodes the constant
+   * pool strings which are part of the summary: the member attributes are skipped without being
+   * parsed, and annotation values are skipped without being decoded.
+   *
+   * @return a summary of the class.
+   */
+  public ClassSummary readSummary() {
+    char[] charBuffer = new char[maxStringLength];
+    // Read the access_flags, this_class, super_class, interface_count and interfaces fields.
+    int currentOffset = header;
+    int accessFlags = readUnsignedShort(currentOffset);
+    String thisClass = readClass(currentOffset + 2, charBuffer);
+    String superClass = readClass(currentOffset + 4, charBuffer);
+    String[] interfaces = readClasses(currentOffset + 6, charBuffer);
+    currentOffset += 8 + 2 * interfaces.length;
+
+    // Read the names and descriptors of the fields and methods.
+    int fieldsCount = readUnsignedShort(currentOffset);
+    int[] fieldAccesses = new int[fieldsCount];
+    String[] fieldNames = fieldsCount == 0 ? EMPTY_STRINGS : new String[fieldsCount];
+    String[] fieldDescriptors = fieldsCount == 0 ? EMPTY_STRINGS : new String[fieldsCount];
+    currentOffset =
+        readMemberSummaries(
+            currentOffset + 2, fieldAccesses, fieldNames, fieldDescriptors, charBuffer);
+    int methodsCount = readUnsignedShort(currentOffset);
+    int[] methodAccesses = new int[methodsCount];
+    String[] methodNames = methodsCount == 0 ? EMPTY_STRINGS : new String[methodsCount];
+    String[] methodDescriptors = methodsCount == 0 ? EMPTY_STRINGS : new String[methodsCount];
+    currentOffset =
+        readMemberSummaries(
+            currentOffset + 2, methodAccesses, methodNames, methodDescriptors, charBuffer);
+
+    // Read the class attributes which are part of the summary, and skip the others.
+    String signature = null;
+    String[] visibleAnnotations = EMPTY_STRINGS;
+    String[] invisibleAnnotations = EMPTY_STRINGS;
+    String nestHostClass = null;
+    String[] nestMembers = EMPTY_STRINGS;
+    String[] permittedSubclasses = EMPTY_STRINGS;
+    String moduleName = null;
+    int moduleFlags = 0;
+    String moduleVersion = null;
+    int attributesCount = readUnsignedShort(currentOffset);
+    currentOffset += 2;
+    while (attributesCount-- > 0) {
+      // Read the attribute_info's attribute_name and attribute_length fields.
+      String attributeName = readUTF8(currentOffset, charBuffer);
+      int attributeLength = readInt(currentOffset + 2);
+      currentOffset += 6;
+      if (Constants.SIGNATURE.equals(attributeName)) {
+        signature = readUTF8(currentOffset, charBuffer);
+      } else if (Constants.RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)) {
+        visibleAnnotations = readAnnotationDescriptors(currentOffset, charBuffer);
+      } else if (Constants.RUNTIME_INVISIBLE_ANNOTATIONS.equals(attributeName)) {
+        invisibleAnnotations = readAnnotationDescriptors(currentOffset, charBuffer);
+      } else if (Constants.NEST_HOST.equals(attributeName)) {
+        nestHostClass = readClass(currentOffset, charBuffer);
+      } else if (Constants.NEST_MEMBERS.equals(attributeName)) {
+        nestMembers = readClasses(currentOffset, charBuffer);
+      } else if (Constants.PERMITTED_SUBCLASSES.equals(attributeName)) {
+        permittedSubclasses = readClasses(currentOffset, charBuffer);
+      } else if (Constants.MODULE.equals(attributeName)) {
+        moduleName = readModule(currentOffset, charBuffer);
+        moduleFlags = readUnsignedShort(currentOffset + 2);
+        moduleVersion = readUTF8(currentOffset + 4, charBuffer);
+      }
+      currentOffset += attributeLength;
+    }
+
+    // The minor_version and major_version fields start 6 bytes before the first constant pool
+    // entry, which itself starts at cpInfoOffsets[1] - 1 (by definition).
+    return new ClassSummary(
+        readInt(cpInfoOffsets[1] - 7),
+        accessFlags,
+        thisClass,
+        signature,
+        superClass,
+        interfaces,
+        visibleAnnotations,
+        invisibleAnnotations,
+        nestHostClass,
+        nestMembers,
+        permittedSubclasses,
+        moduleName,
+        moduleFlags,
+        moduleVersion,
+        fieldAccesses,
+        fieldNames,
+        fieldDescriptors,
+        methodAccesses,
+        methodNames,
+        methodDescriptors);
+  }
+
+  /**
+   * Reads an array of CONSTANT_Class constant pool entries, preceded by its length on two bytes.
+   *
+   * @param offset the start offset of the array length.
+   * @param charBuffer the buffer to be used to read strings in the constant pool.
+   * @return the Strings corresponding to the CONSTANT_Class entries.
+   */
+  private String[] readClasses(final int offset, final char[] charBuffer) {
+    int classesCount = readUnsignedShort(offset);
+    if (classesCount == 0) {
+      return EMPTY_STRINGS;
+    }
+    String[] classes = new String[classesCount];
+    for (int i = 0; i < classesCount; ++i) {
+      classes[i] = readClass(offset + 2 + 2 * i, charBuffer);
+    }
+    return classes;
+  }
+
+  /**
+   * Reads the access_flags, name_index and descriptor_index fields of some field_info or
+   * method_info structures, and skips their attributes.
+   *
+   * @param memberInfoOffset the start offset of the first field_info or method_info structure.
+   * @param accesses where the access flags of the structures must be stored. The length of this
+   *     array must be the number of structures to read.
+   * @param names where the names of the structures must be stored.
+   * @param descriptors where the descriptors of the structures must be stored.
+   * @param charBuffer the buffer to be used to read strings in the constant pool.
+   * @return the offset of the first byte following the last structure.
+   */
+  private int readMemberSummaries(
+      final int memberInfoOffset,
+      final int[] accesses,
+      final String[] names,
+      final String[] descriptors,
+      final char[] charBuffer) {
+    int currentOffset = memberInfoOffset;
+    for (int i = 0; i < accesses.length; ++i) {
+      accesses[i] = readUnsignedShort(currentOffset);
+      names[i] = readUTF8(currentOffset + 2, charBuffer);
+      descriptors[i] = readUTF8(currentOffset + 4, charBuffer);
+      int attributesCount = readUnsignedShort(currentOffset + 6);
+      currentOffset += 8;
+      while (attributesCount-- > 0) {
+        currentOffset += 6 + readInt(currentOffset + 2);
+      }
+    }
+    return currentOffset;
+  }
+
+  /**
+   * Reads the type_index fields of a RuntimeVisibleAnnotations or RuntimeInvisibleAnnotations
+   * attribute, and skips the element values.
+   *
+   * @param annotationsOffset the start offset of the attribute, excluding its attribute_name_index
+   *     and attribute_length fields.
+   * @param charBuffer the buffer to be used to read strings in the constant pool.
+   * @return the descriptors of the annotations.
+   */
+  private String[] readAnnotationDescriptors(
+      final int annotationsOffset, final char[] charBuffer) {
+    int numAnnotations = readUnsignedShort(annotationsOffset);
+    if (numAnnotations == 0) {
+      return EMPTY_STRINGS;
+    }
+    String[] descriptors = new String[numAnnotations];
+    int currentAnnotationOffset = annotationsOffset + 2;
+    for (int i = 0; i < numAnnotations; ++i) {
+      descriptors[i] = readUTF8(currentAnnotationOffset, charBuffer);
+      currentAnnotationOffset =
+          readElementValues(null, currentAnnotationOffset + 2, /* named = */ true, charBuffer);
+    }
+    return descriptors;
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Public methods
   // -----------------------------------------------------------------------------------------------
@@ -452,10 +890,9 @@ public class ClassReader {
       final ClassVisitor classVisitor,
       final Attribute[] attributePrototypes,
       final int parsingOptions) {
-    Context context = new Context();
-    context.attributePrototypes = attributePrototypes;
-    context.parsingOptions = parsingOptions;
-    context.charBuffer = new char[maxStringLength];
+    MetricsListener currentMetricsListener = metricsListener;
+    long startTime = currentMetricsListener == null ? 0 : System.nanoTime();
+    Context context = createContext(attributePrototypes, parsingOptions);
 
     // Read the access_flags, this_class, super_class, interface_count and interfaces fields.
     char[] charBuffer = context.charBuffer;
@@ -469,6 +906,9 @@ public class ClassReader {
       interfaces[i] = readClass(currentOffset, charBuffer);
       currentOffset += 2;
     }
+    if (currentMetricsListener != null) {
+      context.metrics = new ClassMetrics(thisClass);
+    }
 
     // Read the class attributes (the variables are ordered as in Section 4.7 of the JVMS).
     // Attribute offsets exclude the attribute_name_index and attribute_length fields.
@@ -539,7 +979,7 @@ public class ClassReader {
       } else if (Constants.SYNTHETIC.equals(attributeName)) {
         accessFlags |= Opcodes.ACC_SYNTHETIC;
       } else if (Constants.SOURCE_DEBUG_EXTENSION.equals(attributeName)) {
-        if (attributeLength > classFileBuffer.length - currentAttributeOffset) {
+        if (attributeLength > getClassFileBufferLength() - currentAttributeOffset) {
           throw new IllegalArgumentException();
         }
         sourceDebugExtension =
@@ -754,10 +1194,574 @@ public class ClassReader {
       currentOffset = readMethod(classVisitor, context, currentOffset);
     }
 
+    // Visit the end of the class.
+    classVisitor.visitEnd();
+    ClassMetrics metrics = context.metrics;
+    releaseContext(context);
+    if (metrics != null) {
+      // The class attributes are the last part of the ClassFile structure.
+      metrics.byteCount = currentAttributeOffset - classFileOffset;
+      metrics.constantPoolCount = constantPoolCount;
+      metrics.durationNanos = System.nanoTime() - startTime;
+      currentMetricsListener.classRead(metrics);
+    }
+  }
+
+  /**
+   * Makes the given visitor visit a single field of the JVMS ClassFile structure passed to the
+   * constructor of this {@link ClassReader}. The field_info structure is found with an index of the
+   * fields offsets, built on the first call, so that the other fields and methods are not parsed.
+   * Only {@link ClassVisitor#visitField} is called on the given visitor (in particular {@link
+   * ClassVisitor#visit} and {@link ClassVisitor#visitEnd} are not called), and then the returned
+   * {@link FieldVisitor}, if any, visits the field content.
+   *
+   * @param classVisitor the visitor that must visit the field.
+   * @param name the field's name.
+   * @param descriptor the field's descriptor (see {@link Type}).
+   * @return whether a field with the given name and descriptor has been found (and visited).
+   */
+  public boolean acceptField(
+      final ClassVisitor classVisitor, final String name, final String descriptor) {
+    return acceptField(classVisitor, name, descriptor, new Attribute[0]);
+  }
+
+  /**
+   * Makes the given visitor visit a single field of the JVMS ClassFile structure passed to the
+   * constructor of this {@link ClassReader}. The field_info structure is found with an index of the
+   * fields offsets, built on the first call, so that the other fields and methods are not parsed.
+   * Only {@link ClassVisitor#visitField} is called on the given visitor (in particular {@link
+   * ClassVisitor#visit} and {@link ClassVisitor#visitEnd} are not called), and then the returned
+   * {@link FieldVisitor}, if any, visits the field content.
+   *
+   * @param classVisitor the visitor that must visit the field.
+   * @param name the field's name.
+   * @param descriptor the field's descriptor (see {@link Type}).
+   * @param attributePrototypes prototypes of the attributes that must be parsed during the visit of
+   *     the field (see {@link #accept(ClassVisitor, Attribute[], int)}).
+   * @return whether a field with the given name and descriptor has been found (and visited).
+   */
+  public boolean acceptField(
+      final ClassVisitor classVisitor,
+      final String name,
+      final String descriptor,
+      final Attribute[] attributePrototypes) {
+    int fieldInfoOffset =
+        findMemberInfo(getMemberInfoOffsets()[FIELD_INFO_OFFSETS], name, descriptor);
+    if (fieldInfoOffset == 0) {
+      return false;
+    }
+    Context context = createContext(attributePrototypes, 0);
+    readField(classVisitor, context, fieldInfoOffset);
+    releaseContext(context);
+    return true;
+  }
+
+  /**
+   * Makes the given visitor visit a single method of the JVMS ClassFile structure passed to the
+   * constructor of this {@link ClassReader}. The method_info structure is found with an index of
+   * the methods offsets, built on the first call, so that the other fields and methods are not
+   * parsed. Only {@link ClassVisitor#visitMethod} is called on the given visitor (in particular
+   * {@link ClassVisitor#visit} and {@link ClassVisitor#visitEnd} are not called), and then the
+   * returned {@link MethodVisitor}, if any, visits the method content.
+   *
+   * @param classVisitor the visitor that must visit the method.
+   * @param name the method's name.
+   * @param descriptor the method's descriptor (see {@link Type}).
+   * @param parsingOptions the options to use to parse this method. One or more of {@link
+   *     #SKIP_CODE}, {@link #SKIP_DEBUG}, {@link #SKIP_FRAMES} or {@link #EXPAND_FRAMES}.
+   * @return whether a method with the given name and descriptor has been found (and visited).
+   */
+  public boolean acceptMethod(
+      final ClassVisitor classVisitor,
+      final String name,
+      final String descriptor,
+      final int parsingOptions) {
+    return acceptMethod(classVisitor, name, descriptor, new Attribute[0], parsingOptions);
+  }
+
+  /**
+   * Makes the given visitor visit a single method of the JVMS ClassFile structure passed to the
+   * constructor of this {@link ClassReader}. The method_info structure is found with an index of
+   * the methods offsets, built on the first call, so that the other fields and methods are not
+   * parsed. Only {@link ClassVisitor#visitMethod} is called on the given visitor (in particular
+   * {@link ClassVisitor#visit} and {@link ClassVisitor#visitEnd} are not called), and then the
+   * returned {@link MethodVisitor}, if any, visits the method content.
+   *
+   * @param classVisitor the visitor that must visit the method.
+   * @param name the method's name.
+   * @param descriptor the method's descriptor (see {@link Type}).
+   * @param attributePrototypes prototypes of the attributes that must be parsed during the visit of
+   *     the method (see {@link #accept(ClassVisitor, Attribute[], int)}).
+   * @param parsingOptions the options to use to parse this method. One or more of {@link
+   *     #SKIP_CODE}, {@link #SKIP_DEBUG}, {@link #SKIP_FRAMES} or {@link #EXPAND_FRAMES}.
+   * @return whether a method with the given name and descriptor has been found (and visited).
+   */
+  public boolean acceptMethod(
+      final ClassVisitor classVisitor,
+      final String name,
+      final String descriptor,
+      final Attribute[] attributePrototypes,
+      final int parsingOptions) {
+    int methodInfoOffset =
+        findMemberInfo(getMemberInfoOffsets()[METHOD_INFO_OFFSETS], name, descriptor);
+    if (methodInfoOffset == 0) {
+      return false;
+    }
+    Context context = createContext(attributePrototypes, parsingOptions);
+    readMethod(classVisitor, context, methodInfoOffset);
+    releaseContext(context);
+    return true;
+  }
+
+  /**
+   * Makes the given visitor visit a single method of the JVMS ClassFile structure passed to the
+   * constructor of this {@link ClassReader}. This is the same as {@link #acceptMethod(ClassVisitor,
+   * String, String, Attribute[], int)}, except that the method is designated by its index in the
+   * ClassFile's 'methods' array, i.e. by the number of methods which are visited before it by
+   * {@link #accept}. Its method_info structure is thus found in constant time, without comparing
+   * any name or descriptor.
+   *
+   * @param classVisitor the visitor that must visit the method.
+   * @param methodIndex the index of the method in the ClassFile's 'methods' array.
+   * @param attributePrototypes prototypes of the attributes that must be parsed during the visit of
+   *     the method (see {@link #accept(ClassVisitor, Attribute[], int)}).
+   * @param parsingOptions the options to use to parse this method. One or more of {@link
+   *     #SKIP_CODE}, {@link #SKIP_DEBUG}, {@link #SKIP_FRAMES} or {@link #EXPAND_FRAMES}.
+   * @return whether the given index is a valid method index (in which case the method has been
+   *     visited).
+   */
+  public boolean acceptMethod(
+      final ClassVisitor classVisitor,
+      final int methodIndex,
+      final Attribute[] attributePrototypes,
+      final int parsingOptions) {
+    int[] methodInfoOffsets = getMemberInfoOffsets()[METHOD_INFO_OFFSETS];
+    if (methodIndex < 0 || methodIndex >= methodInfoOffsets.length) {
+      return false;
+    }
+    Context context = createContext(attributePrototypes, parsingOptions);
+    readMethod(classVisitor, context, methodInfoOffsets[methodIndex]);
+    releaseContext(context);
+    return true;
+  }
+
+  /**
+   * Makes the given visitor visit the annotations of the class, and of its fields and methods,
+   * optionally restricted to some annotation types. This method is intended for annotation
+   * scanners: it only decodes the RuntimeVisibleAnnotations and RuntimeInvisibleAnnotations
+   * attributes, skips all the other attributes (including the Code attributes) without parsing
+   * them, and skips the annotations which are not selected without decoding their values. More
+   * precisely:
+   *
+   * <ul>
+   *   <li>{@link ClassVisitor#visit} is called first, with the class access flags, name, signature,
+   *       super class and interfaces (the access flags are those of the ClassFile's access_flags
+   *       field, without the flags derived from the Deprecated, Synthetic and Record attributes),
+   *   <li>{@link ClassVisitor#visitAnnotation} is called for each selected class annotation,
+   *   <li>{@link ClassVisitor#visitField} is called for each field with at least one selected
+   *       annotation (and only for these fields, whose name and descriptor are not even decoded
+   *       otherwise), with its raw access flags, and a {@literal null} signature and value. The
+   *       returned visitor, if any, visits the selected annotations of the field, and then its end,
+   *   <li>{@link ClassVisitor#visitMethod} is called for each method with at least one selected
+   *       annotation, with its raw access flags, and a {@literal null} signature and exceptions.
+   *       The returned visitor, if any, visits the selected annotations of the method, and then
+   *       its end,
+   *   <li>{@link ClassVisitor#visitEnd} is called last.
+   * </ul>
+   *
+   * @param classVisitor the visitor that must visit the annotations of this class.
+   * @param annotationDescriptors the descriptors of the annotations to visit (see {@link Type}),
+   *     or {@literal null} to visit all the annotations.
+   */
+  public void acceptAnnotations(
+      final ClassVisitor classVisitor, final String[] annotationDescriptors) {
+    char[] charBuffer = new char[maxStringLength];
+
+    // Read the access_flags, this_class, super_class, interface_count and interfaces fields.
+    int accessFlags = readUnsignedShort(header);
+    String thisClass = readClass(header + 2, charBuffer);
+    String superClass = readClass(header + 4, charBuffer);
+    String[] interfaces = new String[readUnsignedShort(header + 6)];
+    for (int i = 0; i < interfaces.length; ++i) {
+      interfaces[i] = readClass(header + 8 + 2 * i, charBuffer);
+    }
+
+    // Read the Signature and annotations class attributes, and skip the others.
+    String signature = null;
+    int runtimeVisibleAnnotationsOffset = 0;
+    int runtimeInvisibleAnnotationsOffset = 0;
+    int currentAttributeOffset = getFirstAttributeOffset();
+    for (int i = readUnsignedShort(currentAttributeOffset - 2); i > 0; --i) {
+      // Read the attribute_info's attribute_name and attribute_length fields.
+      String attributeName = readUTF8(currentAttributeOffset, charBuffer);
+      int attributeLength = readInt(currentAttributeOffset + 2);
+      currentAttributeOffset += 6;
+      if (Constants.SIGNATURE.equals(attributeName)) {
+        signature = readUTF8(currentAttributeOffset, charBuffer);
+      } else if (Constants.RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)) {
+        runtimeVisibleAnnotationsOffset = currentAttributeOffset;
+      } else if (Constants.RUNTIME_INVISIBLE_ANNOTATIONS.equals(attributeName)) {
+        runtimeInvisibleAnnotationsOffset = currentAttributeOffset;
+      }
+      currentAttributeOffset += attributeLength;
+    }
+
+    // Visit the class header and the selected class annotations.
+    classVisitor.visit(
+        readInt(cpInfoOffsets[1] - 7), accessFlags, thisClass, signature, superClass, interfaces);
+    readSelectedAnnotations(
+        classVisitor,
+        null,
+        null,
+        runtimeVisibleAnnotationsOffset,
+        /* visible = */ true,
+        annotationDescriptors,
+        charBuffer);
+    readSelectedAnnotations(
+        classVisitor,
+        null,
+        null,
+        runtimeInvisibleAnnotationsOffset,
+        /* visible = */ false,
+        annotationDescriptors,
+        charBuffer);
+
+    // Visit the fields and methods with at least one selected annotation.
+    int currentOffset = header + 8 + 2 * interfaces.length;
+    int fieldsCount = readUnsignedShort(currentOffset);
+    currentOffset += 2;
+    while (fieldsCount-- > 0) {
+      currentOffset =
+          readMemberAnnotations(
+              classVisitor,
+              currentOffset,
+              /* isMethod = */ false,
+              annotationDescriptors,
+              charBuffer);
+    }
+    int methodsCount = readUnsignedShort(currentOffset);
+    currentOffset += 2;
+    while (methodsCount-- > 0) {
+      currentOffset =
+          readMemberAnnotations(
+              classVisitor,
+              currentOffset,
+              /* isMethod = */ true,
+              annotationDescriptors,
+              charBuffer);
+    }
+
     // Visit the end of the class.
     classVisitor.visitEnd();
   }
 
+  /**
+   * Reads the annotations of a JVMS field_info or method_info structure and, if at least one of
+   * them is selected, makes the given visitor visit the field or method and its selected
+   * annotations.
+   *
+   * @param classVisitor the visitor that must visit the field or method.
+   * @param memberInfoOffset the start offset of the field_info or method_info structure.
+   * @param isMethod whether the structure is a method_info structure.
+   * @param annotationDescriptors the descriptors of the annotations to visit, or {@literal null}.
+   * @param charBuffer the buffer used to read strings in the constant pool.
+   * @return the offset of the first byte following the field_info or method_info structure.
+   */
+  private int readMemberAnnotations(
+      final ClassVisitor classVisitor,
+      final int memberInfoOffset,
+      final boolean isMethod,
+      final String[] annotationDescriptors,
+      final char[] charBuffer) {
+    // Find the annotations attributes, if any, without reading the other fields and attributes.
+    int runtimeVisibleAnnotationsOffset = 0;
+    int runtimeInvisibleAnnotationsOffset = 0;
+    int attributesCount = readUnsignedShort(memberInfoOffset + 6);
+    int currentOffset = memberInfoOffset + 8;
+    while (attributesCount-- > 0) {
+      // Read the attribute_info's attribute_name and attribute_length fields.
+      String attributeName = readUTF8(currentOffset, charBuffer);
+      int attributeLength = readInt(currentOffset + 2);
+      currentOffset += 6;
+      if (Constants.RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)) {
+        runtimeVisibleAnnotationsOffset = currentOffset;
+      } else if (Constants.RUNTIME_INVISIBLE_ANNOTATIONS.equals(attributeName)) {
+        runtimeInvisibleAnnotationsOffset = currentOffset;
+      }
+      currentOffset += attributeLength;
+    }
+    if (!containsSelectedAnnotation(
+            runtimeVisibleAnnotationsOffset, annotationDescriptors, charBuffer)
+        && !containsSelectedAnnotation(
+            runtimeInvisibleAnnotationsOffset, annotationDescriptors, charBuffer)) {
+      return currentOffset;
+    }
+
+    // Visit the member header, its selected annotations and its end.
+    int accessFlags = readUnsignedShort(memberInfoOffset);
+    String name = readUTF8(memberInfoOffset + 2, charBuffer);
+    String descriptor = readUTF8(memberInfoOffset + 4, charBuffer);
+    FieldVisitor fieldVisitor = null;
+    MethodVisitor methodVisitor = null;
+    if (isMethod) {
+      methodVisitor = classVisitor.visitMethod(accessFlags, name, descriptor, null, null);
+      if (methodVisitor == null) {
+        return currentOffset;
+      }
+    } else {
+      fieldVisitor = classVisitor.visitField(accessFlags, name, descriptor, null, null);
+      if (fieldVisitor == null) {
+        return currentOffset;
+      }
+    }
+    readSelectedAnnotations(
+        null,
+        fieldVisitor,
+        methodVisitor,
+        runtimeVisibleAnnotationsOffset,
+        /* visible = */ true,
+        annotationDescriptors,
+        charBuffer);
+    readSelectedAnnotations(
+        null,
+        fieldVisitor,
+        methodVisitor,
+        runtimeInvisibleAnnotationsOffset,
+        /* visible = */ false,
+        annotationDescriptors,
+        charBuffer);
+    if (isMethod) {
+      methodVisitor.visitEnd();
+    } else {
+      fieldVisitor.visitEnd();
+    }
+    return currentOffset;
+  }
+
+  /**
+   * Returns whether a RuntimeVisibleAnnotations or RuntimeInvisibleAnnotations attribute contains
+   * at least one selected annotation. The annotation values are skipped without being decoded.
+   *
+   * @param annotationsOffset the start offset of the attribute, excluding its attribute_name_index
+   *     and attribute_length fields, or 0.
+   * @param annotationDescriptors the descriptors of the selected annotations, or {@literal null} if
+   *     all annotations are selected.
+   * @param charBuffer the buffer used to read strings in the constant pool.
+   * @return whether the attribute contains at least one selected annotation.
+   */
+  private boolean containsSelectedAnnotation(
+      final int annotationsOffset, final String[] annotationDescriptors, final char[] charBuffer) {
+    if (annotationsOffset == 0) {
+      return false;
+    }
+    int numAnnotations = readUnsignedShort(annotationsOffset);
+    if (annotationDescriptors == null) {
+      return numAnnotations > 0;
+    }
+    int currentAnnotationOffset = annotationsOffset + 2;
+    while (numAnnotations-- > 0) {
+      String annotationDescriptor = readUTF8(currentAnnotationOffset, charBuffer);
+      if (isSelectedAnnotation(annotationDescriptor, annotationDescriptors)) {
+        return true;
+      }
+      currentAnnotationOffset =
+          readElementValues(null, currentAnnotationOffset + 2, /* named = */ true, charBuffer);
+    }
+    return false;
+  }
+
+  /**
+   * Makes the given class, field or method visitor visit the selected annotations of a
+   * RuntimeVisibleAnnotations or RuntimeInvisibleAnnotations attribute. Exactly one of the given
+   * visitors must be non {@literal null}.
+   *
+   * @param classVisitor the visitor that must visit the annotations, or {@literal null}.
+   * @param fieldVisitor the visitor that must visit the annotations, or {@literal null}.
+   * @param methodVisitor the visitor that must visit the annotations, or {@literal null}.
+   * @param annotationsOffset the start offset of the attribute, excluding its attribute_name_index
+   *     and attribute_length fields, or 0.
+   * @param visible whether the attribute is a RuntimeVisibleAnnotations attribute.
+   * @param annotationDescriptors the descriptors of the selected annotations, or {@literal null} if
+   *     all annotations are selected.
+   * @param charBuffer the buffer used to read strings in the constant pool.
+   */
+  private void readSelectedAnnotations(
+      final ClassVisitor classVisitor,
+      final FieldVisitor fieldVisitor,
+      final MethodVisitor methodVisitor,
+      final int annotationsOffset,
+      final boolean visible,
+      final String[] annotationDescriptors,
+      final char[] charBuffer) {
+    if (annotationsOffset == 0) {
+      return;
+    }
+    int numAnnotations = readUnsignedShort(annotationsOffset);
+    int currentAnnotationOffset = annotationsOffset + 2;
+    while (numAnnotations-- > 0) {
+      // Parse the type_index field.
+      String annotationDescriptor = readUTF8(currentAnnotationOffset, charBuffer);
+      currentAnnotationOffset += 2;
+      AnnotationVisitor annotationVisitor = null;
+      if (isSelectedAnnotation(annotationDescriptor, annotationDescriptors)) {
+        if (classVisitor != null) {
+          annotationVisitor = classVisitor.visitAnnotation(annotationDescriptor, visible);
+        } else if (fieldVisitor != null) {
+          annotationVisitor = fieldVisitor.visitAnnotation(annotationDescriptor, visible);
+        } else {
+          annotationVisitor = methodVisitor.visitAnnotation(annotationDescriptor, visible);
+        }
+      }
+      // Parse num_element_value_pairs and element_value_pairs and visit these values, or skip
+      // them if the annotation is not selected or not visited.
+      currentAnnotationOffset =
+          readElementValues(
+              annotationVisitor, currentAnnotationOffset, /* named = */ true, charBuffer);
+    }
+  }
+
+  /**
+   * Returns whether the given annotation is selected.
+   *
+   * @param annotationDescriptor an annotation descriptor.
+   * @param annotationDescriptors the descriptors of the selected annotations, or {@literal null} if
+   *     all annotations are selected.
+   * @return whether annotationDescriptor is in annotationDescriptors, or annotationDescriptors is
+   *     {@literal null}.
+   */
+  private static boolean isSelectedAnnotation(
+      final String annotationDescriptor, final String[] annotationDescriptors) {
+    if (annotationDescriptors == null) {
+      return true;
+    }
+    for (String selectedAnnotationDescriptor : annotationDescriptors) {
+      if (selectedAnnotationDescriptor.equals(annotationDescriptor)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates a new {@link Context} to parse this class.
+   *
+   * @param attributePrototypes prototypes of the attributes that must be parsed.
+   * @param parsingOptions the options to use to parse this class.
+   * @return a new {@link Context} initialized with the given options.
+   */
+  private Context createContext(final Attribute[] attributePrototypes, final int parsingOptions) {
+    Context context = reusableContext;
+    if (context == null) {
+      context = new Context();
+    } else {
+      // Take the reusable context, so that nested accept calls (from a visitor) do not share it.
+      reusableContext = null;
+    }
+    context.attributePrototypes = attributePrototypes;
+    context.parsingOptions = parsingOptions;
+    if (context.charBuffer == null || context.charBuffer.length < maxStringLength) {
+      context.charBuffer = new char[maxStringLength];
+    }
+    return context;
+  }
+
+  /**
+   * Releases a {@link Context} created with {@link #createContext}, so that it can be reused by the
+   * next accept method call if this reader is {@link #reusable}.
+   *
+   * @param context a context which is no longer used.
+   */
+  private void releaseContext(final Context context) {
+    if (reusable) {
+      // Clear the references to the objects of the previous class, except the char buffer.
+      context.attributePrototypes = null;
+      context.metrics = null;
+      context.currentMethodName = null;
+      context.currentMethodDescriptor = null;
+      context.currentMethodLabels = null;
+      if (context.currentMethodSparseLabels != null) {
+        context.currentMethodSparseLabels.reset(0);
+      }
+      context.currentTypeAnnotationTargetPath = null;
+      context.currentLocalVariableAnnotationRangeStarts = null;
+      context.currentLocalVariableAnnotationRangeEnds = null;
+      context.currentLocalVariableAnnotationRangeIndices = null;
+      context.currentFrameLocalTypes = null;
+      context.currentFrameStackTypes = null;
+      reusableContext = context;
+    }
+  }
+
+  /**
+   * Returns the start offset of each field_info and method_info structure, after computing them
+   * and storing them in {@link #memberInfoOffsets}, if needed.
+   *
+   * @return the value of {@link #memberInfoOffsets}, which is never {@literal null}.
+   */
+  private int[][] getMemberInfoOffsets() {
+    int[][] offsets = memberInfoOffsets;
+    if (offsets == null) {
+      // Skip the access_flags, this_class, super_class, and interfaces_count fields (using 2 bytes
+      // each), as well as the interfaces array field (2 bytes per interface).
+      int currentOffset = header + 8 + readUnsignedShort(header + 6) * 2;
+      int[] fieldOffsets = new int[readUnsignedShort(currentOffset)];
+      currentOffset = computeMemberInfoOffsets(currentOffset + 2, fieldOffsets);
+      int[] methodOffsets = new int[readUnsignedShort(currentOffset)];
+      computeMemberInfoOffsets(currentOffset + 2, methodOffsets);
+      offsets = new int[][] {fieldOffsets, methodOffsets};
+      // The arrays are fully computed before being published with a volatile write, so that other
+      // threads can't see them partially filled. Concurrent calls can at worst compute them twice.
+      memberInfoOffsets = offsets;
+    }
+    return offsets;
+  }
+
+  /**
+   * Computes the start offset of each field_info or method_info structure of a 'fields' or
+   * 'methods' array.
+   *
+   * @param memberInfoOffset the offset of the first field_info or method_info structure.
+   * @param memberInfoOffsets where the start offset of each structure must be stored. The length of
+   *     this array must be the number of structures to read.
+   * @return the offset of the first byte following the last structure.
+   */
+  private int computeMemberInfoOffsets(final int memberInfoOffset, final int[] memberInfoOffsets) {
+    int currentOffset = memberInfoOffset;
+    for (int i = 0; i < memberInfoOffsets.length; ++i) {
+      memberInfoOffsets[i] = currentOffset;
+      // Skip the access_flags, name_index and descriptor_index fields (2 bytes each), read the
+      // attributes_count field, and skip the 'attributes' array field.
+      int attributesCount = readUnsignedShort(currentOffset + 6);
+      currentOffset += 8;
+      while (attributesCount-- > 0) {
+        currentOffset += 6 + readInt(currentOffset + 2);
+      }
+    }
+    return currentOffset;
+  }
+
+  /**
+   * Returns the start offset of the field_info or method_info structure with the given name and
+   * descriptor.
+   *
+   * @param memberInfoOffsets the start offsets of some field_info or method_info structures.
+   * @param name a field or method name.
+   * @param descriptor a field or method descriptor.
+   * @return the start offset of the structure with the given name and descriptor, or 0.
+   */
+  private int findMemberInfo(
+      final int[] memberInfoOffsets, final String name, final String descriptor) {
+    char[] charBuffer = new char[maxStringLength];
+    for (int memberInfoOffset : memberInfoOffsets) {
+      // The name_index and descriptor_index fields are after the access_flags field (2 bytes).
+      if (name.equals(readUTF8(memberInfoOffset + 2, charBuffer))
+          && descriptor.equals(readUTF8(memberInfoOffset + 4, charBuffer))) {
+        return memberInfoOffset;
+      }
+    }
+    return 0;
+  }
+
   // ----------------------------------------------------------------------------------------------
   // Methods to parse modules, fields and methods
   // ----------------------------------------------------------------------------------------------
@@ -910,6 +1914,8 @@ public class ClassReader {
     // JVMS).
 
     // Attribute offsets exclude the attribute_name_index and attribute_length fields.
+    // - The constant pool index contained in the Signature attribute, or 0.
+    int signatureIndex = 0;
     // - The string corresponding to the Signature attribute, or null.
     String signature = null;
     // - The offset of the RuntimeVisibleAnnotations attribute, or 0.
@@ -934,6 +1940,7 @@ public class ClassReader {
       // The tests are sorted in decreasing frequency order (based on frequencies observed on
       // typical classes).
       if (Constants.SIGNATURE.equals(attributeName)) {
+        signatureIndex = readUnsignedShort(currentOffset);
         signature = readUTF8(currentOffset, charBuffer);
       } else if (Constants.RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)) {
         runtimeVisibleAnnotationsOffset = currentOffset;
@@ -965,6 +1972,20 @@ public class ClassReader {
       return currentOffset;
     }
 
+    // If the returned RecordComponentVisitor is in fact a RecordComponentWriter, it means there is
+    // no record component adapter between the reader and the writer. In this case, it might be
+    // possible to copy the record component attributes directly into the writer. If so, return
+    // early without visiting the content of these attributes.
+    if (recordComponentVisitor instanceof RecordComponentWriter) {
+      RecordComponentWriter recordComponentWriter = (RecordComponentWriter) recordComponentVisitor;
+      if (recordComponentWriter.canCopyRecordComponentAttributes(
+          this, readUnsignedShort(recordComponentOffset + 2), signatureIndex)) {
+        recordComponentWriter.setRecordComponentAttributesSource(
+            recordComponentOffset, currentOffset - recordComponentOffset);
+        return currentOffset;
+      }
+    }
+
     // Visit the RuntimeVisibleAnnotations attribute.
     if (runtimeVisibleAnnotationsOffset != 0) {
       int numAnnotations = readUnsignedShort(runtimeVisibleAnnotationsOffset);
@@ -1084,8 +2105,14 @@ public class ClassReader {
 
     // Read the field attributes (the variables are ordered as in Section 4.7 of the JVMS).
     // Attribute offsets exclude the attribute_name_index and attribute_length fields.
+    // - The constant pool index contained in the ConstantValue attribute, or 0.
+    int constantValueIndex = 0;
     // - The value corresponding to the ConstantValue attribute, or null.
     Object constantValue = null;
+    // - Whether the field has a Synthetic attribute.
+    boolean synthetic = false;
+    // - The constant pool index contained in the Signature attribute, or 0.
+    int signatureIndex = 0;
     // - The string corresponding to the Signature attribute, or null.
     String signature = null;
     // - The offset of the RuntimeVisibleAnnotations attribute, or 0.
@@ -1110,13 +2137,15 @@ public class ClassReader {
       // The tests are sorted in decreasing frequency order (based on frequencies observed on
       // typical classes).
       if (Constants.CONSTANT_VALUE.equals(attributeName)) {
-        int constantvalueIndex = readUnsignedShort(currentOffset);
-        constantValue = constantvalueIndex == 0 ? null : readConst(constantvalueIndex, charBuffer);
+        constantValueIndex = readUnsignedShort(currentOffset);
+        constantValue = constantValueIndex == 0 ? null : readConst(constantValueIndex, charBuffer);
       } else if (Constants.SIGNATURE.equals(attributeName)) {
+        signatureIndex = readUnsignedShort(currentOffset);
         signature = readUTF8(currentOffset, charBuffer);
       } else if (Constants.DEPRECATED.equals(attributeName)) {
         accessFlags |= Opcodes.ACC_DEPRECATED;
       } else if (Constants.SYNTHETIC.equals(attributeName)) {
+        synthetic = true;
         accessFlags |= Opcodes.ACC_SYNTHETIC;
       } else if (Constants.RUNTIME_VISIBLE_ANNOTATIONS.equals(attributeName)) {
         runtimeVisibleAnnotationsOffset = currentOffset;
@@ -1149,6 +2178,24 @@ public class ClassReader {
       return currentOffset;
     }
 
+    // If the returned FieldVisitor is in fact a FieldWriter, it means there is no field adapter
+    // between the reader and the writer. In this case, it might be possible to copy the field
+    // attributes directly into the writer. If so, return early without visiting the content of
+    // these attributes.
+    if (fieldVisitor instanceof FieldWriter) {
+      FieldWriter fieldWriter = (FieldWriter) fieldVisitor;
+      if (fieldWriter.canCopyFieldAttributes(
+          this,
+          synthetic,
+          (accessFlags & Opcodes.ACC_DEPRECATED) != 0,
+          readUnsignedShort(fieldInfoOffset + 4),
+          signatureIndex,
+          constantValueIndex)) {
+        fieldWriter.setFieldAttributesSource(fieldInfoOffset, currentOffset - fieldInfoOffset);
+        return currentOffset;
+      }
+    }
+
     // Visit the RuntimeVisibleAnnotations attribute.
     if (runtimeVisibleAnnotationsOffset != 0) {
       int numAnnotations = readUnsignedShort(runtimeVisibleAnnotationsOffset);
@@ -1385,6 +2432,9 @@ public class ClassReader {
           signatureIndex,
           exceptionsOffset)) {
         methodWriter.setMethodAttributesSource(methodInfoOffset, currentOffset - methodInfoOffset);
+        if (context.metrics != null) {
+          ++context.metrics.copiedMethodCount;
+        }
         return currentOffset;
       }
     }
@@ -1555,13 +2605,13 @@ public class ClassReader {
     final char[] charBuffer = context.charBuffer;
     final int codeLength = readInt(currentOffset + 4);
     currentOffset += 8;
-    if (codeLength > classFileBuffer.length - currentOffset) {
+    if (codeLength > getClassFileBufferLength() - currentOffset) {
       throw new IllegalArgumentException();
     }
 
     // Read the bytecode 'code' array to create a label for each referenced instruction.
-    final Label[] labels = context.currentMethodLabels = new Label[codeLength + 1];
-    
+    initializeLabels(context, codeLength, currentOffset + codeLength);
+
     currentOffset += codeLength;
 
     int exceptionTableLength = readUnsignedShort(currentOffset);
@@ -1588,9 +2638,9 @@ public class ClassReader {
           currentLocalVariableTableOffset += 2;
           while (localVariableTableLength-- > 0) {
             int startPc = readUnsignedShort(currentLocalVariableTableOffset);
-            createDebugLabel(startPc, labels);
+            createDebugLabel(startPc, context);
             int length = readUnsignedShort(currentLocalVariableTableOffset + 2);
-            createDebugLabel(startPc + length, labels);
+            createDebugLabel(startPc + length, context);
             // Skip the name_index, descriptor_index and index fields (2 bytes each).
             currentLocalVariableTableOffset += 10;
           }
@@ -1638,7 +2688,12 @@ public class ClassReader {
           }
         }
         methodVisitor.visitLocalVariable(
-                name, descriptor, signature, labels[startPc], labels[startPc + length], index);
+                name,
+                descriptor,
+                signature,
+                getLabel(startPc, context),
+                getLabel(startPc + length, context),
+                index);
       }
     }
   }
@@ -1656,23 +2711,22 @@ public class ClassReader {
     int currentOffset = codeOffset;
 
     // Read the max_stack, max_locals and code_length fields.
-    final byte[] classBuffer = classFileBuffer;
     final char[] charBuffer = context.charBuffer;
     final int maxStack = readUnsignedShort(currentOffset);
     final int maxLocals = readUnsignedShort(currentOffset + 2);
     final int codeLength = readInt(currentOffset + 4);
     currentOffset += 8;
-    if (codeLength > classFileBuffer.length - currentOffset) {
+    if (codeLength > getClassFileBufferLength() - currentOffset) {
       throw new IllegalArgumentException();
     }
 
     // Read the bytecode 'code' array to create a label for each referenced instruction.
     final int bytecodeStartOffset = currentOffset;
     final int bytecodeEndOffset = currentOffset + codeLength;
-    final Label[] labels = context.currentMethodLabels = new Label[codeLength + 1];
+    initializeLabels(context, codeLength, currentOffset + codeLength);
     while (currentOffset < bytecodeEndOffset) {
       final int bytecodeOffset = currentOffset - bytecodeStartOffset;
-      final int opcode = classBuffer[currentOffset] & 0xFF;
+      final int opcode = readByte(currentOffset);
       switch (opcode) {
         case Opcodes.NOP:
         case Opcodes.ACONST_NULL:
@@ -1841,7 +2895,7 @@ public class ClassReader {
         case Opcodes.JSR:
         case Opcodes.IFNULL:
         case Opcodes.IFNONNULL:
-          createLabel(bytecodeOffset + readShort(currentOffset + 1), labels);
+          createLabel(bytecodeOffset + readShort(currentOffset + 1), context);
           currentOffset += 3;
           break;
         case Constants.ASM_IFEQ:
@@ -1862,17 +2916,17 @@ public class ClassReader {
         case Constants.ASM_JSR:
         case Constants.ASM_IFNULL:
         case Constants.ASM_IFNONNULL:
-          createLabel(bytecodeOffset + readUnsignedShort(currentOffset + 1), labels);
+          createLabel(bytecodeOffset + readUnsignedShort(currentOffset + 1), context);
           currentOffset += 3;
           break;
         case Constants.GOTO_W:
         case Constants.JSR_W:
         case Constants.ASM_GOTO_W:
-          createLabel(bytecodeOffset + readInt(currentOffset + 1), labels);
+          createLabel(bytecodeOffset + readInt(currentOffset + 1), context);
           currentOffset += 5;
           break;
         case Constants.WIDE:
-          switch (classBuffer[currentOffset + 1] & 0xFF) {
+          switch (readByte(currentOffset + 1)) {
             case Opcodes.ILOAD:
             case Opcodes.FLOAD:
             case Opcodes.ALOAD:
@@ -1897,12 +2951,12 @@ public class ClassReader {
           // Skip 0 to 3 padding bytes.
           currentOffset += 4 - (bytecodeOffset & 3);
           // Read the default label and the number of table entries.
-          createLabel(bytecodeOffset + readInt(currentOffset), labels);
+          createLabel(bytecodeOffset + readInt(currentOffset), context);
           int numTableEntries = readInt(currentOffset + 8) - readInt(currentOffset + 4) + 1;
           currentOffset += 12;
           // Read the table labels.
           while (numTableEntries-- > 0) {
-            createLabel(bytecodeOffset + readInt(currentOffset), labels);
+            createLabel(bytecodeOffset + readInt(currentOffset), context);
             currentOffset += 4;
           }
           break;
@@ -1910,12 +2964,12 @@ public class ClassReader {
           // Skip 0 to 3 padding bytes.
           currentOffset += 4 - (bytecodeOffset & 3);
           // Read the default label and the number of switch cases.
-          createLabel(bytecodeOffset + readInt(currentOffset), labels);
+          createLabel(bytecodeOffset + readInt(currentOffset), context);
           int numSwitchCases = readInt(currentOffset + 4);
           currentOffset += 8;
           // Read the switch labels.
           while (numSwitchCases-- > 0) {
-            createLabel(bytecodeOffset + readInt(currentOffset + 4), labels);
+            createLabel(bytecodeOffset + readInt(currentOffset + 4), context);
             currentOffset += 8;
           }
           break;
@@ -1969,9 +3023,9 @@ public class ClassReader {
     int exceptionTableLength = readUnsignedShort(currentOffset);
     currentOffset += 2;
     while (exceptionTableLength-- > 0) {
-      Label start = createLabel(readUnsignedShort(currentOffset), labels);
-      Label end = createLabel(readUnsignedShort(currentOffset + 2), labels);
-      Label handler = createLabel(readUnsignedShort(currentOffset + 4), labels);
+      Label start = createLabel(readUnsignedShort(currentOffset), context);
+      Label end = createLabel(readUnsignedShort(currentOffset + 2), context);
+      Label handler = createLabel(readUnsignedShort(currentOffset + 4), context);
       String catchType = readUTF8(cpInfoOffsets[readUnsignedShort(currentOffset + 6)], charBuffer);
       currentOffset += 8;
       methodVisitor.visitTryCatchBlock(start, end, handler, catchType);
@@ -2018,9 +3072,9 @@ public class ClassReader {
           currentLocalVariableTableOffset += 2;
           while (localVariableTableLength-- > 0) {
             int startPc = readUnsignedShort(currentLocalVariableTableOffset);
-            createDebugLabel(startPc, labels);
+            createDebugLabel(startPc, context);
             int length = readUnsignedShort(currentLocalVariableTableOffset + 2);
-            createDebugLabel(startPc + length, labels);
+            createDebugLabel(startPc + length, context);
             // Skip the name_index, descriptor_index and index fields (2 bytes each).
             currentLocalVariableTableOffset += 10;
           }
@@ -2039,8 +3093,8 @@ public class ClassReader {
             int startPc = readUnsignedShort(currentLineNumberTableOffset);
             int lineNumber = readUnsignedShort(currentLineNumberTableOffset + 2);
             currentLineNumberTableOffset += 4;
-            createDebugLabel(startPc, labels);
-            labels[startPc].addLineNumber(lineNumber);
+            createDebugLabel(startPc, context);
+            getLabel(startPc, context).addLineNumber(lineNumber);
           }
         }
       } else if (Constants.RUNTIME_VISIBLE_TYPE_ANNOTATIONS.equals(attributeName)) {
@@ -2089,7 +3143,7 @@ public class ClassReader {
                 attributeLength,
                 charBuffer,
                 codeOffset,
-                labels);
+                context.currentMethodLabels);
         attribute.nextAttribute = attributes;
         attributes = attribute;
       }
@@ -2121,13 +3175,12 @@ public class ClassReader {
       // creating a label for each NEW instruction, and faster than fully decoding the whole stack
       // map table.
       for (int offset = stackMapFrameOffset; offset < stackMapTableEndOffset - 2; ++offset) {
-        if (classBuffer[offset] == Frame.ITEM_UNINITIALIZED) {
+        if (readByte(offset) == Frame.ITEM_UNINITIALIZED) {
           int potentialBytecodeOffset = readUnsignedShort(offset + 1);
           if (potentialBytecodeOffset >= 0
               && potentialBytecodeOffset < codeLength
-              && (classBuffer[bytecodeStartOffset + potentialBytecodeOffset] & 0xFF)
-                  == Opcodes.NEW) {
-            createLabel(potentialBytecodeOffset, labels);
+              && readByte(bytecodeStartOffset + potentialBytecodeOffset) == Opcodes.NEW) {
+            createLabel(potentialBytecodeOffset, context);
           }
         }
       }
@@ -2173,7 +3226,7 @@ public class ClassReader {
       readBytecodeInstructionOffset(currentBytecodeOffset);
 
       // Visit the label and the line number(s) for this bytecode offset, if any.
-      Label currentLabel = labels[currentBytecodeOffset];
+      Label currentLabel = getLabel(currentBytecodeOffset, context);
       if (currentLabel != null) {
         currentLabel.accept(methodVisitor, (context.parsingOptions & SKIP_DEBUG) == 0);
       }
@@ -2222,7 +3275,7 @@ public class ClassReader {
       }
 
       // Visit the instruction at this bytecode offset.
-      int opcode = classBuffer[currentOffset] & 0xFF;
+      int opcode = readByte(currentOffset);
       switch (opcode) {
         case Opcodes.NOP:
         case Opcodes.ACONST_NULL:
@@ -2401,14 +3454,14 @@ public class ClassReader {
         case Opcodes.IFNULL:
         case Opcodes.IFNONNULL:
           methodVisitor.visitJumpInsn(
-              opcode, labels[currentBytecodeOffset + readShort(currentOffset + 1)]);
+              opcode, getLabel(currentBytecodeOffset + readShort(currentOffset + 1), context));
           currentOffset += 3;
           break;
         case Constants.GOTO_W:
         case Constants.JSR_W:
           methodVisitor.visitJumpInsn(
               opcode - wideJumpOpcodeDelta,
-              labels[currentBytecodeOffset + readInt(currentOffset + 1)]);
+              getLabel(currentBytecodeOffset + readInt(currentOffset + 1), context));
           currentOffset += 5;
           break;
         case Constants.ASM_IFEQ:
@@ -2440,7 +3493,8 @@ public class ClassReader {
                 opcode < Constants.ASM_IFNULL
                     ? opcode - Constants.ASM_OPCODE_DELTA
                     : opcode - Constants.ASM_IFNULL_OPCODE_DELTA;
-            Label target = labels[currentBytecodeOffset + readUnsignedShort(currentOffset + 1)];
+            Label target =
+                getLabel(currentBytecodeOffset + readUnsignedShort(currentOffset + 1), context);
             if (opcode == Opcodes.GOTO || opcode == Opcodes.JSR) {
               // Replace GOTO with GOTO_W and JSR with JSR_W.
               methodVisitor.visitJumpInsn(opcode + Constants.WIDE_JUMP_OPCODE_DELTA, target);
@@ -2449,7 +3503,7 @@ public class ClassReader {
               // significant bit for IFNULL and IFNONNULL, and similarly for IFEQ ... IF_ACMPEQ
               // (with a pre and post offset by 1).
               opcode = opcode < Opcodes.GOTO ? ((opcode + 1) ^ 1) - 1 : opcode ^ 1;
-              Label endif = createLabel(currentBytecodeOffset + 3, labels);
+              Label endif = createLabel(currentBytecodeOffset + 3, context);
               methodVisitor.visitJumpInsn(opcode, endif);
               methodVisitor.visitJumpInsn(Constants.GOTO_W, target);
               // endif designates the instruction just after GOTO_W, and is visited as part of the
@@ -2462,7 +3516,8 @@ public class ClassReader {
         case Constants.ASM_GOTO_W:
           // Replace ASM_GOTO_W with GOTO_W.
           methodVisitor.visitJumpInsn(
-              Constants.GOTO_W, labels[currentBytecodeOffset + readInt(currentOffset + 1)]);
+              Constants.GOTO_W,
+              getLabel(currentBytecodeOffset + readInt(currentOffset + 1), context));
           // The instruction just after is a jump target (because ASM_GOTO_W is used in patterns
           // IFNOTxxx <L> ASM_GOTO_W <l> L:..., see MethodWriter), so we need to insert a frame
           // here.
@@ -2470,7 +3525,7 @@ public class ClassReader {
           currentOffset += 5;
           break;
         case Constants.WIDE:
-          opcode = classBuffer[currentOffset + 1] & 0xFF;
+          opcode = readByte(currentOffset + 1);
           if (opcode == Opcodes.IINC) {
             methodVisitor.visitIincInsn(
                 readUnsignedShort(currentOffset + 2), readShort(currentOffset + 4));
@@ -2485,13 +3540,13 @@ public class ClassReader {
             // Skip 0 to 3 padding bytes.
             currentOffset += 4 - (currentBytecodeOffset & 3);
             // Read the instruction.
-            Label defaultLabel = labels[currentBytecodeOffset + readInt(currentOffset)];
+            Label defaultLabel = getLabel(currentBytecodeOffset + readInt(currentOffset), context);
             int low = readInt(currentOffset + 4);
             int high = readInt(currentOffset + 8);
             currentOffset += 12;
             Label[] table = new Label[high - low + 1];
             for (int i = 0; i < table.length; ++i) {
-              table[i] = labels[currentBytecodeOffset + readInt(currentOffset)];
+              table[i] = getLabel(currentBytecodeOffset + readInt(currentOffset), context);
               currentOffset += 4;
             }
             methodVisitor.visitTableSwitchInsn(low, high, defaultLabel, table);
@@ -2502,14 +3557,14 @@ public class ClassReader {
             // Skip 0 to 3 padding bytes.
             currentOffset += 4 - (currentBytecodeOffset & 3);
             // Read the instruction.
-            Label defaultLabel = labels[currentBytecodeOffset + readInt(currentOffset)];
+            Label defaultLabel = getLabel(currentBytecodeOffset + readInt(currentOffset), context);
             int numPairs = readInt(currentOffset + 4);
             currentOffset += 8;
             int[] keys = new int[numPairs];
             Label[] values = new Label[numPairs];
             for (int i = 0; i < numPairs; ++i) {
               keys[i] = readInt(currentOffset);
-              values[i] = labels[currentBytecodeOffset + readInt(currentOffset + 4)];
+              values[i] = getLabel(currentBytecodeOffset + readInt(currentOffset + 4), context);
               currentOffset += 8;
             }
             methodVisitor.visitLookupSwitchInsn(defaultLabel, keys, values);
@@ -2526,12 +3581,12 @@ public class ClassReader {
         case Opcodes.DSTORE:
         case Opcodes.ASTORE:
         case Opcodes.RET:
-          methodVisitor.visitVarInsn(opcode, classBuffer[currentOffset + 1] & 0xFF);
+          methodVisitor.visitVarInsn(opcode, readByte(currentOffset + 1));
           currentOffset += 2;
           break;
         case Opcodes.BIPUSH:
         case Opcodes.NEWARRAY:
-          methodVisitor.visitIntInsn(opcode, classBuffer[currentOffset + 1]);
+          methodVisitor.visitIntInsn(opcode, (byte) readByte(currentOffset + 1));
           currentOffset += 2;
           break;
         case Opcodes.SIPUSH:
@@ -2539,7 +3594,7 @@ public class ClassReader {
           currentOffset += 3;
           break;
         case Opcodes.LDC:
-          methodVisitor.visitLdcInsn(readConst(classBuffer[currentOffset + 1] & 0xFF, charBuffer));
+          methodVisitor.visitLdcInsn(readConst(readByte(currentOffset + 1), charBuffer));
           currentOffset += 2;
           break;
         case Constants.LDC_W:
@@ -2565,7 +3620,7 @@ public class ClassReader {
               methodVisitor.visitFieldInsn(opcode, owner, name, descriptor);
             } else {
               boolean isInterface =
-                  classBuffer[cpInfoOffset - 1] == Symbol.CONSTANT_INTERFACE_METHODREF_TAG;
+                  readByte(cpInfoOffset - 1) == Symbol.CONSTANT_INTERFACE_METHODREF_TAG;
               methodVisitor.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
             }
             if (opcode == Opcodes.INVOKEINTERFACE) {
@@ -2606,12 +3661,12 @@ public class ClassReader {
           break;
         case Opcodes.IINC:
           methodVisitor.visitIincInsn(
-              classBuffer[currentOffset + 1] & 0xFF, classBuffer[currentOffset + 2]);
+              readByte(currentOffset + 1), (byte) readByte(currentOffset + 2));
           currentOffset += 3;
           break;
         case Opcodes.MULTIANEWARRAY:
           methodVisitor.visitMultiANewArrayInsn(
-              readClass(currentOffset + 1, charBuffer), classBuffer[currentOffset + 3] & 0xFF);
+              readClass(currentOffset + 1, charBuffer), readByte(currentOffset + 3));
           currentOffset += 4;
           break;
         default:
@@ -2674,8 +3729,8 @@ public class ClassReader {
                 invisibleTypeAnnotationOffsets, ++currentInvisibleTypeAnnotationIndex);
       }
     }
-    if (labels[codeLength] != null) {
-      methodVisitor.visitLabel(labels[codeLength]);
+    if (getLabel(codeLength, context) != null) {
+      methodVisitor.visitLabel(getLabel(codeLength, context));
     }
 
     // Visit LocalVariableTable and LocalVariableTypeTable attributes.
@@ -2713,7 +3768,12 @@ public class ClassReader {
           }
         }
         methodVisitor.visitLocalVariable(
-            name, descriptor, signature, labels[startPc], labels[startPc + length], index);
+            name,
+            descriptor,
+            signature,
+            getLabel(startPc, context),
+            getLabel(startPc + length, context),
+            index);
       }
     }
 
@@ -2784,6 +3844,30 @@ public class ClassReader {
 
     // Visit the max stack and max locals values.
     methodVisitor.visitMaxs(maxStack, maxLocals);
+    if (context.metrics != null) {
+      context.metrics.labelCount += getLabelCount(context);
+    }
+  }
+
+  /**
+   * Returns the number of labels of the current method.
+   *
+   * @param context information about the class being parsed.
+   * @return the number of labels in {@link Context#currentMethodLabels}, or in {@link
+   *     Context#currentMethodSparseLabels} if the former is {@literal null}.
+   */
+  private static int getLabelCount(final Context context) {
+    Label[] labels = context.currentMethodLabels;
+    if (labels == null) {
+      return context.currentMethodSparseLabels.size();
+    }
+    int labelCount = 0;
+    for (Label label : labels) {
+      if (label != null) {
+        ++labelCount;
+      }
+    }
+    return labelCount;
   }
 
   /**
@@ -2817,42 +3901,149 @@ public class ClassReader {
     return labels[bytecodeOffset];
   }
 
+  /**
+   * Initializes the labels of the current method. The labels are stored in a new {@code
+   * Label[codeLength + 1]} array, unless the method is large, has few labels compared to its code
+   * length, and nothing requires such an array (a subclass of ClassReader can override {@link
+   * #readLabel}, and a code attribute prototype can use the labels passed to {@link
+   * Attribute#read}). In this case they are stored in a sparse table, reused from one method to the
+   * next, which is much smaller for large methods with few labels.
+   *
+   * @param context information about the class being parsed. Its {@link
+   *     Context#currentMethodLabels} field is set to the new label array, or to {@literal null} if
+   *     the labels are stored in {@link Context#currentMethodSparseLabels}.
+   * @param codeLength the code_length field of the current method's Code attribute.
+   * @param bytecodeEndOffset the offset in {@link #classFileBuffer} of the end of the current
+   *     method's bytecode, i.e. of its Code attribute's exception_table_length field.
+   */
+  private void initializeLabels(
+      final Context context, final int codeLength, final int bytecodeEndOffset) {
+    if (codeLength >= SPARSE_LABEL_TABLE_MIN_CODE_LENGTH
+        && getClass() == ClassReader.class
+        && (context.attributePrototypes == null || context.attributePrototypes.length == 0)
+        && estimateLabelCount(context, bytecodeEndOffset)
+            <= codeLength / SPARSE_LABEL_TABLE_MIN_BYTES_PER_LABEL) {
+      if (context.currentMethodSparseLabels == null) {
+        context.currentMethodSparseLabels = new SparseLabelTable();
+      }
+      context.currentMethodSparseLabels.reset(codeLength + 1);
+      context.currentMethodLabels = null;
+    } else {
+      context.currentMethodLabels = new Label[codeLength + 1];
+    }
+  }
+  /**
+   * Returns an estimate of the number of labels of the current method, computed from the length of
+   * its exception table and of its StackMapTable, LineNumberTable and LocalVariableTable
+   * attributes, without parsing its bytecode. Since Java 7 a frame is required at each branch
+   * target and exception handler, so this gives a good estimate of the number of labels created
+   * for the instructions.
+   *
+   * @param context information about the class being parsed.
+   * @param bytecodeEndOffset the offset in {@link #classFileBuffer} of the end of the current
+   *     method's bytecode, i.e. of its Code attribute's exception_table_length field.
+   * @return an estimate of the number of labels of the current method, or {@link
+   *     Integer#MAX_VALUE} if its branch targets can't be estimated (in classes older than Java 7
+   *     without a StackMapTable attribute).
+   */
+  private int estimateLabelCount(final Context context, final int bytecodeEndOffset) {
+    int currentOffset = bytecodeEndOffset;
+    // Each exception_table entry can add 3 labels: start_pc, end_pc and handler_pc.
+    int exceptionTableLength = readUnsignedShort(currentOffset);
+    int labelCount = 3 * exceptionTableLength;
+    currentOffset += 2 + 8 * exceptionTableLength;
+    boolean hasStackMapTable = false;
+    int attributesCount = readUnsignedShort(currentOffset);
+    currentOffset += 2;
+    while (attributesCount-- > 0) {
+      String attributeName = readUTF8(currentOffset, context.charBuffer);
+      int attributeLength = readInt(currentOffset + 2);
+      currentOffset += 6;
+      if (Constants.STACK_MAP_TABLE.equals(attributeName)) {
+        hasStackMapTable = true;
+        labelCount += readUnsignedShort(currentOffset);
+      } else if ((context.parsingOptions & SKIP_DEBUG) == 0) {
+        if (Constants.LINE_NUMBER_TABLE.equals(attributeName)) {
+          labelCount += readUnsignedShort(currentOffset);
+        } else if (Constants.LOCAL_VARIABLE_TABLE.equals(attributeName)) {
+          labelCount += 2 * readUnsignedShort(currentOffset);
+        }
+      }
+      currentOffset += attributeLength;
+    }
+    if (!hasStackMapTable && readUnsignedShort(classFileOffset + 6) < Opcodes.V1_7) {
+      return Integer.MAX_VALUE;
+    }
+    return labelCount;
+  }
+
+  /**
+   * Returns the label of the current method for the given bytecode offset, if it exists.
+   *
+   * @param bytecodeOffset a bytecode offset in the current method.
+   * @param context information about the class being parsed.
+   * @return the label of the current method for the given offset, or {@literal null}.
+   */
+  private static Label getLabel(final int bytecodeOffset, final Context context) {
+    Label[] labels = context.currentMethodLabels;
+    return labels != null
+        ? labels[bytecodeOffset]
+        : context.currentMethodSparseLabels.get(bytecodeOffset);
+  }
+
+  /**
+   * Returns the label of the current method for the given bytecode offset, creating it if needed
+   * (with a call to {@link #readLabel} if the labels are stored in an array).
+   *
+   * @param bytecodeOffset a bytecode offset in the current method.
+   * @param context information about the class being parsed.
+   * @return a non null Label.
+   */
+  private Label getOrCreateLabel(final int bytecodeOffset, final Context context) {
+    Label[] labels = context.currentMethodLabels;
+    return labels != null
+        ? readLabel(bytecodeOffset, labels)
+        : context.currentMethodSparseLabels.getOrCreate(bytecodeOffset);
+  }
+
   /**
    * Creates a label without the {@link Label#FLAG_DEBUG_ONLY} flag set, for the given bytecode
-   * offset. The label is created with a call to {@link #readLabel} and its {@link
+   * offset. The label is created with a call to {@link #getOrCreateLabel} and its {@link
    * Label#FLAG_DEBUG_ONLY} flag is cleared.
    *
    * @param bytecodeOffset a bytecode offset in a method.
-   * @param labels the already created labels, indexed by their offset.
+   * @param context information about the class being parsed.
    * @return a Label without the {@link Label#FLAG_DEBUG_ONLY} flag set.
    */
-  private Label createLabel(final int bytecodeOffset, final Label[] labels) {
-    Label label = readLabel(bytecodeOffset, labels);
+  private Label createLabel(final int bytecodeOffset, final Context context) {
+    Label label = getOrCreateLabel(bytecodeOffset, context);
     label.flags &= ~Label.FLAG_DEBUG_ONLY;
     return label;
   }
 
   //[JB: ignore invalid label offsets in type annotations of bridge methods]
   private static final Label INVALID_LABEL = new Label();
-  private Label createLabel(final int bytecodeOffset, final Label[] labels, final boolean ignoreInvalidOffset) {
-    if (ignoreInvalidOffset && bytecodeOffset >= labels.length) {
+  private Label createLabel(final int bytecodeOffset, final Context context, final boolean ignoreInvalidOffset) {
+    Label[] labels = context.currentMethodLabels;
+    int labelsLength = labels != null ? labels.length : context.currentMethodSparseLabels.length;
+    if (ignoreInvalidOffset && bytecodeOffset >= labelsLength) {
       return INVALID_LABEL;
     } else {
-      return createLabel(bytecodeOffset, labels);
+      return createLabel(bytecodeOffset, context);
     }
   }
 
   /**
    * Creates a label with the {@link Label#FLAG_DEBUG_ONLY} flag set, if there is no already
    * existing label for the given bytecode offset (otherwise does nothing). The label is created
-   * with a call to {@link #readLabel}.
+   * with a call to {@link #getOrCreateLabel}.
    *
    * @param bytecodeOffset a bytecode offset in a method.
-   * @param labels the already created labels, indexed by their offset.
+   * @param context information about the class being parsed.
    */
-  private void createDebugLabel(final int bytecodeOffset, final Label[] labels) {
-    if (labels[bytecodeOffset] == null) {
-      readLabel(bytecodeOffset, labels).flags |= Label.FLAG_DEBUG_ONLY;
+  private void createDebugLabel(final int bytecodeOffset, final Context context) {
+    if (getLabel(bytecodeOffset, context) == null) {
+      getOrCreateLabel(bytecodeOffset, context).flags |= Label.FLAG_DEBUG_ONLY;
     }
   }
 
@@ -2904,8 +4095,8 @@ public class ClassReader {
             currentOffset += 6;
             //[JB: ignore invalid type annotation label offsets in bridge methods]
             boolean isBridge = (context.currentMethodAccessFlags & Opcodes.ACC_BRIDGE) != 0;
-            createLabel(startPc, context.currentMethodLabels, isBridge);
-            createLabel(startPc + length, context.currentMethodLabels, isBridge);
+            createLabel(startPc, context, isBridge);
+            createLabel(startPc + length, context, isBridge);
           }
           break;
         case TypeReference.CAST:
@@ -2941,7 +4132,7 @@ public class ClassReader {
       int pathLength = readByte(currentOffset);
       if ((targetType >>> 24) == TypeReference.EXCEPTION_PARAMETER) {
         // Parse the target_path structure and create a corresponding TypePath.
-        TypePath path = pathLength == 0 ? null : new TypePath(classFileBuffer, currentOffset);
+        TypePath path = pathLength == 0 ? null : readTypePath(currentOffset);
         currentOffset += 1 + 2 * pathLength;
         // Parse the type_index field.
         String annotationDescriptor = readUTF8(currentOffset, charBuffer);
@@ -3032,9 +4223,9 @@ public class ClassReader {
           //[JB: ignore invalid type annotation label offsets in bridge methods]
           boolean isBridge = (context.currentMethodAccessFlags & Opcodes.ACC_BRIDGE) != 0;
           context.currentLocalVariableAnnotationRangeStarts[i] =
-              createLabel(startPc, context.currentMethodLabels, isBridge);
+              createLabel(startPc, context, isBridge);
           context.currentLocalVariableAnnotationRangeEnds[i] =
-              createLabel(startPc + length, context.currentMethodLabels, isBridge);
+              createLabel(startPc + length, context, isBridge);
           context.currentLocalVariableAnnotationRangeIndices[i] = index;
         }
         break;
@@ -3068,7 +4259,7 @@ public class ClassReader {
     // Parse and store the target_path structure.
     int pathLength = readByte(currentOffset);
     context.currentTypeAnnotationTargetPath =
-        pathLength == 0 ? null : new TypePath(classFileBuffer, currentOffset);
+        pathLength == 0 ? null : readTypePath(currentOffset);
     // Return the start offset of the rest of the type_annotation structure.
     return currentOffset + 1 + 2 * pathLength;
   }
@@ -3090,7 +4281,7 @@ public class ClassReader {
       final int runtimeParameterAnnotationsOffset,
       final boolean visible) {
     int currentOffset = runtimeParameterAnnotationsOffset;
-    int numParameters = classFileBuffer[currentOffset++] & 0xFF;
+    int numParameters = readByte(currentOffset++);
     methodVisitor.visitAnnotableParameterCount(numParameters, visible);
     char[] charBuffer = context.charBuffer;
     for (int i = 0; i < numParameters; ++i) {
@@ -3130,6 +4321,18 @@ public class ClassReader {
       final int annotationOffset,
       final boolean named,
       final char[] charBuffer) {
+    // If the given AnnotationVisitor is in fact an AnnotationWriter, it means there is no
+    // annotation adapter between the reader and the writer. In this case, it might be possible to
+    // copy the element values directly into the writer. If so, skip them without visiting them.
+    if (annotationVisitor instanceof AnnotationWriter) {
+      AnnotationWriter annotationWriter = (AnnotationWriter) annotationVisitor;
+      if (annotationWriter.canCopyElementValues(this, named)) {
+        int endOffset = readElementValues(null, annotationOffset, named, charBuffer);
+        annotationWriter.copyElementValues(annotationOffset, endOffset - annotationOffset);
+        annotationWriter.visitEnd();
+        return endOffset;
+      }
+    }
     int currentOffset = annotationOffset;
     // Read the num_element_value_pairs field (or num_values field for an array_value).
     int numElementValuePairs = readUnsignedShort(currentOffset);
@@ -3137,7 +4340,9 @@ public class ClassReader {
     if (named) {
       // Parse the element_value_pairs array.
       while (numElementValuePairs-- > 0) {
-        String elementName = readUTF8(currentOffset, charBuffer);
+        // Element names are not needed (and thus not decoded) when the values are skipped.
+        String elementName =
+            annotationVisitor == null ? null : readUTF8(currentOffset, charBuffer);
         currentOffset =
             readElementValue(annotationVisitor, currentOffset + 2, elementName, charBuffer);
       }
@@ -3171,7 +4376,7 @@ public class ClassReader {
       final char[] charBuffer) {
     int currentOffset = elementValueOffset;
     if (annotationVisitor == null) {
-      switch (classFileBuffer[currentOffset] & 0xFF) {
+      switch (readByte(currentOffset)) {
         case 'e': // enum_const_value
           return currentOffset + 5;
         case '@': // annotation_value
@@ -3182,7 +4387,7 @@ public class ClassReader {
           return currentOffset + 3;
       }
     }
-    switch (classFileBuffer[currentOffset++] & 0xFF) {
+    switch (readByte(currentOffset++)) {
       case 'B': // const_value_index, CONSTANT_Integer
         annotationVisitor.visit(
             elementName, (byte) readInt(cpInfoOffsets[readUnsignedShort(currentOffset)]));
@@ -3248,7 +4453,7 @@ public class ClassReader {
               /* named = */ false,
               charBuffer);
         }
-        switch (classFileBuffer[currentOffset] & 0xFF) {
+        switch (readByte(currentOffset)) {
           case 'B':
             byte[] byteValues = new byte[numValues];
             for (int i = 0; i < numValues; i++) {
@@ -3426,11 +4631,10 @@ public class ClassReader {
       final Context context) {
     int currentOffset = stackMapFrameOffset;
     final char[] charBuffer = context.charBuffer;
-    final Label[] labels = context.currentMethodLabels;
     int frameType;
     if (compressed) {
       // Read the frame_type field.
-      frameType = classFileBuffer[currentOffset++] & 0xFF;
+      frameType = readByte(currentOffset++);
     } else {
       frameType = Frame.FULL_FRAME;
       context.currentFrameOffset = -1;
@@ -3445,7 +4649,7 @@ public class ClassReader {
       offsetDelta = frameType - Frame.SAME_LOCALS_1_STACK_ITEM_FRAME;
       currentOffset =
           readVerificationTypeInfo(
-              currentOffset, context.currentFrameStackTypes, 0, charBuffer, labels);
+              currentOffset, context.currentFrameStackTypes, 0, charBuffer, context);
       context.currentFrameType = Opcodes.F_SAME1;
       context.currentFrameStackCount = 1;
     } else if (frameType >= Frame.SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED) {
@@ -3454,7 +4658,7 @@ public class ClassReader {
       if (frameType == Frame.SAME_LOCALS_1_STACK_ITEM_FRAME_EXTENDED) {
         currentOffset =
             readVerificationTypeInfo(
-                currentOffset, context.currentFrameStackTypes, 0, charBuffer, labels);
+                currentOffset, context.currentFrameStackTypes, 0, charBuffer, context);
         context.currentFrameType = Opcodes.F_SAME1;
         context.currentFrameStackCount = 1;
       } else if (frameType >= Frame.CHOP_FRAME && frameType < Frame.SAME_FRAME_EXTENDED) {
@@ -3470,7 +4674,7 @@ public class ClassReader {
         for (int k = frameType - Frame.SAME_FRAME_EXTENDED; k > 0; k--) {
           currentOffset =
               readVerificationTypeInfo(
-                  currentOffset, context.currentFrameLocalTypes, local++, charBuffer, labels);
+                  currentOffset, context.currentFrameLocalTypes, local++, charBuffer, context);
         }
         context.currentFrameType = Opcodes.F_APPEND;
         context.currentFrameLocalCountDelta = frameType - Frame.SAME_FRAME_EXTENDED;
@@ -3485,7 +4689,7 @@ public class ClassReader {
         for (int local = 0; local < numberOfLocals; ++local) {
           currentOffset =
               readVerificationTypeInfo(
-                  currentOffset, context.currentFrameLocalTypes, local, charBuffer, labels);
+                  currentOffset, context.currentFrameLocalTypes, local, charBuffer, context);
         }
         final int numberOfStackItems = readUnsignedShort(currentOffset);
         currentOffset += 2;
@@ -3493,14 +4697,14 @@ public class ClassReader {
         for (int stack = 0; stack < numberOfStackItems; ++stack) {
           currentOffset =
               readVerificationTypeInfo(
-                  currentOffset, context.currentFrameStackTypes, stack, charBuffer, labels);
+                  currentOffset, context.currentFrameStackTypes, stack, charBuffer, context);
         }
       }
     } else {
       throw new IllegalArgumentException();
     }
     context.currentFrameOffset += offsetDelta + 1;
-    createLabel(context.currentFrameOffset, labels);
+    createLabel(context.currentFrameOffset, context);
     return currentOffset;
   }
 
@@ -3513,9 +4717,9 @@ public class ClassReader {
    * @param frame the array where the parsed type must be stored.
    * @param index the index in 'frame' where the parsed type must be stored.
    * @param charBuffer the buffer used to read strings in the constant pool.
-   * @param labels the labels of the method currently being parsed, indexed by their offset. If the
-   *     parsed type is an ITEM_Uninitialized, a new label for the corresponding NEW instruction is
-   *     stored in this array if it does not already exist.
+   * @param context information about the class being parsed. If the parsed type is an
+   *     ITEM_Uninitialized, a new label for the corresponding NEW instruction is added to the
+   *     labels of the current method if it does not already exist.
    * @return the end offset of the JVMS 'verification_type_info' structure.
    */
   private int readVerificationTypeInfo(
@@ -3523,9 +4727,9 @@ public class ClassReader {
       final Object[] frame,
       final int index,
       final char[] charBuffer,
-      final Label[] labels) {
+      final Context context) {
     int currentOffset = verificationTypeInfoOffset;
-    int tag = classFileBuffer[currentOffset++] & 0xFF;
+    int tag = readByte(currentOffset++);
     switch (tag) {
       case Frame.ITEM_TOP:
         frame[index] = Opcodes.TOP;
@@ -3553,7 +4757,7 @@ public class ClassReader {
         currentOffset += 2;
         break;
       case Frame.ITEM_UNINITIALIZED:
-        frame[index] = createLabel(readUnsignedShort(currentOffset), labels);
+        frame[index] = createLabel(readUnsignedShort(currentOffset), context);
         currentOffset += 2;
         break;
       default:
@@ -3629,11 +4833,16 @@ public class ClassReader {
       int attributeLength = readInt(currentAttributeOffset + 2);
       currentAttributeOffset += 6;
       if (Constants.BOOTSTRAP_METHODS.equals(attributeName)) {
-        // Read the num_bootstrap_methods field and create an array of this size.
-        int[] result = new int[readUnsignedShort(currentAttributeOffset)];
+        // Read the num_bootstrap_methods field and create an array of this size (or reuse the
+        // array of the previous reader, if there is one and if this array is large enough).
+        int numBootstrapMethods = readUnsignedShort(currentAttributeOffset);
+        int[] result =
+            bootstrapMethodOffsets != null && bootstrapMethodOffsets.length >= numBootstrapMethods
+                ? bootstrapMethodOffsets
+                : new int[numBootstrapMethods];
         // Compute and store the offset of each 'bootstrap_methods' array field entry.
         int currentBootstrapMethodOffset = currentAttributeOffset + 2;
-        for (int j = 0; j < result.length; ++j) {
+        for (int j = 0; j < numBootstrapMethods; ++j) {
           result[j] = currentBootstrapMethodOffset;
           // Skip the bootstrap_method_ref and num_bootstrap_arguments fields (2 bytes each),
           // as well as the bootstrap_arguments array field (of size num_bootstrap_arguments * 2).
@@ -3694,7 +4903,7 @@ public class ClassReader {
    * @return the number of entries in the class's constant pool table.
    */
   public int getItemCount() {
-    return cpInfoOffsets.length;
+    return constantPoolCount;
   }
 
   /**
@@ -3730,6 +4939,9 @@ public class ClassReader {
    * @return the read value.
    */
   public int readByte(final int offset) {
+    if (classFileByteBuffer != null) {
+      return classFileByteBuffer.get(offset) & 0xFF;
+    }
     return classFileBuffer[offset] & 0xFF;
   }
 
@@ -3741,6 +4953,9 @@ public class ClassReader {
    * @return the read value.
    */
   public int readUnsignedShort(final int offset) {
+    if (classFileByteBuffer != null) {
+      return classFileByteBuffer.getShort(offset) & 0xFFFF;
+    }
     byte[] classBuffer = classFileBuffer;
     return ((classBuffer[offset] & 0xFF) << 8) | (classBuffer[offset + 1] & 0xFF);
   }
@@ -3753,6 +4968,9 @@ public class ClassReader {
    * @return the read value.
    */
   public short readShort(final int offset) {
+    if (classFileByteBuffer != null) {
+      return classFileByteBuffer.getShort(offset);
+    }
     byte[] classBuffer = classFileBuffer;
     return (short) (((classBuffer[offset] & 0xFF) << 8) | (classBuffer[offset + 1] & 0xFF));
   }
@@ -3765,6 +4983,9 @@ public class ClassReader {
    * @return the read value.
    */
   public int readInt(final int offset) {
+    if (classFileByteBuffer != null) {
+      return classFileByteBuffer.getInt(offset);
+    }
     byte[] classBuffer = classFileBuffer;
     return ((classBuffer[offset] & 0xFF) << 24)
         | ((classBuffer[offset + 1] & 0xFF) << 16)
@@ -3785,6 +5006,69 @@ public class ClassReader {
     return (l1 << 32) | l0;
   }
 
+  /**
+   * Returns the length of the byte array or buffer containing the ClassFile structure.
+   *
+   * @return the length of {@link #classFileBuffer}, or the limit of {@link #classFileByteBuffer}.
+   */
+  private int getClassFileBufferLength() {
+    return classFileByteBuffer != null ? classFileByteBuffer.limit() : classFileBuffer.length;
+  }
+
+  /**
+   * Copies some bytes of this {@link ClassReader} into the given byte array.
+   *
+   * @param offset the start offset of the bytes to be copied in this {@link ClassReader}.
+   * @param output where the bytes must be copied.
+   * @param outputOffset the start offset in output where the bytes must be copied.
+   * @param length the number of bytes to be copied.
+   */
+  final void readBytes(
+      final int offset, final byte[] output, final int outputOffset, final int length) {
+    if (classFileByteBuffer != null) {
+      ByteBuffer source = classFileByteBuffer.duplicate();
+      // Use the Buffer API, whose methods do not have covariant return types in Java 8.
+      ((Buffer) source).position(offset);
+      source.get(output, outputOffset, length);
+    } else {
+      System.arraycopy(classFileBuffer, offset, output, outputOffset, length);
+    }
+  }
+
+  /**
+   * Copies some bytes of this {@link ClassReader} at the end of the given byte vector.
+   *
+   * @param offset the start offset of the bytes to be copied in this {@link ClassReader}.
+   * @param length the number of bytes to be copied.
+   * @param output where the bytes must be copied.
+   */
+  final void copyBytes(final int offset, final int length, final ByteVector output) {
+    if (classFileByteBuffer != null) {
+      // Reserve 'length' bytes in output, and then fill them directly from the buffer.
+      output.putByteArray(null, 0, length);
+      readBytes(offset, output.data, output.length - length, length);
+    } else {
+      output.putByteArray(classFileBuffer, offset, length);
+    }
+  }
+
+  /**
+   * Reads a type_path JVMS structure in this {@link ClassReader}.
+   *
+   * @param offset the start offset of the type_path structure.
+   * @return the corresponding TypePath.
+   */
+  private TypePath readTypePath(final int offset) {
+    if (classFileByteBuffer != null) {
+      // TypePath references its container, so copy the structure out of the (possibly mapped)
+      // buffer: its size is 1 byte for path_length plus 2 bytes per path entry.
+      byte[] typePath = new byte[1 + 2 * readByte(offset)];
+      readBytes(offset, typePath, 0, typePath.length);
+      return new TypePath(typePath, 0);
+    }
+    return new TypePath(classFileBuffer, offset);
+  }
+
   /**
    * Reads a CONSTANT_Utf8 constant pool entry in this {@link ClassReader}. <i>This method is
    * intended for {@link Attribute} sub classes, and is normally not needed by class generators or
@@ -3820,6 +5104,10 @@ public class ClassReader {
       return value;
     }
     int cpInfoOffset = cpInfoOffsets[constantPoolEntryIndex];
+    if (stringPool != null) {
+      return constantUtf8Values[constantPoolEntryIndex] =
+          stringPool.get(this, cpInfoOffset + 2, readUnsignedShort(cpInfoOffset), charBuffer);
+    }
     return constantUtf8Values[constantPoolEntryIndex] =
         readUtf(cpInfoOffset + 2, readUnsignedShort(cpInfoOffset), charBuffer);
   }
@@ -3875,7 +5163,10 @@ public class ClassReader {
    *                   large. It is not automatically resized.
    * @return the String corresponding to the specified UTF8 string.
    */
-  private String readUtf(final int utfOffset, final int utfLength, final char[] charBuffer) {
+  final String readUtf(final int utfOffset, final int utfLength, final char[] charBuffer) {
+    if (classFileByteBuffer != null) {
+      return readUtfFromByteBuffer(utfOffset, utfLength, charBuffer);
+    }
     int endOffset = utfOffset + utfLength;
     byte[] classBuffer = classFileBuffer;
     for (int currentOffset = utfOffset; currentOffset < endOffset; currentOffset++) {
@@ -3886,6 +5177,40 @@ public class ClassReader {
     return new String(classFileBuffer, utfOffset, utfLength, StandardCharsets.ISO_8859_1);
   }
 
+  /**
+   * Reads an UTF8 string in {@link #classFileByteBuffer}. The string is decoded directly from the
+   * buffer into the given char buffer, without any intermediate byte array.
+   *
+   * @param utfOffset the start offset of the UTF8 string to be read.
+   * @param utfLength the length of the UTF8 string to be read.
+   * @param charBuffer the buffer to be used to read the string. This buffer must be sufficiently
+   *     large. It is not automatically resized.
+   * @return the String corresponding to the specified UTF8 string.
+   */
+  private String readUtfFromByteBuffer(
+      final int utfOffset, final int utfLength, final char[] charBuffer) {
+    ByteBuffer classBuffer = classFileByteBuffer;
+    int currentOffset = utfOffset;
+    int endOffset = currentOffset + utfLength;
+    int strLength = 0;
+    while (currentOffset < endOffset) {
+      int currentByte = classBuffer.get(currentOffset++);
+      if ((currentByte & 0x80) == 0) {
+        charBuffer[strLength++] = (char) (currentByte & 0x7F);
+      } else if ((currentByte & 0xE0) == 0xC0) {
+        charBuffer[strLength++] =
+            (char) (((currentByte & 0x1F) << 6) + (classBuffer.get(currentOffset++) & 0x3F));
+      } else {
+        charBuffer[strLength++] =
+            (char)
+                (((currentByte & 0xF) << 12)
+                    + ((classBuffer.get(currentOffset++) & 0x3F) << 6)
+                    + (classBuffer.get(currentOffset++) & 0x3F));
+      }
+    }
+    return new String(charBuffer, 0, strLength);
+  }
+
   /**
    * Reads a CONSTANT_Class, CONSTANT_String, CONSTANT_MethodType, CONSTANT_Module or
    * CONSTANT_Package constant pool entry in {@link #classFileBuffer}. <i>This method is intended
@@ -3997,7 +5322,7 @@ public class ClassReader {
    */
   public Object readConst(final int constantPoolEntryIndex, final char[] charBuffer) {
     int cpInfoOffset = cpInfoOffsets[constantPoolEntryIndex];
-    switch (classFileBuffer[cpInfoOffset - 1]) {
+    switch (readByte(cpInfoOffset - 1)) {
       case Symbol.CONSTANT_INTEGER_TAG:
         return readInt(cpInfoOffset);
       case Symbol.CONSTANT_FLOAT_TAG:
@@ -4020,7 +5345,7 @@ public class ClassReader {
         String name = readUTF8(nameAndTypeCpInfoOffset, charBuffer);
         String descriptor = readUTF8(nameAndTypeCpInfoOffset + 2, charBuffer);
         boolean isInterface =
-            classFileBuffer[referenceCpInfoOffset - 1] == Symbol.CONSTANT_INTERFACE_METHODREF_TAG;
+            readByte(referenceCpInfoOffset - 1) == Symbol.CONSTANT_INTERFACE_METHODREF_TAG;
         return new Handle(referenceKind, owner, name, descriptor, isInterface);
       case Symbol.CONSTANT_DYNAMIC_TAG:
         return readConstantDynamic(constantPoolEntryIndex, charBuffer);
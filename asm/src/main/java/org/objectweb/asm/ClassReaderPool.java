@@ -0,0 +1,136 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A pool of reusable {@link ClassReader} resources, with at most one idle reader per thread. A
+ * reader acquired from this pool reuses the constant pool arrays and the parsing context of the
+ * idle reader of the current thread, if any (see {@link ClassReader#ClassReader(byte[],
+ * ClassReader)}), which avoids most of the per-class allocations of a new reader, as long as these
+ * arrays are large enough.
+ *
+ * <p>A reader must be released when it is no longer used, and must not be used after that. A
+ * {@link ClassWriter} constructed from a reader can still be used after the reader is released,
+ * since the constant pool arrays of such a reader are not reused. But a reader must not be
+ * released while a {@link ClassPatcher}, or a node read lazily from it (see {@code
+ * org.objectweb.asm.tree.ClassNode#readLazily}), is in use. If a reader is acquired while another
+ * one is in use in the same thread (for instance if a visitor loads another class), the new reader
+ * does not reuse anything from the reader in use, so that the two readers can be used at the same
+ * time. Readers which are not released are simply garbage collected.
+ *
+ * <pre>
+ * ClassReader classReader = classReaderPool.acquire(classFile);
+ * try {
+ *   classReader.accept(classVisitor, 0);
+ * } finally {
+ *   classReaderPool.release(classReader);
+ * }
+ * </pre>
+ */
+public final class ClassReaderPool {
+
+  /** The idle reader of each thread, if any. */
+  private final ThreadLocal<ClassReader> idleClassReaders = new ThreadLocal<ClassReader>();
+
+  /**
+   * The pool of constant pool strings which must be used by the readers of this pool, or {@literal
+   * null}.
+   */
+  private final StringPool stringPool;
+
+  /** Constructs a new {@link ClassReaderPool}, whose readers do not use a {@link StringPool}. */
+  public ClassReaderPool() {
+    this(null);
+  }
+
+  /**
+   * Constructs a new {@link ClassReaderPool}.
+   *
+   * @param stringPool the pool of constant pool strings which must be used by the readers of this
+   *     pool (see {@link ClassReader#setStringPool}), or {@literal null}.
+   */
+  public ClassReaderPool(final StringPool stringPool) {
+    this.stringPool = stringPool;
+  }
+
+  /**
+   * Returns a reader of the given ClassFile structure, which reuses the resources of the idle
+   * reader of the current thread, if any.
+   *
+   * @param classFile the JVMS ClassFile structure to be read.
+   * @return a reader of the given ClassFile structure, which must be {@link #release released}
+   *     after use.
+   */
+  public ClassReader acquire(final byte[] classFile) {
+    ClassReader classReader = new ClassReader(classFile, takeIdleClassReader());
+    classReader.setStringPool(stringPool);
+    return classReader;
+  }
+
+  /**
+   * Returns a reader of the given ClassFile structure, which reuses the resources of the idle
+   * reader of the current thread, if any.
+   *
+   * @param classFileBuffer a buffer containing the JVMS ClassFile structure to be read, starting at
+   *     its current position (see {@link ClassReader#ClassReader(ByteBuffer)}).
+   * @return a reader of the given ClassFile structure, which must be {@link #release released}
+   *     after use.
+   */
+  public ClassReader acquire(final ByteBuffer classFileBuffer) {
+    ClassReader classReader = new ClassReader(classFileBuffer, takeIdleClassReader());
+    classReader.setStringPool(stringPool);
+    return classReader;
+  }
+
+  /**
+   * Removes the idle reader of the current thread from this pool, and returns it.
+   *
+   * @return the idle reader of the current thread, or {@literal null}.
+   */
+  private ClassReader takeIdleClassReader() {
+    ClassReader classReader = idleClassReaders.get();
+    if (classReader != null) {
+      idleClassReaders.set(null);
+    }
+    return classReader;
+  }
+
+  /**
+   * Releases a reader acquired from this pool, which becomes the idle reader of the current thread.
+   * The given reader must not be used after this call. A {@link ClassWriter} constructed from this
+   * reader can still be used, but a {@link ClassPatcher} or a node read lazily from this reader
+   * must not.
+   *
+   * @param classReader a reader acquired from this pool, in the current thread.
+   */
+  public void release(final ClassReader classReader) {
+    idleClassReaders.set(classReader);
+  }
+}
@@ -0,0 +1,206 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link TypeHierarchy} which reads the super class and interfaces of the classes from their
+ * class file, with a {@link ClassReader}, instead of loading them. Only the class file headers are
+ * parsed, and the results are cached, so that each class file is read at most once. This class is
+ * thread safe, and an instance can be shared between several {@link ClassWriter}s (which is
+ * recommended, to share its cache).
+ *
+ * <p>By default, the class files are found with {@link ClassLoader#getResourceAsStream}. Subclasses
+ * can override {@link #getClassFile} to find them elsewhere, for instance in the output directory
+ * of a build tool, or to take into account the classes which are being generated.
+ */
+public class ClassReaderTypeHierarchy implements TypeHierarchy {
+
+  /** The internal name of the Object class. */
+  private static final String JAVA_LANG_OBJECT = "java/lang/Object";
+
+  /**
+   * The class loader used to find the class files, or {@literal null} to use the system class
+   * loader.
+   */
+  private final ClassLoader classLoader;
+
+  /** The hierarchy information of the classes read so far, indexed by internal name. */
+  private final ConcurrentHashMap<String, TypeInfo> typeInfos;
+
+  /**
+   * Constructs a new {@link ClassReaderTypeHierarchy} which finds the class files with the system
+   * class loader.
+   */
+  public ClassReaderTypeHierarchy() {
+    this(null);
+  }
+
+  /**
+   * Constructs a new {@link ClassReaderTypeHierarchy}.
+   *
+   * @param classLoader the class loader used to find the class files (with {@link
+   *     ClassLoader#getResourceAsStream}), or {@literal null} to use the system class loader.
+   */
+  public ClassReaderTypeHierarchy(final ClassLoader classLoader) {
+    this.classLoader = classLoader;
+    this.typeInfos = new ConcurrentHashMap<String, TypeInfo>();
+  }
+
+  @Override
+  public String getCommonSuperClass(final String type1, final String type2) {
+    if (isAssignableFrom(type1, type2)) {
+      return type1;
+    }
+    if (isAssignableFrom(type2, type1)) {
+      return type2;
+    }
+    if (getTypeInfo(type1).isInterface() || getTypeInfo(type2).isInterface()) {
+      return JAVA_LANG_OBJECT;
+    }
+    String superClass = type1;
+    do {
+      superClass = getTypeInfo(superClass).superName;
+    } while (!isAssignableFrom(superClass, type2));
+    return superClass;
+  }
+
+  /**
+   * Returns the content of the class file of the given class. The default implementation uses the
+   * {@link ClassLoader#getResourceAsStream} method of the class loader passed to the constructor.
+   *
+   * @param type the internal name of a class (see {@link Type#getInternalName()}).
+   * @return an input stream to read the class file of this class, or {@literal null} if this class
+   *     is not found. This stream is closed by the caller.
+   * @throws IOException if a problem occurs while opening the class file.
+   */
+  protected InputStream getClassFile(final String type) throws IOException {
+    String resourceName = type + ".class";
+    return classLoader == null
+        ? ClassLoader.getSystemResourceAsStream(resourceName)
+        : classLoader.getResourceAsStream(resourceName);
+  }
+
+  /**
+   * Returns whether a class is assignable from another one, i.e. whether the first class is the
+   * same as, or a super type of, the second one.
+   *
+   * @param type1 the internal name of a class.
+   * @param type2 the internal name of another class.
+   * @return whether type1 is the same as, or a super type of, type2.
+   */
+  private boolean isAssignableFrom(final String type1, final String type2) {
+    if (type1.equals(type2) || JAVA_LANG_OBJECT.equals(type1)) {
+      return true;
+    }
+    TypeInfo typeInfo2 = getTypeInfo(type2);
+    if (typeInfo2.superName != null && isAssignableFrom(type1, typeInfo2.superName)) {
+      return true;
+    }
+    // A class can only be a super type of type2 via its super class, so the interfaces of type2
+    // only need to be explored if type1 is an interface.
+    if (getTypeInfo(type1).isInterface()) {
+      for (String interfaceName : typeInfo2.interfaces) {
+        if (isAssignableFrom(type1, interfaceName)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the hierarchy information of the given class, reading its class file if needed.
+   *
+   * @param type the internal name of a class.
+   * @return the hierarchy information of this class.
+   * @throws TypeNotPresentException if the class file of this class can't be found or read.
+   */
+  private TypeInfo getTypeInfo(final String type) {
+    TypeInfo typeInfo = typeInfos.get(type);
+    if (typeInfo == null) {
+      typeInfo = readTypeInfo(type);
+      TypeInfo previousTypeInfo = typeInfos.putIfAbsent(type, typeInfo);
+      if (previousTypeInfo != null) {
+        typeInfo = previousTypeInfo;
+      }
+    }
+    return typeInfo;
+  }
+
+  /**
+   * Reads the hierarchy information of the given class from its class file.
+   *
+   * @param type the internal name of a class.
+   * @return the hierarchy information of this class.
+   * @throws TypeNotPresentException if the class file of this class can't be found or read.
+   */
+  private TypeInfo readTypeInfo(final String type) {
+    try {
+      InputStream inputStream = getClassFile(type);
+      if (inputStream == null) {
+        throw new TypeNotPresentException(type, null);
+      }
+      try {
+        ClassReader classReader = new ClassReader(inputStream);
+        return new TypeInfo(
+            classReader.getAccess(), classReader.getSuperName(), classReader.getInterfaces());
+      } finally {
+        inputStream.close();
+      }
+    } catch (IOException e) {
+      throw new TypeNotPresentException(type, e);
+    }
+  }
+
+  /** The hierarchy information of a class, read from the header of its class file. */
+  private static final class TypeInfo {
+
+    /** The access flags of the class. */
+    final int access;
+
+    /** The internal name of the super class, or {@literal null} for java/lang/Object. */
+    final String superName;
+
+    /** The internal names of the interfaces directly implemented by the class. */
+    final String[] interfaces;
+
+    TypeInfo(final int access, final String superName, final String[] interfaces) {
+      this.access = access;
+      this.superName = superName;
+      this.interfaces = interfaces;
+    }
+
+    boolean isInterface() {
+      return (access & Opcodes.ACC_INTERFACE) != 0;
+    }
+  }
+}
@@ -0,0 +1,330 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * A summary of a JVMS ClassFile structure, containing its header, its class level annotation
+ * types, some of its class attributes, and the names and descriptors of its fields and methods. A
+ * summary is much cheaper to compute than a full {@link ClassReader#accept} (see {@link
+ * ClassReader#readSummary}), and is intended for fast class indexing.
+ *
+ * <p>This class is immutable. The arrays returned by its methods are copies, which can be freely
+ * modified.
+ */
+public final class ClassSummary {
+
+  /** The class version. */
+  private final int version;
+
+  /** The class access flags, as stored in the ClassFile's access_flags field. */
+  private final int access;
+
+  /** The internal name of the class. */
+  private final String name;
+
+  /** The signature of the class, or {@literal null}. */
+  private final String signature;
+
+  /** The internal name of the super class, or {@literal null}. */
+  private final String superName;
+
+  /** The internal names of the class's interfaces. */
+  private final String[] interfaces;
+
+  /** The descriptors of the RuntimeVisibleAnnotations of the class. */
+  private final String[] visibleAnnotations;
+
+  /** The descriptors of the RuntimeInvisibleAnnotations of the class. */
+  private final String[] invisibleAnnotations;
+
+  /** The internal name of the host class of the nest of the class, or {@literal null}. */
+  private final String nestHost;
+
+  /** The internal names of the members of the nest of the class. */
+  private final String[] nestMembers;
+
+  /** The internal names of the permitted subclasses of the class. */
+  private final String[] permittedSubclasses;
+
+  /** The name of the module described by the class, or {@literal null}. */
+  private final String moduleName;
+
+  /** The module_flags of the module described by the class, or 0. */
+  private final int moduleAccess;
+
+  /** The version of the module described by the class, or {@literal null}. */
+  private final String moduleVersion;
+
+  /** The access flags of the fields of the class, as stored in their access_flags field. */
+  private final int[] fieldAccesses;
+
+  /** The names of the fields of the class. */
+  private final String[] fieldNames;
+
+  /** The descriptors of the fields of the class. */
+  private final String[] fieldDescriptors;
+
+  /** The access flags of the methods of the class, as stored in their access_flags field. */
+  private final int[] methodAccesses;
+
+  /** The names of the methods of the class. */
+  private final String[] methodNames;
+
+  /** The descriptors of the methods of the class. */
+  private final String[] methodDescriptors;
+
+  ClassSummary(
+      final int version,
+      final int access,
+      final String name,
+      final String signature,
+      final String superName,
+      final String[] interfaces,
+      final String[] visibleAnnotations,
+      final String[] invisibleAnnotations,
+      final String nestHost,
+      final String[] nestMembers,
+      final String[] permittedSubclasses,
+      final String moduleName,
+      final int moduleAccess,
+      final String moduleVersion,
+      final int[] fieldAccesses,
+      final String[] fieldNames,
+      final String[] fieldDescriptors,
+      final int[] methodAccesses,
+      final String[] methodNames,
+      final String[] methodDescriptors) {
+    this.version = version;
+    this.access = access;
+    this.name = name;
+    this.signature = signature;
+    this.superName = superName;
+    this.interfaces = interfaces;
+    this.visibleAnnotations = visibleAnnotations;
+    this.invisibleAnnotations = invisibleAnnotations;
+    this.nestHost = nestHost;
+    this.nestMembers = nestMembers;
+    this.permittedSubclasses = permittedSubclasses;
+    this.moduleName = moduleName;
+    this.moduleAccess = moduleAccess;
+    this.moduleVersion = moduleVersion;
+    this.fieldAccesses = fieldAccesses;
+    this.fieldNames = fieldNames;
+    this.fieldDescriptors = fieldDescriptors;
+    this.methodAccesses = methodAccesses;
+    this.methodNames = methodNames;
+    this.methodDescriptors = methodDescriptors;
+  }
+
+  /**
+   * Returns the class version. The minor version is stored in the 16 most significant bits, and
+   * the major version in the 16 least significant bits.
+   *
+   * @return the class version.
+   * @see ClassVisitor#visit
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns the class access flags (see {@link Opcodes}), as stored in the ClassFile's
+   * access_flags field. In particular, this value does not include the ASM specific {@link
+   * Opcodes#ACC_DEPRECATED} and {@link Opcodes#ACC_RECORD} flags.
+   *
+   * @return the class access flags.
+   */
+  public int getAccess() {
+    return access;
+  }
+
+  /**
+   * Returns the internal name of the class (see {@link Type#getInternalName()}).
+   *
+   * @return the internal name of the class.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the signature of the class.
+   *
+   * @return the signature of the class, or {@literal null} if the class is not a generic one.
+   */
+  public String getSignature() {
+    return signature;
+  }
+
+  /**
+   * Returns the internal name of the super class (see {@link Type#getInternalName()}).
+   *
+   * @return the internal name of the super class, or {@literal null} for the {@link Object} class
+   *     and for module-info classes.
+   */
+  public String getSuperName() {
+    return superName;
+  }
+
+  /**
+   * Returns the internal names of the interfaces directly implemented by the class.
+   *
+   * @return the internal names of the class's interfaces.
+   */
+  public String[] getInterfaces() {
+    return interfaces.clone();
+  }
+
+  /**
+   * Returns the descriptors of the class's annotations which are visible at runtime.
+   *
+   * @return the descriptors of the annotations of the RuntimeVisibleAnnotations attribute.
+   */
+  public String[] getVisibleAnnotations() {
+    return visibleAnnotations.clone();
+  }
+
+  /**
+   * Returns the descriptors of the class's annotations which are not visible at runtime.
+   *
+   * @return the descriptors of the annotations of the RuntimeInvisibleAnnotations attribute.
+   */
+  public String[] getInvisibleAnnotations() {
+    return invisibleAnnotations.clone();
+  }
+
+  /**
+   * Returns the internal name of the host class of the nest the class is a member of.
+   *
+   * @return the internal name of the nest host class, or {@literal null}.
+   */
+  public String getNestHost() {
+    return nestHost;
+  }
+
+  /**
+   * Returns the internal names of the members of the nest the class is the host of.
+   *
+   * @return the internal names of the nest members.
+   */
+  public String[] getNestMembers() {
+    return nestMembers.clone();
+  }
+
+  /**
+   * Returns the internal names of the permitted subclasses of the class.
+   *
+   * @return the internal names of the permitted subclasses.
+   */
+  public String[] getPermittedSubclasses() {
+    return permittedSubclasses.clone();
+  }
+
+  /**
+   * Returns the name of the module described by the class.
+   *
+   * @return the fully qualified name (using dots) of the module, or {@literal null} if the class
+   *     is not a module-info class.
+   */
+  public String getModuleName() {
+    return moduleName;
+  }
+
+  /**
+   * Returns the access flags of the module described by the class.
+   *
+   * @return the module access flags, among {@code ACC_OPEN}, {@code ACC_SYNTHETIC} and {@code
+   *     ACC_MANDATED}, or 0 if the class is not a module-info class.
+   */
+  public int getModuleAccess() {
+    return moduleAccess;
+  }
+
+  /**
+   * Returns the version of the module described by the class.
+   *
+   * @return the module version, or {@literal null}.
+   */
+  public String getModuleVersion() {
+    return moduleVersion;
+  }
+
+  /**
+   * Returns the access flags of the class's fields, as stored in their access_flags field.
+   *
+   * @return the access flags of the fields, in the order of the ClassFile's 'fields' array.
+   */
+  public int[] getFieldAccesses() {
+    return fieldAccesses.clone();
+  }
+
+  /**
+   * Returns the names of the class's fields.
+   *
+   * @return the names of the fields, in the order of the ClassFile's 'fields' array.
+   */
+  public String[] getFieldNames() {
+    return fieldNames.clone();
+  }
+
+  /**
+   * Returns the descriptors of the class's fields.
+   *
+   * @return the descriptors of the fields, in the order of the ClassFile's 'fields' array.
+   */
+  public String[] getFieldDescriptors() {
+    return fieldDescriptors.clone();
+  }
+
+  /**
+   * Returns the access flags of the class's methods, as stored in their access_flags field.
+   *
+   * @return the access flags of the methods, in the order of the ClassFile's 'methods' array.
+   */
+  public int[] getMethodAccesses() {
+    return methodAccesses.clone();
+  }
+
+  /**
+   * Returns the names of the class's methods.
+   *
+   * @return the names of the methods, in the order of the ClassFile's 'methods' array.
+   */
+  public String[] getMethodNames() {
+    return methodNames.clone();
+  }
+
+  /**
+   * Returns the descriptors of the class's methods.
+   *
+   * @return the descriptors of the methods, in the order of the ClassFile's 'methods' array.
+   */
+  public String[] getMethodDescriptors() {
+    return methodDescriptors.clone();
+  }
+}
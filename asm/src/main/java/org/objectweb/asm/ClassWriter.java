@@ -27,6 +27,11 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
 /**
  * A {@link ClassVisitor} that generates a corresponding ClassFile structure, as defined in the Java
  * Virtual Machine Specification (JVMS). It can be used alone, to generate a Java class "from
@@ -61,13 +66,43 @@ public class ClassWriter extends ClassVisitor {
    * MethodVisitor#visitMaxs} method are also ignored and recomputed from the bytecode. In other
    * words, {@link #COMPUTE_FRAMES} implies {@link #COMPUTE_MAXS}.
    *
+   * <p>By default, this flag applies to all the methods (except those copied as is, see {@link
+   * #ClassWriter(ClassReader, int)}). Override {@link #getMethodFlags} to apply it to some methods
+   * only.
+   *
    * @see #ClassWriter(int)
    */
   public static final int COMPUTE_FRAMES = 2;
 
   /**
-   * The flags passed to the constructor. Must be zero or more of {@link #COMPUTE_MAXS} and {@link
-   * #COMPUTE_FRAMES}.
+   * A flag to remove the unused constant pool items. If this flag is set, the constant pool of the
+   * generated class only contains the items which are referenced from the rest of the class file,
+   * in the order of their first use in the class file. This is mostly useful with {@link
+   * #ClassWriter(ClassReader, int)}, where the constant pool of the original class is copied as is,
+   * including the items which are no longer used after a transformation (e.g. after some methods
+   * have been removed).
+   *
+   * <p><b>Note:</b> this is done by re-encoding the class file built by this ClassWriter with a new
+   * ClassWriter (via a {@link ClassReader}), in {@link #toByteArray}. The methods, fields, etc
+   * copied as is from the original class are thus re-encoded too, and this option makes {@link
+   * #toByteArray} significantly slower. The class file is left unchanged if it contains
+   * non-standard attributes which are not handled by an {@link Attribute} prototype, including
+   * those of the methods copied as is (since their content may reference constant pool items that
+   * can't be relocated).
+   *
+   * @see #ClassWriter(int)
+   */
+  public static final int COMPACT_CONSTANT_POOL = 4;
+
+  /**
+   * The size of the buffer used by {@link #writeTo(OutputStream)}. The content of this buffer is
+   * written to the stream each time its length exceeds this value.
+   */
+  private static final int OUTPUT_BUFFER_SIZE = 8192;
+
+  /**
+   * The flags passed to the constructor. Must be zero or more of {@link #COMPUTE_MAXS}, {@link
+   * #COMPUTE_FRAMES} and {@link #COMPACT_CONSTANT_POOL}.
    */
   private final int flags;
 
@@ -222,6 +257,53 @@ public class ClassWriter extends ClassVisitor {
    */
   private int compute;
 
+  /**
+   * Whether the ASM specific instructions are being replaced with standard ones, in {@link
+   * #replaceAsmInstructions}. In this case {@link #getMethodFlags} must not be used, since the
+   * frames and maxs have already been computed.
+   */
+  private boolean replacingAsmInstructions;
+
+  /**
+   * The type hierarchy used by {@link #getCommonSuperClass}, or {@literal null} to load the classes
+   * with {@link #getClassLoader}.
+   */
+  private TypeHierarchy typeHierarchy;
+
+  /**
+   * The number of basic blocks processed by {@link MethodWriter} to compute the stack map frames of
+   * the methods of this class. A basic block is counted each time it is processed.
+   */
+  long frameBlockVisitCount;
+
+  /**
+   * The number of stack map frame merges done by {@link MethodWriter} to compute the stack map
+   * frames of the methods of this class (one per processed control flow graph edge).
+   */
+  long frameMergeCount;
+
+  /**
+   * The number of passes done by {@link MethodWriter} over the basic blocks of the methods of this
+   * class to compute their stack map frames. Each method requires at least one pass, plus one each
+   * time a backward edge (e.g. a loop) changes the frame of an already processed block.
+   */
+  long frameIterationCount;
+
+  /**
+   * The number of calls to {@link #getCommonSuperClass} done by {@link SymbolTable} to compute the
+   * stack map frames of the methods of this class.
+   */
+  int commonSuperClassCount;
+
+  /** The listener notified when the class file is produced, or {@literal null}. */
+  private MetricsListener metricsListener;
+
+  /**
+   * The value of {@link System#nanoTime} when {@link #visit} was called, if {@link
+   * #metricsListener} was set at this time. Otherwise 0.
+   */
+  private long visitStartTime;
+
   // -----------------------------------------------------------------------------------------------
   // Constructor
   // -----------------------------------------------------------------------------------------------
@@ -230,7 +312,8 @@ public class ClassWriter extends ClassVisitor {
    * Constructs a new {@link ClassWriter} object.
    *
    * @param flags option flags that can be used to modify the default behavior of this class. Must
-   *     be zero or more of {@link #COMPUTE_MAXS} and {@link #COMPUTE_FRAMES}.
+   *     be zero or more of {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES} and {@link
+   *     #COMPACT_CONSTANT_POOL}.
    */
   public ClassWriter(final int flags) {
     this(null, flags);
@@ -250,29 +333,99 @@ public class ClassWriter extends ClassVisitor {
    *       instructions), which saves a <i>lot</i> of time. Untransformed methods are detected by
    *       the fact that the {@link ClassReader} receives {@link MethodVisitor} objects that come
    *       from a {@link ClassWriter} (and not from any other {@link ClassVisitor} instance).
+   *   <li>Likewise, fields, record components and annotations that are not transformed are copied
+   *       as is in the new class. Untransformed fields, record components and annotations are
+   *       detected by the fact that the {@link ClassReader} receives {@link FieldVisitor}, {@link
+   *       RecordComponentVisitor} or {@link AnnotationVisitor} objects that come from a {@link
+   *       ClassWriter}. The number of bytes copied this way can be obtained with {@link
+   *       #getCopiedByteCount}.
    * </ul>
    *
    * @param classReader the {@link ClassReader} used to read the original class. It will be used to
    *     copy the entire constant pool and bootstrap methods from the original class and also to
    *     copy other fragments of original bytecode where applicable.
    * @param flags option flags that can be used to modify the default behavior of this class. Must
-   *     be zero or more of {@link #COMPUTE_MAXS} and {@link #COMPUTE_FRAMES}. <i>These option flags
-   *     do not affect methods that are copied as is in the new class. This means that neither the
-   *     maximum stack size nor the stack frames will be computed for these methods</i>.
+   *     be zero or more of {@link #COMPUTE_MAXS}, {@link #COMPUTE_FRAMES} and {@link
+   *     #COMPACT_CONSTANT_POOL}. <i>The first two option flags do not affect methods that are
+   *     copied as is in the new class. This means that neither the maximum stack size nor the
+   *     stack frames will be computed for these methods</i>.
    */
   public ClassWriter(final ClassReader classReader, final int flags) {
     super(/* latest api = */ Opcodes.ASM9);
     this.flags = flags;
     symbolTable = classReader == null ? new SymbolTable(this) : new SymbolTable(this, classReader);
+    compute = getCompute(flags);
+  }
+
+  /**
+   * Returns the {@link #compute} value corresponding to the given option flags.
+   *
+   * @param flags option flags. Must be zero or more of {@link #COMPUTE_MAXS} and {@link
+   *     #COMPUTE_FRAMES}.
+   * @return the {@link #compute} value corresponding to 'flags'.
+   */
+  private static int getCompute(final int flags) {
     if ((flags & COMPUTE_FRAMES) != 0) {
-      compute = MethodWriter.COMPUTE_ALL_FRAMES;
+      return MethodWriter.COMPUTE_ALL_FRAMES;
     } else if ((flags & COMPUTE_MAXS) != 0) {
-      compute = MethodWriter.COMPUTE_MAX_STACK_AND_LOCAL;
+      return MethodWriter.COMPUTE_MAX_STACK_AND_LOCAL;
     } else {
-      compute = MethodWriter.COMPUTE_NOTHING;
+      return MethodWriter.COMPUTE_NOTHING;
     }
   }
 
+  /**
+   * Resets this ClassWriter, so that it can be reused to generate a new class. After this call,
+   * this ClassWriter is in the same state as a new ClassWriter constructed with the same flags, and
+   * without {@link ClassReader} (i.e. the constant pool of the class it was constructed with, if
+   * any, is no longer copied). The only difference is that its internal tables and buffers are
+   * reused (after being cleared), which avoids reallocating them for each generated class. The type
+   * hierarchy, if any, is kept.
+   *
+   * <p>This method must not be called while a class is being visited, and the {@link
+   * FieldVisitor}, {@link MethodVisitor}, etc, previously returned by this ClassWriter must no
+   * longer be used after this call.
+   */
+  public void reset() {
+    symbolTable.reset();
+    version = 0;
+    accessFlags = 0;
+    thisClass = 0;
+    superClass = 0;
+    interfaceCount = 0;
+    interfaces = null;
+    firstField = null;
+    lastField = null;
+    firstMethod = null;
+    lastMethod = null;
+    numberOfInnerClasses = 0;
+    innerClasses = null;
+    enclosingClassIndex = 0;
+    enclosingMethodIndex = 0;
+    signatureIndex = 0;
+    sourceFileIndex = 0;
+    debugExtension = null;
+    lastRuntimeVisibleAnnotation = null;
+    lastRuntimeInvisibleAnnotation = null;
+    lastRuntimeVisibleTypeAnnotation = null;
+    lastRuntimeInvisibleTypeAnnotation = null;
+    moduleWriter = null;
+    nestHostClassIndex = 0;
+    numberOfNestMemberClasses = 0;
+    nestMemberClasses = null;
+    numberOfPermittedSubclasses = 0;
+    permittedSubclasses = null;
+    firstRecordComponent = null;
+    lastRecordComponent = null;
+    firstAttribute = null;
+    compute = getCompute(flags);
+    frameBlockVisitCount = 0;
+    frameMergeCount = 0;
+    frameIterationCount = 0;
+    commonSuperClassCount = 0;
+    visitStartTime = 0;
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Accessors
   // -----------------------------------------------------------------------------------------------
@@ -280,14 +433,111 @@ public class ClassWriter extends ClassVisitor {
   /**
    * Returns true if all the given flags were passed to the constructor.
    *
-   * @param flags some option flags. Must be zero or more of {@link #COMPUTE_MAXS} and {@link
-   *     #COMPUTE_FRAMES}.
+   * @param flags some option flags. Must be zero or more of {@link #COMPUTE_MAXS}, {@link
+   *     #COMPUTE_FRAMES} and {@link #COMPACT_CONSTANT_POOL}.
    * @return true if all the given flags, or more, were passed to the constructor.
    */
   public boolean hasFlags(final int flags) {
     return (this.flags & flags) == flags;
   }
 
+  /**
+   * Returns the number of bytes of the class built by this ClassWriter that are copied as is from
+   * the {@link ClassReader} passed to the constructor. These bytes include the constant pool and
+   * the bootstrap methods, as well as the content of the untransformed methods, fields, record
+   * components and annotations. The other bytes of the class are re-encoded from visit events.
+   * Note that with {@link #COMPACT_CONSTANT_POOL}, the whole class is finally re-encoded.
+   *
+   * @return the number of bytes of the class built by this ClassWriter that are copied as is from
+   *     the original class, or 0 if no {@link ClassReader} was passed to the constructor.
+   */
+  public int getCopiedByteCount() {
+    return symbolTable.getCopiedByteCount();
+  }
+
+  /**
+   * Sets the type hierarchy used by the default implementation of {@link #getCommonSuperClass} to
+   * compute the stack map frames. By default, no type hierarchy is used, and the classes are loaded
+   * with {@link #getClassLoader} instead.
+   *
+   * @param typeHierarchy the type hierarchy to use to compute common super classes, or {@literal
+   *     null} to load the classes with {@link #getClassLoader}. A {@link ClassReaderTypeHierarchy}
+   *     computes common super classes without loading any class.
+   */
+  public void setTypeHierarchy(final TypeHierarchy typeHierarchy) {
+    this.typeHierarchy = typeHierarchy;
+  }
+
+  /**
+   * Returns the type hierarchy used by the default implementation of {@link #getCommonSuperClass}.
+   *
+   * @return the type hierarchy used to compute common super classes, or {@literal null} if the
+   *     classes are loaded with {@link #getClassLoader}.
+   */
+  public TypeHierarchy getTypeHierarchy() {
+    return typeHierarchy;
+  }
+
+  /**
+   * Returns the number of basic blocks processed to compute the stack map frames of the methods
+   * visited so far, with {@link #COMPUTE_FRAMES}. A basic block can be processed several times, if
+   * its input frame changes after it has been processed (e.g. at the start of a loop). Together
+   * with {@link #getFrameMergeCount} and {@link #getFrameIterationCount}, this is intended for
+   * diagnostics, e.g. to find the methods whose frames are costly to compute.
+   *
+   * @return the number of basic blocks processed to compute the stack map frames, or 0 if {@link
+   *     #COMPUTE_FRAMES} is not used.
+   */
+  public long getFrameBlockVisitCount() {
+    return frameBlockVisitCount;
+  }
+
+  /**
+   * Returns the number of stack map frame merges done to compute the stack map frames of the
+   * methods visited so far, with {@link #COMPUTE_FRAMES}. One merge is done for each outgoing
+   * control flow graph edge of each processed basic block.
+   *
+   * @return the number of frame merges done to compute the stack map frames, or 0 if {@link
+   *     #COMPUTE_FRAMES} is not used.
+   */
+  public long getFrameMergeCount() {
+    return frameMergeCount;
+  }
+
+  /**
+   * Returns the number of passes over the basic blocks done to compute the stack map frames of the
+   * methods visited so far, with {@link #COMPUTE_FRAMES}. The basic blocks are processed in reverse
+   * postorder, so that a method without loops needs a single pass. Each backward edge which changes
+   * the frame of an already processed block requires a new pass, starting at this block.
+   *
+   * @return the number of passes done to compute the stack map frames, or 0 if {@link
+   *     #COMPUTE_FRAMES} is not used.
+   */
+  public long getFrameIterationCount() {
+    return frameIterationCount;
+  }
+
+  /**
+   * Sets the listener notified at the end of each {@link #toByteArray} or {@link #writeTo} call,
+   * with some metrics about the class file which has been produced. By default, there is no
+   * listener, and no time is measured. This method should be called before {@link #visit}, so that
+   * the reported duration can be measured from this call (otherwise the reported duration is -1).
+   *
+   * @param metricsListener the listener to notify, or {@literal null} to report no metrics.
+   */
+  public void setMetricsListener(final MetricsListener metricsListener) {
+    this.metricsListener = metricsListener;
+  }
+
+  /**
+   * Returns the listener notified at the end of each {@link #toByteArray} or {@link #writeTo} call.
+   *
+   * @return the listener notified when a class file is produced, or {@literal null}.
+   */
+  public MetricsListener getMetricsListener() {
+    return metricsListener;
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Implementation of the ClassVisitor abstract class
   // -----------------------------------------------------------------------------------------------
@@ -300,6 +550,10 @@ public class ClassWriter extends ClassVisitor {
       final String signature,
       final String superName,
       final String[] interfaces) {
+    if (metricsListener != null && visitStartTime == 0) {
+      // Don't restart the measure if this method is called again by replaceAsmInstructions.
+      visitStartTime = System.nanoTime();
+    }
     this.version = version;
     this.accessFlags = access;
     this.thisClass = symbolTable.setMajorVersionAndClassName(version & 0xFFFF, name);
@@ -466,8 +720,19 @@ public class ClassWriter extends ClassVisitor {
       final String descriptor,
       final String signature,
       final String[] exceptions) {
+    // Don't use the method specific option flags when the ASM specific instructions are being
+    // replaced (see replaceAsmInstructions), since the frames and maxs have already been computed.
+    int methodCompute = compute;
+    if (!replacingAsmInstructions) {
+      methodCompute = getCompute(getMethodFlags(access, name, descriptor));
+      if (methodCompute == MethodWriter.COMPUTE_MAX_STACK_AND_LOCAL
+          && (version & 0xFFFF) >= Opcodes.V1_7) {
+        methodCompute = MethodWriter.COMPUTE_MAX_STACK_AND_LOCAL_FROM_FRAMES;
+      }
+    }
     MethodWriter methodWriter =
-        new MethodWriter(symbolTable, access, name, descriptor, signature, exceptions, compute);
+        new MethodWriter(
+            symbolTable, access, name, descriptor, signature, exceptions, methodCompute);
     if (firstMethod == null) {
       firstMethod = methodWriter;
     } else {
@@ -493,125 +758,285 @@ public class ClassWriter extends ClassVisitor {
    * @throws MethodTooLargeException if the Code attribute of a method is too large.
    */
   public byte[] toByteArray() {
-    // First step: compute the size in bytes of the ClassFile structure.
+    byte[] classFile = buildClassFile();
+    if (metricsListener != null) {
+      reportMetrics(classFile.length);
+    }
+    return classFile;
+  }
+
+  /**
+   * Returns the content of the class file that was built by this ClassWriter. This is the same as
+   * {@link #toByteArray}, but without notifying the {@link #metricsListener}.
+   *
+   * @return the binary content of the JVMS ClassFile structure that was built by this ClassWriter.
+   */
+  private byte[] buildClassFile() {
+    boolean hasFrames = false;
+    boolean hasAsmInstructions = false;
+    MethodWriter methodWriter = firstMethod;
+    while (methodWriter != null) {
+      hasFrames |= methodWriter.hasFrames();
+      hasAsmInstructions |= methodWriter.hasAsmInstructions();
+      methodWriter = (MethodWriter) methodWriter.mv;
+    }
+    // Allocate a ByteVector of the correct size (in order to avoid any array copy in dynamic
+    // resizes) and fill it with the ClassFile content.
+    ByteVector result = new ByteVector(computeClassFileSize());
+    try {
+      putClassFile(result, null);
+    } catch (IOException e) {
+      // Can't happen, since no OutputStream is used.
+      throw new IllegalStateException(e);
+    }
+    // Replace the ASM specific instructions, if any (this calls toByteArray recursively, which
+    // then removes the unused constant pool items, if needed).
+    if (hasAsmInstructions) {
+      return replaceAsmInstructions(result.data, hasFrames);
+    } else if ((flags & COMPACT_CONSTANT_POOL) != 0) {
+      return compactConstantPool(result.data);
+    } else {
+      return result.data;
+    }
+  }
+
+  /**
+   * Returns the size of the class file that was built by this ClassWriter. This is the length of
+   * the array that {@link #toByteArray} would return, and the number of bytes that the {@link
+   * #writeTo} methods would write. Note that computing this size requires building the class file
+   * with {@link #COMPACT_CONSTANT_POOL}, or if some methods contain forward jumps whose offset
+   * does not fit in a signed short (ASM then needs to replace the corresponding instructions,
+   * which changes the size of the class file).
+   *
+   * @return the size in bytes of the JVMS ClassFile structure that was built by this ClassWriter.
+   * @throws ClassTooLargeException if the constant pool of the class is too large.
+   * @throws MethodTooLargeException if the Code attribute of a method is too large.
+   */
+  public int computeSize() {
+    if (!canStreamClassFile()) {
+      return buildClassFile().length;
+    }
+    return computeClassFileSize();
+  }
+
+  /**
+   * Writes the content of the class file that was built by this ClassWriter to the given stream.
+   * This is equivalent to writing the result of {@link #toByteArray}, but without building this
+   * array: the constant pool is written directly, and the rest of the class file is written in
+   * chunks of a few kilobytes. The stream is neither flushed nor closed by this method.
+   *
+   * @param outputStream where the JVMS ClassFile structure that was built by this ClassWriter must
+   *     be written.
+   * @throws IOException if a problem occurs while writing to the stream.
+   * @throws ClassTooLargeException if the constant pool of the class is too large.
+   * @throws MethodTooLargeException if the Code attribute of a method is too large.
+   */
+  public void writeTo(final OutputStream outputStream) throws IOException {
+    if (!canStreamClassFile()) {
+      byte[] classFile = buildClassFile();
+      outputStream.write(classFile);
+      if (metricsListener != null) {
+        reportMetrics(classFile.length);
+      }
+      return;
+    }
+    // The size computation must be done first, because it can add attribute names to the constant
+    // pool (and can throw a ClassTooLargeException or a MethodTooLargeException).
+    int classFileSize = computeClassFileSize();
+    putClassFile(new ByteVector(OUTPUT_BUFFER_SIZE), outputStream);
+    if (metricsListener != null) {
+      reportMetrics(classFileSize);
+    }
+  }
+
+  /**
+   * Writes the content of the class file that was built by this ClassWriter in the given buffer,
+   * starting at its current position. This is equivalent to putting the result of {@link
+   * #toByteArray} in this buffer, but without building this array. The position of the buffer is
+   * incremented by {@link #computeSize}, and it is unchanged if a BufferOverflowException is
+   * thrown.
+   *
+   * @param byteBuffer where the JVMS ClassFile structure that was built by this ClassWriter must
+   *     be written.
+   * @throws BufferOverflowException if there is insufficient space in the buffer.
+   * @throws java.nio.ReadOnlyBufferException if the buffer is read-only.
+   * @throws ClassTooLargeException if the constant pool of the class is too large.
+   * @throws MethodTooLargeException if the Code attribute of a method is too large.
+   */
+  public void writeTo(final ByteBuffer byteBuffer) {
+    if (!canStreamClassFile()) {
+      byte[] classFile = buildClassFile();
+      if (byteBuffer.remaining() < classFile.length) {
+        throw new BufferOverflowException();
+      }
+      byteBuffer.put(classFile);
+      if (metricsListener != null) {
+        reportMetrics(classFile.length);
+      }
+      return;
+    }
+    int classFileSize = computeClassFileSize();
+    if (byteBuffer.remaining() < classFileSize) {
+      throw new BufferOverflowException();
+    }
+    try {
+      putClassFile(new ByteVector(OUTPUT_BUFFER_SIZE), new ByteBufferOutputStream(byteBuffer));
+    } catch (IOException e) {
+      // Can't happen, since ByteBufferOutputStream does not throw IOException.
+      throw new IllegalStateException(e);
+    }
+    if (metricsListener != null) {
+      reportMetrics(classFileSize);
+    }
+  }
+
+  /**
+   * Notifies the {@link #metricsListener} that the class file has been produced.
+   *
+   * @param classFileSize the size in bytes of the class file which has been produced.
+   */
+  private void reportMetrics(final int classFileSize) {
+    ClassMetrics metrics = new ClassMetrics(symbolTable.getClassName());
+    metrics.byteCount = classFileSize;
+    metrics.constantPoolCount = symbolTable.getConstantPoolCount();
+    metrics.durationNanos = visitStartTime == 0 ? -1 : System.nanoTime() - visitStartTime;
+    metrics.copiedByteCount = symbolTable.getCopiedByteCount();
+    MethodWriter methodWriter = firstMethod;
+    while (methodWriter != null) {
+      metrics.stackMapFrameCount += methodWriter.getStackMapFrameCount();
+      methodWriter = (MethodWriter) methodWriter.mv;
+    }
+    metrics.frameBlockVisitCount = frameBlockVisitCount;
+    metrics.frameMergeCount = frameMergeCount;
+    metrics.frameIterationCount = frameIterationCount;
+    metrics.commonSuperClassCount = commonSuperClassCount;
+    metricsListener.classWritten(metrics);
+  }
+
+  /**
+   * Returns whether the class file built by this ClassWriter can be written directly by {@link
+   * #putClassFile}, i.e. whether it does not need to be post-processed by {@link #toByteArray}.
+   *
+   * @return false if {@link #COMPACT_CONSTANT_POOL} is set, or if at least one method of this class
+   *     contains ASM specific instructions.
+   */
+  private boolean canStreamClassFile() {
+    if ((flags & COMPACT_CONSTANT_POOL) != 0) {
+      return false;
+    }
+    MethodWriter methodWriter = firstMethod;
+    while (methodWriter != null) {
+      if (methodWriter.hasAsmInstructions()) {
+        return false;
+      }
+      methodWriter = (MethodWriter) methodWriter.mv;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the size of the class file that was built by this ClassWriter, without replacing the
+   * ASM specific instructions. Also adds all the attribute names used in this class file to the
+   * constant pool, which must thus be done before {@link #putClassFile} is called.
+   *
+   * @return the size in bytes of the JVMS ClassFile structure that was built by this ClassWriter,
+   *     with the ASM specific instructions it may contain.
+   * @throws ClassTooLargeException if the constant pool of the class is too large.
+   * @throws MethodTooLargeException if the Code attribute of a method is too large.
+   */
+  private int computeClassFileSize() {
     // The magic field uses 4 bytes, 10 mandatory fields (minor_version, major_version,
     // constant_pool_count, access_flags, this_class, super_class, interfaces_count, fields_count,
     // methods_count and attributes_count) use 2 bytes each, and each interface uses 2 bytes too.
     int size = 24 + 2 * interfaceCount;
-    int fieldsCount = 0;
     FieldWriter fieldWriter = firstField;
     while (fieldWriter != null) {
-      ++fieldsCount;
       size += fieldWriter.computeFieldInfoSize();
       fieldWriter = (FieldWriter) fieldWriter.fv;
     }
-    int methodsCount = 0;
     MethodWriter methodWriter = firstMethod;
     while (methodWriter != null) {
-      ++methodsCount;
       size += methodWriter.computeMethodInfoSize();
       methodWriter = (MethodWriter) methodWriter.mv;
     }
-
     // For ease of reference, we use here the same attribute order as in Section 4.7 of the JVMS.
-    int attributesCount = 0;
     if (innerClasses != null) {
-      ++attributesCount;
       size += 8 + innerClasses.length;
       symbolTable.addConstantUtf8(Constants.INNER_CLASSES);
     }
     if (enclosingClassIndex != 0) {
-      ++attributesCount;
       size += 10;
       symbolTable.addConstantUtf8(Constants.ENCLOSING_METHOD);
     }
     if ((accessFlags & Opcodes.ACC_SYNTHETIC) != 0 && (version & 0xFFFF) < Opcodes.V1_5) {
-      ++attributesCount;
       size += 6;
       symbolTable.addConstantUtf8(Constants.SYNTHETIC);
     }
     if (signatureIndex != 0) {
-      ++attributesCount;
       size += 8;
       symbolTable.addConstantUtf8(Constants.SIGNATURE);
     }
     if (sourceFileIndex != 0) {
-      ++attributesCount;
       size += 8;
       symbolTable.addConstantUtf8(Constants.SOURCE_FILE);
     }
     if (debugExtension != null) {
-      ++attributesCount;
       size += 6 + debugExtension.length;
       symbolTable.addConstantUtf8(Constants.SOURCE_DEBUG_EXTENSION);
     }
     if ((accessFlags & Opcodes.ACC_DEPRECATED) != 0) {
-      ++attributesCount;
       size += 6;
       symbolTable.addConstantUtf8(Constants.DEPRECATED);
     }
     if (lastRuntimeVisibleAnnotation != null) {
-      ++attributesCount;
       size +=
           lastRuntimeVisibleAnnotation.computeAnnotationsSize(
               Constants.RUNTIME_VISIBLE_ANNOTATIONS);
     }
     if (lastRuntimeInvisibleAnnotation != null) {
-      ++attributesCount;
       size +=
           lastRuntimeInvisibleAnnotation.computeAnnotationsSize(
               Constants.RUNTIME_INVISIBLE_ANNOTATIONS);
     }
     if (lastRuntimeVisibleTypeAnnotation != null) {
-      ++attributesCount;
       size +=
           lastRuntimeVisibleTypeAnnotation.computeAnnotationsSize(
               Constants.RUNTIME_VISIBLE_TYPE_ANNOTATIONS);
     }
     if (lastRuntimeInvisibleTypeAnnotation != null) {
-      ++attributesCount;
       size +=
           lastRuntimeInvisibleTypeAnnotation.computeAnnotationsSize(
               Constants.RUNTIME_INVISIBLE_TYPE_ANNOTATIONS);
     }
     if (symbolTable.computeBootstrapMethodsSize() > 0) {
-      ++attributesCount;
       size += symbolTable.computeBootstrapMethodsSize();
     }
     if (moduleWriter != null) {
-      attributesCount += moduleWriter.getAttributeCount();
       size += moduleWriter.computeAttributesSize();
     }
     if (nestHostClassIndex != 0) {
-      ++attributesCount;
       size += 8;
       symbolTable.addConstantUtf8(Constants.NEST_HOST);
     }
     if (nestMemberClasses != null) {
-      ++attributesCount;
       size += 8 + nestMemberClasses.length;
       symbolTable.addConstantUtf8(Constants.NEST_MEMBERS);
     }
     if (permittedSubclasses != null) {
-      ++attributesCount;
       size += 8 + permittedSubclasses.length;
       symbolTable.addConstantUtf8(Constants.PERMITTED_SUBCLASSES);
     }
-    int recordComponentCount = 0;
     int recordSize = 0;
     if ((accessFlags & Opcodes.ACC_RECORD) != 0 || firstRecordComponent != null) {
       RecordComponentWriter recordComponentWriter = firstRecordComponent;
       while (recordComponentWriter != null) {
-        ++recordComponentCount;
         recordSize += recordComponentWriter.computeRecordComponentInfoSize();
         recordComponentWriter = (RecordComponentWriter) recordComponentWriter.delegate;
       }
-      ++attributesCount;
       size += 8 + recordSize;
       symbolTable.addConstantUtf8(Constants.RECORD);
     }
     if (firstAttribute != null) {
-      attributesCount += firstAttribute.getAttributeCount();
       size += firstAttribute.computeAttributesSize(symbolTable);
     }
     // IMPORTANT: this must be the last part of the ClassFile size computation, because the previous
@@ -621,126 +1046,202 @@ public class ClassWriter extends ClassVisitor {
     if (constantPoolCount > 0xFFFF) {
       throw new ClassTooLargeException(symbolTable.getClassName(), constantPoolCount);
     }
+    return size;
+  }
 
-    // Second step: allocate a ByteVector of the correct size (in order to avoid any array copy in
-    // dynamic resizes) and fill it with the ClassFile content.
-    ByteVector result = new ByteVector(size);
-    result.putInt(0xCAFEBABE).putInt(version);
-    symbolTable.putConstantPool(result);
+  /**
+   * Puts the content of the class file that was built by this ClassWriter in the given ByteVector,
+   * or writes it to the given stream. {@link #computeClassFileSize} must be called before this
+   * method.
+   *
+   * @param output where the JVMS ClassFile structure that was built by this ClassWriter must be
+   *     put, if 'outputStream' is {@literal null}. Otherwise, a temporary buffer whose content is
+   *     written to 'outputStream' each time its length exceeds {@link #OUTPUT_BUFFER_SIZE}.
+   * @param outputStream where the JVMS ClassFile structure must be written, or {@literal null}.
+   * @throws IOException if a problem occurs while writing to the stream.
+   */
+  private void putClassFile(final ByteVector output, final OutputStream outputStream)
+      throws IOException {
+    output.putInt(0xCAFEBABE).putInt(version);
+    if (outputStream == null) {
+      symbolTable.putConstantPool(output);
+    } else {
+      // Write the constant pool directly, without copying it in 'output'.
+      output.putShort(symbolTable.getConstantPoolCount());
+      flush(output, outputStream, 0);
+      ByteVector constantPool = symbolTable.getConstantPool();
+      outputStream.write(constantPool.data, 0, constantPool.length);
+    }
     int mask = (version & 0xFFFF) < Opcodes.V1_5 ? Opcodes.ACC_SYNTHETIC : 0;
-    result.putShort(accessFlags & ~mask).putShort(thisClass).putShort(superClass);
-    result.putShort(interfaceCount);
+    output.putShort(accessFlags & ~mask).putShort(thisClass).putShort(superClass);
+    output.putShort(interfaceCount);
     for (int i = 0; i < interfaceCount; ++i) {
-      result.putShort(interfaces[i]);
+      output.putShort(interfaces[i]);
+    }
+    int fieldsCount = 0;
+    FieldWriter fieldWriter = firstField;
+    while (fieldWriter != null) {
+      ++fieldsCount;
+      fieldWriter = (FieldWriter) fieldWriter.fv;
     }
-    result.putShort(fieldsCount);
+    output.putShort(fieldsCount);
     fieldWriter = firstField;
     while (fieldWriter != null) {
-      fieldWriter.putFieldInfo(result);
+      fieldWriter.putFieldInfo(output);
+      flush(output, outputStream, OUTPUT_BUFFER_SIZE);
       fieldWriter = (FieldWriter) fieldWriter.fv;
     }
-    result.putShort(methodsCount);
-    boolean hasFrames = false;
-    boolean hasAsmInstructions = false;
+    int methodsCount = 0;
+    MethodWriter methodWriter = firstMethod;
+    while (methodWriter != null) {
+      ++methodsCount;
+      methodWriter = (MethodWriter) methodWriter.mv;
+    }
+    output.putShort(methodsCount);
     methodWriter = firstMethod;
     while (methodWriter != null) {
-      hasFrames |= methodWriter.hasFrames();
-      hasAsmInstructions |= methodWriter.hasAsmInstructions();
-      methodWriter.putMethodInfo(result);
+      methodWriter.putMethodInfo(output);
+      flush(output, outputStream, OUTPUT_BUFFER_SIZE);
       methodWriter = (MethodWriter) methodWriter.mv;
     }
     // For ease of reference, we use here the same attribute order as in Section 4.7 of the JVMS.
-    result.putShort(attributesCount);
+    // The attributes_count value is set at the end, when it is known.
+    int attributesCountOffset = output.length;
+    int attributesCount = 0;
+    output.putShort(0);
     if (innerClasses != null) {
-      result
+      ++attributesCount;
+      output
           .putShort(symbolTable.addConstantUtf8(Constants.INNER_CLASSES))
           .putInt(innerClasses.length + 2)
           .putShort(numberOfInnerClasses)
           .putByteArray(innerClasses.data, 0, innerClasses.length);
     }
     if (enclosingClassIndex != 0) {
-      result
+      ++attributesCount;
+      output
           .putShort(symbolTable.addConstantUtf8(Constants.ENCLOSING_METHOD))
           .putInt(4)
           .putShort(enclosingClassIndex)
           .putShort(enclosingMethodIndex);
     }
     if ((accessFlags & Opcodes.ACC_SYNTHETIC) != 0 && (version & 0xFFFF) < Opcodes.V1_5) {
-      result.putShort(symbolTable.addConstantUtf8(Constants.SYNTHETIC)).putInt(0);
+      ++attributesCount;
+      output.putShort(symbolTable.addConstantUtf8(Constants.SYNTHETIC)).putInt(0);
     }
     if (signatureIndex != 0) {
-      result
+      ++attributesCount;
+      output
           .putShort(symbolTable.addConstantUtf8(Constants.SIGNATURE))
           .putInt(2)
           .putShort(signatureIndex);
     }
     if (sourceFileIndex != 0) {
-      result
+      ++attributesCount;
+      output
           .putShort(symbolTable.addConstantUtf8(Constants.SOURCE_FILE))
           .putInt(2)
           .putShort(sourceFileIndex);
     }
     if (debugExtension != null) {
+      ++attributesCount;
       int length = debugExtension.length;
-      result
+      output
           .putShort(symbolTable.addConstantUtf8(Constants.SOURCE_DEBUG_EXTENSION))
           .putInt(length)
           .putByteArray(debugExtension.data, 0, length);
     }
     if ((accessFlags & Opcodes.ACC_DEPRECATED) != 0) {
-      result.putShort(symbolTable.addConstantUtf8(Constants.DEPRECATED)).putInt(0);
+      ++attributesCount;
+      output.putShort(symbolTable.addConstantUtf8(Constants.DEPRECATED)).putInt(0);
     }
+    attributesCount +=
+        (lastRuntimeVisibleAnnotation != null ? 1 : 0)
+            + (lastRuntimeInvisibleAnnotation != null ? 1 : 0)
+            + (lastRuntimeVisibleTypeAnnotation != null ? 1 : 0)
+            + (lastRuntimeInvisibleTypeAnnotation != null ? 1 : 0);
     AnnotationWriter.putAnnotations(
         symbolTable,
         lastRuntimeVisibleAnnotation,
         lastRuntimeInvisibleAnnotation,
         lastRuntimeVisibleTypeAnnotation,
         lastRuntimeInvisibleTypeAnnotation,
-        result);
-    symbolTable.putBootstrapMethods(result);
+        output);
+    if (symbolTable.computeBootstrapMethodsSize() > 0) {
+      ++attributesCount;
+      symbolTable.putBootstrapMethods(output);
+    }
     if (moduleWriter != null) {
-      moduleWriter.putAttributes(result);
+      attributesCount += moduleWriter.getAttributeCount();
+      moduleWriter.putAttributes(output);
     }
     if (nestHostClassIndex != 0) {
-      result
+      ++attributesCount;
+      output
           .putShort(symbolTable.addConstantUtf8(Constants.NEST_HOST))
           .putInt(2)
           .putShort(nestHostClassIndex);
     }
     if (nestMemberClasses != null) {
-      result
+      ++attributesCount;
+      output
           .putShort(symbolTable.addConstantUtf8(Constants.NEST_MEMBERS))
           .putInt(nestMemberClasses.length + 2)
           .putShort(numberOfNestMemberClasses)
           .putByteArray(nestMemberClasses.data, 0, nestMemberClasses.length);
     }
     if (permittedSubclasses != null) {
-      result
+      ++attributesCount;
+      output
           .putShort(symbolTable.addConstantUtf8(Constants.PERMITTED_SUBCLASSES))
           .putInt(permittedSubclasses.length + 2)
           .putShort(numberOfPermittedSubclasses)
           .putByteArray(permittedSubclasses.data, 0, permittedSubclasses.length);
     }
     if ((accessFlags & Opcodes.ACC_RECORD) != 0 || firstRecordComponent != null) {
-      result
+      ++attributesCount;
+      int recordComponentCount = 0;
+      int recordSize = 0;
+      RecordComponentWriter recordComponentWriter = firstRecordComponent;
+      while (recordComponentWriter != null) {
+        ++recordComponentCount;
+        recordSize += recordComponentWriter.computeRecordComponentInfoSize();
+        recordComponentWriter = (RecordComponentWriter) recordComponentWriter.delegate;
+      }
+      output
           .putShort(symbolTable.addConstantUtf8(Constants.RECORD))
           .putInt(recordSize + 2)
           .putShort(recordComponentCount);
-      RecordComponentWriter recordComponentWriter = firstRecordComponent;
+      recordComponentWriter = firstRecordComponent;
       while (recordComponentWriter != null) {
-        recordComponentWriter.putRecordComponentInfo(result);
+        recordComponentWriter.putRecordComponentInfo(output);
         recordComponentWriter = (RecordComponentWriter) recordComponentWriter.delegate;
       }
     }
     if (firstAttribute != null) {
-      firstAttribute.putAttributes(symbolTable, result);
+      attributesCount += firstAttribute.getAttributeCount();
+      firstAttribute.putAttributes(symbolTable, output);
     }
+    output.data[attributesCountOffset] = (byte) (attributesCount >>> 8);
+    output.data[attributesCountOffset + 1] = (byte) attributesCount;
+    flush(output, outputStream, 0);
+  }
 
-    // Third step: replace the ASM specific instructions, if any.
-    if (hasAsmInstructions) {
-      return replaceAsmInstructions(result.data, hasFrames);
-    } else {
-      return result.data;
+  /**
+   * Writes the content of the given ByteVector to the given stream, if its length exceeds the given
+   * value, and then clears it. Does nothing if the stream is {@literal null}.
+   *
+   * @param output a temporary buffer.
+   * @param outputStream where the content of 'output' must be written, or {@literal null}.
+   * @param minLength the minimum length of 'output' for its content to be written.
+   * @throws IOException if a problem occurs while writing to the stream.
+   */
+  private static void flush(
+      final ByteVector output, final OutputStream outputStream, final int minLength)
+      throws IOException {
+    if (outputStream != null && output.length >= minLength) {
+      outputStream.write(output.data, 0, output.length);
+      output.length = 0;
     }
   }
 
@@ -774,12 +1275,35 @@ public class ClassWriter extends ClassVisitor {
     lastRecordComponent = null;
     firstAttribute = null;
     compute = hasFrames ? MethodWriter.COMPUTE_INSERTED_FRAMES : MethodWriter.COMPUTE_NOTHING;
+    replacingAsmInstructions = true;
     new ClassReader(classFile, 0, /* checkClassVersion = */ false)
         .accept(
             this,
             attributes,
             (hasFrames ? ClassReader.EXPAND_FRAMES : 0) | ClassReader.EXPAND_ASM_INSNS);
-    return toByteArray();
+    replacingAsmInstructions = false;
+    return buildClassFile();
+  }
+
+  /**
+   * Returns the equivalent of the given class file, without the unused constant pool items. This is
+   * done with a ClassReader -&gt; ClassWriter round trip, where the new ClassWriter adds the
+   * constant pool items in the order of their first use.
+   *
+   * @param classFile a class file generated by this ClassWriter, without ASM specific instructions.
+   * @return an equivalent of 'classFile', without the unused constant pool items, or 'classFile'
+   *     itself if it contains unknown attributes (whose content may reference constant pool items).
+   */
+  private byte[] compactConstantPool(final byte[] classFile) {
+    ClassWriter classWriter = new ClassWriter(0);
+    new ClassReader(classFile, 0, /* checkClassVersion = */ false)
+        .accept(classWriter, getAttributePrototypes(), 0);
+    for (Attribute attributePrototype : classWriter.getAttributePrototypes()) {
+      if (attributePrototype.isUnknown()) {
+        return classFile;
+      }
+    }
+    return classWriter.toByteArray();
   }
 
   /**
@@ -1020,12 +1544,37 @@ public class ClassWriter extends ClassVisitor {
     return symbolTable.addConstantNameAndType(name, descriptor);
   }
 
+  // -----------------------------------------------------------------------------------------------
+  // Default method to select the option flags of each method
+  // -----------------------------------------------------------------------------------------------
+
+  /**
+   * Returns the option flags to use for the given method. The default implementation returns the
+   * flags passed to the constructor, i.e. the same options are used for all the methods. This
+   * method can be overridden to compute the maximum stack size, or the stack map frames, of some
+   * methods only. For instance, to compute the frames of the methods which are instrumented by a
+   * class adapter, but not of the other methods, which are then copied as is (see {@link
+   * #ClassWriter(ClassReader, int)}) or keep the frames visited with {@link
+   * MethodVisitor#visitFrame}.
+   *
+   * @param access the method's access flags (see {@link Opcodes}).
+   * @param name the method's name.
+   * @param descriptor the method's descriptor (see {@link Type}).
+   * @return the option flags to use for this method. Must be zero or more of {@link #COMPUTE_MAXS}
+   *     and {@link #COMPUTE_FRAMES}. <i>These option flags do not affect methods that are copied as
+   *     is in the new class</i>.
+   */
+  protected int getMethodFlags(final int access, final String name, final String descriptor) {
+    return flags;
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Default method to compute common super classes when computing stack map frames
   // -----------------------------------------------------------------------------------------------
 
   /**
    * Returns the common super type of the two given types. The default implementation of this method
+   * uses the {@link TypeHierarchy} set with {@link #setTypeHierarchy}, if any. Otherwise, it
    * <i>loads</i> the two given classes and uses the java.lang.Class methods to find the common
    * super class. It can be overridden to compute this common super type in other ways, in
    * particular without actually loading any class, or to take into account the class that is
@@ -1038,6 +1587,9 @@ public class ClassWriter extends ClassVisitor {
    *     Type#getInternalName()}).
    */
   protected String getCommonSuperClass(final String type1, final String type2) {
+    if (typeHierarchy != null) {
+      return typeHierarchy.getCommonSuperClass(type1, type2);
+    }
     ClassLoader classLoader = getClassLoader();
     Class<?> class1;
     try {
@@ -1077,4 +1629,25 @@ public class ClassWriter extends ClassVisitor {
   protected ClassLoader getClassLoader() {
     return getClass().getClassLoader();
   }
+
+  /** An {@link OutputStream} writing in a {@link ByteBuffer}. */
+  private static final class ByteBufferOutputStream extends OutputStream {
+
+    /** The buffer where the bytes must be written. */
+    private final ByteBuffer byteBuffer;
+
+    ByteBufferOutputStream(final ByteBuffer byteBuffer) {
+      this.byteBuffer = byteBuffer;
+    }
+
+    @Override
+    public void write(final int b) {
+      byteBuffer.put((byte) b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+      byteBuffer.put(b, off, len);
+    }
+  }
 }
@@ -48,6 +48,12 @@ final class Context {
   /** The buffer used to read strings in the constant pool. */
   char[] charBuffer;
 
+  /**
+   * The metrics collected while parsing this class, or {@literal null} if the {@link ClassReader}
+   * has no {@link MetricsListener}.
+   */
+  ClassMetrics metrics;
+
   // Information about the current method, i.e. the one read in the current (or latest) call
   // to {@link ClassReader#readMethod()}.
 
@@ -62,10 +68,17 @@ final class Context {
 
   /**
    * The labels of the current method, indexed by bytecode offset (only bytecode offsets for which a
-   * label is needed have a non null associated Label).
+   * label is needed have a non null associated Label), or {@literal null} if they are stored in
+   * {@link #currentMethodSparseLabels}.
    */
   Label[] currentMethodLabels;
 
+  /**
+   * The labels of the current method if {@link #currentMethodLabels} is {@literal null}. Otherwise,
+   * a table which can be reused for the next method, or {@literal null}.
+   */
+  SparseLabelTable currentMethodSparseLabels;
+
   // Information about the current type annotation target, i.e. the one read in the current
   // (or latest) call to {@link ClassReader#readAnnotationTarget()}.
 
@@ -103,6 +103,18 @@ final class FieldWriter extends FieldVisitor {
    */
   private Attribute firstAttribute;
 
+  /**
+   * The offset in bytes in {@link SymbolTable#getSource} from which the field_info for this field
+   * (excluding its first 6 bytes) must be copied, or 0.
+   */
+  private int sourceOffset;
+
+  /**
+   * The length in bytes in {@link SymbolTable#getSource} which must be copied to get the field_info
+   * for this field (excluding its first 6 bytes for access_flags, name_index and descriptor_index).
+   */
+  private int sourceLength;
+
   // -----------------------------------------------------------------------------------------------
   // Constructor
   // -----------------------------------------------------------------------------------------------
@@ -182,6 +194,66 @@ final class FieldWriter extends FieldVisitor {
   // Utility methods
   // -----------------------------------------------------------------------------------------------
 
+  /**
+   * Returns whether the attributes of this field can be copied from the attributes of the given
+   * field (assuming there is no field visitor between the given ClassReader and this FieldWriter).
+   * This method should only be called just after this FieldWriter has been created, and before any
+   * content is visited. It returns true if the attributes corresponding to the constructor
+   * arguments (at most a ConstantValue, a Signature, a Deprecated and a Synthetic attribute) are
+   * the same as the corresponding attributes in the given field.
+   *
+   * @param source the source ClassReader from which the attributes of this field might be copied.
+   * @param hasSyntheticAttribute whether the field_info JVMS structure from which the attributes of
+   *     this field might be copied contains a Synthetic attribute.
+   * @param hasDeprecatedAttribute whether the field_info JVMS structure from which the attributes
+   *     of this field might be copied contains a Deprecated attribute.
+   * @param descriptorIndex the descriptor_index field of the field_info JVMS structure from which
+   *     the attributes of this field might be copied.
+   * @param signatureIndex the constant pool index contained in the Signature attribute of the
+   *     field_info JVMS structure from which the attributes of this field might be copied, or 0.
+   * @param constantValueIndex the constant pool index contained in the ConstantValue attribute of
+   *     the field_info JVMS structure from which the attributes of this field might be copied, or
+   *     0.
+   * @return whether the attributes of this field can be copied from the attributes of the
+   *     field_info JVMS structure in 'source.b', between 'fieldInfoOffset' and 'fieldInfoOffset' +
+   *     'fieldInfoLength'.
+   */
+  boolean canCopyFieldAttributes(
+      final ClassReader source,
+      final boolean hasSyntheticAttribute,
+      final boolean hasDeprecatedAttribute,
+      final int descriptorIndex,
+      final int signatureIndex,
+      final int constantValueIndex) {
+    if (source != symbolTable.getSource()
+        || descriptorIndex != this.descriptorIndex
+        || signatureIndex != this.signatureIndex
+        || constantValueIndex != this.constantValueIndex
+        || hasDeprecatedAttribute != ((accessFlags & Opcodes.ACC_DEPRECATED) != 0)) {
+      return false;
+    }
+    boolean needSyntheticAttribute =
+        symbolTable.getMajorVersion() < Opcodes.V1_5 && (accessFlags & Opcodes.ACC_SYNTHETIC) != 0;
+    return hasSyntheticAttribute == needSyntheticAttribute;
+  }
+
+  /**
+   * Sets the source from which the attributes of this field will be copied.
+   *
+   * @param fieldInfoOffset the offset in 'symbolTable.getSource()' of the field_info JVMS structure
+   *     from which the attributes of this field will be copied.
+   * @param fieldInfoLength the length in 'symbolTable.getSource()' of the field_info JVMS structure
+   *     from which the attributes of this field will be copied.
+   */
+  void setFieldAttributesSource(final int fieldInfoOffset, final int fieldInfoLength) {
+    // Don't copy the attributes yet, instead store their location in the source class reader so
+    // they can be copied later, in {@link #putFieldInfo}. Note that we skip the 6 header bytes
+    // of the field_info JVMS structure.
+    this.sourceOffset = fieldInfoOffset + 6;
+    this.sourceLength = fieldInfoLength - 6;
+    symbolTable.addCopiedBytes(sourceLength);
+  }
+
   /**
    * Returns the size of the field_info JVMS structure generated by this FieldWriter. Also adds the
    * names of the attributes of this field in the constant pool.
@@ -189,6 +261,10 @@ final class FieldWriter extends FieldVisitor {
    * @return the size in bytes of the field_info JVMS structure.
    */
   int computeFieldInfoSize() {
+    if (sourceOffset != 0) {
+      // sourceLength excludes the first 6 bytes for access_flags, name_index and descriptor_index.
+      return 6 + sourceLength;
+    }
     // The access_flags, name_index, descriptor_index and attributes_count fields use 8 bytes.
     int size = 8;
     // For ease of reference, we use here the same attribute order as in Section 4.7 of the JVMS.
@@ -221,6 +297,11 @@ final class FieldWriter extends FieldVisitor {
     // Put the access_flags, name_index and descriptor_index fields.
     int mask = useSyntheticAttribute ? Opcodes.ACC_SYNTHETIC : 0;
     output.putShort(accessFlags & ~mask).putShort(nameIndex).putShort(descriptorIndex);
+    // If this field_info must be copied from an existing one, copy it now and return early.
+    if (sourceOffset != 0) {
+      symbolTable.getSource().copyBytes(sourceOffset, sourceLength, output);
+      return;
+    }
     // Compute and put the attributes_count field.
     // For ease of reference, we use here the same attribute order as in Section 4.7 of the JVMS.
     int attributesCount = 0;
@@ -196,6 +196,13 @@ class Frame {
   /** The basic block to which these input and output stack map frames correspond. */
   Label owner;
 
+  /**
+   * The index of {@link #owner} in the reverse postorder of the reachable basic blocks of the
+   * method, used by {@link MethodWriter} to process the basic blocks in this order when computing
+   * the stack map frames. Only valid during this computation.
+   */
+  int reversePostorderIndex;
+
   /** The input stack map frame locals. This is an array of abstract types. */
   private int[] inputLocals;
 
@@ -631,6 +631,10 @@ final class MethodWriter extends MethodVisitor {
     return stackMapTableNumberOfEntries > 0;
   }
 
+  int getStackMapFrameCount() {
+    return stackMapTableNumberOfEntries;
+  }
+
   boolean hasAsmInstructions() {
     return hasAsmInstructions;
   }
@@ -1583,20 +1587,30 @@ final class MethodWriter extends MethodVisitor {
     firstFrame.setInputFrameFromDescriptor(symbolTable, accessFlags, descriptor, this.maxLocals);
     firstFrame.accept(this);
 
-    // Fix point algorithm: add the first basic block to a list of blocks to process (i.e. blocks
-    // whose stack map frame has changed) and, while there are blocks to process, remove one from
-    // the list and update the stack map frames of its successor blocks in the control flow graph
-    // (which might change them, in which case these blocks must be processed too, and are thus
-    // added to the list of blocks to process). Also compute the maximum stack size of the method,
-    // as a by-product.
-    Label listOfBlocksToProcess = firstBasicBlock;
-    listOfBlocksToProcess.nextListElement = Label.EMPTY_LIST;
+    // Fix point algorithm: mark the first basic block as a block to process (i.e. a block whose
+    // stack map frame has changed) and, while there are blocks to process, process the first one in
+    // reverse postorder, i.e. update the stack map frames of its successor blocks in the control
+    // flow graph (which might change them, in which case these blocks must be processed too, and
+    // are thus marked as blocks to process). Processing the blocks in reverse postorder ensures
+    // that, except for backward edges, all the predecessors of a block are processed before it.
+    // Also compute the maximum stack size of the method, as a by-product.
+    Label[] basicBlocks = getReachableBasicBlocksInReversePostorder();
+    boolean[] isBlockToProcess = new boolean[basicBlocks.length];
+    isBlockToProcess[0] = true;
+    int blockVisitCount = 0;
+    int mergeCount = 0;
+    int iterationCount = 1;
     int maxStackSize = 0;
-    while (listOfBlocksToProcess != Label.EMPTY_LIST) {
-      // Remove a basic block from the list of blocks to process.
-      Label basicBlock = listOfBlocksToProcess;
-      listOfBlocksToProcess = listOfBlocksToProcess.nextListElement;
-      basicBlock.nextListElement = null;
+    int blockIndex = 0;
+    while (blockIndex < basicBlocks.length) {
+      if (!isBlockToProcess[blockIndex]) {
+        ++blockIndex;
+        continue;
+      }
+      // Remove the first basic block from the blocks to process.
+      isBlockToProcess[blockIndex] = false;
+      Label basicBlock = basicBlocks[blockIndex];
+      ++blockVisitCount;
       // By definition, basicBlock is reachable.
       basicBlock.flags |= Label.FLAG_REACHABLE;
       // Update the (absolute) maximum stack size.
@@ -1605,20 +1619,31 @@ final class MethodWriter extends MethodVisitor {
         maxStackSize = maxBlockStackSize;
       }
       // Update the successor blocks of basicBlock in the control flow graph.
+      int nextBlockIndex = blockIndex + 1;
       Edge outgoingEdge = basicBlock.outgoingEdges;
       while (outgoingEdge != null) {
         Label successorBlock = outgoingEdge.successor.getCanonicalInstance();
-        boolean successorBlockChanged =
-            basicBlock.frame.merge(symbolTable, successorBlock.frame, outgoingEdge.info);
-        if (successorBlockChanged && successorBlock.nextListElement == null) {
-          // If successorBlock has changed it must be processed. Thus, if it is not already in the
-          // list of blocks to process, add it to this list.
-          successorBlock.nextListElement = listOfBlocksToProcess;
-          listOfBlocksToProcess = successorBlock;
+        ++mergeCount;
+        if (basicBlock.frame.merge(symbolTable, successorBlock.frame, outgoingEdge.info)) {
+          // If successorBlock has changed it must be processed. If it is before the next block to
+          // process in reverse postorder (i.e. if outgoingEdge is a backward edge), a new pass must
+          // start at this block.
+          int successorIndex = successorBlock.frame.reversePostorderIndex;
+          isBlockToProcess[successorIndex] = true;
+          if (successorIndex < nextBlockIndex) {
+            nextBlockIndex = successorIndex;
+          }
         }
         outgoingEdge = outgoingEdge.nextEdge;
       }
+      if (nextBlockIndex <= blockIndex) {
+        ++iterationCount;
+      }
+      blockIndex = nextBlockIndex;
     }
+    symbolTable.classWriter.frameBlockVisitCount += blockVisitCount;
+    symbolTable.classWriter.frameMergeCount += mergeCount;
+    symbolTable.classWriter.frameIterationCount += iterationCount;
 
     // Loop over all the basic blocks and visit the stack map frames that must be stored in the
     // StackMapTable attribute. Also replace unreachable code with NOP* ATHROW, and remove it from
@@ -1658,6 +1683,57 @@ final class MethodWriter extends MethodVisitor {
     this.maxStack = maxStackSize;
   }
 
+  /**
+   * Returns the basic blocks reachable from the first basic block, in reverse postorder of a depth
+   * first traversal of the control flow graph. Also sets the {@link Frame#reversePostorderIndex} of
+   * these blocks to their index in the returned array.
+   *
+   * @return the basic blocks reachable from {@link #firstBasicBlock}, in reverse postorder (the
+   *     first element is always {@link #firstBasicBlock}).
+   */
+  private Label[] getReachableBasicBlocksInReversePostorder() {
+    // The reversePostorderIndex field is used to mark the blocks during the traversal: 0 means not
+    // yet discovered, and -1 means discovered.
+    int basicBlockCount = 0;
+    Label basicBlock = firstBasicBlock;
+    while (basicBlock != null) {
+      basicBlock.frame.reversePostorderIndex = 0;
+      ++basicBlockCount;
+      basicBlock = basicBlock.nextBasicBlock;
+    }
+    // Iterative depth first traversal, using a stack of blocks and, for each of them, the next
+    // outgoing edge to follow. Each block is pushed at most once, so the stack can't overflow.
+    Label[] blockStack = new Label[basicBlockCount];
+    Edge[] edgeStack = new Edge[basicBlockCount];
+    Label[] postorder = new Label[basicBlockCount];
+    int postorderSize = 0;
+    blockStack[0] = firstBasicBlock;
+    edgeStack[0] = firstBasicBlock.outgoingEdges;
+    firstBasicBlock.frame.reversePostorderIndex = -1;
+    int stackSize = 1;
+    while (stackSize > 0) {
+      Edge edge = edgeStack[stackSize - 1];
+      if (edge == null) {
+        postorder[postorderSize++] = blockStack[--stackSize];
+      } else {
+        edgeStack[stackSize - 1] = edge.nextEdge;
+        Label successorBlock = edge.successor.getCanonicalInstance();
+        if (successorBlock.frame.reversePostorderIndex == 0) {
+          successorBlock.frame.reversePostorderIndex = -1;
+          blockStack[stackSize] = successorBlock;
+          edgeStack[stackSize++] = successorBlock.outgoingEdges;
+        }
+      }
+    }
+    Label[] reversePostorder = new Label[postorderSize];
+    for (int i = 0; i < postorderSize; ++i) {
+      Label reachableBlock = postorder[postorderSize - 1 - i];
+      reachableBlock.frame.reversePostorderIndex = i;
+      reversePostorder[i] = reachableBlock;
+    }
+    return reversePostorder;
+  }
+
   /** Computes the maximum stack size of the method. */
   private void computeMaxStackAndLocal() {
     // Complete the control flow graph with exception handler blocks.
@@ -2065,6 +2141,7 @@ final class MethodWriter extends MethodVisitor {
     // of the method_info JVMS structure.
     this.sourceOffset = methodInfoOffset + 6;
     this.sourceLength = methodInfoLength - 6;
+    symbolTable.addCopiedBytes(sourceLength);
   }
 
   /**
@@ -2184,7 +2261,7 @@ final class MethodWriter extends MethodVisitor {
     output.putShort(accessFlags & ~mask).putShort(nameIndex).putShort(descriptorIndex);
     // If this method_info must be copied from an existing one, copy it now and return early.
     if (sourceOffset != 0) {
-      output.putByteArray(symbolTable.getSource().classFileBuffer, sourceOffset, sourceLength);
+      symbolTable.getSource().copyBytes(sourceOffset, sourceLength, output);
       return;
     }
     // For ease of reference, we use here the same attribute order as in Section 4.7 of the JVMS.
@@ -0,0 +1,63 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * A listener notified each time a {@link ClassReader} has visited a class, or a {@link
+ * ClassWriter} has produced a class file, with some metrics about the work done (see {@link
+ * ClassReader#setMetricsListener} and {@link ClassWriter#setMetricsListener}). This is intended
+ * to find which classes, and which transformations, are costly to process. No metrics are
+ * collected, and no time is measured, for the readers and writers without a listener.
+ *
+ * <p>The methods of this class do nothing by default. They are called in the thread which uses the
+ * reader or writer, and should return quickly. A listener used by several readers or writers in
+ * parallel must be thread safe.
+ */
+public abstract class MetricsListener {
+
+  /** Constructs a new {@link MetricsListener}. */
+  protected MetricsListener() {}
+
+  /**
+   * Called at the end of each {@link ClassReader#accept(ClassVisitor, Attribute[], int)} call.
+   *
+   * @param metrics some metrics about the class which has been read. The duration includes the
+   *     time spent in the {@link ClassVisitor} passed to the accept method.
+   */
+  public void classRead(final ClassMetrics metrics) {}
+
+  /**
+   * Called at the end of each {@link ClassWriter#toByteArray} or {@link ClassWriter#writeTo}
+   * call.
+   *
+   * @param metrics some metrics about the class which has been written. The duration is measured
+   *     from the {@link ClassWriter#visit} call, and thus includes the time spent by the producer
+   *     of the visit events (e.g. a {@link ClassReader}).
+   */
+  public void classWritten(final ClassMetrics metrics) {}
+}
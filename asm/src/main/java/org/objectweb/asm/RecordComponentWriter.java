@@ -81,6 +81,19 @@ final class RecordComponentWriter extends RecordComponentVisitor {
    */
   private Attribute firstAttribute;
 
+  /**
+   * The offset in bytes in {@link SymbolTable#getSource} from which the record_component_info for
+   * this record component (excluding its first 4 bytes) must be copied, or 0.
+   */
+  private int sourceOffset;
+
+  /**
+   * The length in bytes in {@link SymbolTable#getSource} which must be copied to get the
+   * record_component_info for this record component (excluding its first 4 bytes for name_index and
+   * descriptor_index).
+   */
+  private int sourceLength;
+
   /**
    * Constructs a new {@link RecordComponentWriter}.
    *
@@ -148,6 +161,51 @@ final class RecordComponentWriter extends RecordComponentVisitor {
   // Utility methods
   // -----------------------------------------------------------------------------------------------
 
+  /**
+   * Returns whether the attributes of this record component can be copied from the attributes of
+   * the given record component (assuming there is no record component visitor between the given
+   * ClassReader and this RecordComponentWriter). This method should only be called just after this
+   * RecordComponentWriter has been created, and before any content is visited. It returns true if
+   * the attributes corresponding to the constructor arguments (at most a Signature attribute) are
+   * the same as the corresponding attributes in the given record component.
+   *
+   * @param source the source ClassReader from which the attributes of this record component might
+   *     be copied.
+   * @param descriptorIndex the descriptor_index field of the record_component_info JVMS structure
+   *     from which the attributes of this record component might be copied.
+   * @param signatureIndex the constant pool index contained in the Signature attribute of the
+   *     record_component_info JVMS structure from which the attributes of this record component
+   *     might be copied, or 0.
+   * @return whether the attributes of this record component can be copied from the attributes of
+   *     the record_component_info JVMS structure in 'source.b'.
+   */
+  boolean canCopyRecordComponentAttributes(
+      final ClassReader source, final int descriptorIndex, final int signatureIndex) {
+    return source == symbolTable.getSource()
+        && descriptorIndex == this.descriptorIndex
+        && signatureIndex == this.signatureIndex;
+  }
+
+  /**
+   * Sets the source from which the attributes of this record component will be copied.
+   *
+   * @param recordComponentInfoOffset the offset in 'symbolTable.getSource()' of the
+   *     record_component_info JVMS structure from which the attributes of this record component
+   *     will be copied.
+   * @param recordComponentInfoLength the length in 'symbolTable.getSource()' of the
+   *     record_component_info JVMS structure from which the attributes of this record component
+   *     will be copied.
+   */
+  void setRecordComponentAttributesSource(
+      final int recordComponentInfoOffset, final int recordComponentInfoLength) {
+    // Don't copy the attributes yet, instead store their location in the source class reader so
+    // they can be copied later, in {@link #putRecordComponentInfo}. Note that we skip the 4 header
+    // bytes of the record_component_info JVMS structure.
+    this.sourceOffset = recordComponentInfoOffset + 4;
+    this.sourceLength = recordComponentInfoLength - 4;
+    symbolTable.addCopiedBytes(sourceLength);
+  }
+
   /**
    * Returns the size of the record component JVMS structure generated by this
    * RecordComponentWriter. Also adds the names of the attributes of this record component in the
@@ -156,6 +214,10 @@ final class RecordComponentWriter extends RecordComponentVisitor {
    * @return the size in bytes of the record_component_info of the Record attribute.
    */
   int computeRecordComponentInfoSize() {
+    if (sourceOffset != 0) {
+      // sourceLength excludes the first 4 bytes for name_index and descriptor_index.
+      return 4 + sourceLength;
+    }
     // name_index, descriptor_index and attributes_count fields use 6 bytes.
     int size = 6;
     size += Attribute.computeAttributesSize(symbolTable, 0, signatureIndex);
@@ -179,6 +241,12 @@ final class RecordComponentWriter extends RecordComponentVisitor {
    */
   void putRecordComponentInfo(final ByteVector output) {
     output.putShort(nameIndex).putShort(descriptorIndex);
+    // If this record_component_info must be copied from an existing one, copy it now and return
+    // early.
+    if (sourceOffset != 0) {
+      symbolTable.getSource().copyBytes(sourceOffset, sourceLength, output);
+      return;
+    }
     // Compute and put the attributes_count field.
     // For ease of reference, we use here the same attribute order as in Section 4.7 of the JVMS.
     int attributesCount = 0;
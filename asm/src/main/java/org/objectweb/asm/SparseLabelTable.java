@@ -0,0 +1,177 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * The labels of a method, indexed by bytecode offset, stored in an open addressing hash table. This
+ * is used by {@link ClassReader} instead of a {@code Label[codeLength + 1]} array for large
+ * methods, which usually need a label for a small fraction of their bytecode offsets only.
+ */
+final class SparseLabelTable {
+
+  /** The initial capacity of {@link #offsets} and {@link #labels}. Must be a power of 2. */
+  private static final int INITIAL_CAPACITY = 64;
+
+  /**
+   * The number of valid bytecode offsets, i.e. code_length + 1. This is the length of the
+   * equivalent {@code Label[codeLength + 1]} array.
+   */
+  int length;
+
+  /** The bytecode offset of each label in {@link #labels}. */
+  private int[] offsets;
+
+  /** The labels of this table, at the position given by the hash code of their bytecode offset. */
+  private Label[] labels;
+
+  /** The number of labels in this table. */
+  private int size;
+
+  /** The shift to apply to a multiplicative hash code to get an index in {@link #labels}. */
+  private int shift;
+
+  /** Constructs a new, empty {@link SparseLabelTable}. */
+  SparseLabelTable() {
+    offsets = new int[INITIAL_CAPACITY];
+    labels = new Label[INITIAL_CAPACITY];
+    shift = 32 - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+  }
+
+  /**
+   * Removes all the labels of this table, and sets its {@link #length}.
+   *
+   * @param length the number of valid bytecode offsets, i.e. code_length + 1.
+   */
+  void reset(final int length) {
+    this.length = length;
+    if (size > 0) {
+      for (int i = 0; i < labels.length; ++i) {
+        labels[i] = null;
+      }
+      size = 0;
+    }
+  }
+
+  /**
+   * Returns the label at the given bytecode offset.
+   *
+   * @param bytecodeOffset a bytecode offset in a method.
+   * @return the label at the given bytecode offset, or {@literal null} if there is none.
+   * @throws ArrayIndexOutOfBoundsException if bytecodeOffset is negative or larger than or equal to
+   *     {@link #length}, like with a {@code Label[codeLength + 1]} array.
+   */
+  Label get(final int bytecodeOffset) {
+    if (bytecodeOffset < 0 || bytecodeOffset >= length) {
+      throw new ArrayIndexOutOfBoundsException(bytecodeOffset);
+    }
+    int mask = labels.length - 1;
+    int index = hash(bytecodeOffset);
+    Label label;
+    while ((label = labels[index]) != null) {
+      if (offsets[index] == bytecodeOffset) {
+        return label;
+      }
+      index = (index + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the label at the given bytecode offset, creating it if there is none.
+   *
+   * @param bytecodeOffset a bytecode offset in a method.
+   * @return the label at the given bytecode offset.
+   * @throws ArrayIndexOutOfBoundsException if bytecodeOffset is negative or larger than or equal to
+   *     {@link #length}, like with a {@code Label[codeLength + 1]} array.
+   */
+  Label getOrCreate(final int bytecodeOffset) {
+    Label label = get(bytecodeOffset);
+    if (label == null) {
+      if (2 * (size + 1) > labels.length) {
+        resize(2 * labels.length);
+      }
+      label = new Label();
+      put(bytecodeOffset, label);
+      ++size;
+    }
+    return label;
+  }
+
+  /**
+   * Returns the number of labels in this table.
+   *
+   * @return the number of labels in this table.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Stores a label in {@link #labels}, at the first free position for its bytecode offset.
+   *
+   * @param bytecodeOffset the bytecode offset of the label. Must not already be in this table.
+   * @param label the label to store.
+   */
+  private void put(final int bytecodeOffset, final Label label) {
+    int mask = labels.length - 1;
+    int index = hash(bytecodeOffset);
+    while (labels[index] != null) {
+      index = (index + 1) & mask;
+    }
+    offsets[index] = bytecodeOffset;
+    labels[index] = label;
+  }
+
+  /**
+   * Changes the capacity of this table, and moves its labels at their new position.
+   *
+   * @param capacity the new capacity of this table. Must be a power of 2.
+   */
+  private void resize(final int capacity) {
+    int[] oldOffsets = offsets;
+    Label[] oldLabels = labels;
+    offsets = new int[capacity];
+    labels = new Label[capacity];
+    shift = 32 - Integer.numberOfTrailingZeros(capacity);
+    for (int i = 0; i < oldLabels.length; ++i) {
+      if (oldLabels[i] != null) {
+        put(oldOffsets[i], oldLabels[i]);
+      }
+    }
+  }
+
+  /**
+   * Returns the preferred position of a label in {@link #labels}, using Fibonacci hashing.
+   *
+   * @param bytecodeOffset the bytecode offset of a label.
+   * @return the preferred position of this label in {@link #labels}.
+   */
+  private int hash(final int bytecodeOffset) {
+    return (bytecodeOffset * 0x9E3779B9) >>> shift;
+  }
+}
@@ -0,0 +1,194 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+/**
+ * A pool of the strings decoded from CONSTANT_Utf8 constant pool entries, which can be shared
+ * between several {@link ClassReader} instances (see {@link ClassReader#setStringPool}). Strings
+ * such as "java/lang/Object", "()V" or "Code" are found in almost every class: with a shared pool
+ * they are decoded and allocated only once, instead of once per class. The pool is keyed on the raw
+ * modified UTF-8 bytes of the constant pool entries, so that a hit requires no decoding at all.
+ *
+ * <p>This pool has a fixed capacity, and is a lossy cache rather than an exhaustive set: when two
+ * strings map to the same slot, the most recent one replaces the other. It is thread-safe, without
+ * any lock: slots are immutable objects, replaced atomically, so that concurrent readers always see
+ * either a complete entry or none. Concurrent updates of the same slot can only cause a few extra
+ * misses.
+ *
+ * @see <a href="https://docs.oracle.com/javase/specs/jvms/se9/html/jvms-4.html#jvms-4.4.7">JVMS
+ *     4.4.7</a>
+ */
+public final class StringPool {
+
+  /** The default capacity of a {@link StringPool}. */
+  private static final int DEFAULT_CAPACITY = 4096;
+
+  /**
+   * The entries of this pool. Each {@link Entry} is stored at the array index given by its hash
+   * code modulo the array size (which is a power of two).
+   */
+  private final Entry[] entries;
+
+  /** Constructs a new {@link StringPool} with a default capacity. */
+  public StringPool() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a new {@link StringPool}.
+   *
+   * @param capacity the maximum number of strings that this pool can contain. It is rounded up to
+   *     the next power of two.
+   */
+  public StringPool(final int capacity) {
+    if (capacity <= 0 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+    int size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    entries = new Entry[size];
+  }
+
+  /**
+   * Returns the maximum number of strings that this pool can contain.
+   *
+   * @return the maximum number of strings that this pool can contain.
+   */
+  public int getCapacity() {
+    return entries.length;
+  }
+
+  /**
+   * Returns the string corresponding to the given modified UTF-8 bytes, decoding it and adding it
+   * to this pool if necessary.
+   *
+   * @param classReader the ClassReader containing the modified UTF-8 bytes.
+   * @param utfOffset the start offset of the modified UTF-8 bytes in classReader.
+   * @param utfLength the number of modified UTF-8 bytes.
+   * @param charBuffer the buffer to be used to decode the string, if it is not in this pool. This
+   *     buffer must be sufficiently large. It is not automatically resized.
+   * @return the String corresponding to the specified modified UTF-8 bytes.
+   */
+  String get(
+      final ClassReader classReader,
+      final int utfOffset,
+      final int utfLength,
+      final char[] charBuffer) {
+    int hashCode = utfLength;
+    for (int i = 0; i < utfLength; ++i) {
+      hashCode = 31 * hashCode + classReader.readByte(utfOffset + i);
+    }
+    // Spread the high bits of the hash code, which would otherwise be ignored by the mask below.
+    hashCode ^= hashCode >>> 16;
+    Entry[] currentEntries = entries;
+    int index = hashCode & (currentEntries.length - 1);
+    Entry entry = currentEntries[index];
+    if (entry != null && entry.matches(classReader, utfOffset, utfLength, hashCode)) {
+      return entry.value;
+    }
+    String value = classReader.readUtf(utfOffset, utfLength, charBuffer);
+    currentEntries[index] = new Entry(value, classReader, utfOffset, utfLength, hashCode);
+    return value;
+  }
+
+  /** A string of a {@link StringPool}, with its modified UTF-8 encoding. */
+  private static final class Entry {
+
+    /** The hash code of the modified UTF-8 encoding of {@link #value}. */
+    final int hashCode;
+
+    /** The string value of this entry. */
+    final String value;
+
+    /**
+     * The modified UTF-8 encoding of {@link #value}, or {@literal null} if it contains only ASCII
+     * characters. In this case each character of {@link #value} is encoded with exactly one byte,
+     * equal to the character value, so that the encoding does not need to be stored.
+     */
+    final byte[] utf8;
+
+    Entry(
+        final String value,
+        final ClassReader classReader,
+        final int utfOffset,
+        final int utfLength,
+        final int hashCode) {
+      this.hashCode = hashCode;
+      this.value = value;
+      // Multi-byte encodings decode into fewer characters than bytes, so a string decoded from as
+      // many bytes as characters contains only ASCII characters.
+      if (value.length() == utfLength) {
+        this.utf8 = null;
+      } else {
+        this.utf8 = new byte[utfLength];
+        classReader.readBytes(utfOffset, utf8, 0, utfLength);
+      }
+    }
+
+    /**
+     * Returns whether this entry corresponds to the given modified UTF-8 bytes.
+     *
+     * @param classReader the ClassReader containing the modified UTF-8 bytes.
+     * @param utfOffset the start offset of the modified UTF-8 bytes in classReader.
+     * @param utfLength the number of modified UTF-8 bytes.
+     * @param utfHashCode the hash code of the modified UTF-8 bytes.
+     * @return whether this entry corresponds to the given modified UTF-8 bytes.
+     */
+    boolean matches(
+        final ClassReader classReader,
+        final int utfOffset,
+        final int utfLength,
+        final int utfHashCode) {
+      if (hashCode != utfHashCode) {
+        return false;
+      }
+      if (utf8 == null) {
+        if (value.length() != utfLength) {
+          return false;
+        }
+        for (int i = 0; i < utfLength; ++i) {
+          if (classReader.readByte(utfOffset + i) != value.charAt(i)) {
+            return false;
+          }
+        }
+      } else {
+        if (utf8.length != utfLength) {
+          return false;
+        }
+        for (int i = 0; i < utfLength; ++i) {
+          if ((byte) classReader.readByte(utfOffset + i) != utf8[i]) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -27,6 +27,8 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm;
 
+import java.util.Arrays;
+
 /**
  * The constant pool entries, the BootstrapMethods attribute entries and the (ASM specific) type
  * table entries of a class.
@@ -48,9 +50,26 @@ final class SymbolTable {
 
   /**
    * The ClassReader from which this SymbolTable was constructed, or {@literal null} if it was
-   * constructed from scratch.
+   * constructed from scratch (or reset with {@link #reset}).
+   */
+  private ClassReader sourceClassReader;
+
+  /**
+   * The tags of the constant pool items of {@link #sourceClassReader} which have not yet been added
+   * to {@link #entries}, as a bit set (bit i is set if items with tag i have not yet been added).
+   * The constant pool of {@link #sourceClassReader} is copied as is in {@link #constantPool} when
+   * this SymbolTable is constructed, but its items are added to {@link #entries} one tag at a time,
+   * the first time a symbol with this tag is looked up (see {@link #addSourceEntries}). This avoids
+   * reading and hashing all the constant pool items when only a few symbols are looked up.
    */
-  private final ClassReader sourceClassReader;
+  private int sourceEntryTags;
+
+  /**
+   * Whether the bootstrap methods of {@link #sourceClassReader} have not yet been added to {@link
+   * #entries}. Like the constant pool items, they are copied as is in {@link #bootstrapMethods}
+   * when this SymbolTable is constructed, and added to {@link #entries} when first looked up.
+   */
+  private boolean hasSourceBootstrapMethodEntries;
 
   /** The major version number of the class to which this symbol table belongs. */
   private int majorVersion;
@@ -59,20 +78,43 @@ final class SymbolTable {
   private String className;
 
   /**
-   * The total number of {@link Entry} instances in {@link #entries}. This includes entries that are
-   * accessible (recursively) via {@link Entry#next}.
+   * The multiplier used to scramble the hash codes before using their most significant bits as
+   * {@link #entries} indices (Fibonacci hashing). This avoids long probe sequences for the many
+   * constants whose hash codes are consecutive (e.g. integer constants).
+   */
+  private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+  /**
+   * A bit set in all the {@link #entryHashCodes} elements corresponding to non empty slots. This
+   * bit is always 0 in the {@link Entry#hashCode} values, which are positive.
    */
+  private static final int USED_SLOT = 0x80000000;
+
+  /** The total number of {@link Entry} instances in {@link #entries}. */
   private int entryCount;
 
   /**
    * A hash set of all the entries in this SymbolTable (this includes the constant pool entries, the
-   * bootstrap method entries and the type table entries). Each {@link Entry} instance is stored at
-   * the array index given by its hash code modulo the array size. If several entries must be stored
-   * at the same array index, they are linked together via their {@link Entry#next} field. The
-   * factory methods of this class make sure that this table does not contain duplicated entries.
+   * bootstrap method entries and the type table entries), using open addressing with linear
+   * probing. The size of this array is a power of two, and each {@link Entry} instance is stored in
+   * the first empty slot starting at the index given by its (scrambled) hash code. The factory
+   * methods of this class make sure that this table does not contain duplicated entries.
    */
   private Entry[] entries;
 
+  /**
+   * The hash codes of the entries in {@link #entries}, with their sign bit set (see {@link
+   * #USED_SLOT}), or 0 for the empty slots. This parallel array allows the probe sequences to skip
+   * the entries with a different hash code without dereferencing them.
+   */
+  private int[] entryHashCodes;
+
+  /**
+   * The number of bits by which a scrambled hash code must be shifted to the right to get an index
+   * in {@link #entries}, i.e. 32 minus the base 2 logarithm of the size of {@link #entries}.
+   */
+  private int entriesShift;
+
   /**
    * The number of constant pool items in {@link #constantPool}, plus 1. The first constant pool
    * item has index 1, and long and double items count for two items.
@@ -98,6 +140,14 @@ final class SymbolTable {
    */
   private ByteVector bootstrapMethods;
 
+  /**
+   * The number of bytes copied as is from {@link #sourceClassReader}, i.e. the length of its
+   * constant pool and bootstrap methods, plus the length of the field, method, record component and
+   * annotation contents copied without being visited. Always 0 if {@link #sourceClassReader} is
+   * {@literal null}.
+   */
+  private int copiedByteCount;
+
   /**
    * The actual number of elements in {@link #typeTable}. These elements are stored from index 0 to
    * typeCount (excluded). The other array entries are empty.
@@ -115,27 +165,26 @@ final class SymbolTable {
   private Entry[] typeTable;
 
   /**
-   * The actual number of {@link LabelEntry} in {@link #labelTable}. These elements are stored from
-   * index 0 to labelCount (excluded). The other array entries are empty. These label entries are
-   * also stored in the {@link #labelEntries} hash set.
+   * The actual number of labels in {@link #labelTable}. These elements are stored from index 0 to
+   * labelCount (excluded). The other array entries are empty. The indices of these labels are also
+   * stored in the {@link #labelEntries} hash set.
    */
   private int labelCount;
 
   /**
    * The labels corresponding to the "forward uninitialized" types in the ASM specific {@link
-   * typeTable} (see {@link Symbol#FORWARD_UNINITIALIZED_TYPE_TAG}). The label entry at index {@code
-   * i} has its {@link LabelEntry#index} equal to {@code i} (and vice versa).
+   * typeTable} (see {@link Symbol#FORWARD_UNINITIALIZED_TYPE_TAG}).
    */
-  private LabelEntry[] labelTable;
+  private Label[] labelTable;
 
   /**
-   * A hash set of all the {@link LabelEntry} elements in the {@link #labelTable}. Each {@link
-   * LabelEntry} instance is stored at the array index given by its hash code modulo the array size.
-   * If several entries must be stored at the same array index, they are linked together via their
-   * {@link LabelEntry#next} field. The {@link #getOrAddLabelEntry(Label)} method ensures that this
-   * table does not contain duplicated entries.
+   * A hash set of the indices of all the labels in {@link #labelTable}, plus one, using open
+   * addressing with linear probing (0 is used for the empty slots). The size of this array is a
+   * power of two, and each index is stored in the first empty slot starting at the array index
+   * given by the (scrambled) identity hash code of its label. The {@link
+   * #getOrAddLabelIndex(Label)} method ensures that this table does not contain duplicated entries.
    */
-  private LabelEntry[] labelEntries;
+  private int[] labelEntries;
 
   /**
    * Constructs a new, empty SymbolTable for the given ClassWriter.
@@ -145,7 +194,7 @@ final class SymbolTable {
   SymbolTable(final ClassWriter classWriter) {
     this.classWriter = classWriter;
     this.sourceClassReader = null;
-    this.entries = new Entry[256];
+    initializeEntries(256);
     this.constantPoolCount = 1;
     this.constantPool = new ByteVector();
   }
@@ -161,98 +210,171 @@ final class SymbolTable {
   SymbolTable(final ClassWriter classWriter, final ClassReader classReader) {
     this.classWriter = classWriter;
     this.sourceClassReader = classReader;
+    // The constant pool of classReader is read lazily, so it must not be recycled.
+    classReader.hasClassWriter = true;
 
     // Copy the constant pool binary content.
-    byte[] inputBytes = classReader.classFileBuffer;
     int constantPoolOffset = classReader.getItem(1) - 1;
     int constantPoolLength = classReader.header - constantPoolOffset;
     constantPoolCount = classReader.getItemCount();
     constantPool = new ByteVector(constantPoolLength);
-    constantPool.putByteArray(inputBytes, constantPoolOffset, constantPoolLength);
+    classReader.copyBytes(constantPoolOffset, constantPoolLength, constantPool);
+    copiedByteCount = constantPoolLength;
 
-    // Add the constant pool items in the symbol table entries. Reserve enough space in 'entries' to
-    // avoid too many hash set collisions (entries is not dynamically resized by the addConstant*
-    // method calls below), and to account for bootstrap method entries.
-    entries = new Entry[constantPoolCount * 2];
-    char[] charBuffer = new char[classReader.getMaxStringLength()];
-    boolean hasBootstrapMethods = false;
+    // Find the tags of the constant pool items, which are added to the symbol table entries only
+    // when a symbol with this tag is looked up. Reserve enough space in 'entries' to add all these
+    // items without resizing it (it is resized if needed when the bootstrap methods are added).
+    initializeEntries(constantPoolCount * 2);
     int itemIndex = 1;
     while (itemIndex < constantPoolCount) {
+      int itemTag = classReader.readByte(classReader.getItem(itemIndex) - 1);
+      sourceEntryTags |= 1 << itemTag;
+      itemIndex +=
+          (itemTag == Symbol.CONSTANT_LONG_TAG || itemTag == Symbol.CONSTANT_DOUBLE_TAG) ? 2 : 1;
+    }
+
+    // Copy the BootstrapMethods, if any.
+    if ((sourceEntryTags
+            & ((1 << Symbol.CONSTANT_DYNAMIC_TAG) | (1 << Symbol.CONSTANT_INVOKE_DYNAMIC_TAG)))
+        != 0) {
+      copyBootstrapMethods(classReader, new char[classReader.getMaxStringLength()]);
+    }
+  }
+
+  /**
+   * Resets this SymbolTable to the state of a new, empty SymbolTable, but keeps its internal arrays
+   * and buffers (cleared) to reuse them. The {@link Symbol} instances previously returned by this
+   * table are not reused.
+   */
+  void reset() {
+    sourceClassReader = null;
+    sourceEntryTags = 0;
+    hasSourceBootstrapMethodEntries = false;
+    majorVersion = 0;
+    className = null;
+    entryCount = 0;
+    Arrays.fill(entries, null);
+    Arrays.fill(entryHashCodes, 0);
+    constantPoolCount = 1;
+    constantPool.length = 0;
+    bootstrapMethodCount = 0;
+    bootstrapMethods = null;
+    copiedByteCount = 0;
+    if (typeTable != null) {
+      Arrays.fill(typeTable, 0, typeCount, null);
+    }
+    typeCount = 0;
+    if (labelTable != null) {
+      Arrays.fill(labelTable, 0, labelCount, null);
+      Arrays.fill(labelEntries, 0);
+    }
+    labelCount = 0;
+  }
+
+  /**
+   * Adds the constant pool items of {@link #sourceClassReader} with the given tag to the symbol
+   * table entries, if this has not already been done.
+   *
+   * @param tag the tag of the constant pool items to add. All the symbol table entries with this
+   *     tag must be added before looking up a symbol with this tag.
+   */
+  private void addSourceEntries(final int tag) {
+    if ((sourceEntryTags & (1 << tag)) == 0) {
+      return;
+    }
+    sourceEntryTags &= ~(1 << tag);
+    ClassReader classReader = sourceClassReader;
+    char[] charBuffer = new char[classReader.getMaxStringLength()];
+    // Note that constantPoolCount might already include new items, which are not in classReader.
+    int itemCount = classReader.getItemCount();
+    int itemIndex = 1;
+    while (itemIndex < itemCount) {
       int itemOffset = classReader.getItem(itemIndex);
-      int itemTag = inputBytes[itemOffset - 1];
-      int nameAndTypeItemOffset;
-      switch (itemTag) {
-        case Symbol.CONSTANT_FIELDREF_TAG:
-        case Symbol.CONSTANT_METHODREF_TAG:
-        case Symbol.CONSTANT_INTERFACE_METHODREF_TAG:
-          nameAndTypeItemOffset =
-              classReader.getItem(classReader.readUnsignedShort(itemOffset + 2));
-          addConstantMemberReference(
-              itemIndex,
-              itemTag,
-              classReader.readClass(itemOffset, charBuffer),
-              classReader.readUTF8(nameAndTypeItemOffset, charBuffer),
-              classReader.readUTF8(nameAndTypeItemOffset + 2, charBuffer));
-          break;
-        case Symbol.CONSTANT_INTEGER_TAG:
-        case Symbol.CONSTANT_FLOAT_TAG:
-          addConstantIntegerOrFloat(itemIndex, itemTag, classReader.readInt(itemOffset));
-          break;
-        case Symbol.CONSTANT_NAME_AND_TYPE_TAG:
-          addConstantNameAndType(
-              itemIndex,
-              classReader.readUTF8(itemOffset, charBuffer),
-              classReader.readUTF8(itemOffset + 2, charBuffer));
-          break;
-        case Symbol.CONSTANT_LONG_TAG:
-        case Symbol.CONSTANT_DOUBLE_TAG:
-          addConstantLongOrDouble(itemIndex, itemTag, classReader.readLong(itemOffset));
-          break;
-        case Symbol.CONSTANT_UTF8_TAG:
-          addConstantUtf8(itemIndex, classReader.readUtf(itemIndex, charBuffer));
-          break;
-        case Symbol.CONSTANT_METHOD_HANDLE_TAG:
-          int memberRefItemOffset =
-              classReader.getItem(classReader.readUnsignedShort(itemOffset + 1));
-          nameAndTypeItemOffset =
-              classReader.getItem(classReader.readUnsignedShort(memberRefItemOffset + 2));
-          addConstantMethodHandle(
-              itemIndex,
-              classReader.readByte(itemOffset),
-              classReader.readClass(memberRefItemOffset, charBuffer),
-              classReader.readUTF8(nameAndTypeItemOffset, charBuffer),
-              classReader.readUTF8(nameAndTypeItemOffset + 2, charBuffer));
-          break;
-        case Symbol.CONSTANT_DYNAMIC_TAG:
-        case Symbol.CONSTANT_INVOKE_DYNAMIC_TAG:
-          hasBootstrapMethods = true;
-          nameAndTypeItemOffset =
-              classReader.getItem(classReader.readUnsignedShort(itemOffset + 2));
-          addConstantDynamicOrInvokeDynamicReference(
-              itemTag,
-              itemIndex,
-              classReader.readUTF8(nameAndTypeItemOffset, charBuffer),
-              classReader.readUTF8(nameAndTypeItemOffset + 2, charBuffer),
-              classReader.readUnsignedShort(itemOffset));
-          break;
-        case Symbol.CONSTANT_STRING_TAG:
-        case Symbol.CONSTANT_CLASS_TAG:
-        case Symbol.CONSTANT_METHOD_TYPE_TAG:
-        case Symbol.CONSTANT_MODULE_TAG:
-        case Symbol.CONSTANT_PACKAGE_TAG:
-          addConstantUtf8Reference(
-              itemIndex, itemTag, classReader.readUTF8(itemOffset, charBuffer));
-          break;
-        default:
-          throw new IllegalArgumentException();
+      int itemTag = classReader.readByte(itemOffset - 1);
+      if (itemTag == tag) {
+        addSourceEntry(classReader, itemIndex, itemTag, itemOffset, charBuffer);
       }
       itemIndex +=
           (itemTag == Symbol.CONSTANT_LONG_TAG || itemTag == Symbol.CONSTANT_DOUBLE_TAG) ? 2 : 1;
     }
+  }
 
-    // Copy the BootstrapMethods, if any.
-    if (hasBootstrapMethods) {
-      copyBootstrapMethods(classReader, charBuffer);
+  /**
+   * Adds a constant pool item of {@link #sourceClassReader} to the symbol table entries.
+   *
+   * @param classReader the ClassReader from which this SymbolTable was constructed.
+   * @param itemIndex the index of the constant pool item to add.
+   * @param itemTag the tag of the constant pool item to add.
+   * @param itemOffset the start offset of the item in the class file, excluding its tag.
+   * @param charBuffer a buffer used to read strings in the constant pool.
+   */
+  private void addSourceEntry(
+      final ClassReader classReader,
+      final int itemIndex,
+      final int itemTag,
+      final int itemOffset,
+      final char[] charBuffer) {
+    int nameAndTypeItemOffset;
+    switch (itemTag) {
+      case Symbol.CONSTANT_FIELDREF_TAG:
+      case Symbol.CONSTANT_METHODREF_TAG:
+      case Symbol.CONSTANT_INTERFACE_METHODREF_TAG:
+        nameAndTypeItemOffset = classReader.getItem(classReader.readUnsignedShort(itemOffset + 2));
+        addConstantMemberReference(
+            itemIndex,
+            itemTag,
+            classReader.readClass(itemOffset, charBuffer),
+            classReader.readUTF8(nameAndTypeItemOffset, charBuffer),
+            classReader.readUTF8(nameAndTypeItemOffset + 2, charBuffer));
+        break;
+      case Symbol.CONSTANT_INTEGER_TAG:
+      case Symbol.CONSTANT_FLOAT_TAG:
+        addConstantIntegerOrFloat(itemIndex, itemTag, classReader.readInt(itemOffset));
+        break;
+      case Symbol.CONSTANT_NAME_AND_TYPE_TAG:
+        addConstantNameAndType(
+            itemIndex,
+            classReader.readUTF8(itemOffset, charBuffer),
+            classReader.readUTF8(itemOffset + 2, charBuffer));
+        break;
+      case Symbol.CONSTANT_LONG_TAG:
+      case Symbol.CONSTANT_DOUBLE_TAG:
+        addConstantLongOrDouble(itemIndex, itemTag, classReader.readLong(itemOffset));
+        break;
+      case Symbol.CONSTANT_UTF8_TAG:
+        addConstantUtf8(itemIndex, classReader.readUtf(itemIndex, charBuffer));
+        break;
+      case Symbol.CONSTANT_METHOD_HANDLE_TAG:
+        int memberRefItemOffset =
+            classReader.getItem(classReader.readUnsignedShort(itemOffset + 1));
+        nameAndTypeItemOffset =
+            classReader.getItem(classReader.readUnsignedShort(memberRefItemOffset + 2));
+        addConstantMethodHandle(
+            itemIndex,
+            classReader.readByte(itemOffset),
+            classReader.readClass(memberRefItemOffset, charBuffer),
+            classReader.readUTF8(nameAndTypeItemOffset, charBuffer),
+            classReader.readUTF8(nameAndTypeItemOffset + 2, charBuffer));
+        break;
+      case Symbol.CONSTANT_DYNAMIC_TAG:
+      case Symbol.CONSTANT_INVOKE_DYNAMIC_TAG:
+        nameAndTypeItemOffset = classReader.getItem(classReader.readUnsignedShort(itemOffset + 2));
+        addConstantDynamicOrInvokeDynamicReference(
+            itemTag,
+            itemIndex,
+            classReader.readUTF8(nameAndTypeItemOffset, charBuffer),
+            classReader.readUTF8(nameAndTypeItemOffset + 2, charBuffer),
+            classReader.readUnsignedShort(itemOffset));
+        break;
+      case Symbol.CONSTANT_STRING_TAG:
+      case Symbol.CONSTANT_CLASS_TAG:
+      case Symbol.CONSTANT_METHOD_TYPE_TAG:
+      case Symbol.CONSTANT_MODULE_TAG:
+      case Symbol.CONSTANT_PACKAGE_TAG:
+        addConstantUtf8Reference(itemIndex, itemTag, classReader.readUTF8(itemOffset, charBuffer));
+        break;
+      default:
+        throw new IllegalArgumentException();
     }
   }
 
@@ -266,7 +388,6 @@ final class SymbolTable {
    */
   private void copyBootstrapMethods(final ClassReader classReader, final char[] charBuffer) {
     // Find attributOffset of the 'bootstrap_methods' array.
-    byte[] inputBytes = classReader.classFileBuffer;
     int currentAttributeOffset = classReader.getFirstAttributeOffset();
     for (int i = classReader.readUnsignedShort(currentAttributeOffset - 2); i > 0; --i) {
       String attributeName = classReader.readUTF8(currentAttributeOffset, charBuffer);
@@ -281,27 +402,54 @@ final class SymbolTable {
       int bootstrapMethodsOffset = currentAttributeOffset + 8;
       int bootstrapMethodsLength = classReader.readInt(currentAttributeOffset + 2) - 2;
       bootstrapMethods = new ByteVector(bootstrapMethodsLength);
-      bootstrapMethods.putByteArray(inputBytes, bootstrapMethodsOffset, bootstrapMethodsLength);
+      classReader.copyBytes(bootstrapMethodsOffset, bootstrapMethodsLength, bootstrapMethods);
+      copiedByteCount += bootstrapMethodsLength;
+      hasSourceBootstrapMethodEntries = true;
+    }
+  }
 
-      // Add each bootstrap method in the symbol table entries.
-      int currentOffset = bootstrapMethodsOffset;
-      for (int i = 0; i < bootstrapMethodCount; i++) {
-        int offset = currentOffset - bootstrapMethodsOffset;
-        int bootstrapMethodRef = classReader.readUnsignedShort(currentOffset);
-        currentOffset += 2;
-        int numBootstrapArguments = classReader.readUnsignedShort(currentOffset);
+  /**
+   * Adds the bootstrap methods of {@link #sourceClassReader} to the symbol table entries, if this
+   * has not already been done. This must be done before looking up a bootstrap method, and thus
+   * before adding new ones (i.e. when {@link #bootstrapMethodCount} is still the number of
+   * bootstrap methods of {@link #sourceClassReader}).
+   */
+  private void addSourceBootstrapMethodEntries() {
+    if (!hasSourceBootstrapMethodEntries) {
+      return;
+    }
+    hasSourceBootstrapMethodEntries = false;
+    ClassReader classReader = sourceClassReader;
+    char[] charBuffer = new char[classReader.getMaxStringLength()];
+    byte[] bootstrapMethodsData = bootstrapMethods.data;
+    int currentOffset = 0;
+    for (int i = 0; i < bootstrapMethodCount; i++) {
+      int offset = currentOffset;
+      int bootstrapMethodRef = readUnsignedShort(bootstrapMethodsData, currentOffset);
+      currentOffset += 2;
+      int numBootstrapArguments = readUnsignedShort(bootstrapMethodsData, currentOffset);
+      currentOffset += 2;
+      int hashCode = classReader.readConst(bootstrapMethodRef, charBuffer).hashCode();
+      while (numBootstrapArguments-- > 0) {
+        int bootstrapArgument = readUnsignedShort(bootstrapMethodsData, currentOffset);
         currentOffset += 2;
-        int hashCode = classReader.readConst(bootstrapMethodRef, charBuffer).hashCode();
-        while (numBootstrapArguments-- > 0) {
-          int bootstrapArgument = classReader.readUnsignedShort(currentOffset);
-          currentOffset += 2;
-          hashCode ^= classReader.readConst(bootstrapArgument, charBuffer).hashCode();
-        }
-        add(new Entry(i, Symbol.BOOTSTRAP_METHOD_TAG, offset, hashCode & 0x7FFFFFFF));
+        hashCode ^= classReader.readConst(bootstrapArgument, charBuffer).hashCode();
       }
+      put(new Entry(i, Symbol.BOOTSTRAP_METHOD_TAG, offset, hashCode & 0x7FFFFFFF));
     }
   }
 
+  /**
+   * Reads an unsigned short value in the given byte array.
+   *
+   * @param data a byte array.
+   * @param offset the start offset of the value to be read in data.
+   * @return the read value.
+   */
+  private static int readUnsignedShort(final byte[] data, final int offset) {
+    return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+  }
+
   /**
    * Returns the ClassReader from which this SymbolTable was constructed.
    *
@@ -312,6 +460,26 @@ final class SymbolTable {
     return sourceClassReader;
   }
 
+  /**
+   * Returns the number of bytes copied as is from the ClassReader from which this SymbolTable was
+   * constructed.
+   *
+   * @return the number of bytes copied as is from {@link #getSource}, or 0 if this SymbolTable was
+   *     constructed from scratch.
+   */
+  int getCopiedByteCount() {
+    return copiedByteCount;
+  }
+
+  /**
+   * Records that some bytes of {@link #getSource} have been copied as is in the class being built.
+   *
+   * @param length a number of bytes copied as is from {@link #getSource}.
+   */
+  void addCopiedBytes(final int length) {
+    copiedByteCount += length;
+  }
+
   /**
    * Returns the major version of the class to which this symbol table belongs.
    *
@@ -362,6 +530,17 @@ final class SymbolTable {
     return constantPool.length;
   }
 
+  /**
+   * Returns the content of the JVMS ClassFile's constant_pool array corresponding to this
+   * SymbolTable, without the constant_pool_count value.
+   *
+   * @return the content of the JVMS ClassFile's constant_pool array. The returned ByteVector must
+   *     not be modified.
+   */
+  ByteVector getConstantPool() {
+    return constantPool;
+  }
+
   /**
    * Puts this symbol table's constant_pool array in the given ByteVector, preceded by the
    * constant_pool_count value.
@@ -408,60 +587,108 @@ final class SymbolTable {
   // -----------------------------------------------------------------------------------------------
 
   /**
-   * Returns the list of entries which can potentially have the given hash code.
+   * Returns the index in {@link #entries} of the first entry which has the given hash code.
+   *
+   * @param hashCode a {@link Entry#hashCode} value.
+   * @return the index in {@link #entries} of the first entry which has the given hash code, or -1
+   *     if there is no such entry. The other entries with this hash code, if any, can be found with
+   *     {@link #getNext}.
+   */
+  private int get(final int hashCode) {
+    return getFrom(hashCode, (hashCode * HASH_MULTIPLIER) >>> entriesShift);
+  }
+
+  /**
+   * Returns the index in {@link #entries} of the next entry which has the given hash code.
    *
    * @param hashCode a {@link Entry#hashCode} value.
-   * @return the list of entries which can potentially have the given hash code. The list is stored
-   *     via the {@link Entry#next} field.
+   * @param slot the index in {@link #entries} of an entry which has the given hash code.
+   * @return the index in {@link #entries} of the next entry after 'slot' which has the given hash
+   *     code, or -1 if there is no such entry.
    */
-  private Entry get(final int hashCode) {
-    return entries[hashCode % entries.length];
+  private int getNext(final int hashCode, final int slot) {
+    return getFrom(hashCode, (slot + 1) & (entries.length - 1));
+  }
+
+  /**
+   * Returns the index in {@link #entries} of the first entry which has the given hash code, in the
+   * probe sequence starting at the given index. Only {@link #entryHashCodes} is read, so that the
+   * entries with a different hash code are skipped without being dereferenced.
+   *
+   * @param hashCode a {@link Entry#hashCode} value.
+   * @param firstSlot the index in {@link #entries} where the search must start.
+   * @return the index in {@link #entries} of the first entry, starting at 'firstSlot', which has
+   *     the given hash code, or -1 if an empty slot is found before.
+   */
+  private int getFrom(final int hashCode, final int firstSlot) {
+    int[] currentEntryHashCodes = entryHashCodes;
+    int mask = currentEntryHashCodes.length - 1;
+    int key = hashCode | USED_SLOT;
+    int slot = firstSlot;
+    int slotKey;
+    while ((slotKey = currentEntryHashCodes[slot]) != 0) {
+      if (slotKey == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
   }
 
   /**
    * Puts the given entry in the {@link #entries} hash set. This method does <i>not</i> check
    * whether {@link #entries} already contains a similar entry or not. {@link #entries} is resized
-   * if necessary to avoid hash collisions (multiple entries needing to be stored at the same {@link
-   * #entries} array index) as much as possible, with reasonable memory usage.
+   * if necessary, to keep its load factor below 1/2 (and thus to keep the probe sequences short).
    *
    * @param entry an Entry (which must not already be contained in {@link #entries}).
    * @return the given entry
    */
   private Entry put(final Entry entry) {
-    if (entryCount > (entries.length * 3) / 4) {
-      int currentCapacity = entries.length;
-      int newCapacity = currentCapacity * 2 + 1;
-      Entry[] newEntries = new Entry[newCapacity];
-      for (int i = currentCapacity - 1; i >= 0; --i) {
-        Entry currentEntry = entries[i];
-        while (currentEntry != null) {
-          int newCurrentEntryIndex = currentEntry.hashCode % newCapacity;
-          Entry nextEntry = currentEntry.next;
-          currentEntry.next = newEntries[newCurrentEntryIndex];
-          newEntries[newCurrentEntryIndex] = currentEntry;
-          currentEntry = nextEntry;
+    if (2 * (entryCount + 1) > entries.length) {
+      Entry[] currentEntries = entries;
+      initializeEntries(2 * currentEntries.length);
+      for (Entry currentEntry : currentEntries) {
+        if (currentEntry != null) {
+          putInternal(currentEntry);
         }
       }
-      entries = newEntries;
     }
     entryCount++;
-    int index = entry.hashCode % entries.length;
-    entry.next = entries[index];
-    return entries[index] = entry;
+    putInternal(entry);
+    return entry;
   }
 
   /**
-   * Adds the given entry in the {@link #entries} hash set. This method does <i>not</i> check
-   * whether {@link #entries} already contains a similar entry or not, and does <i>not</i> resize
-   * {@link #entries} if necessary.
+   * Stores the given entry in the first empty slot of its probe sequence in {@link #entries}. This
+   * method does <i>not</i> resize {@link #entries}, nor update {@link #entryCount}.
    *
    * @param entry an Entry (which must not already be contained in {@link #entries}).
    */
-  private void add(final Entry entry) {
-    entryCount++;
-    int index = entry.hashCode % entries.length;
-    entry.next = entries[index];
-    entries[index] = entry;
+  private void putInternal(final Entry entry) {
+    int[] currentEntryHashCodes = entryHashCodes;
+    int mask = currentEntryHashCodes.length - 1;
+    int slot = (entry.hashCode * HASH_MULTIPLIER) >>> entriesShift;
+    while (currentEntryHashCodes[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    currentEntryHashCodes[slot] = entry.hashCode | USED_SLOT;
+    entries[slot] = entry;
+  }
+
+  /**
+   * Allocates new, empty {@link #entries} and {@link #entryHashCodes} arrays.
+   *
+   * @param minimumCapacity the minimum capacity of the new arrays. The actual capacity is the
+   *     smallest power of two greater than or equal to this value (and at least 16).
+   */
+  private void initializeEntries(final int minimumCapacity) {
+    int capacity = 16;
+    while (capacity < minimumCapacity) {
+      capacity *= 2;
+    }
+    entries = new Entry[capacity];
+    entryHashCodes = new int[capacity];
+    entriesShift = 32 - Integer.numberOfTrailingZeros(capacity);
   }
 
   // -----------------------------------------------------------------------------------------------
@@ -580,17 +807,16 @@ final class SymbolTable {
    */
   private Entry addConstantMemberReference(
       final int tag, final String owner, final String name, final String descriptor) {
+    addSourceEntries(tag);
     int hashCode = hash(tag, owner, name, descriptor);
-    Entry entry = get(hashCode);
-    while (entry != null) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
       if (entry.tag == tag
-          && entry.hashCode == hashCode
           && entry.owner.equals(owner)
           && entry.name.equals(name)
           && entry.value.equals(descriptor)) {
         return entry;
       }
-      entry = entry.next;
     }
     constantPool.put122(
         tag, addConstantClass(owner).index, addConstantNameAndType(name, descriptor));
@@ -614,7 +840,7 @@ final class SymbolTable {
       final String owner,
       final String name,
       final String descriptor) {
-    add(new Entry(index, tag, owner, name, descriptor, 0, hash(tag, owner, name, descriptor)));
+    put(new Entry(index, tag, owner, name, descriptor, 0, hash(tag, owner, name, descriptor)));
   }
 
   /**
@@ -659,13 +885,13 @@ final class SymbolTable {
    * @return a constant pool constant with the given tag and primitive values.
    */
   private Symbol addConstantIntegerOrFloat(final int tag, final int value) {
+    addSourceEntries(tag);
     int hashCode = hash(tag, value);
-    Entry entry = get(hashCode);
-    while (entry != null) {
-      if (entry.tag == tag && entry.hashCode == hashCode && entry.data == value) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
+      if (entry.tag == tag && entry.data == value) {
         return entry;
       }
-      entry = entry.next;
     }
     constantPool.putByte(tag).putInt(value);
     return put(new Entry(constantPoolCount++, tag, value, hashCode));
@@ -680,7 +906,7 @@ final class SymbolTable {
    * @param value an int or float.
    */
   private void addConstantIntegerOrFloat(final int index, final int tag, final int value) {
-    add(new Entry(index, tag, value, hash(tag, value)));
+    put(new Entry(index, tag, value, hash(tag, value)));
   }
 
   /**
@@ -714,13 +940,13 @@ final class SymbolTable {
    * @return a constant pool constant with the given tag and primitive values.
    */
   private Symbol addConstantLongOrDouble(final int tag, final long value) {
+    addSourceEntries(tag);
     int hashCode = hash(tag, value);
-    Entry entry = get(hashCode);
-    while (entry != null) {
-      if (entry.tag == tag && entry.hashCode == hashCode && entry.data == value) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
+      if (entry.tag == tag && entry.data == value) {
         return entry;
       }
-      entry = entry.next;
     }
     int index = constantPoolCount;
     constantPool.putByte(tag).putLong(value);
@@ -737,7 +963,7 @@ final class SymbolTable {
    * @param value a long or double.
    */
   private void addConstantLongOrDouble(final int index, final int tag, final long value) {
-    add(new Entry(index, tag, value, hash(tag, value)));
+    put(new Entry(index, tag, value, hash(tag, value)));
   }
 
   /**
@@ -750,16 +976,13 @@ final class SymbolTable {
    */
   int addConstantNameAndType(final String name, final String descriptor) {
     final int tag = Symbol.CONSTANT_NAME_AND_TYPE_TAG;
+    addSourceEntries(tag);
     int hashCode = hash(tag, name, descriptor);
-    Entry entry = get(hashCode);
-    while (entry != null) {
-      if (entry.tag == tag
-          && entry.hashCode == hashCode
-          && entry.name.equals(name)
-          && entry.value.equals(descriptor)) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
+      if (entry.tag == tag && entry.name.equals(name) && entry.value.equals(descriptor)) {
         return entry.index;
       }
-      entry = entry.next;
     }
     constantPool.put122(tag, addConstantUtf8(name), addConstantUtf8(descriptor));
     return put(new Entry(constantPoolCount++, tag, name, descriptor, hashCode)).index;
@@ -774,7 +997,7 @@ final class SymbolTable {
    */
   private void addConstantNameAndType(final int index, final String name, final String descriptor) {
     final int tag = Symbol.CONSTANT_NAME_AND_TYPE_TAG;
-    add(new Entry(index, tag, name, descriptor, hash(tag, name, descriptor)));
+    put(new Entry(index, tag, name, descriptor, hash(tag, name, descriptor)));
   }
 
   /**
@@ -785,15 +1008,13 @@ final class SymbolTable {
    * @return a new or already existing Symbol with the given value.
    */
   int addConstantUtf8(final String value) {
+    addSourceEntries(Symbol.CONSTANT_UTF8_TAG);
     int hashCode = hash(Symbol.CONSTANT_UTF8_TAG, value);
-    Entry entry = get(hashCode);
-    while (entry != null) {
-      if (entry.tag == Symbol.CONSTANT_UTF8_TAG
-          && entry.hashCode == hashCode
-          && entry.value.equals(value)) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
+      if (entry.tag == Symbol.CONSTANT_UTF8_TAG && entry.value.equals(value)) {
         return entry.index;
       }
-      entry = entry.next;
     }
     constantPool.putByte(Symbol.CONSTANT_UTF8_TAG).putUTF8(value);
     return put(new Entry(constantPoolCount++, Symbol.CONSTANT_UTF8_TAG, value, hashCode)).index;
@@ -806,7 +1027,7 @@ final class SymbolTable {
    * @param value a string.
    */
   private void addConstantUtf8(final int index, final String value) {
-    add(new Entry(index, Symbol.CONSTANT_UTF8_TAG, value, hash(Symbol.CONSTANT_UTF8_TAG, value)));
+    put(new Entry(index, Symbol.CONSTANT_UTF8_TAG, value, hash(Symbol.CONSTANT_UTF8_TAG, value)));
   }
 
   /**
@@ -830,20 +1051,19 @@ final class SymbolTable {
       final String descriptor,
       final boolean isInterface) {
     final int tag = Symbol.CONSTANT_METHOD_HANDLE_TAG;
+    addSourceEntries(tag);
     // Note that we don't need to include isInterface in the hash computation, because it is
     // redundant with owner (we can't have the same owner with different isInterface values).
     int hashCode = hash(tag, owner, name, descriptor, referenceKind);
-    Entry entry = get(hashCode);
-    while (entry != null) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
       if (entry.tag == tag
-          && entry.hashCode == hashCode
           && entry.data == referenceKind
           && entry.owner.equals(owner)
           && entry.name.equals(name)
           && entry.value.equals(descriptor)) {
         return entry;
       }
-      entry = entry.next;
     }
     if (referenceKind <= Opcodes.H_PUTSTATIC) {
       constantPool.put112(tag, referenceKind, addConstantFieldref(owner, name, descriptor).index);
@@ -875,7 +1095,7 @@ final class SymbolTable {
       final String descriptor) {
     final int tag = Symbol.CONSTANT_METHOD_HANDLE_TAG;
     int hashCode = hash(tag, owner, name, descriptor, referenceKind);
-    add(new Entry(index, tag, owner, name, descriptor, referenceKind, hashCode));
+    put(new Entry(index, tag, owner, name, descriptor, referenceKind, hashCode));
   }
 
   /**
@@ -945,17 +1165,16 @@ final class SymbolTable {
    */
   private Symbol addConstantDynamicOrInvokeDynamicReference(
       final int tag, final String name, final String descriptor, final int bootstrapMethodIndex) {
+    addSourceEntries(tag);
     int hashCode = hash(tag, name, descriptor, bootstrapMethodIndex);
-    Entry entry = get(hashCode);
-    while (entry != null) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
       if (entry.tag == tag
-          && entry.hashCode == hashCode
           && entry.data == bootstrapMethodIndex
           && entry.name.equals(name)
           && entry.value.equals(descriptor)) {
         return entry;
       }
-      entry = entry.next;
     }
     constantPool.put122(tag, bootstrapMethodIndex, addConstantNameAndType(name, descriptor));
     return put(
@@ -982,7 +1201,7 @@ final class SymbolTable {
       final String descriptor,
       final int bootstrapMethodIndex) {
     int hashCode = hash(tag, name, descriptor, bootstrapMethodIndex);
-    add(new Entry(index, tag, null, name, descriptor, bootstrapMethodIndex, hashCode));
+    put(new Entry(index, tag, null, name, descriptor, bootstrapMethodIndex, hashCode));
   }
 
   /**
@@ -1020,13 +1239,13 @@ final class SymbolTable {
    * @return a new or already existing Symbol with the given value.
    */
   private Symbol addConstantUtf8Reference(final int tag, final String value) {
+    addSourceEntries(tag);
     int hashCode = hash(tag, value);
-    Entry entry = get(hashCode);
-    while (entry != null) {
-      if (entry.tag == tag && entry.hashCode == hashCode && entry.value.equals(value)) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
+      if (entry.tag == tag && entry.value.equals(value)) {
         return entry;
       }
-      entry = entry.next;
     }
     constantPool.put12(tag, addConstantUtf8(value));
     return put(new Entry(constantPoolCount++, tag, value, hashCode));
@@ -1044,7 +1263,7 @@ final class SymbolTable {
    *     package name, depending on tag.
    */
   private void addConstantUtf8Reference(final int index, final int tag, final String value) {
-    add(new Entry(index, tag, value, hash(tag, value)));
+    put(new Entry(index, tag, value, hash(tag, value)));
   }
 
   // -----------------------------------------------------------------------------------------------
@@ -1117,10 +1336,11 @@ final class SymbolTable {
    * @return a new or already existing Symbol with the given value.
    */
   private Symbol addBootstrapMethod(final int offset, final int length, final int hashCode) {
+    addSourceBootstrapMethodEntries();
     final byte[] bootstrapMethodsData = bootstrapMethods.data;
-    Entry entry = get(hashCode);
-    while (entry != null) {
-      if (entry.tag == Symbol.BOOTSTRAP_METHOD_TAG && entry.hashCode == hashCode) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
+      if (entry.tag == Symbol.BOOTSTRAP_METHOD_TAG) {
         int otherOffset = (int) entry.data;
         boolean isSameBootstrapMethod = true;
         for (int i = 0; i < length; ++i) {
@@ -1134,7 +1354,6 @@ final class SymbolTable {
           return entry;
         }
       }
-      entry = entry.next;
     }
     return put(new Entry(bootstrapMethodCount++, Symbol.BOOTSTRAP_METHOD_TAG, offset, hashCode));
   }
@@ -1162,7 +1381,7 @@ final class SymbolTable {
    *     uninitialized" type.
    */
   Label getForwardUninitializedLabel(final int typeIndex) {
-    return labelTable[(int) typeTable[typeIndex].data].label;
+    return labelTable[(int) typeTable[typeIndex].data];
   }
 
   /**
@@ -1174,12 +1393,11 @@ final class SymbolTable {
    */
   int addType(final String value) {
     int hashCode = hash(Symbol.TYPE_TAG, value);
-    Entry entry = get(hashCode);
-    while (entry != null) {
-      if (entry.tag == Symbol.TYPE_TAG && entry.hashCode == hashCode && entry.value.equals(value)) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
+      if (entry.tag == Symbol.TYPE_TAG && entry.value.equals(value)) {
         return entry.index;
       }
-      entry = entry.next;
     }
     return addTypeInternal(new Entry(typeCount, Symbol.TYPE_TAG, value, hashCode));
   }
@@ -1195,15 +1413,13 @@ final class SymbolTable {
    */
   int addUninitializedType(final String value, final int bytecodeOffset) {
     int hashCode = hash(Symbol.UNINITIALIZED_TYPE_TAG, value, bytecodeOffset);
-    Entry entry = get(hashCode);
-    while (entry != null) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
       if (entry.tag == Symbol.UNINITIALIZED_TYPE_TAG
-          && entry.hashCode == hashCode
           && entry.data == bytecodeOffset
           && entry.value.equals(value)) {
         return entry.index;
       }
-      entry = entry.next;
     }
     return addTypeInternal(
         new Entry(typeCount, Symbol.UNINITIALIZED_TYPE_TAG, value, bytecodeOffset, hashCode));
@@ -1219,17 +1435,15 @@ final class SymbolTable {
    * @return the index of a new or already existing type {@link Symbol} with the given value.
    */
   int addForwardUninitializedType(final String value, final Label label) {
-    int labelIndex = getOrAddLabelEntry(label).index;
+    int labelIndex = getOrAddLabelIndex(label);
     int hashCode = hash(Symbol.FORWARD_UNINITIALIZED_TYPE_TAG, value, labelIndex);
-    Entry entry = get(hashCode);
-    while (entry != null) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
       if (entry.tag == Symbol.FORWARD_UNINITIALIZED_TYPE_TAG
-          && entry.hashCode == hashCode
           && entry.data == labelIndex
           && entry.value.equals(value)) {
         return entry.index;
       }
-      entry = entry.next;
     }
     return addTypeInternal(
         new Entry(typeCount, Symbol.FORWARD_UNINITIALIZED_TYPE_TAG, value, labelIndex, hashCode));
@@ -1252,15 +1466,15 @@ final class SymbolTable {
             ? typeTableIndex1 | (((long) typeTableIndex2) << 32)
             : typeTableIndex2 | (((long) typeTableIndex1) << 32);
     int hashCode = hash(Symbol.MERGED_TYPE_TAG, typeTableIndex1 + typeTableIndex2);
-    Entry entry = get(hashCode);
-    while (entry != null) {
-      if (entry.tag == Symbol.MERGED_TYPE_TAG && entry.hashCode == hashCode && entry.data == data) {
+    for (int slot = get(hashCode); slot != -1; slot = getNext(hashCode, slot)) {
+      Entry entry = entries[slot];
+      if (entry.tag == Symbol.MERGED_TYPE_TAG && entry.data == data) {
         return entry.info;
       }
-      entry = entry.next;
     }
     String type1 = typeTable[typeTableIndex1].value;
     String type2 = typeTable[typeTableIndex2].value;
+    ++classWriter.commonSuperClassCount;
     int commonSuperTypeIndex = addType(classWriter.getCommonSuperClass(type1, type2));
     put(new Entry(typeCount, Symbol.MERGED_TYPE_TAG, data, hashCode)).info = commonSuperTypeIndex;
     return commonSuperTypeIndex;
@@ -1288,56 +1502,61 @@ final class SymbolTable {
   }
 
   /**
-   * Returns the {@link LabelEntry} corresponding to the given label. Creates a new one if there is
-   * no such entry.
+   * Returns the index in {@link #labelTable} of the given label. Adds it to this table if it is not
+   * already present.
    *
    * @param label the {@link Label} of a NEW instruction which created an uninitialized type, in the
    *     case where this NEW instruction is after the &lt;init&gt; constructor call (in bytecode
    *     offset order). See {@link Symbol#FORWARD_UNINITIALIZED_TYPE_TAG}.
-   * @return the {@link LabelEntry} corresponding to {@code label}.
+   * @return the index of {@code label} in {@link #labelTable}.
    */
-  private LabelEntry getOrAddLabelEntry(final Label label) {
+  private int getOrAddLabelIndex(final Label label) {
     if (labelEntries == null) {
-      labelEntries = new LabelEntry[16];
-      labelTable = new LabelEntry[16];
+      labelEntries = new int[16];
+      labelTable = new Label[16];
     }
-    int hashCode = System.identityHashCode(label);
-    LabelEntry labelEntry = labelEntries[hashCode % labelEntries.length];
-    while (labelEntry != null && labelEntry.label != label) {
-      labelEntry = labelEntry.next;
-    }
-    if (labelEntry != null) {
-      return labelEntry;
+    int slot = findLabelSlot(labelEntries, label);
+    if (labelEntries[slot] != 0) {
+      return labelEntries[slot] - 1;
     }
 
-    if (labelCount > (labelEntries.length * 3) / 4) {
-      int currentCapacity = labelEntries.length;
-      int newCapacity = currentCapacity * 2 + 1;
-      LabelEntry[] newLabelEntries = new LabelEntry[newCapacity];
-      for (int i = currentCapacity - 1; i >= 0; --i) {
-        LabelEntry currentEntry = labelEntries[i];
-        while (currentEntry != null) {
-          int newCurrentEntryIndex = System.identityHashCode(currentEntry.label) % newCapacity;
-          LabelEntry nextEntry = currentEntry.next;
-          currentEntry.next = newLabelEntries[newCurrentEntryIndex];
-          newLabelEntries[newCurrentEntryIndex] = currentEntry;
-          currentEntry = nextEntry;
-        }
+    if (2 * (labelCount + 1) > labelEntries.length) {
+      int[] newLabelEntries = new int[2 * labelEntries.length];
+      for (int i = 0; i < labelCount; ++i) {
+        newLabelEntries[findLabelSlot(newLabelEntries, labelTable[i])] = i + 1;
       }
       labelEntries = newLabelEntries;
+      slot = findLabelSlot(labelEntries, label);
     }
     if (labelCount == labelTable.length) {
-      LabelEntry[] newLabelTable = new LabelEntry[2 * labelTable.length];
+      Label[] newLabelTable = new Label[2 * labelTable.length];
       System.arraycopy(labelTable, 0, newLabelTable, 0, labelTable.length);
       labelTable = newLabelTable;
     }
 
-    labelEntry = new LabelEntry(labelCount, label);
-    int index = hashCode % labelEntries.length;
-    labelEntry.next = labelEntries[index];
-    labelEntries[index] = labelEntry;
-    labelTable[labelCount++] = labelEntry;
-    return labelEntry;
+    labelTable[labelCount] = label;
+    labelEntries[slot] = ++labelCount;
+    return labelCount - 1;
+  }
+
+  /**
+   * Returns the slot of the given label in the given {@link #labelEntries} hash set.
+   *
+   * @param labelIndices a {@link #labelEntries} hash set, whose elements are indices in {@link
+   *     #labelTable}, plus one.
+   * @param label a label.
+   * @return the slot of 'labelIndices' containing the index of 'label', or the empty slot where
+   *     this index must be stored if it is not already present.
+   */
+  private int findLabelSlot(final int[] labelIndices, final Label label) {
+    int mask = labelIndices.length - 1;
+    int shift = 32 - Integer.numberOfTrailingZeros(labelIndices.length);
+    int slot = (System.identityHashCode(label) * HASH_MULTIPLIER) >>> shift;
+    int labelIndex;
+    while ((labelIndex = labelIndices[slot]) != 0 && labelTable[labelIndex - 1] != label) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
   }
 
   // -----------------------------------------------------------------------------------------------
@@ -1384,23 +1603,17 @@ final class SymbolTable {
   }
 
   /**
-   * An entry of a SymbolTable. This concrete and private subclass of {@link Symbol} adds two fields
-   * which are only used inside SymbolTable, to implement hash sets of symbols (in order to avoid
+   * An entry of a SymbolTable. This concrete and private subclass of {@link Symbol} adds a field
+   * which is only used inside SymbolTable, to implement hash sets of symbols (in order to avoid
    * duplicate symbols). See {@link #entries}.
    *
    * @author Eric Bruneton
    */
   private static final class Entry extends Symbol {
 
-    /** The hash code of this entry. */
+    /** The hash code of this entry. Always positive. */
     final int hashCode;
 
-    /**
-     * Another entry (and so on recursively) having the same hash code (modulo the size of {@link
-     * #entries}) as this one.
-     */
-    Entry next;
-
     Entry(
         final int index,
         final int tag,
@@ -1434,30 +1647,4 @@ final class SymbolTable {
       this.hashCode = hashCode;
     }
   }
-
-  /**
-   * A label corresponding to a "forward uninitialized" type in the ASM specific {@link
-   * SymbolTable#typeTable} (see {@link Symbol#FORWARD_UNINITIALIZED_TYPE_TAG}).
-   *
-   * @author Eric Bruneton
-   */
-  private static final class LabelEntry {
-
-    /** The index of this label entry in the {@link SymbolTable#labelTable} array. */
-    final int index;
-
-    /** The value of this label entry. */
-    final Label label;
-
-    /**
-     * Another entry (and so on recursively) having the same hash code (modulo the size of {@link
-     * SymbolTable#labelEntries}}) as this one.
-     */
-    LabelEntry next;
-
-    LabelEntry(final int index, final Label label) {
-      this.index = index;
-      this.label = label;
-    }
-  }
 }
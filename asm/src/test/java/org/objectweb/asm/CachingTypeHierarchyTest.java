@@ -0,0 +1,173 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/** Unit tests for {@link CachingTypeHierarchy}. */
+class CachingTypeHierarchyTest {
+
+  @Test
+  void testConstructor_invalidMaximumSize() {
+    Executable constructor = () -> new CachingTypeHierarchy(new CountingTypeHierarchy(), 0);
+
+    assertThrows(IllegalArgumentException.class, constructor);
+  }
+
+  @Test
+  void testGetCommonSuperClass() {
+    CountingTypeHierarchy countingTypeHierarchy = new CountingTypeHierarchy();
+    CachingTypeHierarchy cachingTypeHierarchy =
+        new CachingTypeHierarchy(countingTypeHierarchy, 100);
+
+    String commonSuperClass1 = cachingTypeHierarchy.getCommonSuperClass("pkg/A", "pkg/B");
+    String commonSuperClass2 = cachingTypeHierarchy.getCommonSuperClass("pkg/A", "pkg/B");
+    String commonSuperClass3 = cachingTypeHierarchy.getCommonSuperClass("pkg/B", "pkg/A");
+    String commonSuperClass4 = cachingTypeHierarchy.getCommonSuperClass("pkg/A", "pkg/C");
+
+    assertEquals("pkg/A_pkg/B", commonSuperClass1);
+    assertEquals("pkg/A_pkg/B", commonSuperClass2);
+    assertEquals("pkg/A_pkg/B", commonSuperClass3);
+    assertEquals("pkg/A_pkg/C", commonSuperClass4);
+    assertEquals(2, countingTypeHierarchy.callCount.get());
+    assertEquals(2, cachingTypeHierarchy.getHitCount());
+    assertEquals(2, cachingTypeHierarchy.getMissCount());
+    assertEquals(2, cachingTypeHierarchy.size());
+  }
+
+  @Test
+  void testGetCommonSuperClass_bounded() {
+    CountingTypeHierarchy countingTypeHierarchy = new CountingTypeHierarchy();
+    CachingTypeHierarchy cachingTypeHierarchy =
+        new CachingTypeHierarchy(countingTypeHierarchy, 64);
+
+    for (int i = 0; i < 1000; ++i) {
+      cachingTypeHierarchy.getCommonSuperClass("pkg/A", "pkg/B" + i);
+    }
+
+    assertTrue(cachingTypeHierarchy.size() <= 64);
+    assertEquals(1000, cachingTypeHierarchy.getMissCount());
+  }
+
+  @Test
+  void testGetCommonSuperClass_leastRecentlyUsedEviction() {
+    CountingTypeHierarchy countingTypeHierarchy = new CountingTypeHierarchy();
+    CachingTypeHierarchy cachingTypeHierarchy = new CachingTypeHierarchy(countingTypeHierarchy, 1);
+
+    cachingTypeHierarchy.getCommonSuperClass("pkg/A", "pkg/B");
+    cachingTypeHierarchy.getCommonSuperClass("pkg/A", "pkg/C");
+    cachingTypeHierarchy.getCommonSuperClass("pkg/A", "pkg/C");
+    cachingTypeHierarchy.getCommonSuperClass("pkg/A", "pkg/B");
+
+    assertEquals(1, cachingTypeHierarchy.getHitCount());
+    assertEquals(3, cachingTypeHierarchy.getMissCount());
+  }
+
+  @Test
+  void testClear() {
+    CachingTypeHierarchy cachingTypeHierarchy =
+        new CachingTypeHierarchy(new CountingTypeHierarchy(), 100);
+    cachingTypeHierarchy.getCommonSuperClass("pkg/A", "pkg/B");
+
+    cachingTypeHierarchy.clear();
+    cachingTypeHierarchy.getCommonSuperClass("pkg/A", "pkg/B");
+
+    assertEquals(0, cachingTypeHierarchy.getHitCount());
+    assertEquals(2, cachingTypeHierarchy.getMissCount());
+  }
+
+  @Test
+  void testGetCommonSuperClass_concurrent() throws Exception {
+    CountingTypeHierarchy countingTypeHierarchy = new CountingTypeHierarchy();
+    CachingTypeHierarchy cachingTypeHierarchy =
+        new CachingTypeHierarchy(countingTypeHierarchy, 1000);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<Boolean>> results = new ArrayList<>();
+
+    try {
+      for (int task = 0; task < 8; ++task) {
+        results.add(
+            executor.submit(
+                () -> {
+                  boolean success = true;
+                  for (int i = 0; i < 10000; ++i) {
+                    String type1 = "pkg/A" + (i % 10);
+                    String type2 = "pkg/B" + (i % 7);
+                    success &=
+                        (type1 + "_" + type2)
+                            .equals(cachingTypeHierarchy.getCommonSuperClass(type1, type2));
+                  }
+                  return success;
+                }));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(80000, cachingTypeHierarchy.getHitCount() + cachingTypeHierarchy.getMissCount());
+    assertEquals(70, cachingTypeHierarchy.size());
+  }
+
+  @Test
+  void testGetCommonSuperClass_classReaderTypeHierarchy() {
+    CachingTypeHierarchy cachingTypeHierarchy =
+        new CachingTypeHierarchy(new ClassReaderTypeHierarchy(), 100);
+
+    String commonSuperClass =
+        cachingTypeHierarchy.getCommonSuperClass("java/io/IOException", "java/lang/Exception");
+
+    assertEquals("java/lang/Exception", commonSuperClass);
+  }
+
+  /** A fake type hierarchy which counts its calls. */
+  private static class CountingTypeHierarchy implements TypeHierarchy {
+
+    final AtomicInteger callCount = new AtomicInteger();
+
+    @Override
+    public String getCommonSuperClass(final String type1, final String type2) {
+      callCount.incrementAndGet();
+      // A symmetric (and fake) common super class.
+      return type1.compareTo(type2) <= 0 ? type1 + "_" + type2 : type2 + "_" + type1;
+    }
+  }
+}
@@ -0,0 +1,206 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.test.ClassFile;
+
+/** Unit tests for {@link ClassPatcher}. */
+class ClassPatcherTest extends AsmTest {
+
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testToByteArray_noPatch(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+
+    byte[] patchedClassFile = new ClassPatcher(classFile).toByteArray();
+
+    assertArrayEquals(classFile, patchedClassFile);
+  }
+
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testSetUtf8_sameValues(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassPatcher classPatcher = new ClassPatcher(classReader);
+    char[] charBuffer = new char[classReader.getMaxStringLength()];
+
+    for (int i = 1; i < classReader.getItemCount(); ++i) {
+      int itemOffset = classReader.getItem(i);
+      if (itemOffset != 0 && classReader.readByte(itemOffset - 1) == Symbol.CONSTANT_UTF8_TAG) {
+        classPatcher.setUtf8(i, classReader.readUtf(i, charBuffer));
+      }
+    }
+    byte[] patchedClassFile = classPatcher.toByteArray();
+
+    assertArrayEquals(classFile, patchedClassFile);
+  }
+
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testSetString(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassPatcher classPatcher = new ClassPatcher(classReader);
+    char[] charBuffer = new char[classReader.getMaxStringLength()];
+
+    for (int i = 1; i < classReader.getItemCount(); ++i) {
+      int itemOffset = classReader.getItem(i);
+      if (itemOffset != 0 && classReader.readByte(itemOffset - 1) == Symbol.CONSTANT_STRING_TAG) {
+        classPatcher.setString(i, classReader.readConst(i, charBuffer) + "\u00e9");
+      }
+    }
+    byte[] patchedClassFile = classPatcher.toByteArray();
+
+    ClassReader patchedClassReader = new ClassReader(patchedClassFile);
+    char[] patchedCharBuffer = new char[patchedClassReader.getMaxStringLength()];
+    for (int i = 1; i < classReader.getItemCount(); ++i) {
+      int itemOffset = classReader.getItem(i);
+      if (itemOffset != 0 && classReader.readByte(itemOffset - 1) == Symbol.CONSTANT_STRING_TAG) {
+        assertEquals(
+            classReader.readConst(i, charBuffer) + "\u00e9",
+            patchedClassReader.readConst(i, patchedCharBuffer));
+      }
+    }
+    // Check that the rest of the class is unchanged.
+    assertEquals(
+        new ClassFile(classFile).toString().replace("\u00e9", ""),
+        new ClassFile(patchedClassFile).toString().replace("\u00e9", ""));
+  }
+
+  @Test
+  void testSetHeaderFields() {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "pkg/C", null, "pkg/Super", null);
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitVarInsn(Opcodes.ALOAD, 0);
+    methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, "pkg/Super", "<init>", "()V", false);
+    methodVisitor.visitFieldInsn(Opcodes.GETSTATIC, "pkg/C", "f", "I");
+    methodVisitor.visitInsn(Opcodes.POP);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(1, 1);
+    methodVisitor.visitEnd();
+    classWriter.visitEnd();
+    ClassPatcher classPatcher = new ClassPatcher(classWriter.toByteArray());
+
+    classPatcher.setVersion(Opcodes.V11);
+    classPatcher.setAccess(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_DEPRECATED);
+    classPatcher.setName("pkg/D");
+    classPatcher.setSuperName("pkg/OtherSuper");
+    ClassReader classReader = new ClassReader(classPatcher.toByteArray());
+
+    assertEquals(Opcodes.V11, classReader.readShort(6));
+    assertEquals(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, classReader.getAccess());
+    assertEquals("pkg/D", classReader.getClassName());
+    assertEquals("pkg/OtherSuper", classReader.getSuperName());
+    StringBuilder owners = new StringBuilder();
+    classReader.accept(
+        new ClassVisitor(Opcodes.ASM9) {
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final String[] exceptions) {
+            return new MethodVisitor(Opcodes.ASM9) {
+              @Override
+              public void visitFieldInsn(
+                  final int opcode,
+                  final String owner,
+                  final String name,
+                  final String descriptor) {
+                owners.append(owner).append(' ');
+              }
+
+              @Override
+              public void visitMethodInsn(
+                  final int opcode,
+                  final String owner,
+                  final String name,
+                  final String descriptor,
+                  final boolean isInterface) {
+                owners.append(owner).append(' ');
+              }
+            };
+          }
+        },
+        0);
+    assertEquals("pkg/OtherSuper pkg/D ", owners.toString());
+  }
+
+  @Test
+  void testNewUtf8AndNewClass() {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    classWriter.visitEnd();
+    ClassPatcher classPatcher = new ClassPatcher(classWriter.toByteArray());
+    int itemCount = classPatcher.getItemCount();
+
+    int utf8Index = classPatcher.newUtf8("D");
+    int classIndex = classPatcher.newClass("D");
+    ClassReader classReader = new ClassReader(classPatcher.toByteArray());
+
+    assertEquals(itemCount, utf8Index);
+    assertEquals(itemCount + 1, classIndex);
+    assertEquals(utf8Index, classPatcher.newUtf8("D"));
+    assertEquals(classIndex, classPatcher.newClass("D"));
+    assertEquals(itemCount + 2, classReader.getItemCount());
+    assertEquals(
+        Type.getObjectType("D"),
+        classReader.readConst(classIndex, new char[classReader.getMaxStringLength()]));
+  }
+
+  @Test
+  void testSetClass_invalidIndex() {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    classWriter.visitEnd();
+    ClassPatcher classPatcher = new ClassPatcher(classWriter.toByteArray());
+    int utf8Index = classPatcher.newUtf8("D");
+
+    Executable setClassWithUtf8Index = () -> classPatcher.setClass(1, "D");
+    Executable setClassWithAppendedIndex = () -> classPatcher.setClass(utf8Index, "D");
+    Executable setUtf8WithZeroIndex = () -> classPatcher.setUtf8(0, "D");
+
+    assertThrows(IllegalArgumentException.class, setClassWithUtf8Index);
+    assertThrows(IllegalArgumentException.class, setClassWithAppendedIndex);
+    assertThrows(IllegalArgumentException.class, setUtf8WithZeroIndex);
+  }
+}
@@ -0,0 +1,138 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.test.ClassFile;
+
+/** Unit tests for {@link ClassReaderPool}. */
+class ClassReaderPoolTest extends AsmTest {
+
+  @Test
+  void testAcquire_afterRelease() {
+    ClassReaderPool classReaderPool = new ClassReaderPool();
+    byte[] classFile1 = newClass("C1");
+    byte[] classFile2 = newClass("C2");
+
+    ClassReader classReader1 = classReaderPool.acquire(classFile1);
+    String className1 = classReader1.getClassName();
+    classReaderPool.release(classReader1);
+    ClassReader classReader2 = classReaderPool.acquire(ByteBuffer.wrap(classFile2));
+    String className2 = classReader2.getClassName();
+
+    assertNotSame(classReader1, classReader2);
+    assertEquals("C1", className1);
+    assertEquals("C2", className2);
+  }
+
+  @Test
+  void testAcquire_readerInUseIsNotReused() {
+    ClassReaderPool classReaderPool = new ClassReaderPool();
+    byte[] classFile1 = newClass("C1");
+    byte[] classFile2 = newClass("C2");
+
+    ClassReader classReader1 = classReaderPool.acquire(classFile1);
+    ClassReader classReader2 = classReaderPool.acquire(classFile2);
+
+    assertNotSame(classReader1, classReader2);
+    assertEquals("C1", classReader1.getClassName());
+    assertEquals("C2", classReader2.getClassName());
+  }
+
+  @Test
+  void testAcquire_withStringPool() {
+    ClassReaderPool classReaderPool = new ClassReaderPool(new StringPool());
+    byte[] classFile = newClass("C");
+
+    ClassReader classReader1 = classReaderPool.acquire(classFile);
+    ClassReader classReader2 = classReaderPool.acquire(classFile);
+
+    assertSame(classReader1.getClassName(), classReader2.getClassName());
+  }
+
+  /**
+   * Tests that the readers of a pool produce the same result as new readers, when they are reused
+   * for all the precompiled classes in turn.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testAcquireAndRelease(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassWriter expectedClassWriter = new ClassWriter(0);
+    new ClassReader(classFile).accept(expectedClassWriter, ClassReader.EXPAND_FRAMES);
+    ClassReaderPool classReaderPool = new ClassReaderPool();
+    ClassReader classReader = classReaderPool.acquire(newClass("C"));
+    classReader.accept(new ClassWriter(0), 0);
+    classReaderPool.release(classReader);
+
+    classReader = classReaderPool.acquire(classFile);
+    ClassWriter classWriter = new ClassWriter(0);
+    classReader.accept(classWriter, ClassReader.EXPAND_FRAMES);
+    classReaderPool.release(classReader);
+
+    assertEquals(
+        new ClassFile(expectedClassWriter.toByteArray()), new ClassFile(classWriter.toByteArray()));
+  }
+
+  /**
+   * Tests that a ClassWriter constructed from a reader of a pool can still be used after this
+   * reader is released, and after the next reader is acquired.
+   */
+  @Test
+  void testAcquire_afterReleaseOfReaderUsedByClassWriter() {
+    byte[] classFile = PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes();
+    ClassWriter expectedClassWriter = new ClassWriter(new ClassReader(classFile), 0);
+    new ClassReader(classFile).accept(expectedClassWriter, 0);
+    ClassReaderPool classReaderPool = new ClassReaderPool();
+
+    ClassReader classReader = classReaderPool.acquire(classFile);
+    ClassWriter classWriter = new ClassWriter(classReader, 0);
+    classReaderPool.release(classReader);
+    ClassReader nextClassReader = classReaderPool.acquire(newClass("C"));
+    new ClassReader(classFile).accept(classWriter, 0);
+    classReaderPool.release(nextClassReader);
+
+    assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+  }
+
+  private static byte[] newClass(final String name) {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+}
@@ -27,8 +27,10 @@
 // THE POSSIBILITY OF SUCH DAMAGE.
 package org.objectweb.asm;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -40,9 +42,14 @@ import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -51,7 +58,9 @@ import org.junit.jupiter.api.function.Executable;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.test.ClassFile;
 
 /**
  * Unit tests for {@link ClassReader}.
@@ -91,6 +100,34 @@ class ClassReaderTest extends AsmTest implements Opcodes {
     assertEquals(name.replace('.', '/'), new ClassReader(name).getClassName());
   }
 
+  /**
+   * Tests that CONSTANT_Utf8 strings of various lengths are correctly decoded from byte arrays and
+   * from direct buffers, whatever the position of their first non ASCII character (if any).
+   */
+  @ParameterizedTest
+  @ValueSource(strings = {"\u00e9", "\u4e2d", "\u0000", "\ud83d\ude00"})
+  void testGetClassName_nonAsciiCharacters(final String nonAsciiCharacter) {
+    for (int length = 0; length <= 24; ++length) {
+      for (int position = -1; position < length; ++position) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < length; ++i) {
+          stringBuilder.append(
+              i == position ? nonAsciiCharacter : String.valueOf((char) ('a' + i)));
+        }
+        String className = stringBuilder.toString();
+        ClassWriter classWriter = new ClassWriter(0);
+        classWriter.visit(
+            Opcodes.V1_8, Opcodes.ACC_PUBLIC, className, null, "java/lang/Object", null);
+        byte[] classFile = classWriter.toByteArray();
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(classFile.length);
+        directBuffer.put(classFile).flip();
+
+        assertEquals(className, new ClassReader(classFile).getClassName());
+        assertEquals(className, new ClassReader(directBuffer).getClassName());
+      }
+    }
+  }
+
   @Test
   void testGetSuperName() throws Exception {
     ClassReader thisClassReader = new ClassReader(getClass().getName());
@@ -181,6 +218,107 @@ class ClassReaderTest extends AsmTest implements Opcodes {
     assertTrue((classVersion.get() & 0xFFFF) >= (Opcodes.V1_1 & 0xFFFF));
   }
 
+  /**
+   * Tests {@link ClassReader#ClassReader(ByteBuffer)} with heap, direct and read-only buffers, by
+   * checking that they produce the same result as {@link ClassReader#ClassReader(byte[])}.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testByteBufferConstructor(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader byteArrayClassReader = new ClassReader(classFile);
+    ClassWriter expectedClassWriter = new ClassWriter(byteArrayClassReader, 0);
+    byteArrayClassReader.accept(expectedClassWriter, 0);
+    byte[] expectedClassFile = expectedClassWriter.toByteArray();
+    ByteBuffer heapBuffer = ByteBuffer.allocate(classFile.length + 1);
+    ByteBuffer directBuffer = ByteBuffer.allocateDirect(classFile.length + 1);
+    for (int i = 0; i < classFile.length; ++i) {
+      heapBuffer.put(i + 1, classFile[i]);
+      directBuffer.put(i + 1, classFile[i]);
+    }
+
+    for (ByteBuffer byteBuffer :
+        new ByteBuffer[] {heapBuffer, directBuffer, directBuffer.asReadOnlyBuffer()}) {
+      byteBuffer.position(1);
+      byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+      ClassReader classReader = new ClassReader(byteBuffer);
+      ClassWriter classWriter = new ClassWriter(classReader, 0);
+      classReader.accept(classWriter, 0);
+
+      assertEquals(classParameter.getInternalName(), classReader.getClassName());
+      assertEquals(new ClassFile(expectedClassFile), new ClassFile(classWriter.toByteArray()));
+      assertEquals(1, byteBuffer.position());
+    }
+  }
+
+  /**
+   * Tests that {@link ClassReader#ClassReader(ByteBuffer)} reads a slice of a heap buffer like a
+   * direct buffer, and does not read past its limit.
+   */
+  @Test
+  void testByteBufferConstructor_heapBufferSlice() {
+    byte[] classFile = PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes();
+    byte[] paddedClassFile = new byte[classFile.length + 2];
+    System.arraycopy(classFile, 0, paddedClassFile, 1, classFile.length);
+    ByteBuffer slice = ByteBuffer.wrap(paddedClassFile, 1, classFile.length).slice();
+    ByteBuffer truncatedHeapBuffer = ByteBuffer.wrap(classFile, 0, classFile.length / 2);
+    ByteBuffer truncatedDirectBuffer = ByteBuffer.allocateDirect(classFile.length);
+    truncatedDirectBuffer.put(classFile).flip().limit(classFile.length / 2);
+    ClassWriter expectedClassWriter = new ClassWriter(0);
+    new ClassReader(classFile).accept(expectedClassWriter, 0);
+    ClassWriter classWriter = new ClassWriter(0);
+
+    new ClassReader(slice).accept(classWriter, 0);
+    Executable readTruncatedHeapBuffer =
+        () -> new ClassReader(truncatedHeapBuffer).accept(new ClassWriter(0), 0);
+    Executable readTruncatedDirectBuffer =
+        () -> new ClassReader(truncatedDirectBuffer).accept(new ClassWriter(0), 0);
+
+    assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+    assertThrows(IndexOutOfBoundsException.class, readTruncatedHeapBuffer);
+    assertThrows(IndexOutOfBoundsException.class, readTruncatedDirectBuffer);
+  }
+
+  /**
+   * Tests that {@link ClassReader#ClassReader(byte[], ClassReader)} and {@link
+   * ClassReader#ClassReader(ByteBuffer, ClassReader)} produce the same result as a new ClassReader,
+   * when the previous class is larger or smaller.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testConstructor_previousReader(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassWriter emptyClassWriter = new ClassWriter(0);
+    emptyClassWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    byte[] emptyClassFile = emptyClassWriter.toByteArray();
+    ClassWriter expectedClassWriter = new ClassWriter(0);
+    new ClassReader(classFile).accept(expectedClassWriter, 0);
+    byte[] expectedClassFile = expectedClassWriter.toByteArray();
+    ClassReader classReader = new ClassReader(classFile, null);
+
+    classReader = new ClassReader(emptyClassFile, classReader);
+    int emptyClassItemCount = classReader.getItemCount();
+    String emptyClassName = classReader.getClassName();
+    classReader = new ClassReader(classFile, classReader);
+    ClassWriter classWriter1 = new ClassWriter(0);
+    classReader.accept(classWriter1, 0);
+    ClassWriter classWriter2 = new ClassWriter(0);
+    classReader.accept(classWriter2, 0);
+    classReader = new ClassReader(ByteBuffer.wrap(classFile), classReader);
+    ClassWriter classWriter3 = new ClassWriter(0);
+    classReader.accept(classWriter3, 0);
+
+    assertTrue(classReader.isReusable());
+    assertFalse(new ClassReader(classFile).isReusable());
+    assertEquals(new ClassReader(emptyClassFile).getItemCount(), emptyClassItemCount);
+    assertEquals("C", emptyClassName);
+    assertEquals(new ClassReader(classFile).getItemCount(), classReader.getItemCount());
+    assertEquals(new ClassFile(expectedClassFile), new ClassFile(classWriter1.toByteArray()));
+    assertEquals(new ClassFile(expectedClassFile), new ClassFile(classWriter2.toByteArray()));
+    assertEquals(new ClassFile(expectedClassFile), new ClassFile(classWriter3.toByteArray()));
+  }
+
   /**
    * Tests that constructing a ClassReader fails if the class version or constant pool is invalid or
    * not supported.
@@ -648,6 +786,315 @@ class ClassReaderTest extends AsmTest implements Opcodes {
     assertEquals(Opcodes.V_PREVIEW, classVersion.get() & Opcodes.V_PREVIEW);
   }
 
+  /**
+   * Tests that the labels of a large method, stored in a sparse table, are the same as those stored
+   * in an array (which is always used in ClassReader subclasses, since they can override readLabel).
+   */
+  @ParameterizedTest
+  @ValueSource(ints = {0, ClassReader.SKIP_DEBUG, ClassReader.EXPAND_FRAMES})
+  void testAccept_largeMethod(final int parsingOptions) {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "(I)I", null, null);
+    methodVisitor.visitCode();
+    Label start = new Label();
+    Label end = new Label();
+    Label handler = new Label();
+    Label[] cases = new Label[] {new Label(), new Label()};
+    methodVisitor.visitTryCatchBlock(start, end, handler, "java/lang/RuntimeException");
+    methodVisitor.visitLabel(start);
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitTableSwitchInsn(0, 1, cases[1], cases);
+    for (int i = 0; i < 2000; ++i) {
+      if (i % 100 == 0) {
+        Label label = new Label();
+        methodVisitor.visitLabel(label);
+        methodVisitor.visitLineNumber(i, label);
+      }
+      if (i % 500 == 0) {
+        methodVisitor.visitLabel(cases[Math.min(i / 500, 1)]);
+      }
+      methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+      methodVisitor.visitInsn(Opcodes.ICONST_1);
+      methodVisitor.visitInsn(Opcodes.IADD);
+      methodVisitor.visitVarInsn(Opcodes.ISTORE, 0);
+    }
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitLabel(end);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitLabel(handler);
+    methodVisitor.visitInsn(Opcodes.POP);
+    methodVisitor.visitInsn(Opcodes.ICONST_0);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitLocalVariable("i", "I", null, start, end, 0);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classWriter.visitEnd();
+    byte[] classFile = classWriter.toByteArray();
+    ClassWriter sparseLabelsClassWriter = new ClassWriter(0);
+    ClassWriter arrayLabelsClassWriter = new ClassWriter(0);
+
+    new ClassReader(classFile).accept(sparseLabelsClassWriter, parsingOptions);
+    new ClassReader(classFile) {}.accept(arrayLabelsClassWriter, parsingOptions);
+
+    assertArrayEquals(arrayLabelsClassWriter.toByteArray(), sparseLabelsClassWriter.toByteArray());
+  }
+
+  /**
+   * Tests that the labels of a large method with many branch targets are the same as those read by
+   * a ClassReader subclass, with and without a StackMapTable attribute.
+   */
+  @ParameterizedTest
+  @ValueSource(ints = {Opcodes.V1_6, Opcodes.V1_8})
+  void testAccept_largeMethodWithManyBranchTargets(final int classVersion) {
+    ClassWriter classWriter =
+        new ClassWriter(
+            classVersion >= Opcodes.V1_7 ? ClassWriter.COMPUTE_FRAMES : ClassWriter.COMPUTE_MAXS);
+    classWriter.visit(classVersion, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "(I)I", null, null);
+    methodVisitor.visitCode();
+    for (int i = 0; i < 2000; ++i) {
+      Label label = new Label();
+      methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+      methodVisitor.visitJumpInsn(Opcodes.IFEQ, label);
+      methodVisitor.visitIincInsn(0, 1);
+      methodVisitor.visitLabel(label);
+    }
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitInsn(Opcodes.IRETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classWriter.visitEnd();
+    byte[] classFile = classWriter.toByteArray();
+    ClassWriter classWriter1 = new ClassWriter(0);
+    ClassWriter classWriter2 = new ClassWriter(0);
+
+    new ClassReader(classFile).accept(classWriter1, 0);
+    new ClassReader(classFile) {}.accept(classWriter2, 0);
+
+    assertArrayEquals(classWriter2.toByteArray(), classWriter1.toByteArray());
+    assertArrayEquals(classFile, classWriter1.toByteArray());
+  }
+
+  /** Tests that acceptField and acceptMethod visit the same members as accept. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testAcceptFieldAndAcceptMethod(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    MemberCollector expectedMembers = new MemberCollector(apiParameter.value());
+    classReader.accept(expectedMembers, 0);
+    MemberCollector actualMembers = new MemberCollector(apiParameter.value());
+
+    for (String field : expectedMembers.fields) {
+      String[] nameAndDescriptor = field.split(" ");
+      assertTrue(
+          classReader.acceptField(actualMembers, nameAndDescriptor[0], nameAndDescriptor[1]));
+    }
+    for (String method : expectedMembers.methods) {
+      String[] nameAndDescriptor = method.split(" ");
+      assertTrue(
+          classReader.acceptMethod(actualMembers, nameAndDescriptor[0], nameAndDescriptor[1], 0));
+    }
+    boolean unknownFieldVisited = classReader.acceptField(actualMembers, "unknown", "I");
+    boolean unknownMethodVisited = classReader.acceptMethod(actualMembers, "unknown", "()V", 0);
+
+    assertEquals(expectedMembers.fields, actualMembers.fields);
+    assertEquals(expectedMembers.methods, actualMembers.methods);
+    assertEquals(expectedMembers.insnCounts, actualMembers.insnCounts);
+    assertFalse(unknownFieldVisited);
+    assertFalse(unknownMethodVisited);
+  }
+
+  /** Tests that acceptMethod with a method index visits the same methods as accept. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testAcceptMethod_methodIndex(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    MemberCollector expectedMembers = new MemberCollector(apiParameter.value());
+    classReader.accept(expectedMembers, 0);
+    MemberCollector actualMembers = new MemberCollector(apiParameter.value());
+
+    for (int i = 0; i < expectedMembers.methods.size(); ++i) {
+      assertTrue(classReader.acceptMethod(actualMembers, i, new Attribute[0], 0));
+    }
+    boolean negativeIndexVisited = classReader.acceptMethod(actualMembers, -1, new Attribute[0], 0);
+    boolean tooLargeIndexVisited =
+        classReader.acceptMethod(
+            actualMembers, expectedMembers.methods.size(), new Attribute[0], 0);
+
+    assertEquals(expectedMembers.methods, actualMembers.methods);
+    assertEquals(expectedMembers.insnCounts, actualMembers.insnCounts);
+    assertFalse(negativeIndexVisited);
+    assertFalse(tooLargeIndexVisited);
+  }
+
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testAcceptAnnotations(final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    AnnotationCollector expectedAnnotations = new AnnotationCollector(apiParameter.value(), null);
+    classReader.accept(expectedAnnotations, ClassReader.SKIP_CODE);
+    String[] selectedDescriptors = {
+      "Ljava/lang/Deprecated;", "Ljdk5/AllStructures$InvisibleAnnotation;"
+    };
+    AnnotationCollector expectedSelectedAnnotations =
+        new AnnotationCollector(apiParameter.value(), selectedDescriptors);
+    classReader.accept(expectedSelectedAnnotations, ClassReader.SKIP_CODE);
+
+    AnnotationCollector annotations = new AnnotationCollector(apiParameter.value(), null);
+    classReader.acceptAnnotations(annotations, null);
+    AnnotationCollector selectedAnnotations = new AnnotationCollector(apiParameter.value(), null);
+    classReader.acceptAnnotations(selectedAnnotations, selectedDescriptors);
+
+    assertEquals(expectedAnnotations.annotations, annotations.annotations);
+    assertEquals(expectedSelectedAnnotations.annotations, selectedAnnotations.annotations);
+    assertTrue(annotations.visitedMembers.size() <= expectedAnnotations.visitedMembers.size());
+    for (String member : selectedAnnotations.visitedMembers) {
+      assertTrue(selectedAnnotations.annotations.toString().contains(member + " "));
+    }
+  }
+
+  private static class MemberCollector extends ClassVisitor {
+
+    final List<String> fields = new ArrayList<>();
+    final List<String> methods = new ArrayList<>();
+    final List<Integer> insnCounts = new ArrayList<>();
+
+    MemberCollector(final int api) {
+      super(api);
+    }
+
+    @Override
+    public FieldVisitor visitField(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final Object value) {
+      fields.add(name + " " + descriptor);
+      return null;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final String[] exceptions) {
+      methods.add(name + " " + descriptor);
+      insnCounts.add(0);
+      return new MethodVisitor(api) {
+        @Override
+        public void visitInsn(final int opcode) {
+          insnCounts.set(insnCounts.size() - 1, insnCounts.get(insnCounts.size() - 1) + 1);
+        }
+      };
+    }
+  }
+
+  /**
+   * A ClassVisitor which collects the class, field and method annotations, and their values, and
+   * only visits the annotations whose descriptor is in a given list (if any).
+   */
+  private static class AnnotationCollector extends ClassVisitor {
+
+    final List<String> selectedDescriptors;
+    final List<String> annotations = new ArrayList<>();
+    final List<String> visitedMembers = new ArrayList<>();
+
+    AnnotationCollector(final int api, final String[] selectedDescriptors) {
+      super(api);
+      this.selectedDescriptors =
+          selectedDescriptors == null ? null : Arrays.asList(selectedDescriptors);
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
+      return collectAnnotation("class", descriptor, visible);
+    }
+
+    @Override
+    public FieldVisitor visitField(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final Object value) {
+      final String field = name + descriptor;
+      visitedMembers.add(field);
+      return new FieldVisitor(api) {
+        @Override
+        public AnnotationVisitor visitAnnotation(
+            final String annotationDescriptor, final boolean visible) {
+          return collectAnnotation(field, annotationDescriptor, visible);
+        }
+      };
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final String[] exceptions) {
+      final String method = name + descriptor;
+      visitedMembers.add(method);
+      return new MethodVisitor(api) {
+        @Override
+        public AnnotationVisitor visitAnnotation(
+            final String annotationDescriptor, final boolean visible) {
+          return collectAnnotation(method, annotationDescriptor, visible);
+        }
+      };
+    }
+
+    AnnotationVisitor collectAnnotation(
+        final String owner, final String descriptor, final boolean visible) {
+      if (selectedDescriptors != null && !selectedDescriptors.contains(descriptor)) {
+        return null;
+      }
+      final StringBuilder annotation = new StringBuilder();
+      annotation.append(owner).append(' ').append(visible).append(' ').append(descriptor);
+      annotations.add(annotation.toString());
+      final int annotationIndex = annotations.size() - 1;
+      return new AnnotationVisitor(api) {
+        @Override
+        public void visit(final String name, final Object value) {
+          annotation.append(' ').append(name).append('=');
+          annotation.append(value.getClass().isArray() ? value.getClass() : value);
+        }
+
+        @Override
+        public void visitEnum(final String name, final String descriptor, final String value) {
+          annotation.append(' ').append(name).append('=').append(value);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(final String name, final String descriptor) {
+          annotation.append(' ').append(name).append("=@").append(descriptor);
+          return this;
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(final String name) {
+          annotation.append(' ').append(name).append("=[]");
+          return this;
+        }
+
+        @Override
+        public void visitEnd() {
+          annotations.set(annotationIndex, annotation.toString());
+        }
+      };
+    }
+  }
+
   private static class EmptyClassVisitor extends ClassVisitor {
 
     final AnnotationVisitor annotationVisitor =
@@ -0,0 +1,135 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/** Unit tests for {@link ClassReaderTypeHierarchy}. */
+class ClassReaderTypeHierarchyTest {
+
+  private static final String[] TYPES = {
+    "java/lang/Object",
+    "java/lang/Integer",
+    "java/lang/Long",
+    "java/lang/Number",
+    "java/lang/String",
+    "java/lang/Comparable",
+    "java/lang/CharSequence",
+    "java/lang/StringBuilder",
+    "java/io/Serializable",
+    "java/util/Collection",
+    "java/util/List",
+    "java/util/AbstractList",
+    "java/util/ArrayList",
+    "java/util/LinkedList",
+    "java/util/HashSet",
+    "java/util/RandomAccess",
+    "java/lang/RuntimeException",
+    "java/lang/IllegalArgumentException",
+    "java/lang/NumberFormatException",
+    "java/lang/Error"
+  };
+
+  @Test
+  void testGetCommonSuperClass() {
+    ClassWriter classWriter = new ClassWriter(0);
+    ClassReaderTypeHierarchy typeHierarchy = new ClassReaderTypeHierarchy();
+
+    for (String type1 : TYPES) {
+      for (String type2 : TYPES) {
+        assertEquals(
+            classWriter.getCommonSuperClass(type1, type2),
+            typeHierarchy.getCommonSuperClass(type1, type2),
+            type1 + " " + type2);
+      }
+    }
+  }
+
+  @Test
+  void testGetCommonSuperClass_readsEachClassFileOnce() {
+    List<String> readTypes = new ArrayList<>();
+    ClassReaderTypeHierarchy typeHierarchy =
+        new ClassReaderTypeHierarchy(ClassReaderTypeHierarchyTest.class.getClassLoader()) {
+          @Override
+          protected InputStream getClassFile(final String type) throws IOException {
+            readTypes.add(type);
+            return super.getClassFile(type);
+          }
+        };
+
+    typeHierarchy.getCommonSuperClass("java/lang/Integer", "java/lang/Long");
+    typeHierarchy.getCommonSuperClass("java/lang/Long", "java/lang/Integer");
+
+    assertEquals(readTypes.size(), readTypes.stream().distinct().count());
+    assertEquals(
+        "java/lang/Number",
+        typeHierarchy.getCommonSuperClass("java/lang/Integer", "java/lang/Long"));
+  }
+
+  @Test
+  void testGetCommonSuperClass_classBeingGenerated() {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_8, 0, "pkg/C", null, "java/util/ArrayList", null);
+    classWriter.visitEnd();
+    byte[] classFile = classWriter.toByteArray();
+    ClassReaderTypeHierarchy typeHierarchy =
+        new ClassReaderTypeHierarchy() {
+          @Override
+          protected InputStream getClassFile(final String type) throws IOException {
+            if (type.equals("pkg/C")) {
+              return new ByteArrayInputStream(classFile);
+            }
+            return super.getClassFile(type);
+          }
+        };
+
+    assertEquals(
+        "java/util/AbstractList",
+        typeHierarchy.getCommonSuperClass("pkg/C", "java/util/LinkedList"));
+    assertEquals("java/util/List", typeHierarchy.getCommonSuperClass("java/util/List", "pkg/C"));
+  }
+
+  @Test
+  void testGetCommonSuperClass_unknownClass() {
+    ClassReaderTypeHierarchy typeHierarchy = new ClassReaderTypeHierarchy();
+
+    Executable getCommonSuperClass =
+        () -> typeHierarchy.getCommonSuperClass("java/lang/Integer", "pkg/Unknown");
+
+    assertThrows(TypeNotPresentException.class, getCommonSuperClass);
+  }
+}
@@ -0,0 +1,241 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.test.AsmTest;
+
+/** Unit tests for {@link ClassSummary} and {@link ClassReader#readSummary()}. */
+class ClassSummaryTest extends AsmTest {
+
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testReadSummary(final PrecompiledClass classParameter, final Api apiParameter) {
+    ClassReader classReader = new ClassReader(classParameter.getBytes());
+    SummaryCollector summaryCollector = new SummaryCollector(apiParameter.value());
+    classReader.accept(summaryCollector, ClassReader.SKIP_CODE);
+
+    ClassSummary classSummary = classReader.readSummary();
+
+    // ClassReader.accept adds the ASM specific ACC_DEPRECATED and ACC_RECORD flags, and the
+    // ACC_SYNTHETIC flag for Synthetic attributes, none of which are part of the summary.
+    int asmFlags = Opcodes.ACC_DEPRECATED | Opcodes.ACC_RECORD | Opcodes.ACC_SYNTHETIC;
+    assertEquals(summaryCollector.version, classSummary.getVersion());
+    assertEquals(summaryCollector.access & ~asmFlags, classSummary.getAccess() & ~asmFlags);
+    assertEquals(summaryCollector.name, classSummary.getName());
+    assertEquals(summaryCollector.signature, classSummary.getSignature());
+    assertEquals(summaryCollector.superName, classSummary.getSuperName());
+    assertArrayEquals(summaryCollector.interfaces, classSummary.getInterfaces());
+    assertEquals(summaryCollector.visibleAnnotations, asList(classSummary.getVisibleAnnotations()));
+    assertEquals(
+        summaryCollector.invisibleAnnotations, asList(classSummary.getInvisibleAnnotations()));
+    assertEquals(summaryCollector.nestHost, classSummary.getNestHost());
+    assertEquals(summaryCollector.nestMembers, asList(classSummary.getNestMembers()));
+    assertEquals(
+        summaryCollector.permittedSubclasses, asList(classSummary.getPermittedSubclasses()));
+    assertEquals(summaryCollector.moduleName, classSummary.getModuleName());
+    assertEquals(summaryCollector.moduleAccess, classSummary.getModuleAccess());
+    assertEquals(summaryCollector.moduleVersion, classSummary.getModuleVersion());
+    assertEquals(
+        summaryCollector.fields,
+        members(
+            classSummary.getFieldAccesses(),
+            classSummary.getFieldNames(),
+            classSummary.getFieldDescriptors(),
+            asmFlags));
+    assertEquals(
+        summaryCollector.methods,
+        members(
+            classSummary.getMethodAccesses(),
+            classSummary.getMethodNames(),
+            classSummary.getMethodDescriptors(),
+            asmFlags));
+  }
+
+  @Test
+  void testReadSummary_emptyClass() {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    classWriter.visitEnd();
+
+    ClassSummary classSummary = new ClassReader(classWriter.toByteArray()).readSummary();
+
+    assertEquals(Opcodes.V1_8, classSummary.getVersion());
+    assertEquals(Opcodes.ACC_PUBLIC, classSummary.getAccess());
+    assertEquals("C", classSummary.getName());
+    assertNull(classSummary.getSignature());
+    assertEquals("java/lang/Object", classSummary.getSuperName());
+    assertEquals(0, classSummary.getInterfaces().length);
+    assertEquals(0, classSummary.getVisibleAnnotations().length);
+    assertEquals(0, classSummary.getInvisibleAnnotations().length);
+    assertNull(classSummary.getNestHost());
+    assertEquals(0, classSummary.getNestMembers().length);
+    assertEquals(0, classSummary.getPermittedSubclasses().length);
+    assertNull(classSummary.getModuleName());
+    assertEquals(0, classSummary.getModuleAccess());
+    assertNull(classSummary.getModuleVersion());
+    assertEquals(0, classSummary.getFieldAccesses().length);
+    assertEquals(0, classSummary.getMethodNames().length);
+  }
+
+  @Test
+  void testReadSummary_returnsCopies() {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(
+        Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", new String[] {"I"});
+    classWriter.visitField(Opcodes.ACC_PUBLIC, "f", "I", null, null).visitEnd();
+    classWriter.visitEnd();
+    ClassSummary classSummary = new ClassReader(classWriter.toByteArray()).readSummary();
+
+    classSummary.getInterfaces()[0] = "J";
+    classSummary.getFieldNames()[0] = "g";
+    classSummary.getFieldAccesses()[0] = 0;
+
+    assertEquals("I", classSummary.getInterfaces()[0]);
+    assertEquals("f", classSummary.getFieldNames()[0]);
+    assertEquals(Opcodes.ACC_PUBLIC, classSummary.getFieldAccesses()[0]);
+  }
+
+  private static List<String> asList(final String[] values) {
+    List<String> list = new ArrayList<>();
+    for (String value : values) {
+      list.add(value);
+    }
+    return list;
+  }
+
+  private static List<String> members(
+      final int[] accesses, final String[] names, final String[] descriptors, final int asmFlags) {
+    List<String> members = new ArrayList<>();
+    for (int i = 0; i < accesses.length; ++i) {
+      members.add((accesses[i] & ~asmFlags) + " " + names[i] + descriptors[i]);
+    }
+    return members;
+  }
+
+  /** A ClassVisitor which collects the summary data of a class, for comparison purposes. */
+  private static class SummaryCollector extends ClassVisitor {
+
+    int version;
+    int access;
+    String name;
+    String signature;
+    String superName;
+    String[] interfaces;
+    final List<String> visibleAnnotations = new ArrayList<>();
+    final List<String> invisibleAnnotations = new ArrayList<>();
+    String nestHost;
+    final List<String> nestMembers = new ArrayList<>();
+    final List<String> permittedSubclasses = new ArrayList<>();
+    String moduleName;
+    int moduleAccess;
+    String moduleVersion;
+    final int asmFlags = Opcodes.ACC_DEPRECATED | Opcodes.ACC_RECORD | Opcodes.ACC_SYNTHETIC;
+    final List<String> fields = new ArrayList<>();
+    final List<String> methods = new ArrayList<>();
+
+    SummaryCollector(final int api) {
+      super(api);
+    }
+
+    @Override
+    public void visit(
+        final int version,
+        final int access,
+        final String name,
+        final String signature,
+        final String superName,
+        final String[] interfaces) {
+      this.version = version;
+      this.access = access;
+      this.name = name;
+      this.signature = signature;
+      this.superName = superName;
+      this.interfaces = interfaces == null ? new String[0] : interfaces;
+    }
+
+    @Override
+    public ModuleVisitor visitModule(final String name, final int access, final String version) {
+      moduleName = name;
+      moduleAccess = access;
+      moduleVersion = version;
+      return null;
+    }
+
+    @Override
+    public void visitNestHost(final String nestHost) {
+      this.nestHost = nestHost;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(final String descriptor, final boolean visible) {
+      (visible ? visibleAnnotations : invisibleAnnotations).add(descriptor);
+      return null;
+    }
+
+    @Override
+    public void visitNestMember(final String nestMember) {
+      nestMembers.add(nestMember);
+    }
+
+    @Override
+    public void visitPermittedSubclass(final String permittedSubclass) {
+      permittedSubclasses.add(permittedSubclass);
+    }
+
+    @Override
+    public FieldVisitor visitField(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final Object value) {
+      fields.add((access & ~asmFlags) + " " + name + descriptor);
+      return null;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final String[] exceptions) {
+      methods.add((access & ~asmFlags) + " " + name + descriptor);
+      return null;
+    }
+  }
+}
@@ -28,6 +28,7 @@
 package org.objectweb.asm;
 
 import static java.util.stream.Collectors.toSet;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -37,10 +38,13 @@ import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.Assumptions.assumeFalse;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -112,7 +116,15 @@ class ClassWriterTest extends AsmTest {
                 "firstRecordComponent",
                 "lastRecordComponent",
                 "firstAttribute",
-                "compute"));
+                "compute",
+                "replacingAsmInstructions",
+                "typeHierarchy",
+                "frameBlockVisitCount",
+                "frameMergeCount",
+                "frameIterationCount",
+                "commonSuperClassCount",
+                "metricsListener",
+                "visitStartTime"));
     // IMPORTANT: if this fails, update the string list AND update the logic that resets the
     // ClassWriter fields in ClassWriter.toByteArray(), if needed (this logic is used to do a
     // ClassReader->ClassWriter round trip to remove the ASM specific instructions due to large
@@ -357,6 +369,57 @@ class ClassWriterTest extends AsmTest {
     }
   }
 
+  @Test
+  void testWriteTo_byteBufferTooSmall() {
+    ClassWriter classWriter = newEmptyClassWriter();
+    int size = classWriter.computeSize();
+    ByteBuffer byteBuffer = ByteBuffer.allocate(size + 1);
+    byteBuffer.position(2);
+
+    Executable writeTo = () -> classWriter.writeTo(byteBuffer);
+
+    assertThrows(BufferOverflowException.class, writeTo);
+    assertEquals(2, byteBuffer.position());
+  }
+
+  @Test
+  void testToByteArray_compactConstantPool() {
+    ClassWriter classWriter = newEmptyClassWriter();
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitLdcInsn("usedString");
+    methodVisitor.visitInsn(Opcodes.POP);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(1, 0);
+    methodVisitor.visitEnd();
+    methodVisitor = classWriter.visitMethod(Opcodes.ACC_STATIC, "n", "()V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitLdcInsn("unusedString");
+    methodVisitor.visitInsn(Opcodes.POP);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(1, 0);
+    methodVisitor.visitEnd();
+    ClassReader classReader = new ClassReader(classWriter.toByteArray());
+    ClassWriter newClassWriter = new ClassWriter(0);
+    ClassWriter copyPoolClassWriter = new ClassWriter(classReader, 0);
+    ClassWriter compactClassWriter =
+        new ClassWriter(classReader, ClassWriter.COMPACT_CONSTANT_POOL);
+    classReader.accept(new RemoveMethodAdapter("n", newClassWriter), 0);
+    classReader.accept(new RemoveMethodAdapter("n", copyPoolClassWriter), 0);
+    classReader.accept(new RemoveMethodAdapter("n", compactClassWriter), 0);
+
+    byte[] copyPoolClassFile = copyPoolClassWriter.toByteArray();
+    byte[] compactClassFile = compactClassWriter.toByteArray();
+
+    assertTrue(compactClassWriter.hasFlags(ClassWriter.COMPACT_CONSTANT_POOL));
+    assertEquals(
+        new ClassReader(copyPoolClassFile).getItemCount() - 3,
+        new ClassReader(compactClassFile).getItemCount());
+    assertArrayEquals(newClassWriter.toByteArray(), compactClassFile);
+    assertEquals(compactClassFile.length, compactClassWriter.computeSize());
+  }
+
   @Test
   void testToByteArray_largeSourceDebugExtension() {
     ClassWriter classWriter = newEmptyClassWriter();
@@ -456,6 +519,52 @@ class ClassWriterTest extends AsmTest {
     assertTrue(new ClassFile(classFile).toString().contains("[[[[[[[[Ljava/lang/Number;"));
   }
 
+  @ParameterizedTest
+  @ValueSource(ints = {0, ClassWriter.COMPUTE_MAXS, ClassWriter.COMPUTE_FRAMES})
+  void testToByteArray_frameCounters(final int flags) {
+    ClassWriter classWriter = new ClassWriter(flags);
+    classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, "A", null, "java/lang/Object", null);
+    // A loop whose back edge changes the type of local 1 from String to Object at the loop start.
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "(I)V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitLdcInsn("");
+    methodVisitor.visitVarInsn(Opcodes.ASTORE, 1);
+    Label loopLabel = new Label();
+    Label endLabel = new Label();
+    methodVisitor.visitLabel(loopLabel);
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitJumpInsn(Opcodes.IFEQ, endLabel);
+    methodVisitor.visitIincInsn(0, -1);
+    methodVisitor.visitInsn(Opcodes.ICONST_0);
+    methodVisitor.visitMethodInsn(
+        Opcodes.INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+    methodVisitor.visitVarInsn(Opcodes.ASTORE, 1);
+    methodVisitor.visitJumpInsn(Opcodes.GOTO, loopLabel);
+    methodVisitor.visitLabel(endLabel);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classWriter.visitEnd();
+
+    classWriter.toByteArray();
+
+    if (flags == ClassWriter.COMPUTE_FRAMES) {
+      // First pass: 4 blocks and 4 edges. Second pass, from the loop start: 3 blocks and 3 edges.
+      assertEquals(7, classWriter.getFrameBlockVisitCount());
+      assertEquals(7, classWriter.getFrameMergeCount());
+      assertEquals(2, classWriter.getFrameIterationCount());
+    } else {
+      assertEquals(0, classWriter.getFrameBlockVisitCount());
+      assertEquals(0, classWriter.getFrameMergeCount());
+      assertEquals(0, classWriter.getFrameIterationCount());
+    }
+    classWriter.reset();
+    assertEquals(0, classWriter.getFrameBlockVisitCount());
+    assertEquals(0, classWriter.getFrameMergeCount());
+    assertEquals(0, classWriter.getFrameIterationCount());
+  }
+
   @Test
   void testToByteArray_manyFramesWithForwardLabelReferences() {
     ClassWriter classWriter = new ClassWriter(0);
@@ -559,6 +668,108 @@ class ClassWriterTest extends AsmTest {
     assertEquals(new ClassFile(classFile), new ClassFile(classWriter.toByteArray()));
   }
 
+  /**
+   * Tests that {@link ClassWriter#writeTo(java.io.OutputStream)} and {@link
+   * ClassWriter#computeSize()} are consistent with {@link ClassWriter#toByteArray()}.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testReadAndWrite_writeToOutputStream(
+      final PrecompiledClass classParameter, final Api apiParameter) throws IOException {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(0);
+    classReader.accept(classWriter, attributes(), 0);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    int size = classWriter.computeSize();
+    classWriter.writeTo(outputStream);
+
+    byte[] expectedClassFile = classWriter.toByteArray();
+    assertEquals(expectedClassFile.length, size);
+    assertArrayEquals(expectedClassFile, outputStream.toByteArray());
+  }
+
+  /**
+   * Tests that {@link ClassWriter#writeTo(ByteBuffer)} writes the same content as {@link
+   * ClassWriter#toByteArray()}, at the current position of heap and direct buffers.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testReadAndWrite_writeToByteBuffer(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(classReader, 0);
+    classReader.accept(classWriter, attributes(), 0);
+    byte[] expectedClassFile = classWriter.toByteArray();
+    ByteBuffer heapBuffer = ByteBuffer.allocate(expectedClassFile.length + 3);
+    ByteBuffer directBuffer = ByteBuffer.allocateDirect(expectedClassFile.length + 3);
+    heapBuffer.position(3);
+    directBuffer.position(3);
+
+    classWriter.writeTo(heapBuffer);
+    classWriter.writeTo(directBuffer);
+
+    assertEquals(heapBuffer.limit(), heapBuffer.position());
+    assertEquals(directBuffer.limit(), directBuffer.position());
+    byte[] directBufferContent = new byte[expectedClassFile.length];
+    directBuffer.position(3);
+    directBuffer.get(directBufferContent);
+    assertArrayEquals(
+        expectedClassFile, Arrays.copyOfRange(heapBuffer.array(), 3, heapBuffer.limit()));
+    assertArrayEquals(expectedClassFile, directBufferContent);
+  }
+
+  /**
+   * Tests that a ClassWriter, reset after generating a class, generates the same class as a new
+   * ClassWriter.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testReadAndWrite_reset(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(classReader, ClassWriter.COMPUTE_MAXS);
+    classReader.accept(classWriter, attributes(), 0);
+    classWriter.toByteArray();
+    ClassWriter newClassWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    classReader.accept(newClassWriter, attributes(), 0);
+
+    classWriter.reset();
+    classReader.accept(classWriter, attributes(), 0);
+
+    assertEquals(0, classWriter.getCopiedByteCount());
+    assertArrayEquals(newClassWriter.toByteArray(), classWriter.toByteArray());
+  }
+
+  /**
+   * Tests that a ClassReader -> ClassWriter transform with the copy pool and compact constant pool
+   * options produces the same class as without copying the constant pool, i.e. with the constant
+   * pool items in the order of their first use.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testReadAndWrite_copyPool_compactConstantPool(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(0);
+    ClassWriter compactClassWriter =
+        new ClassWriter(classReader, ClassWriter.COMPACT_CONSTANT_POOL);
+
+    classReader.accept(classWriter, attributes(), 0);
+    classReader.accept(compactClassWriter, attributes(), 0);
+
+    byte[] compactClassFile = compactClassWriter.toByteArray();
+    assertEquals(new ClassFile(classFile), new ClassFile(compactClassFile));
+    // The non standard code attributes of this class are copied as is, without being parsed with an
+    // attribute prototype, which prevents the constant pool compaction.
+    if (classParameter != PrecompiledClass.JDK3_ARTIFICIAL_STRUCTURES) {
+      assertArrayEquals(classWriter.toByteArray(), compactClassFile);
+    }
+  }
+
   /**
    * Tests that a ClassReader -> ClassWriter transform with the SKIP_CODE option produces a valid
    * class.
@@ -596,6 +807,127 @@ class ClassWriterTest extends AsmTest {
     assertEquals(new ClassFile(classFile), new ClassFile(classWriter.toByteArray()));
   }
 
+  /**
+   * Tests that the constants of a class, looked up in a ClassWriter constructed with the copy pool
+   * option, are found in the copied constant pool (whose items are looked up lazily).
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testReadAndWrite_copyPool_existingConstants(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(classReader, 0);
+    char[] charBuffer = new char[classReader.getMaxStringLength()];
+
+    int itemIndex = 1;
+    while (itemIndex < classReader.getItemCount()) {
+      int itemOffset = classReader.getItem(itemIndex);
+      int itemTag = classReader.readByte(itemOffset - 1);
+      switch (itemTag) {
+        case Symbol.CONSTANT_CLASS_TAG:
+          classWriter.newClass(classReader.readUTF8(itemOffset, charBuffer));
+          break;
+        case Symbol.CONSTANT_INTEGER_TAG:
+        case Symbol.CONSTANT_FLOAT_TAG:
+        case Symbol.CONSTANT_LONG_TAG:
+        case Symbol.CONSTANT_DOUBLE_TAG:
+        case Symbol.CONSTANT_STRING_TAG:
+          classWriter.newConst(classReader.readConst(itemIndex, charBuffer));
+          break;
+        case Symbol.CONSTANT_NAME_AND_TYPE_TAG:
+          classWriter.newNameType(
+              classReader.readUTF8(itemOffset, charBuffer),
+              classReader.readUTF8(itemOffset + 2, charBuffer));
+          break;
+        default:
+          break;
+      }
+      itemIndex +=
+          (itemTag == Symbol.CONSTANT_LONG_TAG || itemTag == Symbol.CONSTANT_DOUBLE_TAG) ? 2 : 1;
+    }
+    classReader.accept(classWriter, attributes(), 0);
+
+    assertEquals(new ClassFile(classFile), new ClassFile(classWriter.toByteArray()));
+  }
+
+  /**
+   * Tests that a ClassReader -> ClassWriter transform with the copy pool option copies the
+   * untransformed class elements as is, even when they are visited through adapters which do not
+   * transform their content.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testReadAndWrite_copyPool_copiedByteCount(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(classReader, 0);
+    ClassWriter classWriterWithAdapters = new ClassWriter(classReader, 0);
+
+    classReader.accept(classWriter, attributes(), 0);
+    classReader.accept(
+        new ClassVisitor(apiParameter.value(), classWriterWithAdapters) {
+          @Override
+          public FieldVisitor visitField(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final Object value) {
+            return new FieldVisitor(
+                api, super.visitField(access, name, descriptor, signature, value)) {};
+          }
+
+          @Override
+          public MethodVisitor visitMethod(
+              final int access,
+              final String name,
+              final String descriptor,
+              final String signature,
+              final String[] exceptions) {
+            return new MethodVisitor(
+                api, super.visitMethod(access, name, descriptor, signature, exceptions)) {};
+          }
+        },
+        attributes(),
+        0);
+    byte[] transformedClass = classWriter.toByteArray();
+
+    assertEquals(new ClassFile(classFile), new ClassFile(transformedClass));
+    assertEquals(new ClassFile(classFile), new ClassFile(classWriterWithAdapters.toByteArray()));
+    assertTrue(classWriter.getCopiedByteCount() > 0);
+    assertTrue(classWriter.getCopiedByteCount() <= transformedClass.length);
+    assertTrue(
+        classWriterWithAdapters.getCopiedByteCount() <= classWriter.getCopiedByteCount());
+    assertEquals(0, new ClassWriter(0).getCopiedByteCount());
+  }
+
+  /**
+   * Tests that a ClassReader -> ClassWriter transform with the copy pool option does not copy the
+   * fields whose declaration is transformed.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testReadAndWrite_copyPool_transformedFields(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(classReader, 0);
+    ClassWriter expectedClassWriter = new ClassWriter(0);
+
+    classReader.accept(
+        new RemoveFieldSignatureAdapter(apiParameter.value(), classWriter), attributes(), 0);
+    classReader.accept(
+        new RemoveFieldSignatureAdapter(apiParameter.value(), expectedClassWriter),
+        attributes(),
+        0);
+
+    assertEquals(
+        new ClassFile(expectedClassWriter.toByteArray()),
+        new ClassFile(classWriter.toByteArray()));
+  }
+
   /**
    * Tests that a ClassReader -> ClassWriter transform with the EXPAND_FRAMES option leaves classes
    * unchanged.
@@ -690,6 +1022,111 @@ class ClassWriterTest extends AsmTest {
     }
   }
 
+  /**
+   * Tests that the option flags returned by {@link ClassWriter#getMethodFlags} are used instead of
+   * those passed to the constructor.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testReadAndWrite_computeFrames_methodFlags(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    assumeFalse(hasJsrOrRetInstructions(classParameter));
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    ClassWriter allMethodsClassWriter =
+        new ClassWriterWithMethodFlags(/* flags = */ 0, ClassWriter.COMPUTE_FRAMES);
+    ClassWriter noMethodClassWriter =
+        new ClassWriterWithMethodFlags(ClassWriter.COMPUTE_FRAMES, /* methodFlags = */ 0);
+    ClassWriter noFramesClassWriter = new ClassWriter(0);
+
+    classReader.accept(classWriter, attributes(), ClassReader.SKIP_FRAMES);
+    classReader.accept(allMethodsClassWriter, attributes(), ClassReader.SKIP_FRAMES);
+    classReader.accept(noMethodClassWriter, attributes(), 0);
+    classReader.accept(noFramesClassWriter, attributes(), 0);
+
+    assertArrayEquals(classWriter.toByteArray(), allMethodsClassWriter.toByteArray());
+    assertArrayEquals(noFramesClassWriter.toByteArray(), noMethodClassWriter.toByteArray());
+  }
+
+  /**
+   * Tests that the option flags returned by {@link ClassWriter#getMethodFlags} are used for classes
+   * whose version is at least 1.7, where COMPUTE_MAXS uses the visited frames, if any.
+   */
+  @Test
+  void testVisitMethod_computeMaxs_methodFlags() {
+    ClassWriter noMethodClassWriter =
+        new ClassWriterWithMethodFlags(ClassWriter.COMPUTE_MAXS, /* methodFlags = */ 0);
+    ClassWriter allMethodsClassWriter =
+        new ClassWriterWithMethodFlags(/* flags = */ 0, ClassWriter.COMPUTE_MAXS);
+
+    int[] noMethodMaxs = getMaxs(generateMethodWithZeroMaxs(noMethodClassWriter));
+    int[] allMethodsMaxs = getMaxs(generateMethodWithZeroMaxs(allMethodsClassWriter));
+
+    assertArrayEquals(new int[] {0, 0}, noMethodMaxs);
+    assertArrayEquals(new int[] {2, 0}, allMethodsMaxs);
+  }
+
+  private static byte[] generateMethodWithZeroMaxs(final ClassWriter classWriter) {
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "C", null, "java/lang/Object", null);
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "()J", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitInsn(Opcodes.LCONST_0);
+    methodVisitor.visitInsn(Opcodes.LRETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static int[] getMaxs(final byte[] classFile) {
+    int[] maxs = new int[2];
+    new ClassReader(classFile)
+        .accept(
+            new ClassVisitor(Opcodes.ASM9) {
+              @Override
+              public MethodVisitor visitMethod(
+                  final int access,
+                  final String name,
+                  final String descriptor,
+                  final String signature,
+                  final String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM9) {
+                  @Override
+                  public void visitMaxs(final int maxStack, final int maxLocals) {
+                    maxs[0] = maxStack;
+                    maxs[1] = maxLocals;
+                  }
+                };
+              }
+            },
+            0);
+    return maxs;
+  }
+
+  /**
+   * Tests that a ClassReader -> ClassWriter transform with the COMPUTE_FRAMES option gives the same
+   * result with a {@link ClassReaderTypeHierarchy} as with the default getCommonSuperClass.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testReadAndWrite_computeFrames_typeHierarchy(
+      final PrecompiledClass classParameter, final Api apiParameter) {
+    assumeFalse(hasJsrOrRetInstructions(classParameter));
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter expectedClassWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    classWriter.setTypeHierarchy(
+        new ClassReaderTypeHierarchy(ClassWriterTest.class.getClassLoader()));
+
+    classReader.accept(expectedClassWriter, attributes(), 0);
+    classReader.accept(classWriter, attributes(), 0);
+
+    assertArrayEquals(expectedClassWriter.toByteArray(), classWriter.toByteArray());
+  }
+
   /**
    * Tests that classes going through a ClassReader -> ClassWriter transform with the COMPUTE_FRAMES
    * option can be loaded and pass bytecode verification.
@@ -808,6 +1245,34 @@ class ClassWriterTest extends AsmTest {
         new ClassFile(transformedClassWithoutCode.toByteArray()));
   }
 
+  /**
+   * Tests that {@link ClassWriter#writeTo(java.io.OutputStream)} and {@link
+   * ClassWriter#computeSize()} replace the ASM specific instructions, like {@link
+   * ClassWriter#toByteArray()}.
+   */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testReadAndWrite_largeMethod_writeTo(
+      final PrecompiledClass classParameter, final Api apiParameter) throws IOException {
+    byte[] classFile = classParameter.getBytes();
+    assumeFalse(classFile.length > Short.MAX_VALUE);
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter1 = new ClassWriterWithoutGetCommonSuperClass();
+    ClassWriter classWriter2 = new ClassWriterWithoutGetCommonSuperClass();
+    classReader.accept(
+        new ForwardJumpNopInserter(apiParameter.value(), classWriter1), attributes(), 0);
+    classReader.accept(
+        new ForwardJumpNopInserter(apiParameter.value(), classWriter2), attributes(), 0);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    int size = classWriter1.computeSize();
+    classWriter2.writeTo(outputStream);
+
+    byte[] transformedClass = classWriter1.toByteArray();
+    assertEquals(transformedClass.length, size);
+    assertArrayEquals(transformedClass, outputStream.toByteArray());
+  }
+
   private static boolean hasJsrOrRetInstructions(final PrecompiledClass classParameter) {
     return classParameter == PrecompiledClass.JDK3_ALL_INSTRUCTIONS
         || classParameter == PrecompiledClass.JDK3_LARGE_METHOD;
@@ -831,6 +1296,23 @@ class ClassWriterTest extends AsmTest {
     return new Attribute[] {new Comment(), new CodeComment()};
   }
 
+  private static class RemoveFieldSignatureAdapter extends ClassVisitor {
+
+    RemoveFieldSignatureAdapter(final int api, final ClassVisitor classVisitor) {
+      super(api, classVisitor);
+    }
+
+    @Override
+    public FieldVisitor visitField(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final Object value) {
+      return super.visitField(access, name, descriptor, /* signature = */ null, value);
+    }
+  }
+
   private static class DeadCodeInserter extends ClassVisitor {
 
     private String className;
@@ -1052,6 +1534,30 @@ class ClassWriterTest extends AsmTest {
     }
   }
 
+  /** A ClassVisitor that removes a method. */
+  private static class RemoveMethodAdapter extends ClassVisitor {
+
+    private final String methodName;
+
+    RemoveMethodAdapter(final String methodName, final ClassVisitor classVisitor) {
+      super(Opcodes.ASM9, classVisitor);
+      this.methodName = methodName;
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final String[] exceptions) {
+      if (name.equals(methodName)) {
+        return null;
+      }
+      return super.visitMethod(access, name, descriptor, signature, exceptions);
+    }
+  }
+
   /** Inserts a wide forward jump in the first non-abstract method that is found. */
   private static class WideForwardJumpInserter extends ClassVisitor {
 
@@ -1109,6 +1615,22 @@ class ClassWriterTest extends AsmTest {
     }
   }
 
+  /** A ClassWriter whose {@link ClassWriter#getMethodFlags} method returns fixed option flags. */
+  private static class ClassWriterWithMethodFlags extends ClassWriter {
+
+    private final int methodFlags;
+
+    ClassWriterWithMethodFlags(final int flags, final int methodFlags) {
+      super(flags);
+      this.methodFlags = methodFlags;
+    }
+
+    @Override
+    protected int getMethodFlags(final int access, final String name, final String descriptor) {
+      return methodFlags;
+    }
+  }
+
   /**
    * A ClassWriter whose {@link ClassWriter#getCommonSuperClass} method always throws an exception.
    */
@@ -0,0 +1,255 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.test.AsmTest;
+
+/** Unit tests for {@link MetricsListener} and {@link ClassMetrics}. */
+class MetricsListenerTest extends AsmTest {
+
+  @Test
+  void testGetMetricsListener() {
+    ClassReader classReader = new ClassReader(PrecompiledClass.JDK3_ALL_INSTRUCTIONS.getBytes());
+    ClassWriter classWriter = new ClassWriter(0);
+    MetricsCollector metricsCollector = new MetricsCollector();
+
+    assertNull(classReader.getMetricsListener());
+    assertNull(classWriter.getMetricsListener());
+    classReader.setMetricsListener(metricsCollector);
+    classWriter.setMetricsListener(metricsCollector);
+    assertSame(metricsCollector, classReader.getMetricsListener());
+    assertSame(metricsCollector, classWriter.getMetricsListener());
+  }
+
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testClassRead(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    MetricsCollector metricsCollector = new MetricsCollector();
+    classReader.setMetricsListener(metricsCollector);
+    LabelCounter labelCounter = new LabelCounter(apiParameter.value());
+
+    classReader.accept(labelCounter, 0);
+
+    assertEquals(1, metricsCollector.classReadMetrics.size());
+    assertEquals(0, metricsCollector.classWrittenMetrics.size());
+    ClassMetrics metrics = metricsCollector.classReadMetrics.get(0);
+    assertEquals(classReader.getClassName(), metrics.getClassName());
+    assertEquals(classFile.length, metrics.getByteCount());
+    assertEquals(classReader.getItemCount(), metrics.getConstantPoolCount());
+    assertTrue(metrics.getDurationNanos() >= 0);
+    assertEquals(labelCounter.labelCount, metrics.getLabelCount());
+    assertEquals(0, metrics.getCopiedMethodCount());
+    assertEquals(0, metrics.getCopiedByteCount());
+    assertEquals(0, metrics.getStackMapFrameCount());
+  }
+
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testClassWritten_copyPool(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassReader classReader = new ClassReader(classFile);
+    ClassWriter classWriter = new ClassWriter(classReader, 0);
+    MetricsCollector metricsCollector = new MetricsCollector();
+    classReader.setMetricsListener(metricsCollector);
+    classWriter.setMetricsListener(metricsCollector);
+
+    classReader.accept(classWriter, 0);
+    byte[] newClassFile = classWriter.toByteArray();
+
+    assertEquals(1, metricsCollector.classReadMetrics.size());
+    assertEquals(1, metricsCollector.classWrittenMetrics.size());
+    ClassMetrics readMetrics = metricsCollector.classReadMetrics.get(0);
+    ClassMetrics writtenMetrics = metricsCollector.classWrittenMetrics.get(0);
+    int methodCount = classReader.readSummary().getMethodNames().length;
+    assertTrue(readMetrics.getCopiedMethodCount() <= methodCount);
+    assertEquals(methodCount > 0, readMetrics.getCopiedMethodCount() > 0);
+    assertEquals(classReader.getClassName(), writtenMetrics.getClassName());
+    assertEquals(newClassFile.length, writtenMetrics.getByteCount());
+    assertEquals(classWriter.getCopiedByteCount(), writtenMetrics.getCopiedByteCount());
+    assertEquals(0, writtenMetrics.getLabelCount());
+    assertEquals(0, writtenMetrics.getFrameBlockVisitCount());
+  }
+
+  @Test
+  void testClassWritten_computeFrames() {
+    MetricsCollector metricsCollector = new MetricsCollector();
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    classWriter.setMetricsListener(metricsCollector);
+
+    byte[] classFile = generateClassWithLoop(classWriter);
+
+    assertEquals(1, metricsCollector.classWrittenMetrics.size());
+    ClassMetrics metrics = metricsCollector.classWrittenMetrics.get(0);
+    assertEquals("A", metrics.getClassName());
+    assertEquals(classFile.length, metrics.getByteCount());
+    assertEquals(new ClassReader(classFile).getItemCount(), metrics.getConstantPoolCount());
+    assertTrue(metrics.getDurationNanos() >= 0);
+    assertEquals(2, metrics.getStackMapFrameCount());
+    assertEquals(classWriter.getFrameBlockVisitCount(), metrics.getFrameBlockVisitCount());
+    assertEquals(classWriter.getFrameMergeCount(), metrics.getFrameMergeCount());
+    assertEquals(classWriter.getFrameIterationCount(), metrics.getFrameIterationCount());
+    assertEquals(2, metrics.getFrameIterationCount());
+    // At least the merge of String and Integer, at the loop start.
+    assertTrue(metrics.getCommonSuperClassCount() > 0);
+    assertEquals(0, metrics.getCopiedByteCount());
+  }
+
+  @Test
+  void testClassWritten_writeTo() throws IOException {
+    MetricsCollector metricsCollector = new MetricsCollector();
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    classWriter.setMetricsListener(metricsCollector);
+    byte[] classFile = generateClassWithLoop(classWriter);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ByteBuffer byteBuffer = ByteBuffer.allocate(classFile.length);
+
+    int size = classWriter.computeSize();
+    classWriter.writeTo(outputStream);
+    classWriter.writeTo(byteBuffer);
+
+    assertEquals(3, metricsCollector.classWrittenMetrics.size());
+    assertEquals(size, metricsCollector.classWrittenMetrics.get(1).getByteCount());
+    assertEquals(size, metricsCollector.classWrittenMetrics.get(2).getByteCount());
+  }
+
+  @Test
+  void testClassWritten_writeToAfterSerialization() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    List<Integer> writtenSizes = new ArrayList<>();
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPACT_CONSTANT_POOL);
+    classWriter.setMetricsListener(
+        new MetricsListener() {
+          @Override
+          public void classWritten(final ClassMetrics metrics) {
+            writtenSizes.add(outputStream.size());
+          }
+        });
+    generateClassWithLoop(classWriter);
+    writtenSizes.clear();
+
+    classWriter.writeTo(outputStream);
+
+    assertEquals(1, writtenSizes.size());
+    assertEquals(outputStream.size(), (int) writtenSizes.get(0));
+  }
+
+  @Test
+  void testClassWritten_listenerSetAfterVisit() {
+    MetricsCollector metricsCollector = new MetricsCollector();
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, "A", null, "java/lang/Object", null);
+    classWriter.setMetricsListener(metricsCollector);
+
+    classWriter.toByteArray();
+
+    assertEquals(1, metricsCollector.classWrittenMetrics.size());
+    assertEquals(-1, metricsCollector.classWrittenMetrics.get(0).getDurationNanos());
+  }
+
+  private static byte[] generateClassWithLoop(final ClassWriter classWriter) {
+    classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC, "A", null, "java/lang/Object", null);
+    // A loop whose back edge changes the type of local 1 from String to Object at the loop start.
+    MethodVisitor methodVisitor =
+        classWriter.visitMethod(Opcodes.ACC_STATIC, "m", "(I)V", null, null);
+    methodVisitor.visitCode();
+    methodVisitor.visitLdcInsn("");
+    methodVisitor.visitVarInsn(Opcodes.ASTORE, 1);
+    Label loopLabel = new Label();
+    Label endLabel = new Label();
+    methodVisitor.visitLabel(loopLabel);
+    methodVisitor.visitVarInsn(Opcodes.ILOAD, 0);
+    methodVisitor.visitJumpInsn(Opcodes.IFEQ, endLabel);
+    methodVisitor.visitIincInsn(0, -1);
+    methodVisitor.visitInsn(Opcodes.ICONST_0);
+    methodVisitor.visitMethodInsn(
+        Opcodes.INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;", false);
+    methodVisitor.visitVarInsn(Opcodes.ASTORE, 1);
+    methodVisitor.visitJumpInsn(Opcodes.GOTO, loopLabel);
+    methodVisitor.visitLabel(endLabel);
+    methodVisitor.visitInsn(Opcodes.RETURN);
+    methodVisitor.visitMaxs(0, 0);
+    methodVisitor.visitEnd();
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static class MetricsCollector extends MetricsListener {
+
+    final List<ClassMetrics> classReadMetrics = new ArrayList<>();
+    final List<ClassMetrics> classWrittenMetrics = new ArrayList<>();
+
+    @Override
+    public void classRead(final ClassMetrics metrics) {
+      classReadMetrics.add(metrics);
+    }
+
+    @Override
+    public void classWritten(final ClassMetrics metrics) {
+      classWrittenMetrics.add(metrics);
+    }
+  }
+
+  private static class LabelCounter extends ClassVisitor {
+
+    int labelCount;
+
+    LabelCounter(final int api) {
+      super(api);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(
+        final int access,
+        final String name,
+        final String descriptor,
+        final String signature,
+        final String[] exceptions) {
+      return new MethodVisitor(api) {
+        @Override
+        public void visitLabel(final Label label) {
+          ++labelCount;
+        }
+      };
+    }
+  }
+}
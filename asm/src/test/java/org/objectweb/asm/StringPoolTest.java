@@ -0,0 +1,124 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.objectweb.asm.test.AsmTest;
+import org.objectweb.asm.test.ClassFile;
+
+/** Unit tests for {@link StringPool}. */
+class StringPoolTest extends AsmTest {
+
+  @Test
+  void testConstructor() {
+    assertEquals(4096, new StringPool().getCapacity());
+    assertEquals(1, new StringPool(1).getCapacity());
+    assertEquals(128, new StringPool(100).getCapacity());
+  }
+
+  @Test
+  void testConstructor_invalidCapacity() {
+    Executable constructor = () -> new StringPool(0);
+
+    Exception exception = assertThrows(IllegalArgumentException.class, constructor);
+    assertEquals("Invalid capacity: 0", exception.getMessage());
+  }
+
+  @Test
+  void testGet_sharedBetweenClassReaders() {
+    byte[] classFile = newClass("pkg/Caf\u00e9", "java/lang/Object");
+    StringPool stringPool = new StringPool();
+    ClassReader classReader1 = new ClassReader(classFile);
+    ClassReader classReader2 = new ClassReader(classFile);
+    ClassReader classReader3 = new ClassReader(classFile);
+    classReader1.setStringPool(stringPool);
+    classReader2.setStringPool(stringPool);
+
+    String className1 = classReader1.getClassName();
+    String className2 = classReader2.getClassName();
+    String className3 = classReader3.getClassName();
+    String superName1 = classReader1.getSuperName();
+    String superName2 = classReader2.getSuperName();
+
+    assertEquals("pkg/Caf\u00e9", className1);
+    assertSame(className1, className2);
+    assertNotSame(className1, className3);
+    assertEquals("java/lang/Object", superName1);
+    assertSame(superName1, superName2);
+  }
+
+  @Test
+  void testGet_collisions() {
+    StringPool stringPool = new StringPool(1);
+    ClassReader classReader1 = new ClassReader(newClass("A", "java/lang/Object"));
+    ClassReader classReader2 = new ClassReader(newClass("B", "java/lang/Object"));
+    classReader1.setStringPool(stringPool);
+    classReader2.setStringPool(stringPool);
+
+    assertEquals("A", classReader1.getClassName());
+    assertEquals("B", classReader2.getClassName());
+    assertEquals("java/lang/Object", classReader1.getSuperName());
+    assertEquals("java/lang/Object", classReader2.getSuperName());
+  }
+
+  /** Tests that a shared StringPool does not change the result of a ClassReader. */
+  @ParameterizedTest
+  @MethodSource(ALL_CLASSES_AND_LATEST_API)
+  void testReadAndWrite(final PrecompiledClass classParameter, final Api apiParameter) {
+    byte[] classFile = classParameter.getBytes();
+    ClassWriter expectedClassWriter = new ClassWriter(0);
+    new ClassReader(classFile).accept(expectedClassWriter, 0);
+    StringPool stringPool = new StringPool(64);
+
+    for (int i = 0; i < 2; ++i) {
+      ClassReader classReader = new ClassReader(classFile);
+      classReader.setStringPool(stringPool);
+      ClassWriter classWriter = new ClassWriter(0);
+      classReader.accept(classWriter, 0);
+
+      assertEquals(
+          new ClassFile(expectedClassWriter.toByteArray()),
+          new ClassFile(classWriter.toByteArray()));
+    }
+  }
+
+  private static byte[] newClass(final String name, final String superName) {
+    ClassWriter classWriter = new ClassWriter(0);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null, superName, null);
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+}
@@ -176,7 +176,22 @@ public abstract class AbstractBenchmark {
      * @throws ReflectiveOperationException if the class can't be instantiated.
      */
     public Object newAsmBenchmark() throws ClassNotFoundException, ReflectiveOperationException {
-      return loadClass(asmBenchmarkClass).newInstance();
+      return newAsmBenchmark("");
+    }
+
+    /**
+     * Returns a new instance of a nested class of the class specified in the benchmark's
+     * constructor.
+     *
+     * @param nestedClassSuffix the suffix to append to the name of the class specified in the
+     *     benchmark's constructor to get the name of the class to instantiate (e.g. "$Nested").
+     * @return a new instance of the specified class.
+     * @throws ClassNotFoundException if the class can't be found.
+     * @throws ReflectiveOperationException if the class can't be instantiated.
+     */
+    public Object newAsmBenchmark(final String nestedClassSuffix)
+        throws ClassNotFoundException, ReflectiveOperationException {
+      return loadClass(asmBenchmarkClass + nestedClassSuffix).newInstance();
     }
 
     @Override
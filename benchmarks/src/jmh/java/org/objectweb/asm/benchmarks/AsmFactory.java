@@ -65,4 +65,18 @@ public class AsmFactory implements Factory {
     classReader.accept(classNode, 0);
     return classNode;
   }
+
+  /**
+   * A {@link Factory} implemented with the ASM library, which compacts the class nodes it creates.
+   * Requires the current ASM version (for {@link ClassNode#compact}).
+   */
+  public static class WithCompactClassNode extends AsmFactory {
+
+    @Override
+    public Object newClassNode(final byte[] classFile) {
+      ClassNode classNode = (ClassNode) super.newClassNode(classFile);
+      classNode.compact();
+      return classNode;
+    }
+  }
 }
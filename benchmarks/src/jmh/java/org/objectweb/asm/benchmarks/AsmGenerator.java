@@ -55,8 +55,16 @@ public class AsmGenerator extends Generator {
 
   @Override
   public byte[] generateClass() {
-    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    return generateClass(new ClassWriter(ClassWriter.COMPUTE_MAXS));
+  }
 
+  /**
+   * Generates a "Hello World!" class with the given ClassWriter.
+   *
+   * @param classWriter an empty ClassWriter.
+   * @return the JVMS ClassFile structure of the generated class.
+   */
+  static byte[] generateClass(final ClassWriter classWriter) {
     classWriter.visit(
         Opcodes.V1_1, Opcodes.ACC_PUBLIC, "HelloWorld", null, "java/lang/Object", null);
     classWriter.visitSource("HelloWorld.java", null);
@@ -84,4 +92,19 @@ public class AsmGenerator extends Generator {
 
     return classWriter.toByteArray();
   }
+
+  /**
+   * A "Hello World!" class generator using the ASM library, which reuses the same ClassWriter for
+   * all the generated classes. Requires the current ASM version (for {@link ClassWriter#reset}).
+   */
+  public static class WithClassWriterReset extends AsmGenerator {
+
+    private final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+
+    @Override
+    public byte[] generateClass() {
+      classWriter.reset();
+      return generateClass(classWriter);
+    }
+  }
 }
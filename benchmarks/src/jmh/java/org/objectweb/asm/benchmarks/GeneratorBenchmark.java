@@ -38,7 +38,9 @@ import org.openjdk.jmh.annotations.Warmup;
 
 /**
  * A benchmark to measure the performance of several libraries when generating a "Hello World!"
- * class.
+ * class. The allocations of the asmCurrent and asmCurrentWithClassWriterReset benchmarks, which
+ * use a new ClassWriter for each class and the same (reset) ClassWriter for all classes,
+ * respectively, can be compared with the JMH GC profiler (-prof gc, gc.alloc.rate.norm metric).
  *
  * @author Eric Bruneton
  */
@@ -54,6 +56,7 @@ public class GeneratorBenchmark extends AbstractBenchmark {
   private Generator asm8dot0;
   private Generator asm9dot0;
   private Generator asmCurrent;
+  private Generator asmCurrentWithClassWriterReset;
   private Generator aspectJBcel;
   private Generator bcel;
   private Generator cojen;
@@ -79,7 +82,10 @@ public class GeneratorBenchmark extends AbstractBenchmark {
     asm7dot0 = (Generator) new AsmBenchmarkFactory(AsmVersion.V7_0).newAsmBenchmark();
     asm8dot0 = (Generator) new AsmBenchmarkFactory(AsmVersion.V8_0).newAsmBenchmark();
     asm9dot0 = (Generator) new AsmBenchmarkFactory(AsmVersion.V9_0).newAsmBenchmark();
-    asmCurrent = (Generator) new AsmBenchmarkFactory(AsmVersion.V_CURRENT).newAsmBenchmark();
+    AsmBenchmarkFactory asmCurrentFactory = new AsmBenchmarkFactory(AsmVersion.V_CURRENT);
+    asmCurrent = (Generator) asmCurrentFactory.newAsmBenchmark();
+    asmCurrentWithClassWriterReset =
+        (Generator) asmCurrentFactory.newAsmBenchmark("$WithClassWriterReset");
     aspectJBcel = new AspectjBcelGenerator();
     bcel = new BcelGenerator();
     cojen = new CojenGenerator();
@@ -130,6 +136,11 @@ public class GeneratorBenchmark extends AbstractBenchmark {
     return asmCurrent.generateClass();
   }
 
+  @Benchmark
+  public byte[] asmCurrentWithClassWriterReset() {
+    return asmCurrentWithClassWriterReset.generateClass();
+  }
+
   @Benchmark
   public byte[] aspectJBcel() {
     return aspectJBcel.generateClass();
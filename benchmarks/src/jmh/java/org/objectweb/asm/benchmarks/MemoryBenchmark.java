@@ -38,7 +38,9 @@ import org.openjdk.jmh.annotations.Warmup;
 
 /**
  * A benchmark to measure the memory usage of several Java bytecode libraries when reading Java
- * classes.
+ * classes. The memory retained per created object (e.g. per ClassNode) is reported by the {@link
+ * MemoryProfiler}, which must be enabled with "-prof org.objectweb.asm.benchmarks.MemoryProfiler".
+ * The newClassNode_asmCurrentCompact benchmark measures the memory used by compacted class nodes.
  *
  * @author Eric Bruneton
  */
@@ -55,6 +57,7 @@ public class MemoryBenchmark extends AbstractBenchmark {
   private Factory asm8dot0;
   private Factory asm9dot0;
   private Factory asmCurrent;
+  private Factory asmCurrentCompact;
 
   public MemoryBenchmark() {
     super("org.objectweb.asm.benchmarks.AsmFactory");
@@ -74,7 +77,9 @@ public class MemoryBenchmark extends AbstractBenchmark {
     asm7dot0 = (Factory) new AsmBenchmarkFactory(AsmVersion.V7_0).newAsmBenchmark();
     asm8dot0 = (Factory) new AsmBenchmarkFactory(AsmVersion.V8_0).newAsmBenchmark();
     asm9dot0 = (Factory) new AsmBenchmarkFactory(AsmVersion.V9_0).newAsmBenchmark();
-    asmCurrent = (Factory) new AsmBenchmarkFactory(AsmVersion.V_CURRENT).newAsmBenchmark();
+    AsmBenchmarkFactory asmCurrentFactory = new AsmBenchmarkFactory(AsmVersion.V_CURRENT);
+    asmCurrent = (Factory) asmCurrentFactory.newAsmBenchmark();
+    asmCurrentCompact = (Factory) asmCurrentFactory.newAsmBenchmark("$WithCompactClassNode");
 
     // Check that the correct versions of ASM have been loaded.
     if (!asm4dot0.getVersion().equals("ASM4")
@@ -187,4 +192,11 @@ public class MemoryBenchmark extends AbstractBenchmark {
       MemoryProfiler.keepReference(asmCurrent.newClassNode(classFile));
     }
   }
+
+  @Benchmark
+  public void newClassNode_asmCurrentCompact() {
+    for (byte[] classFile : classFiles) {
+      MemoryProfiler.keepReference(asmCurrentCompact.newClassNode(classFile));
+    }
+  }
 }
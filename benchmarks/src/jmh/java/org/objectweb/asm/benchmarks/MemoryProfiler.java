@@ -45,7 +45,8 @@ import org.openjdk.jmh.results.Result;
 import org.openjdk.jmh.results.ScalarResult;
 
 /**
- * An {@link InternalProfiler} to measure the memory allocated per benchmark iteration.
+ * An {@link InternalProfiler} to measure the memory allocated per benchmark iteration, and the
+ * memory retained per object passed to {@link #keepReference}.
  *
  * @author Eric Bruneton
  */
@@ -88,6 +89,7 @@ public class MemoryProfiler implements InternalProfiler {
       return Collections.emptyList();
     }
     long usedMemoryAfterIteration = memoryProbe.getUsedMemory();
+    int keptReferenceCount = referenceCount;
     references = null;
 
     long usedMemoryInIteration = usedMemoryAfterIteration - usedMemoryBeforeIteration;
@@ -95,6 +97,12 @@ public class MemoryProfiler implements InternalProfiler {
         ((double) usedMemoryInIteration) / result.getMetadata().getMeasuredOps();
     List<Result> results = new ArrayList<>();
     results.add(new ScalarResult("+memory.used", usedMemoryPerOp, "bytes", AggregationPolicy.AVG));
+    if (keptReferenceCount > 0) {
+      double usedMemoryPerReference = ((double) usedMemoryInIteration) / keptReferenceCount;
+      results.add(
+          new ScalarResult(
+              "+memory.usedPerObject", usedMemoryPerReference, "bytes", AggregationPolicy.AVG));
+    }
     return results;
   }
 
@@ -0,0 +1,292 @@
+// ASM: a very small and fast Java bytecode manipulation framework
+// Copyright (c) 2000-2011 INRIA, France Telecom
+// All rights reserved.
+//
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions
+// are met:
+// 1. Redistributions of source code must retain the above copyright
+//    notice, this list of conditions and the following disclaimer.
+// 2. Redistributions in binary form must reproduce the above copyright
+//    notice, this list of conditions and the following disclaimer in the
+//    documentation and/or other materials provided with the distribution.
+// 3. Neither the name of the copyright holders nor the names of its
+//    contributors may be used to endorse or promote products derived from
+//    this software without specific prior written permission.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+// AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+// IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+// ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+// LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+// CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+// SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+// INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+// CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+// ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+// THE POSSIBILITY OF SUCH DAMAGE.
+package org.objectweb.asm.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.objectweb.asm.ClassReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A benchmark to measure the performance of the decoding of the CONSTANT_Utf8 constant pool
+ * strings, with real-world constant pools. The byteAtATime benchmark decodes these strings with
+ * the ASCII fast path of {@link ClassReader}, which looks for a non ASCII byte one byte at a time.
+ * The orOfEightBytes and longView benchmarks decode the same strings with two alternatives testing
+ * 8 bytes at a time: by OR-ing 8 byte loads, and by reading a long through a {@link ByteBuffer}
+ * view of the class file array, respectively. The readUtf8 benchmarks decode them with {@link
+ * ClassReader} itself, from byte arrays and from direct buffers.
+ */
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class Utf8Benchmark extends AbstractBenchmark {
+
+  private static final int CONSTANT_UTF8_TAG = 1;
+  private static final int CONSTANT_CLASS_TAG = 7;
+  private static final int CONSTANT_STRING_TAG = 8;
+  private static final int CONSTANT_NAME_AND_TYPE_TAG = 12;
+  private static final int CONSTANT_METHOD_TYPE_TAG = 16;
+
+  private ArrayList<byte[]> allClassFiles;
+  private ArrayList<ByteBuffer> allDirectClassFiles;
+  private ArrayList<ByteBuffer> allWrappedClassFiles;
+
+  /** The offsets of the u2 indices of CONSTANT_Utf8 entries in each class of allClassFiles. */
+  private ArrayList<int[]> utf8IndexOffsets;
+
+  /** The start offset of the bytes of each CONSTANT_Utf8 entry of each class of allClassFiles. */
+  private ArrayList<int[]> utf8Offsets;
+
+  /** The length in bytes of each CONSTANT_Utf8 entry of each class of allClassFiles. */
+  private ArrayList<int[]> utf8Lengths;
+
+  private char[] charBuffer;
+
+  public Utf8Benchmark() {
+    super("org.objectweb.asm.benchmarks.Utf8");
+  }
+
+  @Setup
+  public void prepare() throws Exception {
+    prepareClasses();
+    allClassFiles = new ArrayList<>(classFiles);
+    allClassFiles.addAll(java8classFiles);
+    allDirectClassFiles = new ArrayList<>();
+    allWrappedClassFiles = new ArrayList<>();
+    utf8IndexOffsets = new ArrayList<>();
+    utf8Offsets = new ArrayList<>();
+    utf8Lengths = new ArrayList<>();
+    int maxUtf8Length = 0;
+    for (byte[] classFile : allClassFiles) {
+      ByteBuffer directClassFile = ByteBuffer.allocateDirect(classFile.length);
+      directClassFile.put(classFile).flip();
+      allDirectClassFiles.add(directClassFile);
+      allWrappedClassFiles.add(ByteBuffer.wrap(classFile));
+
+      ClassReader classReader = new ClassReader(classFile);
+      ArrayList<Integer> indexOffsets = new ArrayList<>();
+      ArrayList<Integer> offsets = new ArrayList<>();
+      ArrayList<Integer> lengths = new ArrayList<>();
+      for (int i = 1; i < classReader.getItemCount(); ++i) {
+        int cpInfoOffset = classReader.getItem(i);
+        if (cpInfoOffset == 0) {
+          continue;
+        }
+        switch (classReader.readByte(cpInfoOffset - 1)) {
+          case CONSTANT_UTF8_TAG:
+            int utf8Length = classReader.readUnsignedShort(cpInfoOffset);
+            offsets.add(cpInfoOffset + 2);
+            lengths.add(utf8Length);
+            maxUtf8Length = Math.max(maxUtf8Length, utf8Length);
+            break;
+          case CONSTANT_CLASS_TAG:
+          case CONSTANT_STRING_TAG:
+          case CONSTANT_METHOD_TYPE_TAG:
+            indexOffsets.add(cpInfoOffset);
+            break;
+          case CONSTANT_NAME_AND_TYPE_TAG:
+            indexOffsets.add(cpInfoOffset);
+            indexOffsets.add(cpInfoOffset + 2);
+            break;
+          default:
+            break;
+        }
+      }
+      utf8IndexOffsets.add(toIntArray(indexOffsets));
+      utf8Offsets.add(toIntArray(offsets));
+      utf8Lengths.add(toIntArray(lengths));
+    }
+    charBuffer = new char[maxUtf8Length];
+  }
+
+  private static int[] toIntArray(final ArrayList<Integer> values) {
+    int[] result = new int[values.size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = values.get(i);
+    }
+    return result;
+  }
+
+  @Benchmark
+  public void byteAtATime(final Blackhole blackhole) {
+    for (int i = 0; i < allClassFiles.size(); ++i) {
+      byte[] classFile = allClassFiles.get(i);
+      int[] offsets = utf8Offsets.get(i);
+      int[] lengths = utf8Lengths.get(i);
+      for (int j = 0; j < offsets.length; ++j) {
+        blackhole.consume(readUtfByteAtATime(classFile, offsets[j], lengths[j], charBuffer));
+      }
+    }
+  }
+
+  @Benchmark
+  public void orOfEightBytes(final Blackhole blackhole) {
+    for (int i = 0; i < allClassFiles.size(); ++i) {
+      byte[] classFile = allClassFiles.get(i);
+      int[] offsets = utf8Offsets.get(i);
+      int[] lengths = utf8Lengths.get(i);
+      for (int j = 0; j < offsets.length; ++j) {
+        blackhole.consume(readUtfOrOfEightBytes(classFile, offsets[j], lengths[j], charBuffer));
+      }
+    }
+  }
+
+  @Benchmark
+  public void longView(final Blackhole blackhole) {
+    for (int i = 0; i < allClassFiles.size(); ++i) {
+      byte[] classFile = allClassFiles.get(i);
+      ByteBuffer classFileView = allWrappedClassFiles.get(i);
+      int[] offsets = utf8Offsets.get(i);
+      int[] lengths = utf8Lengths.get(i);
+      for (int j = 0; j < offsets.length; ++j) {
+        blackhole.consume(
+            readUtfLongView(classFile, classFileView, offsets[j], lengths[j], charBuffer));
+      }
+    }
+  }
+
+  @Benchmark
+  public void readUtf8FromByteArray(final Blackhole blackhole) {
+    for (int i = 0; i < allClassFiles.size(); ++i) {
+      ClassReader classReader = new ClassReader(allClassFiles.get(i));
+      for (int indexOffset : utf8IndexOffsets.get(i)) {
+        blackhole.consume(classReader.readUTF8(indexOffset, charBuffer));
+      }
+    }
+  }
+
+  @Benchmark
+  public void readUtf8FromDirectBuffer(final Blackhole blackhole) {
+    for (int i = 0; i < allDirectClassFiles.size(); ++i) {
+      ClassReader classReader = new ClassReader(allDirectClassFiles.get(i));
+      for (int indexOffset : utf8IndexOffsets.get(i)) {
+        blackhole.consume(classReader.readUTF8(indexOffset, charBuffer));
+      }
+    }
+  }
+
+  /** The ASCII fast path of ClassReader. */
+  private static String readUtfByteAtATime(
+      final byte[] classBuffer, final int utfOffset, final int utfLength, final char[] charBuffer) {
+    int endOffset = utfOffset + utfLength;
+    for (int currentOffset = utfOffset; currentOffset < endOffset; currentOffset++) {
+      if (classBuffer[currentOffset] < 0) {
+        return readUtfNonAscii(classBuffer, utfOffset, currentOffset, utfLength, charBuffer);
+      }
+    }
+    return new String(classBuffer, utfOffset, utfLength, StandardCharsets.ISO_8859_1);
+  }
+
+  /** An alternative ASCII fast path, testing the OR of 8 bytes at a time. */
+  private static String readUtfOrOfEightBytes(
+      final byte[] classBuffer, final int utfOffset, final int utfLength, final char[] charBuffer) {
+    int endOffset = utfOffset + utfLength;
+    int currentOffset = utfOffset;
+    int lastWordOffset = endOffset - 8;
+    while (currentOffset <= lastWordOffset
+        && (classBuffer[currentOffset]
+                | classBuffer[currentOffset + 1]
+                | classBuffer[currentOffset + 2]
+                | classBuffer[currentOffset + 3]
+                | classBuffer[currentOffset + 4]
+                | classBuffer[currentOffset + 5]
+                | classBuffer[currentOffset + 6]
+                | classBuffer[currentOffset + 7])
+            >= 0) {
+      currentOffset += 8;
+    }
+    for (; currentOffset < endOffset; currentOffset++) {
+      if (classBuffer[currentOffset] < 0) {
+        return readUtfNonAscii(classBuffer, utfOffset, currentOffset, utfLength, charBuffer);
+      }
+    }
+    return new String(classBuffer, utfOffset, utfLength, StandardCharsets.ISO_8859_1);
+  }
+
+  /** An alternative ASCII fast path, testing 8 bytes at a time read as a long. */
+  private static String readUtfLongView(
+      final byte[] classBuffer,
+      final ByteBuffer classBufferView,
+      final int utfOffset,
+      final int utfLength,
+      final char[] charBuffer) {
+    int endOffset = utfOffset + utfLength;
+    int currentOffset = utfOffset;
+    int lastWordOffset = endOffset - 8;
+    while (currentOffset <= lastWordOffset
+        && (classBufferView.getLong(currentOffset) & 0x8080808080808080L) == 0) {
+      currentOffset += 8;
+    }
+    for (; currentOffset < endOffset; currentOffset++) {
+      if (classBuffer[currentOffset] < 0) {
+        return readUtfNonAscii(classBuffer, utfOffset, currentOffset, utfLength, charBuffer);
+      }
+    }
+    return new String(classBuffer, utfOffset, utfLength, StandardCharsets.ISO_8859_1);
+  }
+
+  private static String readUtfNonAscii(
+      final byte[] classBuffer,
+      final int utfOffset,
+      final int firstNonAsciiOffset,
+      final int utfLength,
+      final char[] charBuffer) {
+    int currentOffset = utfOffset;
+    int endOffset = currentOffset + utfLength;
+    int strLength = 0;
+    while (currentOffset < firstNonAsciiOffset) {
+      charBuffer[strLength++] = (char) classBuffer[currentOffset++];
+    }
+    while (currentOffset < endOffset) {
+      int currentByte = classBuffer[currentOffset++];
+      if ((currentByte & 0x80) == 0) {
+        charBuffer[strLength++] = (char) (currentByte & 0x7F);
+      } else if ((currentByte & 0xE0) == 0xC0) {
+        charBuffer[strLength++] =
+            (char) (((currentByte & 0x1F) << 6) + (classBuffer[currentOffset++] & 0x3F));
+      } else {
+        charBuffer[strLength++] =
+            (char)
+                (((currentByte & 0xF) << 12)
+                    + ((classBuffer[currentOffset++] & 0x3F) << 6)
+                    + (classBuffer[currentOffset++] & 0x3F));
+      }
+    }
+    return new String(charBuffer, 0, strLength);
+  }
+}